@@ -39,6 +39,7 @@ import bundle.BundleRegistry;
 import bundle.BundleTemplateLoader;
 import exception.CommandException;
 import exception.QuickException;
+import exception.QueueFullException;
 
 /**
  * Process a single service request recevied by the Bot listener 
@@ -104,6 +105,7 @@ public class BotWorker {
 		
 
 		/* setup notification email */
+		service.detach();
 		if( service.output == null ) { 
 			service.output = new Output();
 		}
@@ -150,7 +152,17 @@ public class BotWorker {
 			 */
 			Status status = service.repo().getStatus();
 			if( status.isReady() ) {
-				service.start();
+				try { 
+					service.start();
+				}
+				catch( QueueFullException e ) { 
+					/* 
+					 * the request cannot be accepted, notify the user to retry later
+					 */
+					Logger.warn("Mail request # %s rejected: %s", service.rid(), e.getMessage());
+					sendServerBusyMessage();
+					return;
+				}
 			}			
 			else { 
 				/* 
@@ -167,7 +179,8 @@ public class BotWorker {
 				@Override
 				public void doJob() {
 					Logger.debug("Invoking notification checker job");
-					if( service.repo().getStatus().isRunning() ) { 
+					Status current = service.repo().getStatus();
+					if( current.isRunning() || current.isQueued() ) { 
 						sendSubmitedNotificationMessage();
 					}
 
@@ -212,6 +225,15 @@ public class BotWorker {
 	}
 
 
+	private void sendServerBusyMessage() {
+		try { 
+			play.libs.Mail.send(loadMailTemplate("bot-server-busy.txt"));
+		}
+		catch( Exception e ) { 
+			Logger.error(e, "Error sending server busy message");
+		}
+	}
+
 	private void sendSubmitedNotificationMessage() {
 
 		Email mail = loadMailTemplate("bot-submission-notification.txt");
@@ -3,11 +3,24 @@ package bundle;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import models.AppProps;
 import models.Bundle;
@@ -21,6 +34,13 @@ import util.Utils;
 
 /**
  * Manager for {@link Bundles}s objects 
+ * <p>
+ * The installed bundles are held by an immutable {@link Snapshot}, so the request threads 
+ * just read the current one without any locking. The changes (load, unload and the bundles folder rescan) 
+ * are serialized, each of them builds a new snapshot and swaps it in. 
+ * <p>
+ * The bundles folder is rescanned by a background watcher every <code>settings.bundles.scan.interval</code> 
+ * (default 5s, use '0s' to disable it).
  * 
  * @author Paolo Di Tommaso
  *
@@ -31,23 +51,60 @@ public class BundleRegistry {
 	private static final BundleRegistry INSTANCE;
 	
 	static {
-		/* create an instance and force loading bundles */
+		/* create an instance, force loading bundles and watch for changes */
 		INSTANCE = new BundleRegistry();
 		INSTANCE.detectChanges();
+		INSTANCE.watch( AppProps.instance().getDuration("settings.bundles.scan.interval", 5) );
 	}
 	
-	/** contains errors raised on bundle loading mechanism */
-	public final List<String> errors = new ArrayList<String>();
-	
 	/** Accessor method to the singleton instance */
 	public static BundleRegistry instance() { return INSTANCE; }
 
+	/**
+	 * An immutable view of the installed bundles 
+	 */
+	static class Snapshot { 
+		
+		final Map<String,Bundle> bundles;
+		
+		final Map<File,Bundle> roots;
+		
+		/** contains errors raised on bundle loading mechanism */
+		final List<String> errors;
+		
+		Snapshot( Map<String,Bundle> bundles, Map<File,Bundle> roots, List<String> errors ) { 
+			this.bundles = Collections.unmodifiableMap(bundles);
+			this.roots = Collections.unmodifiableMap(roots);
+			this.errors = Collections.unmodifiableList(errors);
+		}
+	}
 	
-	private final Map<String,Bundle> bundles = new HashMap<String, Bundle>();
+	/**
+	 * The mutable copy of a {@link Snapshot}, used to apply the changes before publishing them
+	 */
+	static class Changes { 
+
+		final Map<String,Bundle> bundles;
+		
+		final Map<File,Bundle> roots;
+		
+		final List<String> errors;
+
+		Changes( Snapshot snapshot ) { 
+			this.bundles = new HashMap<String, Bundle>(snapshot.bundles);
+			this.roots = new HashMap<File, Bundle>(snapshot.roots);
+			this.errors = new ArrayList<String>(snapshot.errors);
+		}
+		
+		Snapshot snapshot() { 
+			return new Snapshot(bundles, roots, errors);
+		}
+	}
 	
-	private final Map<File,Bundle> roots = new HashMap<File,Bundle>();
+	private final AtomicReference<Snapshot> fSnapshot = new AtomicReference<Snapshot>( 
+			new Snapshot(new HashMap<String, Bundle>(), new HashMap<File, Bundle>(), new ArrayList<String>()) );
 	
-	private long lastScanTime = 0;
+	private Timer fWatcher;
 	
 	/** Marked as 'protected' method to prevent direct instantiation 
 	 * @see #instance()
@@ -60,9 +117,21 @@ public class BundleRegistry {
 	 * @return a {@link Bundle} instance if exists with the specified name, or <code>null</code> otherwise
 	 */
 	public Bundle get( String name ) { 
-		detectChanges();
-		
-		return bundles.get(name);
+		return fSnapshot.get().bundles.get(name);
+	}
+	
+	/**
+	 * @return the current snapshot of the installed bundles
+	 */
+	Snapshot snapshot() { 
+		return fSnapshot.get();
+	}
+	
+	/**
+	 * @return the errors raised loading the bundles by the last scan of the bundles folder
+	 */
+	public List<String> getErrors() { 
+		return fSnapshot.get().errors;
 	}
 	
 
@@ -76,37 +145,51 @@ public class BundleRegistry {
     }
 	
 	public synchronized void load( Bundle bundle ) {
+		Changes changes = new Changes(fSnapshot.get());
+		load(changes, bundle);
+		fSnapshot.set(changes.snapshot());
+	}
+	
+	void load( Changes changes, Bundle bundle ) { 
 		/* 
 		 * if already exists with the same name 
 		 * unload the old version 
 		 */
 		
-		Bundle old = bundles.get(bundle.name);
+		Bundle old = changes.bundles.get(bundle.name);
 		if( old != null ) { 
-			unload(old);
+			unload(changes, old);
 		}
 
 		/* 
 		 * register the new 
 		 */
-		bundles.put(bundle.name, bundle);
-		roots.put(bundle.root, bundle);
-		
 		bundle.contentHash = getBundleHash(bundle);
-		
+
+		changes.bundles.put(bundle.name, bundle);
+		changes.roots.put(bundle.root, bundle);
 	}
 	
 	
-	public void unload( Bundle bundle ) { 
+	public synchronized void unload( Bundle bundle ) { 
+		Changes changes = new Changes(fSnapshot.get());
+		unload(changes, bundle);
+		fSnapshot.set(changes.snapshot());
+	}
+	
+	void unload( Changes changes, Bundle bundle ) { 
 		
 		/* 
 		 * remove from the lists
 		 */
-		bundles.remove(bundle.name);
-		roots.remove(bundle.root);
+		changes.bundles.remove(bundle.name);
+		changes.roots.remove(bundle.root);
 		
 		/* clean template cache */
 		BundleTemplateLoader.cleanCacheForBundle(bundle);
+		
+		/* drop the compiled scripts */
+		bundle.clearScriptCache();
 	}
 	
 	/**
@@ -131,24 +214,60 @@ public class BundleRegistry {
 	}
 	
 	public List<String> getNames() { 
-		detectChanges();
-		
-		return new ArrayList<String>(bundles.keySet());
+		return new ArrayList<String>(fSnapshot.get().bundles.keySet());
 	}
 	
 	public List<Bundle> getBundles() { 
-		detectChanges();
-		
-		return new ArrayList<Bundle>(bundles.values());
+		return new ArrayList<Bundle>(fSnapshot.get().bundles.values());
 	}
 
-	public void detectChanges() {
-		
-		if( System.currentTimeMillis() - lastScanTime < 5000 ) { 
+	/**
+	 * Start the background watcher that rescans the bundles folder 
+	 * 
+	 * @param interval the scan interval in seconds, when <code>null</code> or zero the watcher is not started
+	 */
+	synchronized void watch( Integer interval ) { 
+		if( interval == null || interval <= 0 ) { 
+			Logger.info("[bundle] Bundles folder watcher disabled");
 			return;
 		}
+		
+		if( fWatcher != null ) { 
+			fWatcher.cancel();
+		}
+		
+		fWatcher = new Timer("BundleWatcher", true);
+		fWatcher.schedule(new TimerTask() {
+			public void run() {
+				try { 
+					detectChanges();
+				}
+				catch( Exception e ) { 
+					Logger.error(e, "[bundle] Error scanning bundles folder: '%s'", AppProps.BUNDLES_FOLDER);
+				}
+			}}, interval * 1000L, interval * 1000L );
+	}
+	
+	/**
+	 * Stop the background watcher 
+	 */
+	public synchronized void shutdown() { 
+		if( fWatcher != null ) { 
+			fWatcher.cancel();
+			fWatcher = null;
+		}
+	}
+	
+	/**
+	 * Rescan the bundles folder loading the new bundles, unloading the removed ones and reloading the changed ones. 
+	 * The result is published as a new snapshot only when something has changed.
+	 */
+	public synchronized void detectChanges() {
 
-		errors.clear();
+		final Snapshot snapshot = fSnapshot.get();
+		final Changes changes = new Changes(snapshot);
+		changes.errors.clear();
+		boolean changed = false;
 
 		/* create a set with all bundles root currently */
 		File[] files = AppProps.BUNDLES_FOLDER.listFiles();
@@ -161,7 +280,7 @@ public class BundleRegistry {
 			}			
 		}
 		
-		Set<File> installed = new HashSet<File>( roots.keySet() );
+		Set<File> installed = new HashSet<File>( snapshot.roots.keySet() );
 		
 		/* 
 		 * remove from the list of path the set of installed bundles 
@@ -169,6 +288,9 @@ public class BundleRegistry {
 		 */
 		Set<File> setOfNewBudles = BundleHelper.getNewBundlesPath(installed,foundBundlesOnFileSystem);
 		
+		/* the new bundles are read and verified in parallel, then installed one by one */
+		Map<File,Object> discovered = readAll(setOfNewBudles);
+		
 		for( File path : setOfNewBudles ) { 
 
 			/*
@@ -176,16 +298,18 @@ public class BundleRegistry {
 			 */
 			Bundle bundle=null;
 			try { 
-				Logger.info("[bundle] Discovering '%s'", path);
-				bundle = Bundle.read(path);
-				bundle.verify();
+				Object item = discovered.get(path);
+				if( item instanceof Exception ) { 
+					throw (Exception) item;
+				}
+				bundle = (Bundle) item;
 				
 				/* check if already exists with the same name */
-				Bundle other = bundles.get( bundle.name );
+				Bundle other = changes.bundles.get( bundle.name );
 				if( other != null ) { 
 					if( bundle.version.compareTo( other.version ) > 0 ) { 
 						Logger.info("[bundle] Unloading '%s' ", other.root);
-						INSTANCE.unload(other);
+						unload(changes, other);
 					}
 					else { 
 						Logger.warn("[bundle] Skipping installation of '%s' because a newer version it is already installed", path);
@@ -194,12 +318,13 @@ public class BundleRegistry {
 				}
 				
 				Logger.info("[bundle] Loading '%s'", path);
-				INSTANCE.load(bundle);
+				load(changes, bundle);
+				changed = true;
 			}
 			catch( Exception e ) { 
 				Logger.error(e, "[bundle] Error loading  '%s'", path);
 				// append this exception on the errors list
-				errors.add(String.format("Error loading  '%s'", path));
+				changes.errors.add(String.format("Error loading  '%s'", path));
 			}
 		}
 		
@@ -211,14 +336,15 @@ public class BundleRegistry {
 		Set<File> setOfDroppedBundle = BundleHelper.getDroppedBundlesPath(installed, foundBundlesOnFileSystem);
 		
 		for( File path : setOfDroppedBundle ) { 
-			Bundle bundle = roots.get(path);
+			Bundle bundle = changes.roots.get(path);
 			if( bundle == null ) { 
 				Logger.warn("[bundle] Missing '%s'", path);
 				continue;
 			}
 			
 			Logger.info("[bundle] Unloading '%s'", bundle.root );
-			INSTANCE.unload(bundle);
+			unload(changes, bundle);
+			changed = true;
 		}
 		
 
@@ -230,7 +356,11 @@ public class BundleRegistry {
 		
 		for( File path : setOfMatchingBundle ) { 
 			/* check if this bundle has already been installed */
-			Bundle bundle = roots.get(path);
+			Bundle bundle = changes.roots.get(path);
+			if( bundle == null ) { 
+				/* replaced by a newer version in the same scan */
+				continue;
+			}
 			
 			if( bundle.contentHash == getBundleHash(bundle) ) { 
 				/* the bundle in installed and BUT content is NOT changed, just skip it */
@@ -242,27 +372,110 @@ public class BundleRegistry {
 			 */
 			Logger.info("[bundle] Reloading '%s'", path);
 
-			INSTANCE.unload(bundle);
+			unload(changes, bundle);
+			changed = true;
 
 			try { 
 				bundle = Bundle.read(path);
 				bundle.verify();
-				INSTANCE.load(bundle);
+				load(changes, bundle);
 			}
 			catch( Exception e ) { 
 				Logger.error(e, "[bundle] Error loading '%s'", path);
 				// append this exception on the errors list
-				errors.add(String.format("Error loading  '%s'", path));
+				changes.errors.add(String.format("Error loading  '%s'", path));
 			}
 			
 		}
 
-		// set the current time  before exit 
-		lastScanTime = System.currentTimeMillis();
+		/* publish the new snapshot */
+		if( changed || !changes.errors.equals(snapshot.errors) ) { 
+			fSnapshot.set(changes.snapshot());
+		}
 	}
 	
 
 
+	/**
+	 * Read and verify the bundles in the specified paths, in parallel when more than one. 
+	 * <p>
+	 * Note: it is invoked by the class static initializer, so the tasks must not access the registry 
+	 * otherwise they wait forever for the class initialization to complete
+	 * 
+	 * @return a map associating each path to its {@link Bundle} instance or to the exception raised reading it 
+	 */
+	Map<File,Object> readAll( Collection<File> paths ) { 
+		final Map<File,Object> result = new ConcurrentHashMap<File, Object>();
+		
+		List<Runnable> tasks = new ArrayList<Runnable>(paths.size());
+		for( final File path : paths ) { 
+			tasks.add( new Runnable() {
+				public void run() {
+					Logger.info("[bundle] Discovering '%s'", path);
+					try { 
+						Bundle bundle = Bundle.read(path);
+						bundle.verify();
+						result.put(path, bundle);
+					}
+					catch( Exception e ) { 
+						result.put(path, e);
+					}
+				}
+			});
+		}
+		
+		invokeAll(tasks);
+		return result;
+	}
+	
+	/**
+	 * Execute the specified tasks on a temporary pool of <code>settings.bundles.workers</code> threads 
+	 * (default the number of available processors) and wait for their termination 
+	 */
+	static void invokeAll( List<? extends Runnable> tasks ) { 
+		if( tasks.size() < 2 ) { 
+			for( Runnable task : tasks ) { 
+				task.run();
+			}
+			return;
+		}
+		
+		int size = AppProps.instance().getInteger("settings.bundles.workers", Runtime.getRuntime().availableProcessors());
+		size = Math.max(1, Math.min(size, tasks.size()));
+
+		final AtomicInteger count = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(size, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread result = new Thread(r, String.format("bundles-%s", count.incrementAndGet()));
+				result.setDaemon(true);
+				return result;
+			}
+		});
+		
+		try { 
+			List<Callable<Object>> callables = new ArrayList<Callable<Object>>(tasks.size());
+			for( Runnable task : tasks ) {
+				callables.add(Executors.callable(task));
+			}
+
+			for( Future<Object> future : executor.invokeAll(callables) ) {
+				try {
+					future.get();
+				}
+				catch( ExecutionException e ) {
+					Logger.error(e.getCause(), "[bundle] Error executing bundle task");
+				}
+			}
+		}
+		catch( InterruptedException e ) { 
+			Logger.warn("[bundle] Bundle tasks interrupted");
+			Thread.currentThread().interrupt();
+		}
+		finally { 
+			executor.shutdown();
+		}
+	}
+
 	/**
 	 * Defines if the specified path contains a bundle or not 
 	 * 
@@ -322,8 +535,8 @@ public class BundleRegistry {
 	public Map<String,String> getTitlesMap() { 
 		Map<String,String> result = new HashMap<String, String>();
 		
-		for( String name : getNames() ) { 
-			result.put(name, get(name).title );
+		for( Bundle bundle : getBundles() ) { 
+			result.put(bundle.name, bundle.title );
 		}
 		
 		return result;
@@ -2,16 +2,26 @@ package bundle;
 
 import exception.QuickException;
 import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
 import groovy.lang.GroovyObject;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import play.Logger;
 import play.Play;
+import play.libs.Codec;
 
 /**
  * Load classes and script in the bundle context 
+ * <p>
+ * The compiled script classes are cached, so that the copies of a service created for each request 
+ * share them and only a new instance is created. Script texts are identified by their MD5 hash, 
+ * script files by their path and last modified time. The cache is dropped when the bundle is unloaded, 
+ * see {@link #clearCache()}
  * 
  * @author Paolo Di Tommaso
  *
@@ -24,6 +34,28 @@ public class BundleScriptLoader {
 	
 	GroovyClassLoader gcl; 
 	
+	/** compiled classes for the script texts, by the text hash */
+	final ConcurrentMap<String,Class> fTextCache = new ConcurrentHashMap<String, Class>();
+	
+	/** compiled classes for the script files, by the file path */
+	final ConcurrentMap<File,CachedFile> fFileCache = new ConcurrentHashMap<File, CachedFile>();
+	
+	static class CachedFile { 
+		final Class clazz;
+		final long lastModified;
+		final long length;
+		
+		CachedFile( Class clazz, long lastModified, long length ) { 
+			this.clazz = clazz;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+		
+		boolean isValid( File file ) { 
+			return lastModified == file.lastModified() && length == file.length();
+		}
+	}
+	
 	{
 		gcl = new GroovyClassLoader(Play.classloader);
 	}
@@ -105,8 +137,7 @@ public class BundleScriptLoader {
 	public Object getExtensionByFile( String theScriptFile ) {
 		
 		try {
-			Class clazz = gcl.parseClass(new File(scriptPath,theScriptFile));
-			return clazz.newInstance();
+			return getClassByFile(theScriptFile).newInstance();
 		} 
 		catch (Exception e) {
 			throw new QuickException(e, "Cannot parse script file '%s'", theScriptFile);
@@ -115,6 +146,27 @@ public class BundleScriptLoader {
 		
 	}
 	
+	/**
+	 * @return the compiled class for the specified script file, it is compiled again only when the file changes
+	 */
+	Class getClassByFile( String theScriptFile ) throws IOException { 
+		File file = new File(scriptPath,theScriptFile);
+		CachedFile entry = fFileCache.get(file);
+		if( entry != null && entry.isValid(file) ) { 
+			return entry.clazz;
+		}
+		
+		/* 
+		 * the file attributes are taken before parsing it, so that a change in the meanwhile is detected.  
+		 * The source is not cached by the groovy class loader, otherwise a changed file is not compiled again 
+		 */
+		long lastModified = file.lastModified();
+		long length = file.length();
+		Class result = gcl.parseClass(new GroovyCodeSource(file), false);
+		fFileCache.put(file, new CachedFile(result, lastModified, length));
+		return result;
+	}
+	
 	public Object getExtensionByClass( String className ) {
 
 		try {
@@ -137,12 +189,36 @@ public class BundleScriptLoader {
 	public Object getExtensionByScript( String script ) {
 
 		try {
-			return gcl.parseClass(script).newInstance();
+			return getClassByScript(script).newInstance();
 		} 
 		catch (Exception e) {
 			throw new QuickException(e, "Cannot parse provided script");
 		}
 	}
 	
+	/**
+	 * @return the compiled class for the specified script text, compiled only the first time it is requested 
+	 */
+	Class getClassByScript( String script ) { 
+		String key = Codec.hexMD5(script);
+		Class result = fTextCache.get(key);
+		if( result == null ) { 
+			result = gcl.parseClass(script);
+			Class other = fTextCache.putIfAbsent(key, result);
+			if( other != null ) { 
+				result = other;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Drop all the compiled classes 
+	 */
+	public void clearCache() { 
+		fTextCache.clear();
+		fFileCache.clear();
+		gcl.clearCache();
+	}
 			
 }
@@ -21,7 +21,7 @@ public class BundleTemplateLoader extends TemplateLoader {
 	 */
 	static final Map<Bundle, List<String>> mapOfTemplateKeyByBundle = new HashMap<Bundle,List<String>>();
 
-	public static void cleanCacheForBundle(Bundle bundle) { 
+	public static synchronized void cleanCacheForBundle(Bundle bundle) { 
 		List<String> keys = mapOfTemplateKeyByBundle.get(bundle);
 		if( keys != null ) for( String templateKey : keys ) { 
 			templates.remove(templateKey);
@@ -29,7 +29,7 @@ public class BundleTemplateLoader extends TemplateLoader {
 		mapOfTemplateKeyByBundle.remove(bundle);
 	}
 	
-	static protected void putTemplateKeyForBundle( Bundle bundle, String keyToStore ) { 
+	static protected synchronized void putTemplateKeyForBundle( Bundle bundle, String keyToStore ) { 
 		List<String> list = mapOfTemplateKeyByBundle.get(bundle);
 		if( list == null ) { 
 			list = new ArrayList<String>();
@@ -57,37 +57,50 @@ public class BundleTemplateLoader extends TemplateLoader {
 	
 	
 	/**
-	 * Override this to make it able to re-compile bundle provided template at runtime
-	 * 
+	 * Override this to make it able to re-compile bundle provided template at runtime.
+	 * <p>
+	 * The templates can be compiled concurrently (see {@link BundleWarmup}), so the templates map is accessed 
+	 * holding the class lock, while the compilation runs outside of it
 	 */
     public static Template load(Bundle bundle, VirtualFile file) {
     	
-        if( templates == null ) { 
-    		templates = new HashMap<String, BaseTemplate>();
-        }
-		
 		String key = (file.relativePath().hashCode()+"").replace("-", "M");
-        if (!templates.containsKey(key) || templates.get(key).compiledTemplate == null) {
-            BaseTemplate template = new GroovyTemplate(file.relativePath(), file.contentAsString());
-            if(template.loadFromCache()) {
-                templates.put(key, template);
-            } else {
-                templates.put(key, new GroovyTemplateCompiler().compile(file));
-            }
-        } else {
-            BaseTemplate template = templates.get(key);
-            if (template.timestamp < file.lastModified()) {
-                templates.put(key, new GroovyTemplateCompiler().compile(file));
+		BaseTemplate template;
+		synchronized (BundleTemplateLoader.class) {
+	        if( templates == null ) { 
+	    		templates = new HashMap<String, BaseTemplate>();
+	        }
+	        template = templates.get(key);
+		}
+
+        boolean compiled = true;
+        if (template == null || template.compiledTemplate == null) {
+            template = new GroovyTemplate(file.relativePath(), file.contentAsString());
+            if(!template.loadFromCache()) {
+                template = new GroovyTemplateCompiler().compile(file);
             }
+        } 
+        else if (template.timestamp < file.lastModified()) {
+        	template = new GroovyTemplateCompiler().compile(file);
+        }
+        else { 
+        	compiled = false;
         }
-        if (templates.get(key) == null) {
+        
+        if (template == null) {
             throw new TemplateNotFoundException(file.relativePath());
         }
         
-        /* store also the key for this bundle */
-        putTemplateKeyForBundle(bundle,key);
+        synchronized (BundleTemplateLoader.class) {
+        	if( compiled ) { 
+        		templates.put(key, template);
+        	}
+        	
+            /* store also the key for this bundle */
+            putTemplateKeyForBundle(bundle,key);
+		}
         
-        return templates.get(key);
+        return template;
      }	
     
     
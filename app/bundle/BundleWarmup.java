@@ -0,0 +1,234 @@
+package bundle;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.List;
+
+import models.AbstractCommand;
+import models.AppProps;
+import models.Bundle;
+import models.ProcessCommand;
+import models.ScriptCommand;
+import models.Service;
+import play.Logger;
+import play.vfs.VirtualFile;
+import util.Utils;
+
+/**
+ * The startup warm-up phase: it loads the bundles (in parallel, see {@link BundleRegistry}) and precompiles
+ * the pages and mail templates and the Groovy scripts of every bundle, so that the first requests after a deploy
+ * do not pay the compilation time.
+ * <p>
+ * The bundles are warmed up in parallel, until the warm-up has completed {@link #isReady()} returns <code>false</code>.
+ * It can be disabled setting <code>settings.bundles.warmup=false</code>, in this case the templates and scripts
+ * are compiled on the first request that uses them.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class BundleWarmup {
+
+	private static final BundleWarmup INSTANCE = new BundleWarmup();
+
+	/** Singleton instance accessor */
+	public static BundleWarmup instance() { return INSTANCE; }
+
+	/** The warm-up figures for a single bundle */
+	static class Stats {
+		final String name;
+		int pages;
+		int mails;
+		int scripts;
+		int errors;
+		long elapsed;
+
+		Stats( String name ) {
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("'%s' in %s ms - pages: %s; mails: %s; scripts: %s; errors: %s", name, elapsed, pages, mails, scripts, errors);
+		}
+	}
+
+	private volatile boolean fReady;
+
+	private volatile long fElapsed = -1;
+
+	/** Marked as protected to prevent direct instantiation */
+	protected BundleWarmup() {}
+
+	/**
+	 * @return <code>true</code> when the warm-up phase has completed
+	 */
+	public boolean isReady() {
+		return fReady;
+	}
+
+	/**
+	 * @return the time spent by the warm-up phase in millis or -1 if it has not completed
+	 */
+	public long getElapsed() {
+		return fElapsed;
+	}
+
+	/**
+	 * Load all the bundles and precompile their templates and scripts
+	 */
+	public void run() {
+		if( fReady ) {
+			return;
+		}
+
+		if( !Utils.parseBool(AppProps.instance().getString("settings.bundles.warmup"), true) ) {
+			Logger.info("[bundle] Warm-up disabled");
+			fElapsed = 0;
+			fReady = true;
+			return;
+		}
+
+		try {
+			long begin = System.currentTimeMillis();
+
+			/* the first access loads the bundles */
+			List<Bundle> bundles = BundleRegistry.instance().getBundles();
+			long loaded = System.currentTimeMillis();
+			Logger.info("[bundle] Loaded %s bundle(s) in %s ms", bundles.size(), loaded-begin);
+
+			/* precompile each bundle in parallel */
+			final List<Stats> result = new ArrayList<Stats>(bundles.size());
+			List<Runnable> tasks = new ArrayList<Runnable>(bundles.size());
+			for( final Bundle bundle : bundles ) {
+				final Stats stats = new Stats(bundle.name);
+				result.add(stats);
+				tasks.add(new Runnable() {
+					public void run() {
+						warmup(bundle, stats);
+					}
+				});
+			}
+			BundleRegistry.invokeAll(tasks);
+
+			for( Stats stats : result ) {
+				Logger.info("[bundle] Warmed up %s", stats);
+			}
+
+			fElapsed = System.currentTimeMillis() - begin;
+			Logger.info("[bundle] Warm-up completed in %s ms (loading: %s ms; compiling: %s ms)", fElapsed, loaded-begin, fElapsed-(loaded-begin));
+		}
+		catch( Exception e ) {
+			Logger.error(e, "[bundle] Error on bundles warm-up");
+		}
+		finally {
+			fReady = true;
+		}
+	}
+
+	void warmup( Bundle bundle, Stats stats ) {
+		long begin = System.currentTimeMillis();
+
+		/* the page templates */
+		for( VirtualFile file : list(bundle.pagesPath, ".html") ) {
+			try {
+				BundleTemplateLoader.load(bundle, file);
+				stats.pages++;
+			}
+			catch( Exception e ) {
+				Logger.warn(e, "[bundle] Unable to compile page template: '%s'", file.relativePath());
+				stats.errors++;
+			}
+		}
+
+		/* the mail templates */
+		for( VirtualFile file : list(bundle.mailPath, null) ) {
+			try {
+				BundleTemplateLoader.load(bundle, file);
+				stats.mails++;
+			}
+			catch( Exception e ) {
+				Logger.warn(e, "[bundle] Unable to compile mail template: '%s'", file.relativePath());
+				stats.errors++;
+			}
+		}
+
+		/* the script files */
+		BundleScriptLoader loader = bundle.getScriptLoader();
+		String[] names = bundle.scriptPath != null ? bundle.scriptPath.list(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".groovy");
+			}
+		}) : null;
+
+		if( names != null ) for( String name : names ) {
+			try {
+				loader.getClassByFile(name);
+				stats.scripts++;
+			}
+			catch( Throwable e ) {
+				Logger.warn(e, "[bundle] Unable to compile script file: '%s'", name);
+				stats.errors++;
+			}
+		}
+
+		/* the scripts defined in the services process */
+		if( bundle.services != null ) for( Service service : bundle.services ) {
+			List<ScriptCommand> commands = new ArrayList<ScriptCommand>();
+			collect(service.process, commands);
+
+			for( ScriptCommand command : commands ) {
+				if( command.fScriptText == null || command.fScriptText.trim().length() == 0 ) {
+					continue;
+				}
+				try {
+					loader.getClassByScript(command.fScriptText);
+					stats.scripts++;
+				}
+				catch( Throwable e ) {
+					Logger.warn(e, "[bundle] Unable to compile script in service: '%s'", service.name);
+					stats.errors++;
+				}
+			}
+		}
+
+		stats.elapsed = System.currentTimeMillis() - begin;
+	}
+
+	/*
+	 * Find out the script commands in the specified command, visiting the nested processes
+	 */
+	static void collect( AbstractCommand command, List<ScriptCommand> result ) {
+		if( command instanceof ScriptCommand ) {
+			result.add((ScriptCommand) command);
+		}
+		else if( command instanceof ProcessCommand && ((ProcessCommand)command).commands != null ) {
+			for( AbstractCommand item : ((ProcessCommand)command).commands ) {
+				collect(item, result);
+			}
+		}
+	}
+
+	/*
+	 * List the files in the specified path and its sub folders
+	 */
+	static List<VirtualFile> list( VirtualFile path, String suffix ) {
+		List<VirtualFile> result = new ArrayList<VirtualFile>();
+		if( path != null && path.exists() && path.isDirectory() ) {
+			list(path, suffix, result);
+		}
+		return result;
+	}
+
+	static void list( VirtualFile path, String suffix, List<VirtualFile> result ) {
+		for( VirtualFile file : path.list() ) {
+			if( file.isDirectory() ) {
+				list(file, suffix, result);
+			}
+			else if( suffix == null || file.getName().endsWith(suffix) ) {
+				result.add(file);
+			}
+		}
+	}
+
+}
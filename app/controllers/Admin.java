@@ -28,14 +28,18 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
+import job.JobScheduler;
+import job.JobScheduler.LaneInfo;
 import models.AppProps;
 import models.Bundle;
 import models.Field;
 import models.PageContent;
 import models.Repo;
+import models.ResultCache;
 import models.Service;
 import models.TCoffeeCommand;
 import models.UsageLog;
+import models.WorkspaceQuota;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
@@ -172,6 +176,7 @@ public class Admin extends CommonController {
     	else if( isPOST()) {
     		/* DO IT - delete any job repo in any status */
     		Repo.deleteAll();
+    		ResultCache.instance().clear();
     		index();
     	}
     	
@@ -306,7 +311,11 @@ public class Admin extends CommonController {
 		TreeMap<String,String> map2 = new TreeMap<String,String>(System.getenv());
 		TreeMap<Object,Object> map3 = new TreeMap<Object,Object>( Play.configuration );
 
-		render(map1,map2,map3,sStartTime);
+		ResultCache cache = ResultCache.instance();
+		WorkspaceQuota quota = WorkspaceQuota.instance();
+		List<LaneInfo> lanes = JobScheduler.instance().getLanesInfo();
+
+		render(map1,map2,map3,sStartTime,cache,quota,lanes);
 	}
     
 	/**
@@ -460,7 +469,7 @@ public class Admin extends CommonController {
 	public static void bundleManager() { 
 		BundleRegistry registry = BundleRegistry.instance(); 
 		List<Bundle> bundles = registry.getBundles();
-		List<String> loadingErrors = registry.errors; 
+		List<String> loadingErrors = registry.getErrors(); 
 		render(bundles, loadingErrors);
 	}
 	
@@ -13,6 +13,7 @@ import models.AppProps;
 import models.Bundle;
 import models.CmdArgs;
 import models.Field;
+import models.LogTail;
 import models.OutResult;
 import models.Repo;
 import models.Service;
@@ -24,6 +25,7 @@ import org.blackcoffee.commons.utils.CmdLineUtils;
 
 import play.Logger;
 import play.data.validation.Validation;
+import play.libs.F.Promise;
 import play.libs.IO;
 import play.libs.MimeTypes;
 import play.mvc.Before;
@@ -34,6 +36,7 @@ import play.mvc.Util;
 import query.History;
 import util.Utils;
 import bundle.BundleRegistry;
+import exception.QueueFullException;
 
 /**
  * The main application controller 
@@ -92,6 +95,8 @@ public class Application extends CommonController {
 		assertNotEmpty(rid, "Missing 'rid' argument on #result action");
     	
     	final Repo ctx = new Repo(rid,false);
+    	// the result could be stored in the cold tier by another node
+    	ctx.fetch();
     	final Status status = ctx.getStatus();
 
     	if( status.isDone()) {
@@ -119,9 +124,10 @@ public class Application extends CommonController {
 			OutResult result = ctx.getResult();
 	    	render("Application/failed.html", rid, ctx, result, cached);
 		}
-		else if( status.isRunning() ) {
+		else if( status.isRunning() || status.isQueued() ) {
 			responseNoCache();
-			render("Application/wait.html", rid );
+			int position = ctx.getQueuePosition();
+			render("Application/wait.html", rid, position );
 		}
 		else {
 			int maxDays = AppProps.instance().getDataCacheDuration() / 60 / 60 / 24;
@@ -227,13 +233,56 @@ public class Application extends CommonController {
 	 * 
 	 * @param rid the request unique identifier
 	 */
-	public static void status(String rid) {
+	public static void status(String rid, String wait) {
 		assertNotEmpty(rid, "Missing 'rid' argument on #status action");
+		
+		/* long-poll: park the request until the status changes */
+		Promise<Status> change = statusChange(rid, wait);
+		if( change != null ) { 
+			await(change);
+		}
 
 		Repo ctx = new Repo(rid,false);
 		renderText(ctx.getStatus().toString());
 	}
 	
+	/**
+	 * Long-poll the output of a running job: returns the standard output and error produced 
+	 * from the specified offsets, waiting up to <code>tail.poll.timeout</code> (default 20s) 
+	 * for new content, and the current job status. 
+	 * 
+	 * @param rid the request unique identifier 
+	 * @param out the standard output offset i.e. the <code>next</code> value returned by the previous invocation
+	 * @param err the standard error offset i.e. the <code>next</code> value returned by the previous invocation
+	 */
+	public static void tail( String rid, Long out, Long err ) {
+		assertNotEmpty(rid, "Missing 'rid' argument on #tail action");
+		responseNoCache();
+		
+		long timeout = System.currentTimeMillis() + AppProps.instance().getDuration("tail.poll.timeout", 20) * 1000L;
+		LogTail.Chunk chunkOut = null;
+		LogTail.Chunk chunkErr = null;
+
+		LogTail tail;
+		while( (tail=LogTail.get(rid)) != null ) { 
+			chunkOut = tail.readOut( out != null ? out : 0 );
+			chunkErr = tail.readErr( err != null ? err : 0 );
+			
+			if( chunkOut.text.length()>0 || chunkErr.text.length()>0 || System.currentTimeMillis() > timeout ) { 
+				break;
+			}
+			
+			/* nothing new, suspend the request without holding the thread */
+			await(1000);
+		}
+		
+		Map<String,Object> result = new HashMap<String, Object>();
+		result.put("status", new Repo(rid,false).getStatus().toString());
+		if( chunkOut != null ) result.put("out", chunkOut);
+		if( chunkErr != null ) result.put("err", chunkErr);
+		renderJSON(result);
+	}
+	
 	public static void replay( String rid ) {
 		assertNotEmpty(rid, "Missing 'rid' argument on #replay action");
 	
@@ -244,6 +293,7 @@ public class Application extends CommonController {
 		if( !repo.hasResult() ) {
 			notFound(String.format("The specified request ID does not exist (%s)", rid));
 		}
+		repo.restore();
 
 		
 		/* 
@@ -278,6 +328,7 @@ public class Application extends CommonController {
 		if( !repo.hasResult() ) {
 			notFound(String.format("The specified request ID does not exist (%s)", rid));
 		}
+		repo.restore();
 
 		/* 
 		 * 2. create and bind the stored input values 
@@ -285,7 +336,7 @@ public class Application extends CommonController {
 		OutResult result = repo.getResult(); 
 		Service service = service(bundle.get().name,result.service).copy();
 		Service.current(service);
-		service.input = repo.getInput();
+		service.input.bindValues( repo.getInput() );
 		
 		/* 
 		 * 4. re-execute with caching feature disabled
@@ -416,9 +467,14 @@ public class Application extends CommonController {
 		/*
 		 * 3. fire the job 
 		 */
-		if( service.start() ) {
-	    	// store an cookie containing the user email 
-	    	storeEmailCookie(params.get("email"));
+		try { 
+			if( service.start() ) {
+		    	// store an cookie containing the user email 
+		    	storeEmailCookie(params.get("email"));
+			}
+		}
+		catch( QueueFullException e ) { 
+			busy(e.getMessage());
 		}
 		
 
@@ -515,6 +571,7 @@ public class Application extends CommonController {
 			String uploadedFiles = null;
 			
 			if( (rid=params.get("replay")) != null && (repo=new Repo(rid)).hasResult() ) { 
+				repo.restore();
 				
 				
 				/* reuse the previous command line */
@@ -673,9 +730,14 @@ public class Application extends CommonController {
 		/*
 		 * 4. fire the job 
 		 */
-		if( service.start() ) {
-	    	// store an cookie containing the user email 
-	    	storeEmailCookie(params.get("email"));
+		try { 
+			if( service.start() ) {
+		    	// store an cookie containing the user email 
+		    	storeEmailCookie(params.get("email"));
+			}
+		}
+		catch( QueueFullException e ) { 
+			busy(e.getMessage());
 		}
 		
 
@@ -727,6 +789,7 @@ public class Application extends CommonController {
 		if( !repo.hasResult() ) {
 			notFound(String.format("The specified request ID does not exist (%s)", rid));
 		}
+		repo.restore();
 		
 		/*
 		 * copy the input file to the user area 
@@ -749,7 +812,25 @@ public class Application extends CommonController {
 		String bundleName = repo.getResult().bundle;
 		Service service = service(bundleName,serviceName);
 		service = service.copy();
-		service.input = repo.getInput();
+		service.input.bindValues( repo.getInput() );
+
+		/*
+		 * the uploaded 'memo' content is referenced by name in the form, 
+		 * copy the request folder content to the user area, the upload could have been already wiped 
+		 */
+		for( Field field : service.input.fields() ) { 
+			if( !field.isFileReference() || !field.hasFile() ) continue;
+
+			File target = Data.getUserFile(field.getFileName());
+			try {
+				FileUtils.copyFile(field.getFile(), target);
+				field.setFile(target);
+				field.value = "file://" + target.getName();
+			} 
+			catch (IOException e) {
+				Logger.warn("Cannot copy file: '%s' to '%s'", field.getFile(), target);
+			}
+		}
 
 		return service;
 	}
@@ -4,19 +4,26 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import job.CompletionBus;
+import models.AppProps;
 import models.Bundle;
 import models.PageContent;
 import models.Repo;
+import models.RepoArchive;
 import models.Service;
+import models.Status;
 import play.Logger;
 import play.Play;
 import play.cache.Cache;
+import play.libs.F.Promise;
+import play.libs.Time;
 import play.mvc.Controller;
 import play.mvc.Http.StatusCode;
 import play.mvc.Router;
@@ -154,6 +161,61 @@ public class CommonController extends Controller {
 		error( StatusCode.BAD_REQUEST, String.format(message, args));
 	}
 
+	/**
+	 * Returning Service Unavailable - 503 HTTP error, telling the client to try again later 
+	 * 
+	 * @param message
+	 * @param args
+	 */
+	static void busy( String message, Object ... args ) { 
+		response.setHeader("Retry-After", String.valueOf(AppProps.instance().getInteger("scheduler.retry.after", 60)));
+		error( 503, String.format(message, args));
+	}
+
+	/**
+	 * Handle the <code>wait</code> parameter of the status polling actions 
+	 * 
+	 * @param rid the request unique identifier 
+	 * @param wait the max time to wait for a status change e.g. <code>30s</code>, capped by the <code>status.wait.max</code> property (default 60s) 
+	 * @return the promise to <code>await</code> for, or <code>null</code> when the status has to be returned immediately 
+	 * i.e. no wait has been requested or the request has already terminated
+	 */
+	@Util
+	static Promise<Status> statusChange( String rid, String wait ) { 
+		if( Utils.isEmpty(wait) || Utils.isEmpty(rid) ) { 
+			return null;
+		}
+		
+		int secs;
+		try { 
+			secs = Time.parseDuration(wait);
+		}
+		catch( IllegalArgumentException e ) { 
+			error(400, "Invalid 'wait' parameter: " + wait);
+			return null;
+		}
+		secs = Math.min(secs, AppProps.instance().getDuration("status.wait.max", 60));
+		if( secs <= 0 ) { 
+			return null;
+		}
+		
+		/* register before checking the status to not miss a change in the meanwhile */
+		Promise<Status> result = CompletionBus.instance().waitFor(rid, secs * 1000L);
+		boolean active = false;
+		try { 
+			Status status = new Repo(rid,false).getStatus();
+			active = status.isRunning() || status.isQueued();
+		}
+		finally { 
+			/* the request has already terminated, do not leave the waiter pending until its timeout */
+			if( !active ) { 
+				CompletionBus.instance().cancel(rid, result);
+			}
+		}
+		
+		return active ? result : null;
+	}
+	
 	static void renderGenericPage(final PageContent content) {
 		render("Application/page.html", content);
 	}
@@ -194,6 +256,12 @@ public class CommonController extends Controller {
 		
 		File file = new File(root, path);
 		
+		/* the files of the archived requests are read directly from the archive container */
+		InputStream archived = null;
+		if( !file.exists() && (archived=RepoArchive.open(file)) != null ) { 
+			renderFile(file.getName(), archived);
+		}
+		
 		if( !file.exists() || !file.isFile() ) {
 			notFound(path);
 		}
@@ -206,13 +274,7 @@ public class CommonController extends Controller {
 			/*
 			 * use the correct header for html file 
 			 */
-			final String name = file.getName();
-			for( String ext : HTML_EXTENSIONS ) if( name.endsWith(ext) ) {
-				response.contentType = "text/html";
-				break;
-			}
-
-			renderBinary(new BufferedInputStream(new FileInputStream(file)));
+			renderFile(file.getName(), new FileInputStream(file));
 		} 
 		catch (IOException e) {
 			notFound(e.getMessage());
@@ -220,6 +282,18 @@ public class CommonController extends Controller {
 		}		
 	}
 	
+	static void renderFile( String name, InputStream content ) { 
+		/*
+		 * use the correct header for html file 
+		 */
+		for( String ext : HTML_EXTENSIONS ) if( name.endsWith(ext) ) {
+			response.contentType = "text/html";
+			break;
+		}
+
+		renderBinary(new BufferedInputStream(content));
+	}
+	
 	@Util
 	static Bundle bundleForRequest(String rid) { 
 		
@@ -8,7 +8,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -29,6 +28,7 @@ import models.AppProps;
 import models.OutItem;
 import models.OutResult;
 import models.Repo;
+import models.RepoArchive;
 import net.sourceforge.olduvai.treejuxtaposer.TreeParser;
 import net.sourceforge.olduvai.treejuxtaposer.drawer.Tree;
 import net.sourceforge.olduvai.treejuxtaposer.drawer.TreeNode;
@@ -97,7 +97,7 @@ public class Data extends CommonController {
 		renderStaticResponse();
 		String content = MimeTypes.getMimeType(path);
 		response.contentType = content;
-		renderFile(AppProps.WORKSPACE_FOLDER, path);
+		renderFile(AppProps.WORKSPACE_FOLDER, Repo.resolvePath(path));
 	}
 	
 	/**
@@ -208,12 +208,17 @@ public class Data extends CommonController {
 	public static void zipDataFolder( String rid ) throws IOException { 
 		assertNotEmpty(rid, "Missing 'rid' argument on #zipDataFolder action");
 		
-		File folder = new File(AppProps.instance().getDataPath(), rid);
+		File folder = Repo.folderFor(rid);
 		if( !folder.exists() ) { 
 			notFound("Data path '%s' does not exist on the server", folder);
 		}
 		
-		Collection allFiles = FileUtils.listFiles(folder, null, true);
+		Collection<File> allFiles = new ArrayList<File>(FileUtils.listFiles(folder, null, true));
+		/* add the content of the archive container in place of the container itself */
+		allFiles.remove( new File(folder, RepoArchive.ARCHIVE_FILE_NAME) );
+		for( String name : RepoArchive.list(folder) ) { 
+			allFiles.add( new File(folder, name) );
+		}
 		File zip = File.createTempFile("result-", ".zip", getTempZipFolder() );
 		
 		String parent = folder.getAbsolutePath();
@@ -243,7 +248,9 @@ public class Data extends CommonController {
 			ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(targetZip));
 			
 			for( File item : items ) { 
-				if( item==null || !item.exists() ) { continue; }
+				/* the files of the archived requests are read from the archive container */
+				InputStream in = item != null ? RepoArchive.open(item) : null;
+				if( in == null ) { continue; }
 				
 				// add a new zip entry
 				String entryName; 
@@ -263,8 +270,12 @@ public class Data extends CommonController {
 				zip.putNextEntry( new ZipEntry(entryName) );
 				
 				// append the file content
-				FileInputStream in = new FileInputStream(item);
-				IO.copy(in, zip);
+				try { 
+					IO.copy(in, zip);
+				}
+				finally { 
+					in.close();
+				}
 	 
 				// Complete the entry 
 				zip.closeEntry(); 
@@ -479,8 +490,9 @@ public class Data extends CommonController {
 			notFound();
 		}
 		
+		/* the tree file is read from the archive when the request has been packed */
 		File file = repo.getFile(treeFileName);
-		if( !file.exists() ) {
+		if( RepoArchive.length(file) < 0 ) {
 			Logger.warn("Cannot get json tree for request: %s; newick file: %s ", rid, treeFileName);
 			notFound();
 		}
@@ -510,7 +522,7 @@ public class Data extends CommonController {
 	static String normalizeNewick( File file ) throws FileNotFoundException 
 	{
 		StringBuilder result = new StringBuilder();
-		BufferedReader reader = new BufferedReader(new FileReader(file));
+		BufferedReader reader = RepoArchive.reader(file);
 		String line;
 		try {
 			while( (line=reader.readLine())!= null ) {
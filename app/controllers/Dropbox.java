@@ -242,6 +242,7 @@ public class Dropbox extends Controller {
 			notFound(String.format("The requested result is not available (%s) ", rid));
 			return;
 		}
+		repo.restore();
 
 		// define the target path 
 		String sBundle = repo.hasResult() ? repo.getResult().bundle : null;
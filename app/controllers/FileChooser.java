@@ -28,6 +28,7 @@ import play.mvc.Controller;
 import play.mvc.Http.StatusCode;
 import play.mvc.Util;
 import play.templates.JavaExtensions;
+import util.FileOps;
 
 import com.dropbox.client2.DropboxAPI;
 import com.dropbox.client2.DropboxAPI.DropboxInputStream;
@@ -399,15 +400,15 @@ public class FileChooser extends Controller {
 		 */
 		File targetPath = Data.getUserTempPath();
 		File item = new File(publicRepo, filePath);
-		String cmd = String.format("ln -f -s %s %s", item.getAbsolutePath(), item.getName());
+		File link = new File(targetPath, item.getName());
 		try {
-			Runtime.getRuntime().exec(cmd, null, targetPath).waitFor();
-			renderJSON("{\"success\":true }");
+			FileOps.symlink(item, link);
 		} 
 		catch( Exception e ) {
-			Logger.error("Error creating symlink: '%s'", cmd);
+			Logger.error("Error creating symlink: '%s' -> '%s'", link, item);
 			renderJSON("{\"success\":false }");
 		} 
+		renderJSON("{\"success\":true }");
 	} 
 	
 	@Util
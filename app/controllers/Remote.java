@@ -20,11 +20,13 @@ import org.apache.commons.io.FileUtils;
 import play.Logger;
 import play.data.validation.Error;
 import play.data.validation.Validation;
-import play.libs.IO;
+import play.libs.F.Promise;
 import play.mvc.Before;
 import play.mvc.Finally;
 import util.Utils;
 import bundle.BundleRegistry;
+import bundle.BundleWarmup;
+import exception.QueueFullException;
 
 /**
  * Remoting controller to male the services accessible via API 
@@ -112,8 +114,13 @@ public class Remote extends CommonController {
 		 */
 		Status status = service.repo().getStatus();
 		if( status.isReady() ) {
-			service.start();
-			status = Status.RUNNING;
+			try { 
+				service.start();
+			}
+			catch( QueueFullException e ) { 
+				busy(e.getMessage());
+			}
+			status = service.repo().getStatus();
 		}
 
 		/*
@@ -130,9 +137,16 @@ public class Remote extends CommonController {
 	 * 
 	 * @param rid the request unique identifier 
 	 */
-	public static void result( String rid ) { 
+	public static void result( String rid, String wait ) { 
+		
+		/* long-poll: park the request until the status changes */
+		Promise<Status> change = statusChange(rid, wait);
+		if( change != null ) { 
+			await(change);
+		}
 
 	   	Repo ctx = new Repo(rid,false);
+	   	ctx.fetch();
 	   	String status = ctx.getStatus().toString();
 	   	OutResult result = ctx.getResult();
 	   	long elapsedTime = result != null 
@@ -143,7 +157,7 @@ public class Remote extends CommonController {
 	   	String cmdLine=null;
 	   	OutItem cmdItem; 
 	   	if( result != null && (cmdItem=result.getCommandLine())!= null && cmdItem.exists()) { 
-	   		cmdLine = IO.readContentAsString(cmdItem.file); 
+	   		cmdLine = cmdItem.content(); 
 	   		if( cmdLine != null ) cmdLine = cmdLine.trim();
 	   	}
 	   	
@@ -227,8 +241,13 @@ public class Remote extends CommonController {
 		 */
 		Status status = service.repo().getStatus();
 		if( status.isReady() ) {
-			service.start();
-			status = Status.RUNNING;
+			try { 
+				service.start();
+			}
+			catch( QueueFullException e ) { 
+				busy(e.getMessage());
+			}
+			status = service.repo().getStatus();
 		}
 
 		/*
@@ -241,8 +260,17 @@ public class Remote extends CommonController {
 		render("Remote/submit.xml");		
 	}
 	
+	/**
+	 * The readiness check, it answers 'OK' only when the bundles warm-up has completed, 
+	 * otherwise 'WARMUP' with the 503 (service unavailable) status code 
+	 */
 	public static void ping() { 
-		render("Remote/ping.xml");
+		String status = "OK";
+		if( !BundleWarmup.instance().isReady() ) { 
+			status = "WARMUP";
+			response.status = 503;
+		}
+		render("Remote/ping.xml", status);
 	}
 	
 	
@@ -37,6 +37,14 @@ public class ScriptCommandConverter implements Converter {
 			writer.addAttribute("clazz", cmd.fScriptClass);
 		}
 
+		// set the process dependencies attributes
+		if( cmd.id != null ) {
+			writer.addAttribute("id", cmd.id);
+		}
+		if( cmd.depends != null ) {
+			writer.addAttribute("depends", cmd.depends);
+		}
+
 		// set the 'script test' as the node value
 		if( StringUtils.isNotBlank(cmd.fScriptText)) {
 			writer.setValue(cmd.fScriptText);
@@ -50,6 +58,8 @@ public class ScriptCommandConverter implements Converter {
 		result.fScriptText = reader.getValue();
 		result.fScriptFile = reader.getAttribute("file");
 		result.fScriptClass = reader.getAttribute("clazz");
+		result.id = reader.getAttribute("id");
+		result.depends = reader.getAttribute("depends");
 		return result;
 	}
 
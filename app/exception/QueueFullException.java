@@ -0,0 +1,16 @@
+package exception;
+
+/**
+ * Raised when a job cannot be accepted because the execution queue 
+ * of the target bundle/service has reached its maximum capacity 
+ * 
+ * @author Paolo Di Tommaso
+ *
+ */
+public class QueueFullException extends QuickException {
+
+	public QueueFullException(String message, Object... args) {
+		super(message,args);
+	}
+
+}
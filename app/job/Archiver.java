@@ -0,0 +1,35 @@
+package job;
+
+import models.AppProps;
+import models.RepoArchive;
+import play.Logger;
+import play.jobs.Every;
+import play.jobs.Job;
+
+/** 
+ * Pack the content of the requests not accessed for a while in a compressed container, 
+ * see {@link RepoArchive}
+ * <p>
+ * The idle time is defined by the <code>settings.archive.idle</code> property (default 24h, <code>0s</code> to disable it) 
+ * and each run lasts at most <code>settings.archive.time.budget</code> (default 10min).
+ * 
+ * @author Paolo Di Tommaso
+ *
+ */
+@Every("cron.archiver.interval")
+public class Archiver extends Job {
+
+	@Override
+	public void doJob() { 
+		long idle = 1000L * AppProps.instance().getDuration("settings.archive.idle", 24 * 60 * 60);
+		if( idle <= 0 ) { 
+			return;
+		}
+
+		Logger.debug("Running Archiver job");
+		long deadline = System.currentTimeMillis() + 1000L * AppProps.instance().getDuration("settings.archive.time.budget", 10 * 60);
+		int count = RepoArchive.archiveIdle(idle, deadline);
+		Logger.debug("Archiver packed %s repos", count);
+	}
+
+}
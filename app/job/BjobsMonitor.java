@@ -0,0 +1,119 @@
+package job;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import models.AppProps;
+import exception.QuickException;
+
+/**
+ * Monitor the jobs submitted to a LSF cluster using a single <code>bjobs</code> invocation
+ * for all the watched jobs.
+ * <p>
+ * The command can be changed by the <code>bsub.bjobs</code> property.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class BjobsMonitor extends ClusterJobMonitor {
+
+	static final Pattern NOT_FOUND = Pattern.compile("^Job <(\\d+)> is not found$");
+
+	/** The pseudo state of a job purged from the LSF history, see {@link #parse(List)} */
+	static final String PURGED = "PURGED";
+
+	private static final BjobsMonitor INSTANCE = new BjobsMonitor();
+
+	/** Singleton accessor method */
+	public static BjobsMonitor instance() { return INSTANCE; }
+
+	/** Marked as protected to prevent direct instantiation */
+	protected BjobsMonitor() {}
+
+	@Override
+	protected Map<String, String> query() {
+		List<String> cmd = new ArrayList<String>();
+		cmd.add(AppProps.instance().getString("bsub.bjobs", "bjobs"));
+		cmd.add("-a");
+		cmd.add("-w");
+		cmd.addAll(jobs.keySet());
+
+		List<String> lines = new ArrayList<String>();
+		int exit = exec(lines, cmd.toArray(new String[cmd.size()]));
+		Map<String,String> result = parse(lines);
+
+		/*
+		 * 'bjobs' exits with an error code when any of the specified jobs is not found,
+		 * those jobs are reported as purged. When none of them is reported
+		 * the scheduler is not available, so fail this poll round
+		 */
+		if( exit != 0 && result.isEmpty() ) {
+			String error = lines.size()>0 ? lines.get(0) : "(no output)";
+			throw new QuickException("Command '%s' terminated with exit code: %s - %s", cmd.get(0), exit, error);
+		}
+		return result;
+	}
+
+	/**
+	 * Parse the <code>bjobs</code> output, for example:
+	 * <pre>
+	 * JOBID   USER    STAT  QUEUE      FROM_HOST   EXEC_HOST   JOB_NAME          SUBMIT_TIME
+	 * 4521    tcoffee RUN   normal     ws-1        node-12     tcoffee-ab12cd    Oct 17 10:21
+	 * 4522    tcoffee PEND  normal     ws-1                    tcoffee-ef34gh    Oct 17 10:22
+	 * Job &lt;4519&gt; is not found
+	 * </pre>
+	 * The jobs reported as not found are mapped to the {@link #PURGED} state
+	 */
+	static Map<String,String> parse( List<String> lines ) {
+		Map<String,String> result = new HashMap<String, String>();
+		for( String line : lines ) {
+			Matcher matcher = NOT_FOUND.matcher(line.trim());
+			if( matcher.matches() ) {
+				result.put(matcher.group(1), PURGED);
+				continue;
+			}
+
+			String[] items = line.trim().split("\\s+");
+			if( items.length < 3 || !items[0].matches("\\d+") ) {
+				/* skip the header line */
+				continue;
+			}
+			result.put(items[0], items[2]);
+		}
+		return result;
+	}
+
+	/**
+	 * Finished jobs are listed (with the '-a' option) with the 'DONE' state when
+	 * the exit code is zero or 'EXIT' otherwise. A job purged from the LSF history is terminated
+	 * as well, the job exit file tells if it has been successful
+	 */
+	@Override
+	protected boolean isTerminated(String state) {
+		return "DONE".equals(state) || "EXIT".equals(state) || PURGED.equals(state);
+	}
+
+	/**
+	 * A job missing in the 'bjobs' output without a 'not found' line is never considered terminated
+	 */
+	@Override
+	protected boolean isMissingTerminated() {
+		return false;
+	}
+
+	@Override
+	protected boolean isFailed(String state) {
+		return "EXIT".equals(state) || "ZOMBI".equals(state);
+	}
+
+	@Override
+	protected void cancel(String jobid) {
+		String bkill = AppProps.instance().getString("bsub.bkill", "bkill");
+		exec(bkill, jobid);
+	}
+
+}
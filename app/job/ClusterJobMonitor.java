@@ -0,0 +1,290 @@
+package job;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import models.AppProps;
+import play.Logger;
+import play.libs.Time;
+import util.Check;
+import exception.QuickException;
+
+/**
+ * Keeps track of the jobs submitted to the cluster without holding a thread for each of them.
+ * <p>
+ * A single background thread queries the cluster scheduler at regular intervals
+ * (see the <code>cluster.poll.interval</code> property, default 10s) and notifies
+ * the registered handler when a job is no more listed (see {@link #isMissingTerminated()}) or it is
+ * reported as finished, when it is reported in an error state or when it exceeds its max allowed duration.
+ * <p>
+ * Subclasses provide the scheduler specific commands to query and cancel the jobs.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public abstract class ClusterJobMonitor {
+
+	static final String DEFAULT_POLL_INTERVAL = "10s";
+
+	/**
+	 * Receives the notification when a watched job terminates
+	 */
+	public interface Handler {
+
+		/**
+		 * @param jobid the cluster job identifier
+		 * @param failed <code>true</code> when the job has been reported in an error state by the
+		 * scheduler or it has been killed because it exceeded the max allowed duration
+		 */
+		void terminated( String jobid, boolean failed );
+	}
+
+	static class Entry {
+		final String jobid;
+		final long deadline;
+		final Handler handler;
+
+		Entry( String jobid, long deadline, Handler handler ) {
+			this.jobid = jobid;
+			this.deadline = deadline;
+			this.handler = handler;
+		}
+	}
+
+	final Map<String,Entry> jobs = new ConcurrentHashMap<String, Entry>();
+
+	private Thread fThread;
+
+	/**
+	 * Watch the specified job until its termination
+	 *
+	 * @param jobid the cluster job identifier
+	 * @param timeout the max time (millis) the job is allowed to run, after that it is cancelled. Use <code>0</code> for no limit
+	 * @param handler the object to be notified on the job termination
+	 */
+	public void watch( String jobid, long timeout, Handler handler ) {
+		Check.notEmpty(jobid, "Argument 'jobid' cannot be empty");
+		Check.notNull(handler, "Argument 'handler' cannot be null");
+
+		long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+		jobs.put(jobid, new Entry(jobid, deadline, handler));
+		Logger.debug("Watching cluster job: %s", jobid);
+		start();
+	}
+
+	/**
+	 * @return the number of jobs currently watched
+	 */
+	public int size() {
+		return jobs.size();
+	}
+
+	synchronized void start() {
+		if( fThread != null && fThread.isAlive() ) {
+			return;
+		}
+
+		fThread = new Thread(getClass().getSimpleName()) {
+			public void run() {
+				while( !isInterrupted() ) {
+					try {
+						Thread.sleep(getPollInterval());
+					}
+					catch( InterruptedException e ) {
+						break;
+					}
+
+					try {
+						poll();
+					}
+					catch( Exception e ) {
+						Logger.error(e, "Error polling cluster jobs status");
+					}
+				}
+			}
+		};
+		fThread.setDaemon(true);
+		fThread.start();
+	}
+
+	/**
+	 * Stop the polling thread
+	 */
+	public synchronized void shutdown() {
+		if( fThread != null ) {
+			fThread.interrupt();
+			fThread = null;
+		}
+	}
+
+	long getPollInterval() {
+		String interval = AppProps.instance().getString("cluster.poll.interval", DEFAULT_POLL_INTERVAL);
+		return Time.parseDuration(interval) * 1000L;
+	}
+
+	/**
+	 * Query the scheduler and notify the handlers of the terminated jobs
+	 */
+	void poll() {
+		if( jobs.isEmpty() ) {
+			return;
+		}
+
+		Map<String,String> status;
+		try {
+			status = query();
+		}
+		catch( Exception e ) {
+			/* the scheduler could be temporarily unavailable, try again on next round */
+			Logger.warn("Unable to query the cluster jobs status: %s", e.getMessage());
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		for( Entry entry : new ArrayList<Entry>(jobs.values()) ) {
+			String state = status.get(entry.jobid);
+
+			if( state == null && isMissingTerminated() ) {
+				notify(entry, false);
+			}
+			else if( state != null && isTerminated(state) ) {
+				notify(entry, isFailed(state));
+			}
+			else if( state != null && isFailed(state) ) {
+				Logger.warn("Cluster job %s reported in error state: '%s'", entry.jobid, state);
+				cancelQuietly(entry.jobid);
+				notify(entry, true);
+			}
+			else if( entry.deadline > 0 && now > entry.deadline ) {
+				Logger.warn("Cluster job %s exceeded the max allowed duration", entry.jobid);
+				cancelQuietly(entry.jobid);
+				notify(entry, true);
+			}
+		}
+	}
+
+	private void notify( Entry entry, boolean failed ) {
+		jobs.remove(entry.jobid);
+		try {
+			entry.handler.terminated(entry.jobid, failed);
+		}
+		catch( Exception e ) {
+			Logger.error(e, "Error notifying termination of cluster job: %s", entry.jobid);
+		}
+	}
+
+	private void cancelQuietly( String jobid ) {
+		try {
+			cancel(jobid);
+		}
+		catch( Exception e ) {
+			Logger.warn("Unable to cancel cluster job %s: %s", jobid, e.getMessage());
+		}
+	}
+
+	/**
+	 * @return a map associating the id of each job known by the scheduler to its current state
+	 */
+	protected abstract Map<String,String> query();
+
+	/**
+	 * @param state the job state string as returned by {@link #query()}
+	 * @return <code>true</code> if the state means that the job will never complete successfully
+	 */
+	protected abstract boolean isFailed( String state );
+
+	/**
+	 * Override when the scheduler keeps listing the jobs for a while after their termination
+	 *
+	 * @param state the job state string as returned by {@link #query()}
+	 * @return <code>true</code> if the state means that the job has finished its execution
+	 */
+	protected boolean isTerminated( String state ) {
+		return false;
+	}
+
+	/**
+	 * Override when the scheduler keeps listing the finished jobs, so that a job missing in the
+	 * {@link #query()} result is not considered terminated but it is watched until the scheduler
+	 * reports it as finished or it exceeds its max allowed duration
+	 *
+	 * @return <code>true</code> when a job no more listed by the scheduler has to be considered terminated
+	 */
+	protected boolean isMissingTerminated() {
+		return true;
+	}
+
+	/**
+	 * Remove the specified job from the cluster
+	 */
+	protected abstract void cancel( String jobid );
+
+	/**
+	 * Override to provide the environment required by the scheduler commands
+	 */
+	protected void onInitEnv( Map<String,String> env ) {
+	}
+
+	/**
+	 * Execute a scheduler command returning its output lines
+	 */
+	protected List<String> exec( String... cmd ) {
+		return exec(true, cmd);
+	}
+
+	/**
+	 * Execute a scheduler command returning its output lines
+	 *
+	 * @param strict when <code>true</code> a non-zero exit code raises an exception
+	 * @param cmd the command line to execute
+	 */
+	protected List<String> exec( boolean strict, String... cmd ) {
+		List<String> result = new ArrayList<String>();
+		int exit = exec(result, cmd);
+		if( strict && exit != 0 ) {
+			throw new QuickException("Command '%s' terminated with exit code: %s", cmd[0], exit);
+		}
+		return result;
+	}
+
+	/**
+	 * Execute a scheduler command collecting its output lines
+	 *
+	 * @param result the list where the output lines are added
+	 * @param cmd the command line to execute
+	 * @return the command exit code
+	 */
+	protected int exec( List<String> result, String... cmd ) {
+		try {
+			ProcessBuilder builder = new ProcessBuilder(cmd);
+			builder.redirectErrorStream(true);
+			onInitEnv(builder.environment());
+
+			Process proc = builder.start();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(proc.getInputStream()));
+			try {
+				String line;
+				while( (line=reader.readLine()) != null ) {
+					result.add(line);
+				}
+			}
+			finally {
+				reader.close();
+			}
+
+			return proc.waitFor();
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to execute command: '%s'", cmd[0]);
+		}
+		catch( InterruptedException e ) {
+			throw new QuickException(e, "Interrupted executing command: '%s'", cmd[0]);
+		}
+	}
+
+}
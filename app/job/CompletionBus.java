@@ -0,0 +1,209 @@
+package job;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import models.Status;
+import play.Logger;
+import play.libs.F.Promise;
+import util.Check;
+
+/**
+ * Dispatches the request status changes (job started, completed) to the interested parties.
+ * <p>
+ * Clients polling for a request status can park on the promise returned by
+ * {@link #waitFor(String, long)}, which is redeemed as soon as the request status changes
+ * or when the timeout expires, without holding any thread in the meanwhile.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class CompletionBus {
+
+	private static final CompletionBus INSTANCE = new CompletionBus();
+
+	/** Singleton accessor method */
+	public static CompletionBus instance() { return INSTANCE; }
+
+	/**
+	 * Receives the requests status changes
+	 */
+	public interface Listener {
+
+		/**
+		 * @param rid the request unique identifier
+		 * @param status the new request status
+		 */
+		void changed( String rid, Status status );
+	}
+
+	static class Waiter {
+		final Promise<Status> promise = new Promise<Status>();
+		TimerTask timeout;
+	}
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	private final Map<String,List<Waiter>> waiters = new HashMap<String, List<Waiter>>();
+
+	private Timer fTimer;
+
+	/** Marked as protected to prevent direct instantiation */
+	protected CompletionBus() {}
+
+	public void addListener( Listener listener ) {
+		Check.notNull(listener, "Argument 'listener' cannot be null");
+		listeners.add(listener);
+	}
+
+	public void removeListener( Listener listener ) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Notify a request status change
+	 *
+	 * @param rid the request unique identifier
+	 * @param status the new status
+	 */
+	public void fire( String rid, Status status ) {
+		if( rid == null ) return;
+
+		List<Waiter> list;
+		synchronized (waiters) {
+			list = waiters.remove(rid);
+		}
+
+		if( list != null ) {
+			for( Waiter waiter : list ) {
+				waiter.timeout.cancel();
+				waiter.promise.invoke(status);
+			}
+		}
+
+		for( Listener listener : listeners ) {
+			try {
+				listener.changed(rid, status);
+			}
+			catch( Exception e ) {
+				Logger.error(e, "Error notifying status change for request # %s", rid);
+			}
+		}
+	}
+
+	/**
+	 * Wait for the next status change of the specified request
+	 *
+	 * @param rid the request unique identifier
+	 * @param timeout the max time to wait (millis)
+	 * @return a promise redeemed with the new status or with <code>null</code> when the timeout expires
+	 */
+	public Promise<Status> waitFor( final String rid, long timeout ) {
+		Check.notEmpty(rid, "Argument 'rid' cannot be empty");
+
+		final Waiter waiter = new Waiter();
+		waiter.timeout = new TimerTask() {
+			public void run() {
+				boolean expired = false;
+				synchronized (waiters) {
+					List<Waiter> list = waiters.get(rid);
+					if( list != null && list.remove(waiter) ) {
+						expired = true;
+						if( list.isEmpty() ) waiters.remove(rid);
+					}
+				}
+				if( expired ) {
+					waiter.promise.invoke(null);
+				}
+			}
+		};
+
+		synchronized (waiters) {
+			List<Waiter> list = waiters.get(rid);
+			if( list == null ) {
+				list = new ArrayList<Waiter>();
+				waiters.put(rid, list);
+			}
+			list.add(waiter);
+			timer().schedule(waiter.timeout, Math.max(0, timeout));
+		}
+
+		return waiter.promise;
+	}
+
+	/**
+	 * Stop waiting for the status change of the specified request, the promise is never redeemed
+	 *
+	 * @param rid the request unique identifier
+	 * @param promise the promise returned by {@link #waitFor(String, long)}
+	 */
+	public void cancel( String rid, Promise<Status> promise ) {
+		if( rid == null || promise == null ) return;
+
+		synchronized (waiters) {
+			List<Waiter> list = waiters.get(rid);
+			if( list == null ) return;
+
+			Iterator<Waiter> it = list.iterator();
+			while( it.hasNext() ) {
+				Waiter waiter = it.next();
+				if( waiter.promise == promise ) {
+					waiter.timeout.cancel();
+					it.remove();
+				}
+			}
+			if( list.isEmpty() ) waiters.remove(rid);
+		}
+	}
+
+	/**
+	 * @return the number of the clients currently waiting for a status change
+	 */
+	public int getWaitingCount() {
+		int result=0;
+		synchronized (waiters) {
+			for( List<Waiter> list : waiters.values() ) {
+				result += list.size();
+			}
+		}
+		return result;
+	}
+
+	synchronized Timer timer() {
+		if( fTimer == null ) {
+			fTimer = new Timer("CompletionBus", true);
+		}
+		return fTimer;
+	}
+
+	/**
+	 * Release all the waiting clients and stop the timeout timer
+	 */
+	public void shutdown() {
+		List<Waiter> all = new ArrayList<Waiter>();
+		synchronized (waiters) {
+			Iterator<List<Waiter>> it = waiters.values().iterator();
+			while( it.hasNext() ) {
+				all.addAll(it.next());
+				it.remove();
+			}
+		}
+		for( Waiter waiter : all ) {
+			waiter.timeout.cancel();
+			waiter.promise.invoke(null);
+		}
+
+		synchronized (this) {
+			if( fTimer != null ) {
+				fTimer.cancel();
+				fTimer = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package job;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import models.Repo;
+import play.Logger;
+
+/**
+ * Keeps the terminated requests ordered by their expiration time, so that the {@link Wiper}
+ * visits only the repositories that are actually due, instead of scanning the whole workspace.
+ * <p>
+ * The queue is fed by the repository events (result saved, lock released, last access time changed)
+ * and it is rebuilt with the repository index at startup. A request postponed to a later expiration time
+ * (i.e. accessed again) keeps its heap entry, which is moved to the new time when it reaches the head, so
+ * the heap does not grow with the number of accesses. A request removed or re-scheduled earlier leaves a stale
+ * entry, which is discarded when it reaches the head.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class ExpiryQueue {
+
+	static final int BATCH_SIZE = 100;
+
+	private static final ExpiryQueue INSTANCE = new ExpiryQueue();
+
+	/** Singleton accessor method */
+	public static ExpiryQueue instance() { return INSTANCE; }
+
+	static class Item implements Comparable<Item> {
+		final String rid;
+		final long time;
+
+		Item( String rid, long time ) {
+			this.rid = rid;
+			this.time = time;
+		}
+
+		public int compareTo( Item that ) {
+			return time < that.time ? -1 : (time > that.time ? 1 : 0);
+		}
+	}
+
+	private final PriorityQueue<Item> queue = new PriorityQueue<Item>();
+
+	/** the current expiration time of each scheduled request */
+	private final Map<String,Long> scheduled = new HashMap<String, Long>();
+
+	/** the terminated requests whose T-Coffee temporary files have still to be removed */
+	private final Set<String> cleaning = new LinkedHashSet<String>();
+
+	/** Marked as protected to prevent direct instantiation */
+	protected ExpiryQueue() {}
+
+	/**
+	 * Schedule (or re-schedule) the expiration of a request
+	 *
+	 * @param rid the request unique identifier
+	 * @param time the expiration timestamp millis, {@link Long#MAX_VALUE} to remove the request from the queue
+	 */
+	public synchronized void schedule( String rid, long time ) {
+		if( time == Long.MAX_VALUE ) {
+			scheduled.remove(rid);
+			return;
+		}
+
+		Long current = scheduled.get(rid);
+		scheduled.put(rid, time);
+
+		/* postponed, the heap entry is moved when it reaches the head, see #pollDue(long) */
+		if( current != null && current.longValue() <= time ) {
+			return;
+		}
+		queue.add(new Item(rid, time));
+	}
+
+	/**
+	 * Request the removal of the temporary files of a terminated request
+	 */
+	public synchronized void clean( String rid ) {
+		cleaning.add(rid);
+	}
+
+	/**
+	 * Remove a request from the queue, for example when its repository has been deleted
+	 */
+	public synchronized void remove( String rid ) {
+		scheduled.remove(rid);
+		cleaning.remove(rid);
+	}
+
+	/**
+	 * @return the first request whose expiration time is before the specified time or <code>null</code> if no request is due
+	 */
+	synchronized String pollDue( long now ) {
+		while( !queue.isEmpty() ) {
+			Item head = queue.peek();
+			Long current = scheduled.get(head.rid);
+			if( current == null || current.longValue() < head.time ) {
+				/* stale entry */
+				queue.poll();
+				continue;
+			}
+
+			if( head.time > now ) {
+				return null;
+			}
+
+			queue.poll();
+			if( current.longValue() > head.time ) {
+				/* postponed in the meanwhile */
+				queue.add(new Item(head.rid, current));
+				continue;
+			}
+
+			scheduled.remove(head.rid);
+			return head.rid;
+		}
+		return null;
+	}
+
+	synchronized String pollCleaning() {
+		Iterator<String> it = cleaning.iterator();
+		if( !it.hasNext() ) {
+			return null;
+		}
+		String result = it.next();
+		it.remove();
+		return result;
+	}
+
+	/**
+	 * Delete the expired repositories
+	 *
+	 * @param deadline the timestamp after which the method returns, even if there are still expired repositories
+	 * @return the number of deleted repositories
+	 */
+	public int deleteExpired( long deadline ) {
+		int count = 0;
+		List<Repo> batch = new ArrayList<Repo>(BATCH_SIZE);
+		long now;
+		String rid;
+		while( (now=System.currentTimeMillis()) < deadline && (rid=pollDue(now)) != null ) {
+			Repo repo = new Repo(rid,false);
+			if( !repo.exists() ) {
+				continue;
+			}
+
+			if( repo.isExpired() ) {
+				batch.add(repo);
+			}
+			else {
+				/* it has been accessed in the meanwhile */
+				schedule(rid, repo.getExpirationTime());
+			}
+
+			/* the folders are deleted in parallel */
+			if( batch.size() == BATCH_SIZE ) {
+				count += Repo.dropAll(batch);
+				batch.clear();
+			}
+		}
+		count += Repo.dropAll(batch);
+		return count;
+	}
+
+	/**
+	 * Remove the T-Coffee temporary files of the terminated requests, see {@link Repo#cleanTcoffeeCache()}
+	 *
+	 * @param deadline the timestamp after which the method returns, even if there are still repositories to clean
+	 * @return the number of visited repositories
+	 */
+	public int cleanCaches( long deadline ) {
+		int count = 0;
+		String rid;
+		while( System.currentTimeMillis() < deadline && (rid=pollCleaning()) != null ) {
+			Repo repo = new Repo(rid,false);
+			if( repo.exists() && repo.isTerminated() ) {
+				repo.cleanCache();
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of scheduled requests
+	 */
+	public synchronized int size() {
+		return scheduled.size();
+	}
+
+	/**
+	 * @return the number of entries in the heap, including the stale ones
+	 */
+	synchronized int getHeapSize() {
+		return queue.size();
+	}
+
+	/**
+	 * @return the number of repositories waiting to be cleaned
+	 */
+	public synchronized int getCleaningCount() {
+		return cleaning.size();
+	}
+
+	/**
+	 * Remove all the entries
+	 */
+	public synchronized void clear() {
+		queue.clear();
+		scheduled.clear();
+		cleaning.clear();
+		Logger.debug("Expiry queue cleared");
+	}
+
+}
@@ -0,0 +1,318 @@
+package job;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import models.AppProps;
+import play.Logger;
+import util.Check;
+import exception.QueueFullException;
+
+/**
+ * Dedicated scheduler for service jobs.
+ * <p>
+ * Each bundle has its own execution <i>lane</i> made up of a fixed number of worker threads
+ * and a bounded waiting queue, so that a burst of requests for one bundle cannot starve
+ * the others (nor the Play! jobs pool, used by the Wiper and mail notifications).
+ * <p>
+ * Lanes are configured by the following application properties:
+ * <li><code>scheduler.concurrency</code>: default number of concurrent jobs per lane (default: number of processors)</li>
+ * <li><code>scheduler.queue.size</code>: default max number of waiting jobs per lane (default: 100)</li>
+ * <li><code>scheduler.&lt;bundle&gt;.concurrency</code> and <code>scheduler.&lt;bundle&gt;.queue.size</code>: override for a specific bundle</li>
+ * <li><code>scheduler.&lt;bundle&gt;.&lt;service&gt;.concurrency</code> and <code>scheduler.&lt;bundle&gt;.&lt;service&gt;.queue.size</code>:
+ * when defined the service is executed in its own dedicated lane</li>
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class JobScheduler {
+
+	static final int DEFAULT_QUEUE_SIZE = 100;
+
+	private static final JobScheduler INSTANCE = new JobScheduler();
+
+	/** Singleton accessor method */
+	public static JobScheduler instance() { return INSTANCE; }
+
+	private final Map<String,Lane> lanes = new HashMap<String,Lane>();
+
+	/** Marked as protected to prevent direct instantiation */
+	protected JobScheduler() {}
+
+	/**
+	 * An execution lane i.e. a pool of workers plus the list of requests waiting for a free worker
+	 */
+	static class Lane {
+
+		final String name;
+
+		final ThreadPoolExecutor executor;
+
+		/** the request-ids waiting for execution, in arrival order */
+		final LinkedHashSet<String> waiting = new LinkedHashSet<String>();
+
+		int capacity;
+
+		Lane( final String name, int concurrency, int capacity ) {
+			this.name = name;
+			this.capacity = capacity;
+
+			final AtomicInteger count = new AtomicInteger();
+			ThreadFactory factory = new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread result = new Thread(r, String.format("jobs-%s-%s", name, count.incrementAndGet()));
+					result.setDaemon(true);
+					return result;
+				}
+			};
+
+			this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), factory);
+			this.executor.allowCoreThreadTimeOut(true);
+		}
+
+		/**
+		 * Apply the current configuration values, so that properties changed at runtime
+		 * take effect without having to restart the server
+		 */
+		void configure( int concurrency, int capacity ) {
+			this.capacity = capacity;
+
+			if( concurrency == executor.getMaximumPoolSize() ) {
+				return;
+			}
+
+			Logger.info("Job scheduler lane '%s' concurrency changed to: %s", name, concurrency);
+			if( concurrency > executor.getMaximumPoolSize() ) {
+				executor.setMaximumPoolSize(concurrency);
+				executor.setCorePoolSize(concurrency);
+			}
+			else {
+				executor.setCorePoolSize(concurrency);
+				executor.setMaximumPoolSize(concurrency);
+			}
+		}
+
+		int position( String rid ) {
+			int index=0;
+			for( String item : waiting ) {
+				index++;
+				if( item.equals(rid) ) {
+					return index;
+				}
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Snapshot of a lane state to be displayed in the administration pages
+	 */
+	public static class LaneInfo {
+		public String name;
+		public int concurrency;
+		public int capacity;
+		public int running;
+		public int queued;
+		public long completed;
+	}
+
+	/**
+	 * Submit a service job for execution in the lane of the specified bundle/service
+	 *
+	 * @param bundle the bundle name
+	 * @param service the service name
+	 * @param rid the request unique identifier
+	 * @param job the job to be executed
+	 * @throws QueueFullException when the lane waiting queue has reached its max capacity
+	 */
+	public void submit( String bundle, String service, final String rid, final Callable<?> job ) throws QueueFullException {
+		Check.notEmpty(bundle, "Argument 'bundle' cannot be empty");
+		Check.notEmpty(rid, "Argument 'rid' cannot be empty");
+		Check.notNull(job, "Argument 'job' cannot be null");
+
+		final Lane lane = getLane(bundle, service);
+
+		synchronized (lane) {
+			if( lane.waiting.size() >= lane.capacity ) {
+				Logger.warn("Job scheduler lane '%s' is full (%s queued jobs) - rejecting request # %s", lane.name, lane.waiting.size(), rid);
+				throw new QueueFullException("The server is currently busy processing other requests. Please try again later");
+			}
+			lane.waiting.add(rid);
+		}
+
+		Runnable task = new Runnable() {
+			public void run() {
+				synchronized (lane) {
+					lane.waiting.remove(rid);
+				}
+
+				try {
+					job.call();
+				}
+				catch( Exception e ) {
+					Logger.error(e, "Error executing request # %s", rid);
+				}
+			}
+		};
+
+		try {
+			lane.executor.execute(task);
+			Logger.debug("Submitted request # %s to lane '%s' (queued: %s)", rid, lane.name, lane.waiting.size());
+		}
+		catch( RejectedExecutionException e ) {
+			synchronized (lane) {
+				lane.waiting.remove(rid);
+			}
+			throw new QueueFullException("The server is not accepting new requests. Please try again later");
+		}
+	}
+
+	/**
+	 * Continue the execution of a request already accepted by {@link #submit(String, String, String, Callable)},
+	 * for example when an asynchronous command terminates. The job is executed in the lane of the specified
+	 * bundle/service without checking the lane capacity, since the request cannot be rejected at this point
+	 *
+	 * @param bundle the bundle name
+	 * @param service the service name
+	 * @param rid the request unique identifier
+	 * @param job the job to be executed
+	 */
+	public void resume( String bundle, String service, final String rid, final Callable<?> job ) {
+		Check.notEmpty(bundle, "Argument 'bundle' cannot be empty");
+		Check.notNull(job, "Argument 'job' cannot be null");
+
+		final Lane lane = getLane(bundle, service);
+
+		Runnable task = new Runnable() {
+			public void run() {
+				try {
+					job.call();
+				}
+				catch( Exception e ) {
+					Logger.error(e, "Error resuming request # %s", rid);
+				}
+			}
+		};
+
+		try {
+			lane.executor.execute(task);
+			Logger.debug("Resuming request # %s in lane '%s'", rid, lane.name);
+		}
+		catch( RejectedExecutionException e ) {
+			Logger.error("Job scheduler lane '%s' is shut down - cannot resume request # %s", lane.name, rid);
+		}
+	}
+
+	/**
+	 * @param rid the request unique identifier
+	 * @return <code>true</code> when the specified request is waiting for a free worker
+	 */
+	public boolean isQueued( String rid ) {
+		return getQueuePosition(rid) > 0;
+	}
+
+	/**
+	 * @param rid the request unique identifier
+	 * @return the (1-based) position of the request in its lane queue, or <code>0</code> if the request is not queued
+	 */
+	public int getQueuePosition( String rid ) {
+		if( rid == null ) return 0;
+
+		List<Lane> all;
+		synchronized (lanes) {
+			all = new ArrayList<Lane>(lanes.values());
+		}
+
+		for( Lane lane : all ) {
+			synchronized (lane) {
+				int p = lane.position(rid);
+				if( p > 0 ) {
+					return p;
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return a snapshot of the current lanes status
+	 */
+	public List<LaneInfo> getLanesInfo() {
+		List<LaneInfo> result = new ArrayList<LaneInfo>();
+		synchronized (lanes) {
+			for( Lane lane : lanes.values() ) {
+				LaneInfo info = new LaneInfo();
+				info.name = lane.name;
+				info.concurrency = lane.executor.getMaximumPoolSize();
+				info.capacity = lane.capacity;
+				info.running = lane.executor.getActiveCount();
+				info.completed = lane.executor.getCompletedTaskCount();
+				synchronized (lane) {
+					info.queued = lane.waiting.size();
+				}
+				result.add(info);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Stop accepting new jobs and interrupt the running ones
+	 */
+	public void shutdown() {
+		synchronized (lanes) {
+			Iterator<Lane> it = lanes.values().iterator();
+			while( it.hasNext() ) {
+				Lane lane = it.next();
+				Logger.info("Shutting down job scheduler lane '%s'", lane.name);
+				lane.executor.shutdownNow();
+				it.remove();
+			}
+		}
+	}
+
+	Lane getLane( String bundle, String service ) {
+		AppProps props = AppProps.instance();
+
+		/*
+		 * a service has its own lane only when it is explicitly configured
+		 */
+		String key = bundle;
+		if( service != null &&
+			(props.containsKey(String.format("scheduler.%s.%s.concurrency", bundle, service)) ||
+			 props.containsKey(String.format("scheduler.%s.%s.queue.size", bundle, service))) )
+		{
+			key = bundle + "." + service;
+		}
+
+		int defConcurrency = props.getInteger("scheduler.concurrency", Runtime.getRuntime().availableProcessors());
+		int defCapacity = props.getInteger("scheduler.queue.size", DEFAULT_QUEUE_SIZE);
+		int concurrency = Math.max(1, props.getInteger(String.format("scheduler.%s.concurrency", key), defConcurrency));
+		int capacity = Math.max(0, props.getInteger(String.format("scheduler.%s.queue.size", key), defCapacity));
+
+		synchronized (lanes) {
+			Lane lane = lanes.get(key);
+			if( lane == null ) {
+				Logger.info("Creating job scheduler lane '%s' - concurrency: %s; queue size: %s", key, concurrency, capacity);
+				lane = new Lane(key, concurrency, capacity);
+				lanes.put(key, lane);
+			}
+			else {
+				lane.configure(concurrency, capacity);
+			}
+			return lane;
+		}
+	}
+
+}
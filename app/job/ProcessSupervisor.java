@@ -0,0 +1,284 @@
+package job;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import models.AppProps;
+import play.Logger;
+import util.Check;
+
+/**
+ * Launches the local processes and supervises them from a single thread.
+ * <p>
+ * The process output is redirected to the log files by the shell, so no stream pumping
+ * threads are required, while a single timer thread checks at regular intervals
+ * (<code>supervisor.tick</code> property, default 250ms) which processes have terminated and
+ * which have exceeded their max duration and have to be killed.
+ * <p>
+ * Each script runs in its own process group, whose id is recorded by the supervisor, so that
+ * the script and all the processes it has spawned can be killed with a single signal, see {@link #kill(File)}.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class ProcessSupervisor {
+
+	static final long DEFAULT_TICK = 250;
+
+	private static final ProcessSupervisor INSTANCE = new ProcessSupervisor();
+
+	/** Singleton accessor method */
+	public static ProcessSupervisor instance() { return INSTANCE; }
+
+	/**
+	 * Receives the notification when a supervised process terminates
+	 */
+	public interface Handler {
+
+		/**
+		 * @param exitCode the process exit code
+		 * @param killed <code>true</code> when the process has been killed because it exceeded its max duration
+		 */
+		void exited( int exitCode, boolean killed );
+	}
+
+	static class Entry {
+		final String name;
+		final File folder;
+		final Process process;
+		final long deadline;
+		final Handler handler;
+		/** the process group id of the script or <code>0</code> if it is unknown */
+		int pgid;
+		boolean killed;
+
+		Entry( String name, File folder, Process process, long deadline, Handler handler ) {
+			this.name = name;
+			this.folder = folder;
+			this.process = process;
+			this.deadline = deadline;
+			this.handler = handler;
+		}
+	}
+
+	private final LinkedList<Entry> entries = new LinkedList<Entry>();
+
+	private Thread fThread;
+
+	/** Marked as protected to prevent direct instantiation */
+	protected ProcessSupervisor() {}
+
+	/**
+	 * Launch the specified script with the <code>bash</code> shell
+	 *
+	 * @param folder the process working directory
+	 * @param script the script file name, relative to the working directory
+	 * @param out the file where the standard output is redirected, if <code>null</code> the output is discarded
+	 * @param err the file where the standard error is redirected, if <code>null</code> the output is discarded
+	 * @param timeout the max time (millis) the process is allowed to run, after that it is killed. Use <code>0</code> for no limit
+	 * @param handler the object notified when the process terminates
+	 * @throws IOException when the process cannot be started
+	 */
+	public void launch( File folder, String script, File out, File err, long timeout, Handler handler ) throws IOException {
+		Check.notNull(folder, "Argument 'folder' cannot be null");
+		Check.notEmpty(script, "Argument 'script' cannot be empty");
+		Check.notNull(handler, "Argument 'handler' cannot be null");
+
+		/*
+		 * the job control ('set -m') runs the script as a background job in a new process group,
+		 * whose id is printed on the standard output, then the shell waits for it and returns its exit code
+		 */
+		String cmd = String.format("exec 2> /dev/null; set -m; bash %s > %s 2> %s < /dev/null & echo $!; wait $!", quote(script), quote(out), quote(err));
+
+		ProcessBuilder builder = new ProcessBuilder("bash", "-c", cmd);
+		builder.directory(folder);
+		Process process = builder.start();
+
+		/* the streams are not used, since the output is redirected by the shell */
+		try { process.getOutputStream().close(); } catch( IOException e ) { /* ignore */ }
+		try { process.getErrorStream().close(); } catch( IOException e ) { /* ignore */ }
+
+		long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+		if( timeout > 0 ) {
+			Logger.debug("Setting process timeout: %s ms", timeout);
+		}
+
+		Entry entry = new Entry(new File(folder,script).getPath(), folder.getAbsoluteFile(), process, deadline, handler);
+		entry.pgid = readPgid(process);
+
+		synchronized (entries) {
+			entries.add(entry);
+			entries.notifyAll();
+		}
+		start();
+	}
+
+	static int readPgid( Process process ) {
+		String line = null;
+		try {
+			line = new BufferedReader(new InputStreamReader(process.getInputStream())).readLine();
+			return line != null ? Integer.parseInt(line.trim()) : 0;
+		}
+		catch( Exception e ) {
+			Logger.warn("Unable to read process group id - %s", line != null ? line : e.getMessage());
+			return 0;
+		}
+		finally {
+			try { process.getInputStream().close(); } catch( IOException e ) { /* ignore */ }
+		}
+	}
+
+	/**
+	 * Kill all the supervised processes running in the specified folder or in any of its sub-folders.
+	 * The supervised handlers are notified with the <code>killed</code> flag set.
+	 *
+	 * @param path the folder where the processes to be killed are running
+	 * @return the number of killed processes
+	 */
+	public int kill( File path ) {
+		Check.notNull(path, "Argument 'path' cannot be null");
+
+		String root = path.getAbsolutePath();
+		int count = 0;
+		synchronized (entries) {
+			for( Entry entry : entries ) {
+				String folder = entry.folder.getPath();
+				if( folder.equals(root) || folder.startsWith(root + File.separator) ) {
+					Logger.info("Killing process '%s'", entry.name);
+					kill(entry);
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Kill the process group of the specified entry, or only the supervised process when its group is unknown
+	 */
+	static void kill( Entry entry ) {
+		entry.killed = true;
+		if( entry.pgid > 0 ) try {
+			Process proc = new ProcessBuilder("kill", "-9", "--", "-" + entry.pgid).redirectErrorStream(true).start();
+			proc.getOutputStream().close();
+			proc.getInputStream().close();
+			proc.waitFor();
+		}
+		catch( Exception e ) {
+			Logger.warn("Unable to kill process group %s - %s", entry.pgid, e.getMessage());
+		}
+		entry.process.destroy();
+	}
+
+	/**
+	 * @return the number of processes currently supervised
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	static String quote( File file ) {
+		return file != null ? quote(file.getAbsolutePath()) : "/dev/null";
+	}
+
+	static String quote( String value ) {
+		return "'" + value.replace("'", "'\\''") + "'";
+	}
+
+	synchronized void start() {
+		if( fThread != null && fThread.isAlive() ) {
+			return;
+		}
+
+		fThread = new Thread("ProcessSupervisor") {
+			public void run() {
+				try {
+					while( !isInterrupted() ) {
+						synchronized (entries) {
+							while( entries.isEmpty() ) {
+								entries.wait();
+							}
+						}
+
+						Thread.sleep(getTick());
+						tick();
+					}
+				}
+				catch( InterruptedException e ) {
+					Logger.debug("Process supervisor interrupted");
+				}
+			}
+		};
+		fThread.setDaemon(true);
+		fThread.start();
+	}
+
+	long getTick() {
+		return AppProps.instance().getLong("supervisor.tick", DEFAULT_TICK);
+	}
+
+	/**
+	 * Check the state of all the supervised processes
+	 */
+	void tick() {
+		long now = System.currentTimeMillis();
+		List<Entry> terminated = new ArrayList<Entry>();
+
+		synchronized (entries) {
+			Iterator<Entry> it = entries.iterator();
+			while( it.hasNext() ) {
+				Entry entry = it.next();
+				try {
+					entry.process.exitValue();
+					terminated.add(entry);
+					it.remove();
+				}
+				catch( IllegalThreadStateException e ) {
+					/* still running */
+					if( entry.deadline > 0 && now > entry.deadline && !entry.killed ) {
+						Logger.warn("Killing process '%s' since it exceeded the max allowed duration", entry.name);
+						kill(entry);
+					}
+				}
+			}
+		}
+
+		/* notify out of the lock */
+		for( Entry entry : terminated ) {
+			try {
+				entry.handler.exited(entry.process.exitValue(), entry.killed);
+			}
+			catch( Exception e ) {
+				Logger.error(e, "Error notifying termination of process '%s'", entry.name);
+			}
+		}
+	}
+
+	/**
+	 * Kill all the running processes and stop the supervisor thread
+	 */
+	public void shutdown() {
+		synchronized (entries) {
+			for( Entry entry : entries ) {
+				kill(entry);
+			}
+			entries.clear();
+		}
+
+		synchronized (this) {
+			if( fThread != null ) {
+				fThread.interrupt();
+				fThread = null;
+			}
+		}
+	}
+
+}
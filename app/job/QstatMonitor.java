@@ -0,0 +1,78 @@
+package job;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import models.AppProps;
+import util.Utils;
+
+/**
+ * Monitor the jobs submitted to a Sun Grid Engine cluster using the <code>qstat</code> command.
+ * <p>
+ * The command can be changed by the <code>qsub.qstat</code> property.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class QstatMonitor extends ClusterJobMonitor {
+
+	private static final QstatMonitor INSTANCE = new QstatMonitor();
+
+	/** Singleton accessor method */
+	public static QstatMonitor instance() { return INSTANCE; }
+
+	/** Marked as protected to prevent direct instantiation */
+	protected QstatMonitor() {}
+
+	@Override
+	protected Map<String, String> query() {
+		String qstat = AppProps.instance().getString("qsub.qstat", "qstat");
+		return parse(exec(qstat));
+	}
+
+	/**
+	 * Parse the <code>qstat</code> output, for example:
+	 * <pre>
+	 * job-ID  prior   name       user         state submit/start at     queue          slots
+	 * -----------------------------------------------------------------------------------------
+	 *  123456 0.55500 t-ab12cd   tcoffee      r     05/14/2011 11:34:05 ws_cn@node-1   1
+	 * </pre>
+	 */
+	static Map<String,String> parse( List<String> lines ) {
+		Map<String,String> result = new HashMap<String, String>();
+		for( String line : lines ) {
+			String[] items = line.trim().split("\\s+");
+			if( items.length < 5 || !items[0].matches("\\d+") ) {
+				/* skip header and separator lines */
+				continue;
+			}
+			result.put(items[0], items[4]);
+		}
+		return result;
+	}
+
+	/**
+	 * Any state containing the 'E' flag (e.g. 'Eqw') means that the job will never run
+	 */
+	@Override
+	protected boolean isFailed(String state) {
+		return state != null && state.contains("E");
+	}
+
+	@Override
+	protected void cancel(String jobid) {
+		String qdel = AppProps.instance().getString("qsub.qdel", "qdel");
+		exec(qdel, jobid);
+	}
+
+	@Override
+	protected void onInitEnv(Map<String, String> env) {
+		for( String key : new String[] { "SGE_ROOT", "SGE_EXECD_PORT", "SGE_CLUSTER_NAME", "SGE_QMASTER_PORT", "SGE_CELL" } ) {
+			String val = AppProps.instance().getString("settings." + key);
+			if( Utils.isNotEmpty(val) ) {
+				env.put(key, val);
+			}
+		}
+	}
+}
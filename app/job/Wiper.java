@@ -3,7 +3,6 @@ package job;
 import java.io.File;
 
 import models.AppProps;
-import models.Repo;
 
 import org.apache.commons.io.FileUtils;
 
@@ -14,6 +13,10 @@ import play.mvc.Util;
 
 /** 
  * Remove all expired T-Coffee requests from the file system 
+ * <p>
+ * Only the requests that are due, as reported by the {@link ExpiryQueue}, are visited. Each run 
+ * lasts at most <code>settings.wiper.time.budget</code> (default 1min), the remaining work is 
+ * carried over to the next run.
  * 
  * @author Paolo Di Tommaso
  *
@@ -25,25 +28,45 @@ public class Wiper extends Job {
 	@Override
 	public void doJob() { 
 		Logger.debug("Running Wiper job");
-		
+		long deadline = System.currentTimeMillis() + 1000L * AppProps.instance().getDuration("settings.wiper.time.budget", 60);
 		
 		/*
-		 *  delete T-Coffee cache
+		 *  delete T-Coffee cache of the terminated jobs
 		 */
-		Repo.cleanTcoffeeCache();
+		int cleaned = ExpiryQueue.instance().cleanCaches(deadline);
+		
+		/* 
+		 * delete the expired requests 
+		 */
+		int deleted = ExpiryQueue.instance().deleteExpired(deadline);
 		
 		/* 
 		 * delete temporary files and upload
 		 */
 		long max = 1000 * AppProps.instance().getDuration("settings.wiper.temp.duration", 60 * 60 );
-		empty( AppProps.TEMP_PATH, max );
+		empty( AppProps.TEMP_PATH, max, deadline );
 		
+		Logger.debug("Wiper cleaned %s and deleted %s repos - still scheduled: %s", cleaned, deleted, ExpiryQueue.instance().size());
     }
 	
 	@Util
 	static void empty( File path, long max ) {
+		empty( path, max, Long.MAX_VALUE );
+	}
+	
+	@Util
+	static void empty( File path, long max, long deadline ) {
 		File[] files = path.listFiles();
+		if( files == null ) {
+			return;
+		}
+		
 		for( File it : files ) {
+			if( System.currentTimeMillis() > deadline ) {
+				Logger.debug("Wiper time budget exceeded, stop at path: '%s'", it);
+				return;
+			}
+			
 			if( !it.isDirectory() ) {
 				continue;
 			}
@@ -51,7 +74,7 @@ public class Wiper extends Job {
 			/*
 			 * traverse recursively
 			 */
-			empty( it, max );
+			empty( it, max, deadline );
 
 			/*
 			 * now try to delete 
@@ -0,0 +1,76 @@
+package job;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import models.AppProps;
+import play.Logger;
+import util.Check;
+
+/**
+ * Bounded pool of worker threads shared by the service processes to run their
+ * independent commands concurrently.
+ * <p>
+ * The pool size is defined by the <code>process.workers</code> property (default: number of processors).
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class WorkerPool {
+
+	private static final WorkerPool INSTANCE = new WorkerPool();
+
+	/** Singleton accessor method */
+	public static WorkerPool instance() { return INSTANCE; }
+
+	private ThreadPoolExecutor fExecutor;
+
+	/** Marked as protected to prevent direct instantiation */
+	protected WorkerPool() {}
+
+	/**
+	 * Execute the specified task as soon as a worker is available
+	 *
+	 * @param task the task to be executed
+	 */
+	public void execute( Runnable task ) {
+		Check.notNull(task, "Argument 'task' cannot be null");
+		executor().execute(task);
+	}
+
+	synchronized ThreadPoolExecutor executor() {
+		if( fExecutor != null ) {
+			return fExecutor;
+		}
+
+		int size = Math.max(1, AppProps.instance().getInteger("process.workers", Runtime.getRuntime().availableProcessors()));
+		Logger.info("Creating process worker pool - size: %s", size);
+
+		final AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread result = new Thread(r, String.format("worker-%s", count.incrementAndGet()));
+				result.setDaemon(true);
+				return result;
+			}
+		};
+
+		fExecutor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), factory);
+		fExecutor.allowCoreThreadTimeOut(true);
+		return fExecutor;
+	}
+
+	/**
+	 * Stop accepting new tasks and interrupt the running ones
+	 */
+	public synchronized void shutdown() {
+		if( fExecutor != null ) {
+			fExecutor.shutdownNow();
+			fExecutor = null;
+		}
+	}
+
+}
@@ -2,8 +2,13 @@ package models;
 
 import java.io.Serializable;
 
+import job.WorkerPool;
 import play.Logger;
+import util.Check;
 import util.Utils;
+
+import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+
 import exception.CommandException;
 
 /** 
@@ -24,6 +29,19 @@ public abstract class AbstractCommand implements Serializable {
 	
 	private boolean fOK;
 	
+	/** The command identifier, used to declare the dependencies between the commands of a process */
+	@XStreamAsAttribute
+	public String id;
+	
+	/** 
+	 * Comma separated list of the command ids this command depends on. 
+	 * When missing the command depends on the previous one in the process, an empty value means no dependencies
+	 * 
+	 * @see ProcessCommand
+	 */
+	@XStreamAsAttribute
+	public String depends;
+	
 	/** The default constructor */
 	protected AbstractCommand() {}
 	
@@ -32,6 +50,8 @@ public abstract class AbstractCommand implements Serializable {
 		this.startTime = that.startTime;
 		this.elapsedTime = that.elapsedTime;
 		this.ctx = Utils.copy(that.ctx);
+		this.id = that.id;
+		this.depends = that.depends;
 	}
 
 	/**
@@ -67,13 +87,78 @@ public abstract class AbstractCommand implements Serializable {
 			result = run();
 		}
 		finally {
-			elapsedTime = System.currentTimeMillis() - startTime;
-			Logger.debug("%s cmd elapsedTime: %s ms", this.getClass().getSimpleName(), elapsedTime);
+			stopClock();
 		}
 		
 		return fOK = done(result);
 		
 	};
+	
+	/**
+	 * Fires the command execution notifying the specified listener on termination. 
+	 * <p>
+	 * By default the command runs synchronously in the current thread. Commands waiting for 
+	 * external jobs override this to release the current thread and notify the listener 
+	 * when the job terminates. 
+	 * 
+	 * @param listener the object to be notified on the command termination 
+	 */
+	public void execute( CommandListener listener ) {
+		Check.notNull(listener, "Argument 'listener' cannot be null");
+
+		boolean result;
+		try {
+			result = execute();
+		}
+		catch( Exception e ) {
+			listener.failed(this, e);
+			return;
+		}
+		
+		listener.completed(this, result);
+	}
+	
+	/**
+	 * Completes an asynchronous execution invoking {@link #done(boolean)} and notifying the listener 
+	 * 
+	 * @param result the result status of the {@link #run()} step
+	 * @param listener the object to be notified 
+	 */
+	protected final void complete( boolean result, CommandListener listener ) {
+		stopClock();
+
+		boolean success;
+		try {
+			success = fOK = done(result);
+		}
+		catch( Exception e ) {
+			listener.failed(this, e);
+			return;
+		}
+		
+		listener.completed(this, success);
+	}
+	
+	/**
+	 * Continue the execution of an asynchronous command in the context of the specified service,
+	 * in a pooled thread when no service is available 
+	 * 
+	 * @param service the service owning the command, it can be <code>null</code>
+	 * @param task the code to be executed 
+	 */
+	static void resume( Service service, Runnable task ) { 
+		if( service != null ) { 
+			service.resume(task);
+		}
+		else { 
+			WorkerPool.instance().execute(task);
+		}
+	}
+	
+	private void stopClock() {
+		elapsedTime = System.currentTimeMillis() - startTime;
+		Logger.debug("%s cmd elapsedTime: %s ms", this.getClass().getSimpleName(), elapsedTime);
+	}
 
 	/**
 	 * Template method that subclass can override to handle special condition on command completion. 
@@ -1,17 +1,14 @@
 package models;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+import job.ProcessSupervisor;
 
-import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.DefaultExecutor;
-import org.apache.commons.exec.ExecuteException;
-import org.apache.commons.exec.ExecuteWatchdog;
-import org.apache.commons.exec.PumpStreamHandler;
 import org.apache.commons.io.FileUtils;
 
 import play.Logger;
@@ -26,6 +23,9 @@ import exception.QuickException;
 
 public abstract class AbstractShellCommand extends AbstractCommand {
 
+	/** The script file wrapping the command line */
+	static final String RUN_SCRIPT = "_run.sh";
+
 	/** Xml specified environment valiables */
 	public Env env;
 	
@@ -77,11 +77,6 @@ public abstract class AbstractShellCommand extends AbstractCommand {
 	@XStreamOmitField
 	private Integer fExitCode;
 
-	@XStreamOmitField
-	private FileOutputStream fLogStream;
-
-	@XStreamOmitField
-	private FileOutputStream fErrStream;
 
 	/** The default constructor */
 	public AbstractShellCommand() { }
@@ -107,6 +102,22 @@ public abstract class AbstractShellCommand extends AbstractCommand {
 		return fErrFile;
 	}
 	
+	/**
+	 * @return the file where the program standard output is saved, commands wrapping 
+	 * other commands return the one of the wrapped program
+	 */
+	File getOutputFile() { 
+		return getLogFile();
+	}
+
+	/**
+	 * @return the file where the program standard error is saved, commands wrapping 
+	 * other commands return the one of the wrapped program
+	 */
+	File getErrorFile() { 
+		return getErrFile();
+	}
+	
 	public File getEnvFile() {
 		return fEnvFile;
 	}
@@ -159,6 +170,31 @@ public abstract class AbstractShellCommand extends AbstractCommand {
 		return fCmdLine;
 	}
 	
+	/**
+	 * @return the environment variables defined for this command 
+	 */
+	Map<String,String> getEnvironment() { 
+		return fEnv;
+	}
+	
+	/**
+	 * Commands made up of independent tasks override this method to let a cluster 
+	 * wrapper submit them as an array job 
+	 * 
+	 * @return the number of independent tasks or <code>0</code> when the command cannot be split 
+	 */
+	int getTaskCount() { 
+		return 0;
+	}
+	
+	/**
+	 * @param index the expression evaluating to the (1-based) index of the task to execute e.g. <code>$SGE_TASK_ID</code> 
+	 * @return the command line to execute a single task, see {@link #getTaskCount()}
+	 */
+	String getTaskCmdLine( String index ) { 
+		return null;
+	}
+	
 	final private void prepareCommandLine() {
     	fCmdLine = onInitCommandLine(null);
 
@@ -286,80 +322,102 @@ public abstract class AbstractShellCommand extends AbstractCommand {
 
 	}	
 	
+	/**
+	 * @return the max duration (millis) of the command execution as defined by the {@link #duration} attribute 
+	 * or <code>0</code> when no limit has been specified 
+	 */
+	long getTimeout() { 
+		if( Utils.isEmpty(duration) ) { 
+			return 0;
+		}
+		
+		try { 
+			return Time.parseDuration(duration) * 1000L;
+		} 
+		catch( IllegalArgumentException e ) { 
+			Logger.error("Error parsing command duration property. Invalid value: '%s'", duration);
+			return 0;
+		}
+	}
+	
+	/**
+	 * Read the exit code saved by a job script submitted asynchronously to a cluster 
+	 * 
+	 * @param file the file where the job script saved the command exit code  
+	 * @return the exit code or <code>null</code> when the file is missing or not valid 
+	 */
+	Integer readExitCode( File file ) { 
+		if( !file.exists() ) { 
+			Logger.warn("Missing job exit file: '%s'", file);
+			return null;
+		}
+		
+		try { 
+			return Integer.parseInt(IO.readContentAsString(file).trim());
+		}
+		catch( Exception e ) { 
+			Logger.warn("Invalid job exit file: '%s'", file);
+			return null;
+		}
+	}
+	
+	/**
+	 * Override to return <code>false</code> when the command execution is not implemented 
+	 * by the command line process, and so the {@link #run()} method has to be used 
+	 * 
+	 * @return <code>true</code> when the command can be executed by the {@link ProcessSupervisor}
+	 */
+	protected boolean isSupervised() { 
+		return true;
+	}
+	
+	/**
+	 * Wrap the command in a batch script to provide env variables 
+	 */
+	private void prepareScript() throws IOException { 
+		writeScript(fCmdLine, new File(ctxfolder, RUN_SCRIPT));
+	}
+	
+	/**
+	 * Write a batch script exporting the command env variables and executing the specified command line  
+	 */
+	void writeScript( String cmdLine, File file ) throws IOException { 
+		StringBuilder shell = new StringBuilder();
+		for( Object item : fEnv.keySet()) {
+			String name = (String) item;
+			String value = (String) fEnv.get(name);
+			shell.append("export ") .append(name) .append("=\"") .append(value) .append("\"") 
+			     .append("\n");
+		}
+		shell.append( cmdLine );
+		
+		FileUtils.writeStringToFile(file, shell.toString());
+	}
+	
+	/**
+	 * Launch the command process, the output is redirected to the log files and the 
+	 * handler is notified by the {@link ProcessSupervisor} when the process terminates 
+	 */
+	private void launch( ProcessSupervisor.Handler handler ) throws IOException { 
+		prepareScript();
+		ProcessSupervisor.instance().launch(ctxfolder, RUN_SCRIPT, fLogFile, fErrFile, getTimeout(), handler);
+	}
+	
 	/** 
-	 * The main job execution method 
+	 * The main job execution method, it blocks until the command process terminates
 	 */
 	@Override
 	public boolean run() throws CommandException { 
 		
-		
-		
 		try { 
-			/*
-			 * 1. prepare the stream handler
-			 */
-			fLogStream = (fLogFile!=null) ? new FileOutputStream(fLogFile) : null;
-			fErrStream = (fErrFile!=null) ? new FileOutputStream(fErrFile) : null;			
-			
-			try {
-				/* 
-		    	 * 2. prepare the command line and the executor
-		    	 */
-				DefaultExecutor executor = new DefaultExecutor();
-				executor.setWorkingDirectory( ctxfolder );
-				executor.setExitValue( validCode );
-				executor.setStreamHandler(new PumpStreamHandler(fLogStream, fErrStream));
-				
-				/*
-				 * 3. set a watchdog if a duration has been specified
-				 */
-				long timeout=0;
-				if( Utils.isNotEmpty(duration)) { 
-					try { 
-						timeout = Time.parseDuration(duration);
-					} catch( IllegalArgumentException e ) { 
-						Logger.error("Error parsing command duration property. Invalid value: '%s'", duration);
-					}
-				}
-				
-				if(timeout > 0) { 
-					Logger.debug("Setting executor timeout: %s secs", timeout);
-					executor.setWatchdog(new ExecuteWatchdog(timeout * 1000));
+			final CountDownLatch latch = new CountDownLatch(1);
+			launch(new ProcessSupervisor.Handler() {
+				public void exited(int exitCode, boolean killed) {
+					fExitCode = exitCode;
+					latch.countDown();
 				}
-				
-				/* 
-				 * 4. wrap the command in a batch script to provide env variables 
-				 */
-				StringBuilder shell = new StringBuilder();
-				for( Object item : fEnv.keySet()) {
-					String name = (String) item;
-					String value = (String) fEnv.get(name);
-					shell.append("export ") .append(name) .append("=\"") .append(value) .append("\"") 
-					     .append("\n");
-				}
-				shell.append( fCmdLine );
-				
-				FileUtils.writeStringToFile(new File(ctxfolder, "_run.sh"), shell.toString());
-				
-		        /*
-		         * 5. run the command    
-		         */
-				CommandLine cmd = CommandLine.parse("bash _run.sh");
-				try  {
-					fExitCode = executor.execute(cmd);		
-				} catch( ExecuteException e ) {
-					fExitCode = e.getExitValue();
-				}
-				
-			} 
-			finally {
-				/* 
-		         * close open stream 
-		         */
-				if( fLogStream != null ) try { fLogStream.close(); } catch(IOException e) { Logger.warn("Error closing out file: %s", fLogFile); } 
-		        if( fErrStream != null ) try { fErrStream.close(); } catch(IOException e) { Logger.warn("Error closing err file: %s", fErrFile); } 
-			}
-
+			});
+			latch.await();
 
 			return fExitCode != null && fExitCode == validCode;
 		}
@@ -368,5 +426,34 @@ public abstract class AbstractShellCommand extends AbstractCommand {
 		}
 	}
 	
+	/**
+	 * Launch the command process and return immediately, the listener is notified 
+	 * when the process terminates so that no thread is held while the command is running 
+	 */
+	@Override
+	public void execute(final CommandListener listener) {
+		if( !isSupervised() ) { 
+			super.execute(listener);
+			return;
+		}
+		
+		startTime = System.currentTimeMillis();
+		final Service service = Service.current();
+		try { 
+			launch(new ProcessSupervisor.Handler() {
+				public void exited(final int exitCode, boolean killed) {
+					fExitCode = exitCode;
+					resume(service, new Runnable() {
+						public void run() {
+							complete(exitCode == validCode, listener);
+						}
+					});
+				}
+			});
+		}
+		catch( Exception e ) { 
+			listener.failed(this, new CommandException(e, "Fail on executing command: '%s' ", fCmdLine));
+		}
+	}
 	
 }
@@ -2,13 +2,24 @@ package models;
 
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import job.ProcessSupervisor;
+import job.WorkerPool;
+
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.math.NumberUtils;
 import org.blackcoffee.commons.format.Alphabet;
@@ -23,11 +34,17 @@ import util.Utils;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+import com.thoughtworks.xstream.annotations.XStreamOmitField;
 
+import exception.CommandException;
 import exception.QuickException;
 
 /**
- * Implements a multi-fasta version for AMPA script 
+ * Implements a multi-fasta version for AMPA script. 
+ * <p>
+ * Each sequence is processed by an independent AMPA invocation: up to {@link #parallel} invocations 
+ * run concurrently under the {@link ProcessSupervisor} when the command is executed locally, when wrapped 
+ * by a <code>qsub</code> command the sequences are submitted as an array job. 
  * 
  * @author Paolo Di Tommaso
  *
@@ -52,8 +69,21 @@ public class AmpaCommand extends AbstractShellCommand {
 	 */
 	@XStreamAsAttribute
 	public Eval input;
+	
+	/**
+	 * Max number of AMPA invocations executed concurrently, 
+	 * by default the <code>ampa.parallel</code> property or the number of processors 
+	 */
+	@XStreamAsAttribute
+	public Integer parallel;
 
 	int numOfSequences;
+	
+	@XStreamOmitField 
+	private List<String> fTasks;
+	
+	@XStreamOmitField 
+	private boolean fMerged;
 
 	private Fasta fasta;
 
@@ -70,6 +100,14 @@ public class AmpaCommand extends AbstractShellCommand {
 		this.window = Utils.copy(that.window);
 		this.threshold = Utils.copy(that.threshold);
 		this.input = Utils.copy(that.input);
+		this.parallel = that.parallel;
+	}
+	
+	int getParallel() { 
+		if( parallel != null ) { 
+			return parallel;
+		}
+		return AppProps.instance().getInteger("ampa.parallel", Runtime.getRuntime().availableProcessors());
 	}
 	
 	/**
@@ -91,8 +129,11 @@ public class AmpaCommand extends AbstractShellCommand {
 		}
 		
 		numOfSequences = fasta.count();
+		fTasks = new ArrayList<String>(numOfSequences);
 		for( int i=0; i<numOfSequences; i++) { 
-			result.append( getCommandFor( fasta.sequences.get(i), i) ) .append("\n");
+			String cmd = getCommandFor( fasta.sequences.get(i), i);
+			fTasks.add(cmd);
+			result.append( cmd ) .append("\n");
 		}
 		
 		return result.toString();
@@ -124,51 +165,279 @@ public class AmpaCommand extends AbstractShellCommand {
 		File input = getInputFileFor(index);
 		IO.writeContent( seq.toString(), input);
 		
-		
+		return getCommandFor( String.valueOf(index+1) );
+	}
+	
+	private String getCommandFor( String n ) { 
 		StringBuilder result = new StringBuilder()
 			.append("AMPA.pl")
-			.append(" -in=") .append(input.getName())
+			.append(" -in=") .append(String.format("input-%s.fasta", n))
 			.append(" -w=") .append(window.eval())
 			.append(" -t=") .append(threshold.eval())
-			.append(" -rf=") .append(getResultFileFor(index).getName())
-			.append(" -df=") .append(getDataFileFor(index).getName())
+			.append(" -rf=") .append(String.format("result-%s.text", n))
+			.append(" -df=") .append(String.format("data-%s.txt", n))
 			.append(" -noplot")
 			;
 		
-		
 		return result.toString();
 	}
 	
+	/**
+	 * Each sequence can be processed as an independent cluster task 
+	 */
+	@Override
+	int getTaskCount() {
+		return numOfSequences;
+	}
+	
 	@Override
-	protected boolean done(boolean success) {
-		if( !success ) return false;
+	String getTaskCmdLine(String index) {
+		return getCommandFor(index);
+	}
+	
+	File getTaskLogFile( int index ) { 
+		return new File(ctxfolder, String.format("out-%s.log", index+1));
+	}
+	
+	File getTaskErrFile( int index ) { 
+		return new File(ctxfolder, String.format("err-%s.log", index+1));
+	}
+	
+	/**
+	 * @return the number of AMPA invocations executed concurrently 
+	 */
+	int getWidth() { 
+		return Math.min(getParallel(), numOfSequences);
+	}
+	
+	/**
+	 * Launch the AMPA invocations in parallel and return immediately, the listener 
+	 * is notified when the last invocation terminates (see {@link Fanout})
+	 */
+	@Override
+	public void execute(final CommandListener listener) {
+		if( getWidth() <= 1 ) { 
+			super.execute(listener);
+			return;
+		}
+		
+		startTime = System.currentTimeMillis();
+		final Service service = Service.current();
+		try { 
+			new Fanout() {
+				void terminated(final boolean success) {
+					resume(service, new Runnable() {
+						public void run() {
+							complete(success, listener);
+						}
+					});
+				}
+			} .start();
+		}
+		catch( Exception e ) { 
+			listener.failed(this, new CommandException(e, "Fail on executing AMPA command"));
+		}
+	}
+	
+	/**
+	 * Run the AMPA invocations in parallel, blocking until the last one terminates 
+	 */
+	@Override
+	public boolean run() throws CommandException {
+		if( getWidth() <= 1 ) { 
+			return super.run();
+		}
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		final boolean[] result = new boolean[1];
+		try { 
+			new Fanout() {
+				void terminated(boolean success) {
+					result[0] = success;
+					latch.countDown();
+				}
+			} .start();
+			latch.await();
+		}
+		catch( Exception e ) { 
+			throw new CommandException(e, "Fail on executing AMPA command");
+		}
+		return result[0];
+	}
+	
+	/** 
+	 * Launches the AMPA invocations through the {@link ProcessSupervisor}, keeping at most {@link #getParallel()} 
+	 * processes running, each one with its output redirected to files. 
+	 * <p>
+	 * The terminations are handled on the {@link WorkerPool}: the sequences results are merged in the input 
+	 * order as soon as they are available and the next invocation is launched. The command max duration 
+	 * applies to the whole set of invocations.
+	 */
+	abstract class Fanout { 
 		
-		fMin = Integer.MAX_VALUE;
-		fMax = 0;
+		final Merger merger = new Merger();
 		
-		File fResult = new File(ctxfolder, "result.txt");
-		PrintWriter wResult;
-		try {
-			wResult = new PrintWriter( new FileWriter(fResult) );
-		} catch (IOException e) {
-			throw new QuickException(e, "Failing opening write stream to: '%s'", fResult);
+		final boolean[] ready = new boolean[numOfSequences];
+		
+		final long deadline;
+		
+		int launched;
+		
+		int merged;
+		
+		boolean failed;
+		
+		boolean terminated;
+		
+		Fanout() { 
+			long timeout = getTimeout();
+			deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
 		}
 		
-		File fData = new File(ctxfolder, "data.txt");
+		/**
+		 * Invoked once, when all the invocations have terminated or as soon as one of them fails 
+		 */
+		abstract void terminated( boolean success );
+		
+		void start() { 
+			fMerged = false;
+			if( getLogFile() != null ) getLogFile().delete();
+			if( getErrFile() != null ) getErrFile().delete();
+			
+			merger.open();
+			for( int i=0, c=getWidth(); i<c; i++ ) { 
+				launchNext();
+			}
+		}
+		
+		void launchNext() { 
+			final int index;
+			synchronized (this) {
+				if( failed || launched >= numOfSequences ) { 
+					return;
+				}
+				index = launched++;
+			}
+			
+			try { 
+				File script = new File(ctxfolder, String.format("_run-%s.sh", index+1));
+				writeScript(fTasks.get(index), script);
+
+				long timeout = deadline > 0 ? Math.max(1, deadline - System.currentTimeMillis()) : 0;
+				ProcessSupervisor.instance().launch(ctxfolder, script.getName(), getTaskLogFile(index), getTaskErrFile(index), timeout, new ProcessSupervisor.Handler() {
+					public void exited(final int exitCode, final boolean killed) {
+						WorkerPool.instance().execute(new Runnable() {
+							public void run() {
+								onExit(index, exitCode, killed);
+							}
+						});
+					}
+				});
+			}
+			catch( Exception e ) { 
+				Logger.error(e, "Unable to launch AMPA task %s", index+1);
+				onExit(index, -1, false);
+			}
+		}
+		
+		void onExit( int index, int exitCode, boolean killed ) { 
+			boolean end;
+			synchronized (this) {
+				if( terminated ) { 
+					return;
+				}
+				
+				if( exitCode != validCode ) { 
+					Logger.warn("AMPA task %s terminated with exit code: %s%s", index+1, exitCode, killed ? " (killed)" : "");
+					failed = true;
+				}
+				else { 
+					/* merge the results keeping the input order */
+					ready[index] = true;
+					try { 
+						while( merged<numOfSequences && ready[merged] ) { 
+							append(getTaskLogFile(merged), getLogFile());
+							append(getTaskErrFile(merged), getErrFile());
+							merger.append(merged++);
+						}
+					}
+					catch( Exception e ) { 
+						Logger.error(e, "Unable to merge AMPA task %s result", merged+1);
+						failed = true;
+					}
+				}
+				
+				end = failed || merged == numOfSequences;
+				if( end ) { 
+					terminated = true;
+					merger.close();
+					fMerged = !failed;
+				}
+			}
+			
+			if( end ) { 
+				terminated(!failed);
+			}
+			else { 
+				launchNext();
+			}
+		}
+	}
+	
+	/*
+	 * append the content of a task output file to the command output file 
+	 */
+	private static void append( File source, File target ) throws IOException { 
+		if( target == null || !source.exists() ) { 
+			return;
+		}
+		
+		InputStream in = new FileInputStream(source);
+		OutputStream out = new FileOutputStream(target, true);
+		try { 
+			IOUtils.copy(in, out);
+		}
+		finally { 
+			IOUtils.closeQuietly(in);
+			IOUtils.closeQuietly(out);
+		}
+	}
+	
+	/**
+	 * Merges the single sequence 'data' and 'result' files and creates the json file for the chart 
+	 */
+	class Merger { 
+		
+		final File fResult = new File(ctxfolder, "result.txt");
+		final File fData = new File(ctxfolder, "data.txt");
+		final File fChart = new File(ctxfolder,"graph.json");
+		
+		PrintWriter wResult;
 		PrintWriter wData;
-		try {
-			wData = new PrintWriter( new FileWriter(fData) );
-		} catch (IOException e) {
-			throw new QuickException(e, "Failing opening write stream to: '%s'", fData);
+		PrintWriter wChart;
+		
+		void open() { 
+			fMin = Integer.MAX_VALUE;
+			fMax = 0;
+			fStretchesCount = 0;
+			
+			wResult = writer(fResult);
+			wData = writer(fData);
+			wChart = writer(fChart);
+			
+			wChart.append("{");
+			wChart.append("\"series\": [");
 		}
 		
-		/* 
-		 * parse all 'data' file to create flot json file 
-		 */
-		StringBuilder mainPlotData = new StringBuilder();
-		mainPlotData.append("{");
-		mainPlotData.append("\"series\": [");
-		for( int index=0; index<numOfSequences; index++ ) { 
+		private PrintWriter writer( File file ) { 
+			try {
+				return new PrintWriter( new FileWriter(file) );
+			} catch (IOException e) {
+				throw new QuickException(e, "Failing opening write stream to: '%s'", file);
+			}
+		}
+		
+		void append( int index ) { 
 			/* 
 			 * merge all 'data'
 			 */
@@ -191,33 +460,56 @@ public class AmpaCommand extends AbstractShellCommand {
 			/*
 			 * add the json object for this item 
 			 */
-			if( index>0 ) { mainPlotData.append(","); }
-			appendData(mainPlotData, index, data);
-			
+			StringBuilder item = new StringBuilder();
+			if( index>0 ) { item.append(","); }
+			appendData(item, index, data);
+			wChart.append(item);
 		}
-		mainPlotData.append("], ");
-		
-		
-		/* add other meta data */
-		mainPlotData 
-			.append("\"meta\": {") 
-						.append("\"min\": ") .append(fMin) .append(", ")
-						.append("\"max\": ") .append(fMax) .append(", ")
-						.append("\"threshold\": ") .append(threshold) .append(", ")
-						.append("\"window\": ") .append(window) .append(", ")
-						.append("\"nStretch\": ") .append(fStretchesCount) 
-						.append(" }");
-		
-		mainPlotData.append("}");
 		
-		/* 
-		 * close writers
-		 */
-		wData.close();
-		wResult.close();
+		void close() { 
+			if( wChart != null ) { 
+				wChart.append("], ");
+				
+				/* add other meta data */
+				wChart 
+					.append("\"meta\": {") 
+								.append("\"min\": ") .append(String.valueOf(fMin)) .append(", ")
+								.append("\"max\": ") .append(String.valueOf(fMax)) .append(", ")
+								.append("\"threshold\": ") .append(String.valueOf(threshold)) .append(", ")
+								.append("\"window\": ") .append(String.valueOf(window)) .append(", ")
+								.append("\"nStretch\": ") .append(String.valueOf(fStretchesCount)) 
+								.append(" }");
+				
+				wChart.append("}");
+				wChart.close();
+			}
+			
+			/* 
+			 * close writers
+			 */
+			if( wData != null ) wData.close();
+			if( wResult != null ) wResult.close();
+		}
+	}
+	
+	@Override
+	protected boolean done(boolean success) {
+		if( !success ) return false;
 		
-		File chartFile = new File(ctxfolder,"graph.json");
-		IO.writeContent(mainPlotData, chartFile);
+		Merger merger = new Merger();
+		if( !fMerged ) { 
+			/* 
+			 * parse all 'data' file to create flot json file 
+			 */
+			merger.open();
+			for( int index=0; index<numOfSequences; index++ ) { 
+				merger.append(index);
+			}
+			merger.close();
+		}
+		File fResult = merger.fResult;
+		File fData = merger.fData;
+		File chartFile = merger.fChart;
 		
 		/*
 		 * append the user input object
@@ -6,8 +6,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.regex.Matcher;
@@ -45,6 +48,9 @@ public class AppProps implements Serializable  {
 	List<String> changed = new ArrayList<String>();
 	List<String> removed = new ArrayList<String>();
 	
+	/** The read-only view of the properties used as application layer of the evaluation context */
+	transient volatile Map<String,Object> layer;
+	
 	public String contextPath;
 	
 	
@@ -453,6 +459,47 @@ public class AppProps implements Serializable  {
 		return Utils.parseLong(value, defValue);
 	}
 	
+	/**
+	 * Parse a size property like <code>500MB</code> or <code>10GB</code> (the suffixes <code>KB</code>, <code>MB</code>, 
+	 * <code>GB</code> and <code>TB</code> are supported, plain numbers are bytes) 
+	 * 
+	 * @return the size expressed as number of bytes 
+	 */
+	public Long getBytes( String key, long defValue ) { 
+		String value = getString(key, null);
+		if( Utils.isEmpty(value) ) { 
+			return defValue;
+		}
+
+		Long result = parseBytes(value);
+		if( result == null ) { 
+			Logger.warn("Invalid size value: '%s' for property: '%s'", value, key);
+			return defValue;
+		}
+		return result;
+	}
+	
+	static Long parseBytes( String value ) { 
+		String str = value.trim().toUpperCase();
+		long unit = 1;
+		String[] suffixes = { "TB", "GB", "MB", "KB", "B" };
+		long[] units = { 1L<<40, 1L<<30, 1L<<20, 1L<<10, 1 };
+		for( int i=0; i<suffixes.length; i++ ) { 
+			if( str.endsWith(suffixes[i]) ) { 
+				unit = units[i];
+				str = str.substring(0, str.length()-suffixes[i].length()).trim();
+				break;
+			}
+		}
+
+		try { 
+			return (long) (Double.parseDouble(str) * unit);
+		}
+		catch( NumberFormatException e ) { 
+			return null;
+		}
+	}
+
 	public Long getLong( String key) {
 		String value = getString(key, null);
 		if( Utils.isEmpty(value) ) { 
@@ -482,8 +529,30 @@ public class AppProps implements Serializable  {
 		return new ArrayList( properties.keySet() );
 	}
 	
+	/**
+	 * The properties as a read-only map, having the encrypted values already decrypted.
+	 * The map is created once and shared by all the service contexts until a property is changed, 
+	 * see {@link ContextMap} 
+	 */
+	public Map<String,Object> asMap() { 
+		Map<String,Object> result = layer;
+		if( result != null ) { 
+			return result;
+		}
+		
+		result = new HashMap<String,Object>();
+		if( properties != null ) for( String key : getNames() ) { 
+			String val;
+			if( (val=getString(key,null)) != null ) { 
+				result.put(key, val);
+			}
+		}
+		return layer = Collections.unmodifiableMap(result);
+	}
+	
 	public boolean remove( String key ) { 
 		Object val = properties.remove(key);
+		layer = null;
 		Play.configuration.remove(key);
 		
 		if( !removed.contains(key) ) { 
@@ -505,6 +574,7 @@ public class AppProps implements Serializable  {
 	public void put(String key, String value) {
 		properties.put(key, value);
 		Play.configuration.put(key, value);
+		layer = null;
 		if( !changed.contains(key) ) { 
 			changed.add(key);
 		}
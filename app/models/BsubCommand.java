@@ -9,6 +9,8 @@ import java.util.regex.Pattern;
 
 import org.blackcoffee.commons.utils.FileIterator;
 
+import job.BjobsMonitor;
+import job.ClusterJobMonitor;
 import play.Logger;
 import play.Play;
 import util.Check;
@@ -34,6 +36,12 @@ public class BsubCommand extends AbstractShellCommand {
 	
 	static final Pattern JOB_PATTERN = Pattern.compile("^Job <(\\d+)> .*$");
 	
+	/** the job script submitted in async mode, it saves the target command exit code */
+	static final String JOB_FILE = "_bsub.job";
+	
+	/** the file where the job script saves the target command exit code in async mode */
+	static final String EXIT_FILE = "_bsub.exit";
+	
 	@XStreamImplicit
 	List<AbstractShellCommand> _commands;
 
@@ -50,6 +58,12 @@ public class BsubCommand extends AbstractShellCommand {
 	
 	public Boolean disabled;
 	
+	/**
+	 * When <code>true</code> the job is submitted without waiting for its termination 
+	 * (no <code>-K</code>), the job status is checked periodically by the {@link BjobsMonitor}
+	 */
+	public Boolean async;
+	
 	/** The default constructor */
 	public BsubCommand() {}
 	
@@ -58,6 +72,7 @@ public class BsubCommand extends AbstractShellCommand {
 		this._commands = Utils.copy(that._commands);
 		this.queue = that.queue;
 		this.jobname = that.jobname;
+		this.async = that.async;
 	}
 	
 	String getQueue() {
@@ -72,6 +87,16 @@ public class BsubCommand extends AbstractShellCommand {
 		return jobid;
 	}
 	
+	@Override
+	File getOutputFile() {
+		return command != null ? command.getOutputFile() : super.getOutputFile();
+	}
+	
+	@Override
+	File getErrorFile() {
+		return command != null ? command.getErrorFile() : super.getErrorFile();
+	}
+	
 	public boolean getDisabled() { 
 		if( disabled != null ) { 
 			return disabled;
@@ -82,6 +107,15 @@ public class BsubCommand extends AbstractShellCommand {
 		return disabled;
 	}
 	
+	public boolean getAsync() { 
+		if( async != null ) { 
+			return async;
+		}
+		
+		async = "true".equals(AppProps.instance().getString("bsub.async"));
+		return async;
+	}
+	
 	@Override
 	public void init(ContextHolder ctx) {
 		
@@ -131,7 +165,9 @@ public class BsubCommand extends AbstractShellCommand {
 		File targetErrFile = command.getErrFile();
 		StringBuilder result = new StringBuilder("bsub ");
 
-		result .append("-K ");		// sync mode i.e. wait for termination before exit
+		if( !getAsync() ) { 
+			result .append("-K ");		// sync mode i.e. wait for termination before exit
+		}
 	
 		result .append("-cwd ") .append(ctxfolder) .append(" ");
 		
@@ -156,7 +192,16 @@ public class BsubCommand extends AbstractShellCommand {
 		}
 		
 		// append the original command which is being submitted 
-		if( Utils.isNotEmpty(command.cmdfile)) { 
+		if( getAsync() ) { 
+			/* save the exit code, it is not returned by bsub when running asynchronously */
+			StringBuilder script = new StringBuilder();
+			script.append(command.getCmdLine()).append("\n");
+			script.append("echo $? > ").append(EXIT_FILE).append("\n");
+			Utils.write(script, new File(ctxfolder, JOB_FILE));
+
+			result.append( "< " ) .append( JOB_FILE );
+		}
+		else if( Utils.isNotEmpty(command.cmdfile)) { 
 			result.append( "< " ) .append( command.cmdfile ) ;
 		}
 		else { 
@@ -165,6 +210,14 @@ public class BsubCommand extends AbstractShellCommand {
 		return  result.toString();
 	}
 	
+	/**
+	 * When disabled the nested command is executed by {@link #run()} 
+	 */
+	@Override
+	protected boolean isSupervised() {
+		return !getDisabled();
+	}
+	
 	@Override
 	public boolean run() throws CommandException {
 		return (disabled)
@@ -172,6 +225,55 @@ public class BsubCommand extends AbstractShellCommand {
 				: super.run();
 	}
 	
+	/**
+	 * In async mode submit the job and return immediately, the listener is notified 
+	 * by the {@link BjobsMonitor} thread when the job terminates
+	 */
+	@Override
+	public void execute(final CommandListener listener) {
+		if( getDisabled() || !getAsync() ) { 
+			super.execute(listener);
+			return;
+		}
+		
+		startTime = System.currentTimeMillis();
+		boolean submitted;
+		try { 
+			/* without '-K' bsub returns as soon as the job has been queued */
+			submitted = super.run() && parseResultFile();
+		}
+		catch( Exception e ) { 
+			listener.failed(this, e);
+			return;
+		}
+		
+		if( !submitted ) { 
+			complete(false, listener);
+			return;
+		}
+		
+		Logger.debug("Submitted bsub job: %s", jobid);
+		final Service service = Service.current();
+		BjobsMonitor.instance().watch(jobid, getTimeout(), new ClusterJobMonitor.Handler() {
+			
+			public void terminated(String jobid, final boolean failed) {
+				Runnable task = new Runnable() {
+					public void run() {
+						Integer exit = readExitCode();
+						complete( !failed && exit != null && exit == validCode, listener );
+					}
+				};
+
+				/* continue the service execution in a job thread */
+				resume(service, task);
+			}
+		});
+	}
+	
+	Integer readExitCode() { 
+		return readExitCode( new File(ctxfolder, EXIT_FILE) );
+	}
+	
 	@Override
 	protected boolean done(boolean success) {
 		
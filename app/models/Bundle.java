@@ -5,7 +5,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.dom4j.Document;
@@ -18,6 +20,7 @@ import play.Play;
 import play.libs.IO;
 import play.vfs.VirtualFile;
 import util.Check;
+import util.VarTemplate;
 import util.XStreamHelper;
 import bundle.BundleException;
 import bundle.BundleScriptLoader;
@@ -182,6 +185,24 @@ public class Bundle implements Serializable {
 
 	private volatile BundleScriptLoader fScriptLoader;
 
+	/** The compiled environment entries and the properties object they have been compiled from */ 
+	private volatile EnvTemplates fEnvTemplates;
+	
+	static class EnvTemplates { 
+		final Properties source;
+		final int size;
+		final Map<String,VarTemplate> templates;
+		
+		EnvTemplates( Properties source ) { 
+			this.source = source;
+			this.size = source.size();
+			this.templates = new LinkedHashMap<String, VarTemplate>();
+			for( Object key : source.keySet() ) { 
+				templates.put( key.toString(), VarTemplate.compile(source.getProperty(key.toString())) );
+			}
+		}
+	}
+
 
 	public Definition getDef() {
 		if( def == null ) {
@@ -395,6 +416,7 @@ public class Bundle implements Serializable {
 	        	bundle.envFile  = env.getRealFile();
 	        	try {
 					bundle.environment = IO.readUtf8Properties( new FileInputStream(bundle.envFile));
+					bundle.getEnvironmentTemplates();
 				} 
 	        	catch (IOException e) {
 					Logger.warn("Unable to read bundle environment file: '%s'", bundle.envFile);
@@ -449,6 +471,35 @@ public class Bundle implements Serializable {
 		return result;
 	}
 	
+	/**
+	 * The entries of the 'bundle.environment' file compiled as templates. They are compiled when the bundle is 
+	 * loaded and compiled again only if the {@link #environment} properties are replaced or changed in size.
+	 * 
+	 * @return the compiled environment entries or <code>null</code> if the bundle does not define any environment
+	 */
+	public Map<String,VarTemplate> getEnvironmentTemplates() { 
+		Properties env = environment;
+		if( env == null ) { 
+			return null;
+		}
+		
+		EnvTemplates result = fEnvTemplates;
+		if( result == null || result.source != env || result.size != env.size() ) { 
+			fEnvTemplates = result = new EnvTemplates(env);
+		}
+		return result.templates;
+	}
+	
+	/**
+	 * Drop the compiled scripts classes, invoked when the bundle is unloaded 
+	 */
+	public void clearScriptCache() { 
+		BundleScriptLoader loader = fScriptLoader;
+		if( loader != null ) { 
+			loader.clearCache();
+		}
+	}
+	
 
 	
 }
@@ -0,0 +1,383 @@
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import play.Logger;
+import play.jobs.Job;
+import util.Check;
+import util.FileOps;
+import exception.QuickException;
+
+/**
+ * Manages the cold tier of the request results, i.e. a {@link ResultStore} shared by all the server nodes.
+ * <p>
+ * When a request terminates, its content is packed in the archive container (see {@link RepoArchive}) and
+ * uploaded, along with the result and input manifests, to the store. The local copy (the hot tier) is kept
+ * until the request is not accessed for a while, then it is removed leaving only the control files.
+ * <p>
+ * An evicted repository is downloaded again on demand: the archive container when one of its files is requested
+ * (the local copy acts as a read-through cache) and the control files when the request is not known by the
+ * local node at all, so that any node can serve any result.
+ * <p>
+ * The store is defined by the <code>store.cold</code> property: <code>s3</code> (see {@link S3ResultStore})
+ * or <code>folder</code> (see {@link FolderResultStore}, the path is defined by <code>store.folder.path</code>).
+ * When it is not defined the cold tier is disabled.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class ColdTier {
+
+	/** marks a repository stored in the cold tier */
+	static final String COLD_FILE_NAME = ".cold";
+
+	/** marks a repository whose content has been removed from the local disk */
+	static final String EVICTED_FILE_NAME = ".evicted";
+
+	/** the repository files uploaded to the cold tier */
+	static final List<String> CONTROL_FILES = Arrays.asList( "_result", "_input", ".creation-time", ".fingerprint" );
+
+	private static final ColdTier INSTANCE = new ColdTier();
+
+	/** Singleton accessor method */
+	public static ColdTier instance() { return INSTANCE; }
+
+	/** the max number of cached lookups of requests not found in the cold tier */
+	static final int MAX_MISSES = 10000;
+
+	private ResultStore fStore;
+
+	private boolean fConfigured;
+
+	/** the requests not found in the cold tier, mapped to the time the lookup expires */
+	private final ConcurrentMap<String,Long> fMisses = new ConcurrentHashMap<String, Long>();
+
+	/** Marked as protected to prevent direct instantiation */
+	protected ColdTier() {}
+
+	/**
+	 * @return the configured store or <code>null</code> when the cold tier is disabled
+	 */
+	public synchronized ResultStore store() {
+		if( fConfigured ) {
+			return fStore;
+		}
+
+		String type = AppProps.instance().getString("store.cold");
+		if( "s3".equals(type) ) {
+			fStore = S3ResultStore.create(AppProps.instance());
+		}
+		else if( "folder".equals(type) ) {
+			String path = AppProps.instance().getString("store.folder.path");
+			Check.notEmpty(path, "Missing 'store.folder.path' property");
+			fStore = new FolderResultStore(new File(path));
+		}
+		else if( type != null ) {
+			Logger.warn("Unknown cold tier store: '%s'", type);
+		}
+
+		if( fStore != null ) {
+			Logger.info("Using cold tier store: %s", fStore);
+		}
+		fConfigured = true;
+		return fStore;
+	}
+
+	/**
+	 * Use the specified store, mainly for testing purpose
+	 */
+	public synchronized void setStore( ResultStore store ) {
+		fStore = store;
+		fConfigured = true;
+		fMisses.clear();
+	}
+
+	public boolean isEnabled() {
+		return store() != null;
+	}
+
+	static boolean isCold( File folder ) {
+		return new File(folder, COLD_FILE_NAME).exists();
+	}
+
+	static boolean isEvicted( File folder ) {
+		return new File(folder, EVICTED_FILE_NAME).exists();
+	}
+
+	/**
+	 * Invoked when the content of an evicted repository has been extracted again
+	 */
+	static void restored( File folder ) {
+		new File(folder, EVICTED_FILE_NAME).delete();
+	}
+
+	static String keyFor( String rid, String name ) {
+		return rid + "/" + name;
+	}
+
+	/**
+	 * Upload the repository to the cold tier in background
+	 */
+	public void migrateLater( final Repo repo ) {
+		if( !isEnabled() ) {
+			return;
+		}
+
+		new Job() {
+			public void doJob() {
+				try {
+					migrate(repo);
+				}
+				catch( Exception e ) {
+					Logger.error(e, "Unable to migrate repo: '%s' to the cold tier", repo.getFile());
+				}
+			}
+		}.now();
+	}
+
+	/**
+	 * Upload a terminated repository to the cold tier. The local copy is not modified.
+	 *
+	 * @return <code>true</code> when the repository has been uploaded, <code>false</code> otherwise
+	 */
+	public boolean migrate( Repo repo ) {
+		ResultStore store = store();
+		File folder = repo.getFile();
+		if( store == null || isCold(folder) || repo.fLock.exists() || !repo.fResult.exists() ) {
+			return false;
+		}
+
+		synchronized (repo.rid.intern()) {
+			/* the archive container, when the repository is not already archived it is created in a temporary file */
+			File archive = RepoArchive.archiveFor(folder);
+			File temp = null;
+			if( !archive.exists() ) {
+				List<File> files = RepoArchive.packable(folder);
+				try {
+					temp = File.createTempFile("archive-", ".zip", AppProps.TEMP_PATH);
+				}
+				catch( IOException e ) {
+					throw new QuickException(e, "Unable to create temporary archive for repo: '%s'", folder);
+				}
+				RepoArchive.write(files, temp);
+			}
+
+			try {
+				store.put(keyFor(repo.rid, RepoArchive.ARCHIVE_FILE_NAME), temp != null ? temp : archive);
+			}
+			finally {
+				if( temp != null ) temp.delete();
+			}
+
+			/* the manifests are uploaded at last, their existence means the repository is complete */
+			for( String name : CONTROL_FILES ) {
+				File file = new File(folder, name);
+				if( file.exists() ) {
+					store.put(keyFor(repo.rid, name), file);
+				}
+			}
+
+			touch(new File(folder, COLD_FILE_NAME));
+			fMisses.remove(repo.rid);
+		}
+
+		Logger.debug("Migrated repo: '%s' to the cold tier", folder);
+		return true;
+	}
+
+	/**
+	 * Remove from the local disk the content of a repository stored in the cold tier, leaving the control files.
+	 * The archive container downloaded on demand for an evicted repository is removed as well.
+	 *
+	 * @return <code>true</code> when the repository content has been removed, <code>false</code> otherwise
+	 */
+	public boolean evict( Repo repo ) {
+		File folder = repo.getFile();
+		if( !isCold(folder) || repo.fLock.exists() ) {
+			return false;
+		}
+
+		if( isEvicted(folder) ) {
+			return release(repo);
+		}
+
+		synchronized (repo.rid.intern()) {
+			touch(new File(folder, EVICTED_FILE_NAME));
+			for( File file : RepoArchive.packable(folder) ) {
+				FileOps.delete(file);
+			}
+			for( String name : RepoArchive.SKIP_FILES ) {
+				FileOps.delete(new File(folder, name));
+			}
+			RepoArchive.archiveFor(folder).delete();
+			repo.updateSize();
+		}
+
+		Logger.debug("Evicted local copy of repo: '%s'", folder);
+		return true;
+	}
+
+	/*
+	 * Remove the archive container fetched by an evicted repository, see #fetchArchive(File)
+	 */
+	private boolean release( Repo repo ) {
+		synchronized (repo.rid.intern()) {
+			File archive = RepoArchive.archiveFor(repo.getFile());
+			if( !archive.exists() || !archive.delete() ) {
+				return false;
+			}
+			repo.updateSize();
+		}
+
+		Logger.debug("Released fetched archive of repo: '%s'", repo.getFile());
+		return true;
+	}
+
+	/**
+	 * Download the archive container of an evicted repository, it is kept on the local disk as a read-through
+	 * cache until the repository is idle again, see {@link #evict(Repo)}
+	 */
+	void fetchArchive( File folder ) {
+		ResultStore store = store();
+		if( store == null ) {
+			Logger.warn("Cannot fetch repo: '%s' - cold tier is not enabled", folder);
+			return;
+		}
+
+		synchronized (folder.getName().intern()) {
+			File archive = RepoArchive.archiveFor(folder);
+			if( archive.exists() ) {
+				return;
+			}
+
+			if( !download(store, keyFor(folder.getName(), RepoArchive.ARCHIVE_FILE_NAME), archive) ) {
+				Logger.warn("Missing archive for repo: '%s' in the cold tier", folder);
+				return;
+			}
+
+			/* the downloaded archive is accounted in the workspace quota */
+			new Repo(folder, false).updateSize();
+		}
+	}
+
+	/**
+	 * Download the control files of a repository that is not available on the local disk.
+	 * <p>
+	 * The requests not found are remembered for the time defined by <code>store.cold.miss.ttl</code> (default 1min),
+	 * so that polling an unknown request does not hit the store every time. A store error is handled as not found,
+	 * an unavailable store does not make the requests fail.
+	 *
+	 * @return <code>true</code> when the repository exists in the cold tier and has been created locally, <code>false</code> otherwise
+	 */
+	boolean fetch( Repo repo ) {
+		ResultStore store = store();
+		if( store == null || isMissing(repo.rid) ) {
+			return false;
+		}
+
+		try {
+			if( !store.exists(keyFor(repo.rid, "_result")) ) {
+				missing(repo.rid);
+				return false;
+			}
+
+			synchronized (repo.rid.intern()) {
+				File folder = repo.getFile();
+				if( Repo.isRepoFolder(folder) ) {
+					return true;
+				}
+
+				folder.mkdirs();
+				for( String name : CONTROL_FILES ) {
+					download(store, keyFor(repo.rid, name), new File(folder, name));
+				}
+				touch(new File(folder, COLD_FILE_NAME));
+				touch(new File(folder, EVICTED_FILE_NAME));
+				/* the marker is created as last, being it the sign of a valid repository folder */
+				touch(repo.fMarker);
+			}
+		}
+		catch( Exception e ) {
+			Logger.warn("Unable to fetch repo: '%s' from the cold tier. Caused by: %s", repo.getFile(), e.getMessage());
+			missing(repo.rid);
+			return false;
+		}
+
+		Logger.info("Fetched repo: '%s' from the cold tier", repo.getFile());
+		return true;
+	}
+
+	/**
+	 * @return <code>true</code> when the specified request has been recently looked up in the cold tier without success
+	 */
+	boolean isMissing( String rid ) {
+		Long expire = fMisses.get(rid);
+		if( expire == null ) {
+			return false;
+		}
+		if( expire < System.currentTimeMillis() ) {
+			fMisses.remove(rid, expire);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Remember a request not found in the cold tier
+	 */
+	void missing( String rid ) {
+		long now = System.currentTimeMillis();
+		if( fMisses.size() >= MAX_MISSES ) {
+			/* drop the expired lookups, a flood of unknown requests just resets the cache */
+			for( Map.Entry<String,Long> it : fMisses.entrySet() ) {
+				if( it.getValue() < now ) fMisses.remove(it.getKey(), it.getValue());
+			}
+			if( fMisses.size() >= MAX_MISSES ) {
+				fMisses.clear();
+			}
+		}
+		fMisses.put(rid, now + 1000L * AppProps.instance().getDuration("store.cold.miss.ttl", 60));
+	}
+
+	/**
+	 * Remove a repository from the cold tier
+	 */
+	void delete( Repo repo ) {
+		ResultStore store = store();
+		if( store != null ) {
+			store.delete(repo.rid + "/");
+		}
+	}
+
+	static boolean download( ResultStore store, String key, File target ) {
+		File temp = new File(target.getParentFile(), target.getName() + ".download");
+		if( !store.get(key, temp) ) {
+			return false;
+		}
+
+		target.delete();
+		if( !temp.renameTo(target) ) {
+			temp.delete();
+			throw new QuickException("Unable to rename '%s' to '%s'", temp, target);
+		}
+		return true;
+	}
+
+	static void touch( File file ) {
+		try {
+			if( !file.createNewFile() ) {
+				file.setLastModified(System.currentTimeMillis());
+			}
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to create file: '%s'", file);
+		}
+	}
+
+}
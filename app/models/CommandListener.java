@@ -0,0 +1,31 @@
+package models;
+
+/**
+ * Receives the notification of a command termination. 
+ * <p>
+ * Synchronous commands notify the listener in the same thread that invoked 
+ * {@link AbstractCommand#execute(CommandListener)}, asynchronous ones (e.g. jobs submitted to 
+ * a cluster) notify it later from a different thread.
+ * 
+ * @author Paolo Di Tommaso
+ *
+ */
+public interface CommandListener {
+
+	/**
+	 * Invoked when the command terminates 
+	 * 
+	 * @param command the terminated command 
+	 * @param success the command final result status, as returned by {@link AbstractCommand#done(boolean)}
+	 */
+	void completed( AbstractCommand command, boolean success );
+	
+	/**
+	 * Invoked when the command execution raises an exception 
+	 * 
+	 * @param command the failed command 
+	 * @param error the exception raised 
+	 */
+	void failed( AbstractCommand command, Exception error );
+	
+}
@@ -43,7 +43,7 @@ public class ContextHolder implements Serializable {
 	 * The copy constructor 
 	 */
 	public ContextHolder( ContextHolder that ) {
-		this.map = new HashMap(that.map);
+		this.map = that.map instanceof ContextMap ? new ContextMap((ContextMap)that.map) : new HashMap(that.map);
 		this.input = new Input(that.input);
 		this.result = new OutResult(that.result);
 	}
@@ -84,7 +84,7 @@ public class ContextHolder implements Serializable {
 	 * Returns the value to which the specified key is mapped,
      * or {@code null} if this map contains no mapping for the key.
 	 */
-	public <T> T get( String key ) {
+	public synchronized <T> T get( String key ) {
 		return (T) map.get(key);
 	} 
 	
@@ -96,7 +96,7 @@ public class ContextHolder implements Serializable {
 	 * @return the previous value associated with <tt>key</tt>, or
      *         <tt>null</tt> if there was no mapping for <tt>key</tt>.
 	 */
-	public Object put( String key, Object value ) {
+	public synchronized Object put( String key, Object value ) {
 		return map.put(key, value);
 	}
 
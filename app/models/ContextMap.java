@@ -0,0 +1,182 @@
+package models;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A layered map used as evaluation context.
+ * <p>
+ * The entries put in this map are stored in a small local layer, while the lookups that do not
+ * match any local entry are resolved lazily on the parent layers, in the order they are specified.
+ * The parent layers are shared (e.g. the application properties and the bundle properties) and they are never modified,
+ * so creating a new context does not require to copy them.
+ * <p>
+ * Removing a key defined by a parent layer hides it from this map only.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class ContextMap extends AbstractMap<String, Object> implements Serializable {
+
+	/** The entries defined in this context */
+	final Map<String,Object> local;
+
+	/** The keys defined by a parent layer that have been removed from this context */
+	final Set<Object> hidden;
+
+	/** The read-only parent layers, the first one has the highest precedence */
+	final List<Map<?,?>> parents;
+
+	/**
+	 * Creates a context map on top of the specified layers
+	 *
+	 * @param parents the read-only layers, in order of precedence
+	 */
+	public ContextMap( Map<?,?>... parents ) {
+		this.local = new HashMap<String, Object>();
+		this.hidden = new HashSet<Object>();
+		this.parents = Arrays.asList(parents);
+	}
+
+	/**
+	 * The copy constructor. Only the local entries are copied, the parent layers are shared
+	 */
+	public ContextMap( ContextMap that ) {
+		this.local = new HashMap<String, Object>(that.local);
+		this.hidden = new HashSet<Object>(that.hidden);
+		this.parents = that.parents;
+	}
+
+	@Override
+	public Object get( Object key ) {
+		Object result = local.get(key);
+		if( result != null || local.containsKey(key) ) {
+			return result;
+		}
+
+		return lookup(key);
+	}
+
+	@Override
+	public boolean containsKey( Object key ) {
+		return local.containsKey(key) || lookup(key) != null;
+	}
+
+	@Override
+	public Object put( String key, Object value ) {
+		Object result = get(key);
+		local.put(key, value);
+		hidden.remove(key);
+		return result;
+	}
+
+	@Override
+	public Object remove( Object key ) {
+		Object result = get(key);
+		local.remove(key);
+		if( key != null && parentsContain(key) ) {
+			hidden.add(key);
+		}
+		return result;
+	}
+
+	@Override
+	public void clear() {
+		local.clear();
+		for( Map<?,?> layer : parents ) {
+			hidden.addAll(layer.keySet());
+		}
+	}
+
+	/*
+	 * Find out a key in the parent layers, the null keys are not supported by them
+	 */
+	Object lookup( Object key ) {
+		if( key == null || hidden.contains(key) ) {
+			return null;
+		}
+
+		for( Map<?,?> layer : parents ) {
+			Object result = layer.get(key);
+			if( result != null ) {
+				return result;
+			}
+		}
+		return null;
+	}
+
+	boolean parentsContain( Object key ) {
+		for( Map<?,?> layer : parents ) {
+			if( layer.get(key) != null ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return a snapshot of the merged layers. Note: the entries cannot be modified through it
+	 */
+	Map<String,Object> merge() {
+		Map<String,Object> result = new LinkedHashMap<String, Object>();
+		for( int i=parents.size()-1; i>=0; i-- ) {
+			for( Map.Entry<?,?> entry : parents.get(i).entrySet() ) {
+				if( entry.getKey() != null && entry.getValue() != null && !hidden.contains(entry.getKey()) ) {
+					result.put(entry.getKey().toString(), entry.getValue());
+				}
+			}
+		}
+		result.putAll(local);
+		return result;
+	}
+
+	/**
+	 * A view of all the entries in this context, including the ones defined by the parent layers.
+	 * Removing an entry through the view iterator removes it from this context.
+	 */
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new AbstractSet<Map.Entry<String,Object>>() {
+
+			@Override
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				final Iterator<Map.Entry<String, Object>> it = merge().entrySet().iterator();
+				return new Iterator<Map.Entry<String,Object>>() {
+
+					Map.Entry<String, Object> last;
+
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					public Map.Entry<String, Object> next() {
+						return last = it.next();
+					}
+
+					public void remove() {
+						if( last == null ) {
+							throw new IllegalStateException();
+						}
+						ContextMap.this.remove(last.getKey());
+						last = null;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return merge().size();
+			}
+		};
+	}
+
+}
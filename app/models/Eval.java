@@ -11,6 +11,7 @@ import play.Logger;
 import plugins.AutoBean;
 import util.Check;
 import util.Utils;
+import util.VarTemplate;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamOmitField;
@@ -24,11 +25,29 @@ public class Eval implements Serializable {
 	
 	@XStreamOmitField public List<String> vars;
 	
+	/** The compiled template, immutable so shared by the copies */
+	@XStreamOmitField VarTemplate template;
+	
+	/** The (trimmed) result of a template without variables */
+	@XStreamOmitField String fStaticResult;
+	
 	public Eval( String value ) {
 		this.raw = value;
-		this.vars = prefetch(value);
+		this.template = value != null ? VarTemplate.compile(value) : null;
+		this.vars = template != null ? template.getVars() : Collections.<String>emptyList();
+		this.fStaticResult = template != null && template.isStatic() ? value.trim() : null;
 	}
 
+	/**
+	 * The copy constructor 
+	 */
+	public Eval( Eval that ) { 
+		this.raw = that.raw;
+		this.vars = that.vars != null ? new ArrayList<String>(that.vars) : null;
+		this.template = that.template;
+		this.fStaticResult = that.fStaticResult;
+	}
+	
 	public boolean isStatic() {
 		return vars.size()==0;
 	}
@@ -39,6 +58,9 @@ public class Eval implements Serializable {
 	}
 
 	public String eval() {
+		if( fStaticResult != null ) { 
+			return fStaticResult;
+		}
 		final Service service = Service.current();
 		return eval(service.getContext().map);
 	}
@@ -48,6 +70,9 @@ public class Eval implements Serializable {
 		if( raw == null ) {
 			return null;
 		}
+		if( fStaticResult != null ) { 
+			return fStaticResult;
+		}
 
 		Utils.MapValue<String, Object> mapper = new Utils.MapValue<String,Object>() {
 			
@@ -64,7 +89,7 @@ public class Eval implements Serializable {
 
 			}};	
 		
-		String result = Utils.replaceVars(raw, mapper);
+		String result = template.render(mapper);
 		return result != null ? result.trim() : null;		
 	}
 
@@ -77,23 +102,4 @@ public class Eval implements Serializable {
 		return ( obj != null ? obj.toString() : null);
 	}
 	
-	/**
-	 * Extract all variables names in the specified string 
-	 * @param str a string that can contain variables with the syntax ${var-name}
-	 * @return the list of variable names or an empty list if no var exists in <code>str</code>
-	 */
-	List<String> prefetch( String str ) {
-		if( Utils.isEmpty(str) || !str.contains("$") ) { return Collections.emptyList(); }
-		
-		final List<String> result = new ArrayList<String>();
-		Utils.replaceVars(str, new Utils.MapValue<String,Object>() {
-
-			public Object get(String key) {
-				result.add(key);
-				return null;
-			}
-		});
-		
-		return result;
-	}
 }
@@ -90,6 +90,12 @@ public class Field implements Serializable {
 	/** use this field to notify and error during bind phase */
 	private @XStreamOmitField String fBindError;
 	
+	/** the normalized content of the uploaded file, see {@link #validateFile()} */
+	private @XStreamOmitField File fNormalizedFile;
+
+	/* the file is an upload in the user temporary folder, its content has not been normalized yet */ 
+	private @XStreamOmitField boolean fUpload;
+	
 	
 	/**
 	 * Field default constructor. Instantiate will all field to <code>null</code>
@@ -104,12 +110,12 @@ public class Field implements Serializable {
 	 * @param that the object from which copy
 	 */
 	public Field( Field that ) {
-		this.type = Utils.copy(that.type);
-		this.name = Utils.copy(that.name);
-		this.value = Utils.copy(that.value);
-		this.label = Utils.copy(that.label);
-		this.hint = Utils.copy(that.hint);
-		this.choices = Utils.copy(that.choices);
+		this.type = that.type;
+		this.name = that.name;
+		this.value = that.value;
+		this.label = that.label;
+		this.hint = that.hint;
+		this.choices = that.choices != null ? that.choices.clone() : null;
 		this.validation = Utils.copy(that.validation);
 		this.readOnly = that.readOnly;
 		this.sample = that.sample;
@@ -196,7 +202,14 @@ public class Field implements Serializable {
 					String filename = value.substring("file://".length()).trim();
 					try {
 						this.fFile = Data.getUserFile(filename);
-						this.value = FileUtils.readFileToString(fFile);
+						this.fUpload = true;
+						/* 
+						 * when the validation can be applied on the stream, the content is never read in memory 
+						 * and the value keeps the file reference - see #validateFile()  
+						 */
+						if( validation == null || !validation.isStreamable() ) { 
+							this.value = FileUtils.readFileToString(fFile);
+						}
 					} 
 					catch (IOException e) {
 						Logger.warn("Unable to read upload content for field: '%s' from file: '%s'", name, filename );
@@ -232,6 +245,11 @@ public class Field implements Serializable {
 			return;
 		}
 		
+		if( isFileReference() ) { 
+			validateFile();
+			return;
+		}
+		
 		validation.apply( name, value );
 		
 		/* replace the current value with the normalized one if any */
@@ -241,7 +259,61 @@ public class Field implements Serializable {
 	}
 
 
+	/**
+	 * @return <code>true</code> for a 'memo' uploaded file whose content is not read in memory, the value is just 
+	 * the file reference i.e. 'file://<name>', see {@link #bind(Params)} 
+	 */
+	public boolean isFileReference() { 
+		return "memo".equals(type) && fFile != null && value != null && value.toLowerCase().startsWith("file://");
+	}
+	
+	/**
+	 * Validate the uploaded file content as a stream, the normalized content is written to a temporary 
+	 * file that is moved to the request folder by {@link #consolidate(File)}. 
+	 * <p>
+	 * The value keeps the file reference, the content is never loaded in memory, see {@link #getContentFile()} 
+	 */
+	void validateFile() {
+		/* a unique name, the same file can be submitted more times at once */
+		File target;
+		try { 
+			target = File.createTempFile(fFile.getName() + ".", ".normalized", fFile.getParentFile());
+		}
+		catch( IOException e ) { 
+			throw new QuickException(e, "Unable to create normalized file for field: '%s'", name);
+		}
+
+		discard();
+		validation.apply( name, fFile, target );
+		if( !validation.isValid() ) { 
+			target.delete();
+			return;
+		}
+		
+		fNormalizedFile = target;
+	}
+	
+	/**
+	 * Delete the normalized content not consolidated, when the request is not submitted because of validation errors 
+	 */
+	void discard() { 
+		if( fNormalizedFile != null ) { 
+			fNormalizedFile.delete();
+			fNormalizedFile = null;
+		}
+	}
 	
+	/**
+	 * @return the file holding the content of a 'memo' field uploaded as a file, whose value is 
+	 * the file reference instead of the content, or <code>null</code> when the value is the content itself
+	 */
+	public File getContentFile() { 
+		if( !isFileReference() ) { 
+			return null;
+		}
+		return fNormalizedFile != null && fNormalizedFile.exists() ? fNormalizedFile : fFile;
+	}
+
 	public String getSample() {
 		if( sample == null ) return null;
 		
@@ -312,6 +384,11 @@ public class Field implements Serializable {
 		return fFile;
 	}
 	
+	public void setFile( File file ) {
+		this.fFile = file;
+		this.fUpload = false;
+	}
+	
 	/**
 	 * The uploaded file path as string. Only for 'file' field type
 	 */
@@ -346,6 +423,38 @@ public class Field implements Serializable {
 			return;
 		}
 		
+		/* the normalized content has been already saved by the validation */
+		if( fNormalizedFile != null && fNormalizedFile.exists() ) { 
+			try { 
+				target.delete();
+				FileUtils.moveFile(fNormalizedFile, target);
+				fNormalizedFile = null;
+				fFile = target;
+				return;
+			}
+			catch( IOException e ) { 
+				/* never fall back on the upload, its content has not been normalized */
+				throw new QuickException(e, "Unable to move normalized file '%s' to '%s'", fNormalizedFile, target);
+			}
+		}
+		
+		/* the value is just the file reference, but the upload has not been validated */
+		if( isFileReference() && fUpload ) { 
+			throw new QuickException("Missing normalized content for field: '%s' - file: '%s'", name, fFile);
+		}
+		
+		/* the content of a previous request, already normalized */
+		if( isFileReference() ) { 
+			try { 
+				FileUtils.copyFile(fFile, target);
+				fFile = target;
+				return;
+			}
+			catch( IOException e ) { 
+				throw new QuickException(e, "Unable to copy file '%s' to '%s'", fFile, target);
+			}
+		}
+		
 		FileOutputStream sOut = null;
 		try { 
 			// save the field value (instead of copying the source 'file') because 
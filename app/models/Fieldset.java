@@ -29,8 +29,8 @@ public class Fieldset implements Serializable {
 	}
 	
 	public Fieldset( Fieldset that ) {
-		this.title = Utils.copy(that.title);
-		this.description = Utils.copy(that.description);
+		this.title = that.title;
+		this.description = that.description;
 		this.hideable = that.hideable;
 		this.fields = Utils.copy(that.fields);
 	}
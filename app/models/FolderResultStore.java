@@ -0,0 +1,76 @@
+package models;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
+import util.Check;
+import util.FileOps;
+import exception.QuickException;
+
+/**
+ * A {@link ResultStore} saving the objects in a local (or network mounted) folder, the key being the relative path.
+ * <p>
+ * It is meant as a stand-in of the S3 store for testing and for single node installations.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class FolderResultStore implements ResultStore {
+
+	final File root;
+
+	public FolderResultStore( File root ) {
+		Check.notNull(root, "Argument 'root' cannot be null");
+		this.root = root;
+	}
+
+	File fileFor( String key ) {
+		Check.notEmpty(key, "Argument 'key' cannot be empty");
+		Check.isTrue(!key.contains(".."), "Invalid object key: '%s'", key);
+		return new File(root, key);
+	}
+
+	public void put( String key, File file ) {
+		File target = fileFor(key);
+		File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+		try {
+			FileUtils.copyFile(file, temp);
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to store object: '%s'", key);
+		}
+		target.delete();
+		if( !temp.renameTo(target) ) {
+			throw new QuickException("Unable to store object: '%s'", key);
+		}
+	}
+
+	public boolean get( String key, File target ) {
+		File file = fileFor(key);
+		if( !file.exists() ) {
+			return false;
+		}
+
+		try {
+			FileUtils.copyFile(file, target);
+			return true;
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to read object: '%s'", key);
+		}
+	}
+
+	public boolean exists( String key ) {
+		return fileFor(key).exists();
+	}
+
+	public void delete( String prefix ) {
+		FileOps.delete(fileFor(prefix));
+	}
+
+	public String toString() {
+		return "FolderResultStore[" + root + "]";
+	}
+}
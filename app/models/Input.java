@@ -241,6 +241,13 @@ public class Input implements Serializable {
 		if( validation != null && !Validation.hasErrors() ) { // <-- this is procecced only if there aren't other errors 
 			applyScriptValidation();
 		}
+		
+		/* the request is not submitted, the normalized uploads are not required */
+		if( Validation.hasErrors() ) { 
+			for( Field f : fields() ) {
+				f.discard();
+			}
+		}
 	}
 	
 	private void applyScriptValidation() {
@@ -288,22 +295,53 @@ public class Input implements Serializable {
 	
 	
 	/**
-	 * Save this {@link Input} instance as a XML file 
+	 * Copy the values of the specified input fields to the fields having the same name in this input. 
+	 * When more fields have the same name, the values are assigned in the same order. 
+	 * 
+	 * @param that the input holding the values to bind 
+	 */
+	public void bindValues( Input that ) {
+		if( that == null ) return;
+		
+		List<String> names = new ArrayList<String>();
+		for( Field source : that.fields() ) { 
+			if( !names.contains(source.name) ) names.add(source.name);
+		}
+		
+		for( String name : names ) { 
+			if( Utils.isEmpty(name) ) continue;
+			
+			List<Field> sources = that.fields(name);
+			List<Field> targets = fields(name);
+			for( int i=0; i<targets.size(); i++ ) { 
+				Field target = targets.get(i);
+				Field source = i<sources.size() ? sources.get(i) : null;
+				target.value = source != null ? source.value : null;
+				target.setFile( source != null ? source.getFile() : null );
+			}
+		}
+	}
+	
+	/**
+	 * Save the values of this {@link Input} instance in the manifest format, see {@link Manifest}
 	 * 
 	 * @param file the file to which save the input collection 
 	 * 
 	 */
 	public void save( File file ) {
-		XStreamHelper.toXML(this, file);
+		Manifest.write(this, file);
 	}
 	
 	/**
-	 * Read the {@link Input} from its XML representation
-	 * @param file the stored XML input 
+	 * Read the {@link Input} from its stored representation, either the manifest or the legacy XML format 
+	 * @param file the stored input 
 	 * @return a populated {@link Input} instance for the specified file, or <code>null</code> if the file does not exist
 	 */
 	public static Input read( File file ) {
-		return (Input) (file.exists() ? XStreamHelper.fromXML(file) : null);
+		if( !file.exists() ) { 
+			return null;
+		}
+		return Manifest.isManifest(file) ? Manifest.readInput(file) : (Input) XStreamHelper.fromXML(file);
 	}
 	
 }
@@ -0,0 +1,223 @@
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import play.Logger;
+import util.Check;
+
+/**
+ * Keeps the tail of the standard output and error of a running job, so that the clients
+ * following the job progress are served from memory.
+ * <p>
+ * The log files are read incrementally (only the bytes appended since the last read)
+ * and at most the last <code>tail.buffer.size</code> bytes (default 64KB) are kept
+ * for each stream.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class LogTail {
+
+	static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/** the tails of the currently running jobs, indexed by request-id */
+	static final Map<String,LogTail> ACTIVE = new ConcurrentHashMap<String, LogTail>();
+
+	/**
+	 * A chunk of the output starting at the specified offset
+	 */
+	public static class Chunk {
+
+		/** the file offset of the first byte in this chunk */
+		public long offset;
+
+		/** the offset to be used to request the next chunk */
+		public long next;
+
+		/** the chunk content */
+		public String text;
+
+		/** <code>true</code> when part of the requested output is no more available in the buffer */
+		public boolean truncated;
+	}
+
+	/**
+	 * A bounded buffer holding the last bytes written in a file
+	 */
+	static class Ring {
+
+		final File file;
+
+		final byte[] buffer;
+
+		/** the number of bytes read from the file so far */
+		long end;
+
+		Ring( File file, int capacity ) {
+			this.file = file;
+			this.buffer = new byte[capacity];
+		}
+
+		/**
+		 * Read the content appended to the file since the last invocation
+		 */
+		void refresh() {
+			if( file == null ) return;
+
+			long length = file.length();
+			if( length < end ) {
+				/* the file has been truncated, start over */
+				end = 0;
+			}
+			if( length == end ) {
+				return;
+			}
+
+			/* skip what would be overwritten anyway */
+			long from = Math.max(end, length - buffer.length);
+			try {
+				RandomAccessFile raf = new RandomAccessFile(file, "r");
+				try {
+					raf.seek(from);
+					byte[] bytes = new byte[(int)(length - from)];
+					raf.readFully(bytes);
+					for( int i=0; i<bytes.length; i++ ) {
+						buffer[ (int)((from + i) % buffer.length) ] = bytes[i];
+					}
+					end = length;
+				}
+				finally {
+					raf.close();
+				}
+			}
+			catch( IOException e ) {
+				Logger.warn("Unable to read log file: '%s' - %s", file, e.getMessage());
+			}
+		}
+
+		synchronized Chunk read( long offset ) {
+			refresh();
+
+			Chunk result = new Chunk();
+			long start = Math.max(0, Math.min(offset, end));
+			long first = Math.max(0, end - buffer.length);
+			if( start < first ) {
+				result.truncated = true;
+				start = first;
+			}
+
+			/* a truncated chunk could start in the middle of a multibyte character */
+			while( start < end && isContinuation(byteAt(start)) ) {
+				start++;
+			}
+
+			byte[] bytes = new byte[(int)(end - start)];
+			for( int i=0; i<bytes.length; i++ ) {
+				bytes[i] = byteAt(start + i);
+			}
+
+			/* the incomplete trailing character is returned by the next chunk */
+			int len = boundary(bytes);
+
+			result.offset = start;
+			result.next = start + len;
+			try {
+				result.text = new String(bytes, 0, len, "UTF-8");
+			}
+			catch( UnsupportedEncodingException e ) {
+				result.text = new String(bytes, 0, len);
+			}
+			return result;
+		}
+
+		byte byteAt( long offset ) {
+			return buffer[ (int)(offset % buffer.length) ];
+		}
+	}
+
+	static boolean isContinuation( byte b ) {
+		return (b & 0xC0) == 0x80;
+	}
+
+	/**
+	 * @return the length of the longest prefix of the specified UTF-8 bytes that does not end
+	 * with an incomplete multibyte character
+	 */
+	static int boundary( byte[] bytes ) {
+		/* find out the first byte of the last character */
+		int i = bytes.length-1;
+		while( i >= 0 && bytes.length-i < 4 && isContinuation(bytes[i]) ) {
+			i--;
+		}
+		if( i < 0 ) {
+			return bytes.length;
+		}
+
+		int b = bytes[i] & 0xFF;
+		int size = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+		return bytes.length-i < size ? i : bytes.length;
+	}
+
+	final Ring out;
+
+	final Ring err;
+
+	LogTail( File out, File err, int capacity ) {
+		this.out = new Ring(out, capacity);
+		this.err = new Ring(err, capacity);
+	}
+
+	/**
+	 * Start to keep the tail of the specified job output files
+	 *
+	 * @param rid the request unique identifier
+	 * @param out the standard output file, it can be <code>null</code>
+	 * @param err the standard error file, it can be <code>null</code>
+	 */
+	public static LogTail register( String rid, File out, File err ) {
+		Check.notEmpty(rid, "Argument 'rid' cannot be empty");
+
+		int capacity = AppProps.instance().getInteger("tail.buffer.size", DEFAULT_BUFFER_SIZE);
+		LogTail result = new LogTail(out, err, Math.max(1024, capacity));
+		ACTIVE.put(rid, result);
+		return result;
+	}
+
+	/**
+	 * @return the tail of the specified job or <code>null</code> if it is not running (anymore)
+	 */
+	public static LogTail get( String rid ) {
+		return rid != null ? ACTIVE.get(rid) : null;
+	}
+
+	/**
+	 * Stop to follow the output of the specified job
+	 */
+	public static void release( String rid ) {
+		if( rid != null ) {
+			ACTIVE.remove(rid);
+		}
+	}
+
+	/**
+	 * @param offset the offset of the first byte to return, usually the {@link Chunk#next} value of the previous chunk
+	 * @return the standard output content from the specified offset
+	 */
+	public Chunk readOut( long offset ) {
+		return out.read(offset);
+	}
+
+	/**
+	 * @param offset the offset of the first byte to return, usually the {@link Chunk#next} value of the previous chunk
+	 * @return the standard error content from the specified offset
+	 */
+	public Chunk readErr( long offset ) {
+		return err.read(offset);
+	}
+
+}
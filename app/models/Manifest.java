@@ -0,0 +1,384 @@
+package models;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import play.Logger;
+import util.Check;
+import exception.QuickException;
+
+/**
+ * Compact binary codec used to store the {@link OutResult} and {@link Input} objects in the
+ * request repository, in place of the XStream XML serialization.
+ * <p>
+ * The format is made up of a 4 bytes header (the <code>TSM</code> magic followed by the format version),
+ * a byte defining the kind of the stored object and the object fields, written in a fixed order.
+ * Strings are stored as the UTF-8 bytes length (<code>-1</code> for <code>null</code>) followed by the bytes.
+ * <p>
+ * Only the input fields values are stored (type, name, value, label and file), the fields
+ * definitions are provided by the service declaration, see {@link Input#bindValues(Input)}.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class Manifest {
+
+	static final byte[] MAGIC = { 'T', 'S', 'M' };
+
+	static final byte VERSION = 1;
+
+	static final byte KIND_RESULT = 'R';
+
+	static final byte KIND_INPUT = 'I';
+
+	/**
+	 * @param file the file to check
+	 * @return <code>true</code> when the file content is in the manifest format, <code>false</code> otherwise (legacy XML)
+	 */
+	public static boolean isManifest( File file ) {
+		if( file == null || !file.exists() ) return false;
+
+		byte[] header = new byte[MAGIC.length];
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			int len = in.read(header);
+			if( len != MAGIC.length ) return false;
+			for( int i=0; i<MAGIC.length; i++ ) {
+				if( header[i] != MAGIC[i] ) return false;
+			}
+			return true;
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to read file: '%s'", file);
+		}
+		finally {
+			if( in != null ) try { in.close(); } catch( IOException e ) { /* ignore */ }
+		}
+	}
+
+	/**
+	 * Save the result object
+	 *
+	 * @param result the object to save
+	 * @param file the target file, it is replaced atomically
+	 */
+	public static void write( OutResult result, File file ) {
+		Check.notNull(result, "Argument 'result' cannot be null");
+
+		Output out = create(file, KIND_RESULT);
+		try {
+			List<OutItem> items = result.getItems();
+			out.writeInt(items.size());
+			for( OutItem item : items ) {
+				writeString(out, item.webpath);
+				writeString(out, item.label);
+				writeString(out, item.type);
+				writeString(out, item.name);
+				writeFile(out, item.file);
+				writeString(out, item.format);
+				writeString(out, item.aggregation);
+			}
+
+			out.writeLong(result.elapsedTime);
+			writeString(out, result.status != null ? result.status.name() : null);
+			writeString(out, result.bundle);
+			writeString(out, result.service);
+			writeString(out, result.title);
+			writeString(out, result.cite);
+			writeList(out, result.errors);
+			writeList(out, result.warnings);
+		}
+		catch( IOException e ) {
+			abort(out);
+			throw new QuickException(e, "Unable to write result file: '%s'", file);
+		}
+		commit(out, file);
+	}
+
+	/**
+	 * Read a result object saved with {@link #write(OutResult, File)}
+	 */
+	public static OutResult readResult( File file ) {
+		DataInputStream in = open(file, KIND_RESULT);
+		try {
+			OutResult result = new OutResult();
+			int count = in.readInt();
+			for( int i=0; i<count; i++ ) {
+				OutItem item = new OutItem();
+				item.webpath = readString(in);
+				item.label = readString(in);
+				item.type = readString(in);
+				item.name = readString(in);
+				item.file = readFile(in);
+				item.format = readString(in);
+				item.aggregation = readString(in);
+				result.add(item);
+			}
+
+			result.elapsedTime = in.readLong();
+			String status = readString(in);
+			result.status = status != null ? Status.valueOf(status) : null;
+			result.bundle = readString(in);
+			result.service = readString(in);
+			result.title = readString(in);
+			result.cite = readString(in);
+			result.errors = readList(in);
+			result.warnings = readList(in);
+			return result;
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to read result file: '%s'", file);
+		}
+		finally {
+			close(in);
+		}
+	}
+
+	/**
+	 * Save the input fields values
+	 *
+	 * @param input the object to save
+	 * @param file the target file, it is replaced atomically
+	 */
+	public static void write( Input input, File file ) {
+		Check.notNull(input, "Argument 'input' cannot be null");
+
+		Output out = create(file, KIND_INPUT);
+		try {
+			List<Fieldset> sets = input.fieldsets();
+			out.writeInt(sets.size());
+			for( Fieldset set : sets ) {
+				writeString(out, set.title);
+				writeString(out, set.description);
+				out.writeBoolean(set.hideable);
+
+				List<Field> fields = set.fields();
+				out.writeInt(fields.size());
+				for( Field field : fields ) {
+					writeString(out, field.type);
+					writeString(out, field.name);
+					writeString(out, field.value);
+					writeString(out, field.label);
+					writeFile(out, field.getFile());
+				}
+			}
+		}
+		catch( IOException e ) {
+			abort(out);
+			throw new QuickException(e, "Unable to write input file: '%s'", file);
+		}
+		commit(out, file);
+	}
+
+	/**
+	 * Read the input values saved with {@link #write(Input, File)}
+	 */
+	public static Input readInput( File file ) {
+		DataInputStream in = open(file, KIND_INPUT);
+		try {
+			Input result = new Input();
+			int sets = in.readInt();
+			for( int i=0; i<sets; i++ ) {
+				Fieldset set = new Fieldset();
+				set.title = readString(in);
+				set.description = readString(in);
+				set.hideable = in.readBoolean();
+
+				int fields = in.readInt();
+				for( int j=0; j<fields; j++ ) {
+					Field field = new Field();
+					field.type = readString(in);
+					field.name = readString(in);
+					field.value = readString(in);
+					field.label = readString(in);
+					field.setFile(readFile(in));
+					set.add(field);
+				}
+				result.add(set);
+			}
+			return result;
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to read input file: '%s'", file);
+		}
+		finally {
+			close(in);
+		}
+	}
+
+	/*
+	 * the codec primitives
+	 */
+
+	/**
+	 * The stream writing the temporary file that replaces the target one on {@link Manifest#commit(Output, File)}
+	 */
+	static class Output extends DataOutputStream {
+
+		final File temp;
+
+		Output( File temp ) throws IOException {
+			super(new BufferedOutputStream(new FileOutputStream(temp)));
+			this.temp = temp;
+		}
+	}
+
+	static Output create( File file, byte kind ) {
+		File temp = null;
+		Output out = null;
+		try {
+			temp = temp(file);
+			out = new Output(temp);
+			out.write(MAGIC);
+			out.writeByte(VERSION);
+			out.writeByte(kind);
+			return out;
+		}
+		catch( IOException e ) {
+			close(out);
+			if( temp != null ) temp.delete();
+			throw new QuickException(e, "Unable to create file: '%s'", file);
+		}
+	}
+
+	static DataInputStream open( File file, byte kind ) {
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			byte[] header = new byte[MAGIC.length];
+			in.readFully(header);
+			byte version = in.readByte();
+			byte found = in.readByte();
+			for( int i=0; i<MAGIC.length; i++ ) {
+				if( header[i] != MAGIC[i] ) throw new QuickException("Not a manifest file: '%s'", file);
+			}
+			if( version > VERSION ) {
+				throw new QuickException("Unsupported manifest version %s in file: '%s'", version, file);
+			}
+			if( found != kind ) {
+				throw new QuickException("Unexpected manifest kind '%s' in file: '%s'", (char)found, file);
+			}
+			return in;
+		}
+		catch( IOException e ) {
+			close(in);
+			throw new QuickException(e, "Unable to read file: '%s'", file);
+		}
+		catch( RuntimeException e ) {
+			close(in);
+			throw e;
+		}
+	}
+
+	/**
+	 * Create a uniquely named temporary file in the same folder of the specified one, so that concurrent
+	 * writers never share it and it can be renamed atomically to the target file
+	 */
+	static File temp( File file ) throws IOException {
+		return File.createTempFile(file.getName() + ".", ".tmp", file.getAbsoluteFile().getParentFile());
+	}
+
+	/**
+	 * Close the temporary file and replace the target one with it
+	 */
+	static void commit( Output out, File file ) {
+		try {
+			out.close();
+		}
+		catch( IOException e ) {
+			out.temp.delete();
+			throw new QuickException(e, "Unable to write file: '%s'", file);
+		}
+
+		File temp = out.temp;
+		if( !temp.renameTo(file) ) {
+			/* some platforms do not replace an existing file on rename */
+			file.delete();
+			if( !temp.renameTo(file) ) {
+				temp.delete();
+				throw new QuickException("Unable to rename '%s' to '%s'", temp, file);
+			}
+		}
+	}
+
+	/**
+	 * Close and discard the temporary file
+	 */
+	static void abort( Output out ) {
+		close(out);
+		out.temp.delete();
+	}
+
+	static void close( Closeable stream ) {
+		if( stream != null ) try {
+			stream.close();
+		}
+		catch( IOException e ) {
+			Logger.warn("Error closing manifest stream - %s", e.getMessage());
+		}
+	}
+
+	static void writeString( DataOutputStream out, String value ) throws IOException {
+		if( value == null ) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString( DataInputStream in ) throws IOException {
+		int len = in.readInt();
+		if( len < 0 ) {
+			return null;
+		}
+		byte[] bytes = new byte[len];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	static void writeFile( DataOutputStream out, File file ) throws IOException {
+		writeString(out, file != null ? file.getPath() : null);
+	}
+
+	static File readFile( DataInputStream in ) throws IOException {
+		String path = readString(in);
+		return path != null ? new File(path) : null;
+	}
+
+	static void writeList( DataOutputStream out, List<String> list ) throws IOException {
+		if( list == null ) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(list.size());
+		for( String item : list ) {
+			writeString(out, item);
+		}
+	}
+
+	static List<String> readList( DataInputStream in ) throws IOException {
+		int len = in.readInt();
+		if( len < 0 ) {
+			return null;
+		}
+		List<String> result = new ArrayList<String>(len);
+		for( int i=0; i<len; i++ ) {
+			result.add(readString(in));
+		}
+		return result;
+	}
+
+}
@@ -2,13 +2,13 @@ package models;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.util.Iterator;
 
 import org.blackcoffee.commons.utils.ReaderIterator;
 
-import play.libs.IO;
 import play.templates.JavaExtensions;
 import plugins.AutoBean;
 import util.Check;
@@ -139,11 +139,11 @@ public class OutItem implements Serializable {
 
 	
 	/**
-	 * Check that the file exists on the file system 
+	 * Check that the file exists on the file system or in the archive of its repository
 	 * @return
 	 */
 	public boolean exists() {
-		return file != null && file.exists();
+		return file != null && (file.exists() || RepoArchive.length(file) >= 0);
 	} 
 	
 	
@@ -178,15 +178,16 @@ public class OutItem implements Serializable {
 	}
 	
 	public String content() {
-		return file != null ? IO.readContentAsString(file) : null;
+		return file != null ? RepoArchive.readContent(file) : null;
 	} 
 	
 	public String toLine() throws FileNotFoundException {
 
-		if( file == null || !file.exists() || !file.isFile() ) return null;
+		InputStream in = file != null ? RepoArchive.open(file) : null;
+		if( in == null ) return null;
 		
 		StringBuilder result = new StringBuilder();
-		Iterator<String> it = new ReaderIterator(new FileReader(file)).iterator();
+		Iterator<String> it = new ReaderIterator(new InputStreamReader(in)).iterator();
 		while( it.hasNext() ) {
 			result.append(it.next().trim());
 		}
@@ -195,6 +196,10 @@ public class OutItem implements Serializable {
 	} 
 	
 	public long size() { 
-		return file != null && file.exists() ? file.length() : 0;
+		if( file == null ) return 0;
+		if( file.exists() ) return file.length();
+
+		/* the file can be packed in the repository archive */
+		return Math.max(RepoArchive.length(file), 0);
 	}
 }
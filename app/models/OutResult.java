@@ -70,15 +70,14 @@ public class OutResult implements Serializable {
 		return Utils.firstItem(items(), "name", name);
 	}
 	
-	private List<OutItem> items() {
-		//TODO manage concurrency 
+	private synchronized List<OutItem> items() {
 		if( _items == null ) {
 			_items = new ArrayList<OutItem>();
 		}
 		return _items;
 	}
 	
-	public void add(OutItem item) {
+	public synchronized void add(OutItem item) {
 		Check.notNull("Argument 'item' cannot be null");
 		items().add(item);
 	}
@@ -131,7 +130,7 @@ public class OutResult implements Serializable {
 	}
 	
 
-	public void addAll(OutResult that) {
+	public synchronized void addAll(OutResult that) {
 		if( that == null ) { return; }
 
 		if( that.errors != null ) {
@@ -147,7 +146,7 @@ public class OutResult implements Serializable {
 		}
 	}
 	
-	public void addAll(List<OutItem> result) {
+	public synchronized void addAll(List<OutItem> result) {
 		Check.notNull(result, "Argument result cannot be null");
 		items().addAll(result);
 	}
@@ -189,7 +188,7 @@ public class OutResult implements Serializable {
 		return  Utils.firstItem(items(), "type", "stderr");
 	} 
 	
-	public void addError( String message ) {
+	public synchronized void addError( String message ) {
 		if( StringUtils.isBlank(message)) return;
 		
 		if( errors == null ) {
@@ -199,7 +198,7 @@ public class OutResult implements Serializable {
 		errors.add(message);
 	}
 	
-	public void addErrors( List<String> errors ) {
+	public synchronized void addErrors( List<String> errors ) {
 		if( errors == null ) return;
 		
 		
@@ -210,7 +209,7 @@ public class OutResult implements Serializable {
 		this.errors.addAll(errors);
 	}
 	
-	public void clearErrors() {
+	public synchronized void clearErrors() {
 		if( errors != null ) {
 			errors.clear();
 		}
@@ -221,7 +220,7 @@ public class OutResult implements Serializable {
 	}
 
 	
-	public void addWarning( String warn ) {
+	public synchronized void addWarning( String warn ) {
 		if( StringUtils.isBlank(warn) ) return;
 		
 		if( this.warnings == null ) {
@@ -231,7 +230,7 @@ public class OutResult implements Serializable {
 		this.warnings.add(warn);
 	}
 
-	public void addWarnings( List<String> warns) {
+	public synchronized void addWarnings( List<String> warns) {
 		if( warns == null ) return;
 		
 		
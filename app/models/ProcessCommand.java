@@ -2,14 +2,23 @@ package models;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import job.WorkerPool;
 import util.Utils;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamImplicit;
+import com.thoughtworks.xstream.annotations.XStreamOmitField;
 
 import exception.CommandException;
+import exception.QuickException;
 
 /**
  * Execute a sequence of commands 
@@ -23,6 +32,9 @@ public class ProcessCommand extends AbstractCommand implements Serializable {
 	@XStreamImplicit
 	public List<AbstractCommand> commands;
 	
+	@XStreamOmitField 
+	transient Map<AbstractCommand,List<AbstractCommand>> fDependencies;
+	
 	/** The default constructor */
 	public ProcessCommand() {}
 	
@@ -51,17 +63,24 @@ public class ProcessCommand extends AbstractCommand implements Serializable {
 		for( AbstractCommand cmd : commands ) {
 			cmd.init(ctx);
 		}
+		
+		/* validate the declared dependencies */
+		fDependencies = null;
+		dependencies();
 	}
 	
 	/**
-	 * Run che process invoking the run method on each single command 
+	 * Run che process invoking the run method on each single command. 
+	 * <p>
+	 * When dependencies are declared the commands are executed in a topological order
 	 * 
 	 * @throws CommandException 
 	 */
 	@Override
 	protected boolean run() throws CommandException {
-
-		for( AbstractCommand cmd : commands ) {
+		
+		List<AbstractCommand> list = isGraph() ? sorted() : commands;
+		for( AbstractCommand cmd : list ) {
 			boolean fail = !cmd.execute();
 
 			if( fail ) { 
@@ -74,6 +93,251 @@ public class ProcessCommand extends AbstractCommand implements Serializable {
 	}
 	
 	
+	/**
+	 * Run the process commands one after the other, without blocking the current thread 
+	 * when a command terminates asynchronously. The listener is notified when the 
+	 * last command terminates or as soon as a command fails.
+	 * <p>
+	 * When the commands declare their dependencies (see {@link AbstractCommand#depends}) 
+	 * each command is executed on the {@link WorkerPool} as soon as all the commands 
+	 * it depends on have completed successfully.   
+	 */
+	@Override
+	public void execute( final CommandListener listener ) {
+		startTime = System.currentTimeMillis();
+		
+		if( isGraph() ) {
+			new GraphRun(listener).schedule();
+		}
+		else {
+			next(0, listener);
+		}
+	}
+	
+	void next( final int index, final CommandListener listener ) {
+		
+		if( index >= size() ) {
+			complete(true, listener);
+			return;
+		}
+		
+		commands.get(index).execute(new CommandListener() {
+
+			public void completed(AbstractCommand command, boolean success) {
+				if( success ) {
+					next(index+1, listener);
+				}
+				else {
+					complete(false, listener);
+				}
+			}
+
+			public void failed(AbstractCommand command, Exception error) {
+				elapsedTime = System.currentTimeMillis() - startTime;
+				listener.failed(ProcessCommand.this, error);
+			}
+		});
+	}
+	
+	/**
+	 * Keeps the state of a dependency graph execution 
+	 */
+	class GraphRun implements CommandListener {
+		
+		final CommandListener listener;
+		
+		final Service service = Service.current();
+		
+		final List<AbstractCommand> pending = new ArrayList<AbstractCommand>(commands);
+		
+		final Set<AbstractCommand> completed = Collections.newSetFromMap(new IdentityHashMap<AbstractCommand, Boolean>());
+		
+		int running;
+		
+		boolean success = true;
+		
+		Exception error;
+		
+		boolean terminated;
+		
+		GraphRun( CommandListener listener ) { 
+			this.listener = listener;
+		}
+		
+		/**
+		 * Submit all the commands whose dependencies have been satisfied and 
+		 * notify the process termination when nothing else can be executed 
+		 */
+		void schedule() { 
+			List<AbstractCommand> ready = new ArrayList<AbstractCommand>();
+			boolean end = false;
+			
+			synchronized (this) {
+				if( success && error == null ) {
+					Iterator<AbstractCommand> it = pending.iterator();
+					while( it.hasNext() ) { 
+						AbstractCommand cmd = it.next();
+						if( completed.containsAll(dependencies().get(cmd)) ) { 
+							ready.add(cmd);
+							it.remove();
+						}
+					}
+					running += ready.size();
+				}
+				
+				if( running == 0 && !terminated ) { 
+					terminated = end = true;
+				}
+			}
+			
+			for( AbstractCommand cmd : ready ) { 
+				submit(cmd);
+			}
+			
+			if( end ) { 
+				terminate();
+			}
+		}
+		
+		void submit( final AbstractCommand cmd ) { 
+			WorkerPool.instance().execute(new Runnable() {
+				public void run() {
+					Service.current(service);
+					try { 
+						cmd.execute(GraphRun.this);
+					}
+					catch( Exception e ) { 
+						failed(cmd, e);
+					}
+					finally { 
+						Service.release();
+					}
+				}
+			});
+		}
+		
+		void terminate() { 
+			if( error != null ) { 
+				elapsedTime = System.currentTimeMillis() - startTime;
+				listener.failed(ProcessCommand.this, error);
+			}
+			else { 
+				complete(success, listener);
+			}
+		}
+
+		public void completed(AbstractCommand command, boolean result) {
+			synchronized (this) {
+				running--;
+				completed.add(command);
+				success = success && result;
+			}
+			schedule();
+		}
+
+		public void failed(AbstractCommand command, Exception e) {
+			synchronized (this) {
+				running--;
+				if( error == null ) { error = e; }
+			}
+			schedule();
+		}
+	}
+	
+	/** 
+	 * @return <code>true</code> when at least one command declares its dependencies 
+	 */
+	boolean isGraph() {
+		if( !hasCommands() ) return false;
+		
+		for( AbstractCommand cmd : commands ) { 
+			if( cmd.depends != null ) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Resolve the dependencies declared by the process commands. 
+	 * 
+	 * @return a map associating each command to the list of commands it depends on 
+	 * @throws QuickException when a dependency cannot be resolved or the dependencies declare a cycle 
+	 */
+	synchronized Map<AbstractCommand,List<AbstractCommand>> dependencies() { 
+		if( fDependencies != null ) { 
+			return fDependencies;
+		}
+
+		Map<String,AbstractCommand> ids = new HashMap<String, AbstractCommand>();
+		for( AbstractCommand cmd : commands ) {
+			if( Utils.isEmpty(cmd.id) ) continue;
+
+			if( ids.put(cmd.id, cmd) != null ) {
+				throw new QuickException("Duplicate process command id: '%s'", cmd.id);
+			}
+		}
+		
+		Map<AbstractCommand,List<AbstractCommand>> result = new IdentityHashMap<AbstractCommand, List<AbstractCommand>>();
+		AbstractCommand previous = null;
+		for( AbstractCommand cmd : commands ) { 
+			List<AbstractCommand> list = new ArrayList<AbstractCommand>();
+			if( cmd.depends == null ) { 
+				/* by default depends on the previous command */
+				if( previous != null ) list.add(previous);
+			}
+			else { 
+				for( String name : cmd.depends.split("[,\\s]+") ) { 
+					if( Utils.isEmpty(name) ) continue;
+					
+					AbstractCommand target = ids.get(name);
+					if( target == null ) { 
+						throw new QuickException("Unknown dependency '%s' declared by process command '%s'", name, Utils.isNotEmpty(cmd.id) ? cmd.id : cmd.getClass().getSimpleName());
+					}
+					list.add(target);
+				}
+			}
+
+			result.put(cmd, list);
+			previous = cmd;
+		}
+		
+		fDependencies = result;
+		sorted(); // <-- check for cycles 
+		return result;
+	}
+	
+	/**
+	 * @return the process commands in a topological order, i.e. each command follows all the commands it depends on
+	 */
+	List<AbstractCommand> sorted() { 
+		Map<AbstractCommand,List<AbstractCommand>> deps = dependencies();
+		
+		List<AbstractCommand> result = new ArrayList<AbstractCommand>(size());
+		Set<AbstractCommand> visited = Collections.newSetFromMap(new IdentityHashMap<AbstractCommand, Boolean>());
+		List<AbstractCommand> pending = new ArrayList<AbstractCommand>(commands);
+		
+		while( pending.size() > 0 ) { 
+			boolean found = false;
+			Iterator<AbstractCommand> it = pending.iterator();
+			while( it.hasNext() ) { 
+				AbstractCommand cmd = it.next();
+				if( visited.containsAll(deps.get(cmd)) ) { 
+					result.add(cmd);
+					visited.add(cmd);
+					it.remove();
+					found = true;
+				}
+			}
+			
+			if( !found ) { 
+				throw new QuickException("Process commands declare circular dependencies");
+			}
+		}
+		
+		return result;
+	}
+	
 	public void add( AbstractCommand cmd ) { 
 		if( cmd == null ) return;
 
@@ -81,6 +345,7 @@ public class ProcessCommand extends AbstractCommand implements Serializable {
 			commands = new ArrayList<AbstractCommand>();
 		}
 		commands.add(cmd);
+		fDependencies = null;
 	}
 	
 	public void addAll( ProcessCommand that ) {
@@ -92,6 +357,7 @@ public class ProcessCommand extends AbstractCommand implements Serializable {
 		}
 		
 		commands.addAll( that.commands ); 
+		fDependencies = null;
 	}
 	
 	public int size() { 
@@ -9,6 +9,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import job.ClusterJobMonitor;
+import job.QstatMonitor;
 import play.Logger;
 import play.Play;
 import play.exceptions.UnexpectedException;
@@ -32,6 +34,9 @@ import exception.CommandException;
 @XStreamAlias("qsub")
 public class QsubCommand extends AbstractShellCommand {
 	
+	/** the file where the job script saves the target command exit code in async mode */
+	static final String EXIT_FILE = "_qsub.exit";
+	
 	@XStreamImplicit
 	List<AbstractShellCommand> _commands;
 
@@ -46,11 +51,20 @@ public class QsubCommand extends AbstractShellCommand {
 	
 	@XStreamOmitField private File fJobFile; 
 	@XStreamOmitField private AbstractShellCommand command;
+	
+	/** number of tasks when the target command is submitted as an array job */
+	@XStreamOmitField private int fTasks;
 
 	private String jobid;
 	
 	public Boolean disabled;
 	
+	/**
+	 * When <code>true</code> the job is submitted without waiting for its termination 
+	 * (no <code>-sync y</code>), the job status is checked periodically by the {@link QstatMonitor}
+	 */
+	public Boolean async;
+	
 	/** 
 	 * template string can be used to 'post-process' the command to be executed in the qsub script
 	 */
@@ -65,6 +79,7 @@ public class QsubCommand extends AbstractShellCommand {
 		this.queue = that.queue;
 		this.jobname = that.jobname;
 		this.jobfile = that.jobfile;
+		this.async = that.async;
 	}
 	
 	public QsubCommand( AbstractShellCommand target ) { 
@@ -88,6 +103,16 @@ public class QsubCommand extends AbstractShellCommand {
 		return jobid;
 	}
 	
+	@Override
+	File getOutputFile() {
+		return command != null ? command.getOutputFile() : super.getOutputFile();
+	}
+	
+	@Override
+	File getErrorFile() {
+		return command != null ? command.getErrorFile() : super.getErrorFile();
+	}
+	
 	public boolean getDisabled() { 
 		if( disabled != null ) { 
 			return disabled;
@@ -98,6 +123,15 @@ public class QsubCommand extends AbstractShellCommand {
 		return disabled;
 	}
 	
+	public boolean getAsync() { 
+		if( async != null ) { 
+			return async;
+		}
+		
+		async = "true".equals(AppProps.instance().getString("qsub.async"));
+		return async;
+	}
+	
 	public String getWrapper() { 
 		if( wrapper != null ) { 
 			return wrapper;
@@ -208,12 +242,27 @@ public class QsubCommand extends AbstractShellCommand {
 			}
 		}
 
-		/* write the command and save */
-		String cmd = command.getCmdLine();
+		/* 
+		 * write the command and save, commands made up of independent tasks 
+		 * are submitted as an array job, one task for each 
+		 */
+		fTasks = command.getTaskCount();
+		String cmd = fTasks > 1 
+				? command.getTaskCmdLine("$SGE_TASK_ID")
+				: command.getCmdLine();
 		if( Utils.isNotEmpty(wrapper)) { 
 			cmd = String.format(wrapper, cmd);
 		}
 		script.append(cmd);
+		if( getAsync() ) { 
+			/* save the exit code, it is not returned by qsub when running asynchronously */
+			script.append("\n");
+			script.append("echo $? > ").append(EXIT_FILE);
+			if( fTasks > 1 ) { 
+				script.append(".$SGE_TASK_ID");
+			}
+			script.append("\n");
+		}
 
 		/* save the qsub script */
 		Utils.write(script, fJobFile);
@@ -227,10 +276,16 @@ public class QsubCommand extends AbstractShellCommand {
 		StringBuilder result = new StringBuilder();
 		result .append("qsub ");
 		result .append("-cwd ");
-		result .append("-sync y ");
+		if( !getAsync() ) { 
+			result .append("-sync y ");
+		}
 		result .append("-r no ");
 		result .append("-terse ");
 		result .append("-q ") .append(queue) .append(" ");
+		
+		if( fTasks > 1 ) { 
+			result .append("-t 1-") .append(fTasks) .append(" ");
+		}
 
 		if( targetOutFile != null ) {
 			result .append("-o ") .append(targetOutFile.getName()) .append(" ");
@@ -248,6 +303,14 @@ public class QsubCommand extends AbstractShellCommand {
 		return  result.toString();
 	}
 	
+	/**
+	 * When disabled the nested command is executed by {@link #run()} 
+	 */
+	@Override
+	protected boolean isSupervised() {
+		return !getDisabled();
+	}
+	
 	@Override
 	public boolean run() throws CommandException {
 		return (disabled)
@@ -255,6 +318,69 @@ public class QsubCommand extends AbstractShellCommand {
 				: super.run();
 	}
 	
+	/**
+	 * In async mode submit the job and return immediately, the listener is notified 
+	 * by the {@link QstatMonitor} thread when the job terminates
+	 */
+	@Override
+	public void execute(final CommandListener listener) {
+		if( getDisabled() || !getAsync() ) { 
+			super.execute(listener);
+			return;
+		}
+		
+		startTime = System.currentTimeMillis();
+		boolean submitted;
+		try { 
+			submitted = super.run() && parseResultFile();
+		}
+		catch( Exception e ) { 
+			listener.failed(this, e);
+			return;
+		}
+		
+		if( !submitted ) { 
+			complete(false, listener);
+			return;
+		}
+		
+		Logger.debug("Submitted qsub job: %s", jobid);
+		final Service service = Service.current();
+		/* array jobs are reported like '123.1-10:1' */
+		String id = jobid.contains(".") ? jobid.substring(0, jobid.indexOf('.')) : jobid;
+		QstatMonitor.instance().watch(id, getTimeout(), new ClusterJobMonitor.Handler() {
+			
+			public void terminated(String jobid, final boolean failed) {
+				Runnable task = new Runnable() {
+					public void run() {
+						Integer exit = readExitCode();
+						complete( !failed && exit != null && exit == validCode, listener );
+					}
+				};
+
+				/* continue the service execution in a job thread */
+				resume(service, task);
+			}
+		});
+	}
+	
+	Integer readExitCode() { 
+		if( fTasks <= 1 ) { 
+			return readExitCode( new File(ctxfolder, EXIT_FILE) );
+		}
+		
+		/* 
+		 * array job: the first task terminated with an error determines the result 
+		 */
+		for( int i=1; i<=fTasks; i++ ) { 
+			Integer exit = readExitCode( new File(ctxfolder, EXIT_FILE + "." + i) );
+			if( exit == null || exit != validCode ) { 
+				return exit;
+			}
+		}
+		return validCode;
+	}
+	
 	@Override
 	protected boolean done(boolean success) {
 		
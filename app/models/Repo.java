@@ -10,8 +10,10 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import org.apache.commons.io.FileUtils;
 import org.blackcoffee.commons.utils.StringIterator;
@@ -19,8 +21,12 @@ import org.blackcoffee.commons.utils.StringIterator;
 import play.Logger;
 import play.libs.IO;
 import util.Check;
+import util.FileOps;
 import util.Utils;
 import util.XStreamHelper;
+import job.ExpiryQueue;
+import job.JobScheduler;
+import job.ProcessSupervisor;
 import exception.QuickException;
 
 public class Repo implements Serializable {
@@ -35,6 +41,12 @@ public class Repo implements Serializable {
 	
 	private static final String CREATION_FILE_NAME = ".creation-time";
 	
+	/** the 128-bit request-ids, stored in the sharded layout <code>ab/cd/abcd...</code> */
+	private static final Pattern WIDE_RID = Pattern.compile("[0-9a-f]{32}");
+	
+	/** the name of the shard folders */
+	private static final Pattern SHARD_NAME = Pattern.compile("[0-9a-f]{2}");
+	
 	String rid;
 	
 	File fRoot;
@@ -60,7 +72,7 @@ public class Repo implements Serializable {
 	}
 
 	public Repo( final String rid, final boolean create ) {
-		this(new File(AppProps.instance().getDataPath(),rid),create);
+		this(folderFor(rid),create);
 	}
 	
 	protected Repo( final File folder, final boolean create ) {
@@ -110,14 +122,20 @@ public class Repo implements Serializable {
 		
 		//TODO check if FileLock api does a better work 
 		
+		boolean result;
 		try {
-			return fLock.createNewFile();
+			result = fLock.createNewFile();
 		}
 		catch( IOException e ) {
 			/* otherwise is an unexecptected condition */
 			throw new QuickException("Unable to create .lock file for context folder '%s'", rid); 
 		}
 		
+		RepoIndex.Entry entry;
+		if( result && (entry=RepoIndex.instance().get(this)) != null ) {
+			entry.locked = true;
+		}
+		return result;
 	}
 	
 	/** Release the lock on the context folder */
@@ -131,6 +149,16 @@ public class Repo implements Serializable {
 		if( !fLock.delete() ) {
 			throw new QuickException("Unable to delete .lock file for context folder '%s'", rid);
 		}
+
+		RepoIndex.Entry entry = RepoIndex.instance().get(this);
+		if( entry != null ) {
+			entry.locked = false;
+			ExpiryQueue.instance().schedule(rid, entry.getExpirationTime());
+			if( entry.hasResult() ) {
+				ExpiryQueue.instance().clean(rid);
+				ColdTier.instance().migrateLater(this);
+			}
+		}
 	}
 	
 	public boolean exists() {
@@ -152,27 +180,28 @@ public class Repo implements Serializable {
 		return new File(fRoot, path);
 	}
 	
+	/**
+	 * @return the repository status, looked up in the {@link RepoIndex}
+	 */
 	public Status getStatus() {
-		if( !fRoot.exists() || !fMarker.exists()) {
+		RepoIndex.Entry entry = RepoIndex.instance().get(this);
+		if( entry == null ) {
 			return Status.UNKNOWN;
 		}
 		
-		if( fLock.exists() ) {
-			return Status.RUNNING;
+		if( entry.locked ) {
+			return JobScheduler.instance().isQueued(rid) ? Status.QUEUED : Status.RUNNING;
 		}
 		
-		if( fResult.exists() ) {
-			try {
-				OutResult out = XStreamHelper.fromXML(fResult);
-				return out.status!=null ? out.status : Status.UNKNOWN;
-			} 
-			catch( Exception e ) {
-				Logger.warn("Error on parsing result file: '%s'. Caused by: %s", fResult, e);
-				return Status.UNKNOWN;
-			}
-		}
-
-		return Status.READY;
+		return entry.status != null ? entry.status : Status.READY;
+	}
+	
+	/**
+	 * @return the indexed state of this repository, including the result summary, 
+	 * or <code>null</code> if the repository does not exist
+	 */
+	public RepoIndex.Entry getSummary() {
+		return RepoIndex.instance().get(this);
 	}
 	
 	public boolean isTerminated() {
@@ -180,8 +209,22 @@ public class Repo implements Serializable {
 		return Status.DONE.equals(status) || Status.FAILED.equals(status); 
 	}
 	
+	/**
+	 * Check if the request has a result, downloading it from the cold tier when it is not available locally
+	 */
 	public boolean hasResult() {
-		return fResult != null && fResult.exists() && isTerminated();
+		RepoIndex.Entry entry = RepoIndex.instance().fetch(this);
+		return entry != null && entry.hasResult() && isTerminated();
+	}
+
+	/**
+	 * Download the repository from the cold tier when it is not available locally. It has to be invoked 
+	 * when the result is explicitly requested, since {@link #getStatus()} does not access the cold tier.
+	 *
+	 * @return <code>true</code> when the repository exists, <code>false</code> otherwise
+	 */
+	public boolean fetch() {
+		return RepoIndex.instance().fetch(this) != null;
 	}
 	
 	public boolean isExpired() {
@@ -211,7 +254,38 @@ public class Repo implements Serializable {
 	 */
 
 	public OutResult getResult() {
-		return (OutResult) (fResult.exists() ? XStreamHelper.fromXML(fResult) : null);
+		if( !fResult.exists() ) { 
+			return null;
+		}
+		
+		if( Manifest.isManifest(fResult) ) { 
+			return Manifest.readResult(fResult);
+		}
+		
+		/* legacy XML result, migrate it to the manifest format on first access */
+		OutResult result = XStreamHelper.fromXML(fResult);
+		try { 
+			Manifest.write(result, fResult);
+		}
+		catch( Exception e ) { 
+			Logger.warn("Unable to migrate result file: '%s' - %s", fResult, e.getMessage());
+		}
+		return result;
+	}
+	
+	/**
+	 * Read the result without migrating a legacy XML file, used to scan the repositories 
+	 * 
+	 * @return the {@link OutResult} instance contained in this Repo or <code>null</code> if it does not exist 
+	 */
+	OutResult readResult() { 
+		if( !fResult.exists() ) { 
+			return null;
+		}
+		
+		return Manifest.isManifest(fResult) 
+				? Manifest.readResult(fResult) 
+				: XStreamHelper.<OutResult>fromXML(fResult);
 	}
 	
 	/**
@@ -219,9 +293,84 @@ public class Repo implements Serializable {
 	 * @param out {@link OutResult} instance to save in this report 
 	 */
 	public void saveResult( OutResult out ) {
-		XStreamHelper.toXML(out, fResult);
+		Manifest.write(out, fResult);
+
+		RepoIndex.Entry entry = RepoIndex.instance().get(this);
+		if( entry != null ) {
+			entry.update(out);
+			ExpiryQueue.instance().schedule(rid, entry.getExpirationTime());
+			RepoIndex.instance().resize(entry, FileOps.sizeOf(fRoot));
+			WorkspaceQuota.instance().check();
+		}
 	} 
 	
+	/**
+	 * @param rid the request identifier
+	 * @return the repository folder path relative to the workspace. 128-bit ids are stored in a two levels 
+	 * sharded layout i.e. <code>ab/cd/abcd...</code>, while legacy (short) ids are stored directly in the workspace folder
+	 */
+	public static String pathFor( String rid ) {
+		Check.notEmpty(rid, "Argument 'rid' cannot be empty");
+		if( !WIDE_RID.matcher(rid).matches() ) {
+			return rid;
+		}
+		return rid.substring(0,2) + File.separator + rid.substring(2,4) + File.separator + rid;
+	}
+	
+	/**
+	 * @param rid the request identifier
+	 * @return the repository folder for the specified request-id 
+	 */
+	public static File folderFor( String rid ) {
+		return new File(AppProps.WORKSPACE_FOLDER, pathFor(rid));
+	}
+	
+	/**
+	 * Resolve a path relative to the workspace whose first component can be a request-id, for example 
+	 * <code>abcd.../result.html</code> is resolved to <code>ab/cd/abcd.../result.html</code>. 
+	 * Paths in the sharded layout and paths starting with a legacy request-id are returned unchanged. 
+	 * 
+	 * @param path a path relative to the workspace folder
+	 * @return the path relative to the workspace folder 
+	 */
+	public static String resolvePath( String path ) {
+		if( path == null ) return null;
+		
+		String str = path.startsWith("/") ? path.substring(1) : path;
+		int p = str.indexOf('/');
+		String first = p != -1 ? str.substring(0,p) : str;
+		if( !WIDE_RID.matcher(first).matches() ) {
+			return path;
+		}
+		
+		return pathFor(first) + (p != -1 ? str.substring(p) : "");
+	}
+	
+	/**
+	 * @return all the repository folders in the workspace, both in the sharded and legacy layout 
+	 */
+	static List<File> listFolders() {
+		List<File> result = new ArrayList<File>();
+		File[] files = AppProps.WORKSPACE_FOLDER.listFiles();
+		if( files != null ) for( File file : files ) {
+			if( isRepoFolder(file) ) {
+				result.add(file);
+			}
+			else if( file.isDirectory() && SHARD_NAME.matcher(file.getName()).matches() ) {
+				File[] shards = file.listFiles();
+				if( shards != null ) for( File shard : shards ) {
+					File[] repos = SHARD_NAME.matcher(shard.getName()).matches() ? shard.listFiles() : null;
+					if( repos != null ) for( File repo : repos ) {
+						if( isRepoFolder(repo) ) {
+							result.add(repo);
+						}
+					}
+				}
+			}
+		}
+		return result;
+	}
+	
 	File create( File folder ) {
 		if( folder.exists() ) {
 			Logger.warn("Cannot create an already existing folder: '%s'", folder.toString());
@@ -265,6 +414,7 @@ public class Repo implements Serializable {
 		
 		if( fail != null ) throw fail;
 		
+		RepoIndex.instance().load(this);
 		return folder;		
 	}
 	
@@ -278,6 +428,13 @@ public class Repo implements Serializable {
 	
 	void touch( long millis ) {
 		fMarker.setLastModified(millis);
+
+		RepoIndex.Entry entry = RepoIndex.instance().get(this);
+		if( entry != null ) {
+			/* read it back since the file system could truncate the timestamp precision */
+			entry.lastAccessedTime = fMarker.lastModified();
+			ExpiryQueue.instance().schedule(rid, entry.getExpirationTime());
+		}
 	}
 	
 	public File getInputFile() {
@@ -304,6 +461,11 @@ public class Repo implements Serializable {
 	 */
 	public void clean() {
 		
+		/* the content stored in the cold tier is not valid anymore */
+		if( ColdTier.isCold(fRoot) ) { 
+			ColdTier.instance().delete(this);
+		}
+		
 		File[] all = fRoot.listFiles();
 		if( all!=null ) for( File file : all ) {
 			
@@ -316,9 +478,56 @@ public class Repo implements Serializable {
 		
 		// reset the current folder timestamp
 		touch();
+		RepoIndex.instance().load(this);
 	}
 	
 
+	/**
+	 * @return <code>true</code> when the repository content has been packed in the archive container, see {@link RepoArchive}
+	 */
+	public boolean isArchived() {
+		return RepoArchive.isArchived(fRoot);
+	}
+
+	/**
+	 * Pack the content of a terminated repository in the archive container
+	 * 
+	 * @return <code>true</code> when the repository has been archived, <code>false</code> otherwise 
+	 */
+	public boolean archive() {
+		synchronized (rid.intern()) {
+			if( fLock.exists() || !fResult.exists() || isArchived() ) { 
+				return false;
+			}
+			
+			int count = RepoArchive.pack(this);
+			updateSize();
+			return count > 0;
+		}
+	}
+	
+	/**
+	 * Extract the archived content of this repository, so that its files can be accessed directly.
+	 * It does nothing when the repository is not archived.
+	 */
+	public void restore() {
+		if( !isArchived() ) return;
+
+		synchronized (rid.intern()) {
+			if( isArchived() ) { 
+				RepoArchive.unpack(this);
+				updateSize();
+			}
+		}
+	}
+	
+	void updateSize() { 
+		RepoIndex.Entry entry = RepoIndex.instance().get(this);
+		if( entry != null ) { 
+			RepoIndex.instance().resize(entry, FileOps.sizeOf(fRoot));
+		}
+	}
+	
 	/**
 	 * Drop this folder and all its content
 	 */
@@ -331,23 +540,11 @@ public class Repo implements Serializable {
 		if( forceKill ) {
 			Logger.info("Force KILL on repo: '%s'", fRoot);
 			/* 
-			 * kill all pending process that are locking the folder 
-			 * An alternative command to kill all process is: "fuser -k <file>" 
-			 * but the -k switch (kill) is not supported on OSX 
-			 * 
-			 * kill -9 `lsof -t +D %s`
+			 * kill all pending process running in the folder, 
+			 * the supervisor knows their process groups, so there is no need to scan the open files with 'lsof'
 			 */
-
 			try {
-				//TODO win32 porting: rewrite this command to support Windows platform 
-				String kill = String.format("kill -9 `lsof -t +D %s`", fRoot);
-//				DefaultExecutor exec = new DefaultExecutor();
-//				exec.setWatchdog( new ExecuteWatchdog(5000) ); // <-- 5secs timeout to run kill all pending  
-//				exec.execute(new CommandLine(kill));
-				Process proc = Runtime.getRuntime().exec(kill);
-				proc.waitFor();
-				
-				
+				ProcessSupervisor.instance().kill(fRoot);
 			} catch( Exception e ) {
 				Logger.warn(e, "Error kill pending process for folder: '%s' ", fRoot);
 			}
@@ -379,7 +576,7 @@ public class Repo implements Serializable {
 				check = check.substring(0,check.length()-1);
 			}
 			
-			if( !check.equals(rid) ) { 
+			if( !check.equals(pathFor(rid)) ) { 
 				Logger.error("Cannot delete Repo: '%s'. Sanity check failed: ", rid, check);
 				return;
 			}
@@ -388,20 +585,26 @@ public class Repo implements Serializable {
 			/* 
 			 * OK proceed 
 			 */
-			String rm = String.format("rm -rf %s", sRoot);
-			Logger.debug("Executing remove command: %s", rm);
-			Process proc = Runtime.getRuntime().exec(rm);
-			int exitcode = proc.waitFor();
-			if( exitcode != 0 ) { 
-				Logger.warn("Cannot execute: '%s'; exitcode: %s", rm, exitcode);
+			if( ColdTier.isCold(fRoot) ) { 
+				ColdTier.instance().delete(this);
 			}
-			else if( new File(sRoot).exists() ) { 
+			
+			if( !FileOps.delete(fRoot) ) { 
 				Logger.warn("Unable to remove Repo: '%s'", rid);
 			}
 			else { 
 				Logger.info("Deleted Repo: '%s'", rid);
+				
+				/* remove the empty shard folders */
+				File parent = fRoot.getParentFile();
+				for( int i=0; i<2 && !parent.equals(AppProps.WORKSPACE_FOLDER) && parent.delete(); i++ ) {
+					parent = parent.getParentFile();
+				}
 			}
 			
+			RepoIndex.instance().remove(this);
+			ExpiryQueue.instance().remove(rid);
+			
 		}
 		catch( Exception e ) { 
 			Logger.error(e, "Error deleting Repo folder: '%s'", sRoot);
@@ -414,6 +617,11 @@ public class Repo implements Serializable {
 	 *  
 	 */
 	public long getCreationTime() {
+		RepoIndex.Entry entry = RepoIndex.instance().get(this);
+		return entry != null ? entry.creationTime : readCreationTime();
+	} 
+	
+	long readCreationTime() {
 		if( fCreationTime != null && fCreationTime.exists() ) { 
 			return fCreationTime.lastModified();
 		}
@@ -434,7 +642,8 @@ public class Repo implements Serializable {
 	 * @return The repository last accessed time.  
 	 */
 	public long getLastAccessedTime() {
-		return fMarker.lastModified();
+		RepoIndex.Entry entry = RepoIndex.instance().get(this);
+		return entry != null ? entry.lastAccessedTime : fMarker.lastModified();
 	}
 	
 	public String getLastAccessTimeFmt() {
@@ -445,15 +654,15 @@ public class Repo implements Serializable {
 	 * @return The repository expiration timestamp millis or {@link Long#MAX_VALUE} if repository state is invalid.  
 	 */
 	public long getExpirationTime() {
-
-		Status status = getStatus();
-		if( status != null && (status.isDone() || status.isFailed()) ) {
-			return getLastAccessedTime() + (AppProps.instance().getDataCacheDuration() *1000);
-		}
-		else { 
-			return Long.MAX_VALUE;
-		}
+		RepoIndex.Entry entry = RepoIndex.instance().get(this);
+		return entry != null ? entry.getExpirationTime() : Long.MAX_VALUE;
+	}
 	
+	/**
+	 * @return the position of this request in the job queue or <code>0</code> if it is not queued
+	 */
+	public int getQueuePosition() { 
+		return JobScheduler.instance().getQueuePosition(rid);
 	}
 	
 	public String getExpirationTimeFmt() {
@@ -469,14 +678,16 @@ public class Repo implements Serializable {
 	public static List<Repo> findByStatus(Status ... status) {
 		List<Repo> result = new ArrayList<Repo>();
 		
-		File ROOT_FOLDER = new File( AppProps.instance().getDataPath() );
-		for( File file : ROOT_FOLDER.listFiles() ) {
+		for( File file : RepoIndex.instance().folders() ) {
+			Repo repo=new Repo(file,false);
+			if( !repo.exists() ) {
+				/* deleted by someone else */
+				RepoIndex.instance().remove(repo);
+				continue;
+			}
 
-			if( isRepoFolder(file) ) {
-				Repo repo=new Repo(file,false);
-				if( status == null || Utils.contains(status, repo.getStatus()) ) {
-					result.add(repo);
-				}
+			if( status == null || Utils.contains(status, repo.getStatus()) ) {
+				result.add(repo);
 			}
 		}
 		
@@ -519,12 +730,8 @@ public class Repo implements Serializable {
 	 */
 	public static void deleteAll() {
 		List<Repo> repos = Repo.findAll();
-		
-		for( Repo repo : repos ) {
-			Logger.info("Deleting Repo folder: '%s'", repo.getFile());
-			/* drop this folder */
-			repo.drop();
-		}
+		Logger.info("Deleting %s Repo folders", repos.size());
+		dropAll(repos);
 	}
 
 	/**
@@ -532,11 +739,29 @@ public class Repo implements Serializable {
 	 */
 	public static void deleteExpired() {
 		List<Repo> all = findByStatus(Status.DONE, Status.FAILED);
+		List<Repo> expired = new ArrayList<Repo>();
 		for( Repo repo : all ) {
 			if(repo.isExpired()) {
-				repo.drop();
+				expired.add(repo);
 			}
 		}
+		dropAll(expired);
+	}
+
+	/**
+	 * Drop the specified repositories in parallel, on the bounded pool of {@link FileOps}
+	 * 
+	 * @param repos the repositories to drop
+	 * @return the number of processed repositories 
+	 */
+	public static int dropAll( Collection<Repo> repos ) {
+		List<Runnable> tasks = new ArrayList<Runnable>(repos.size());
+		for( final Repo repo : repos ) {
+			tasks.add( new Runnable() {
+				public void run() { repo.drop(); }
+			});
+		}
+		return FileOps.invokeAll(tasks);
 	}
 
 	/**
@@ -561,37 +786,44 @@ public class Repo implements Serializable {
 				continue; 
 			} 
 			
-			File path;
-			
-			/* 
-			 * remove '_cache'
-			 */
-			if( (path=new File(repo.fRoot, "_cache")).exists() ) { 
-				if( !FileUtils.deleteQuietly(path) ) { 
-					Logger.warn("Unable to delete cache path: '%s'", path);
-				}
-			}
-			
-			/* 
-			 * remove '_tmp'
-			 */
-			if( (path=new File(repo.fRoot, "_tmp")).exists() ) { 
-				if( !FileUtils.deleteQuietly(path) ) { 
-					Logger.warn("Unable to delete tmp path: '%s'", path);
-				}
-			}
-			
-			/* 
-			 * remove '_lck'
-			 */
-			if( (path=new File(repo.fRoot, "_lck")).exists() ) { 
-				if( !FileUtils.deleteQuietly(path) ) { 
-					Logger.warn("Unable to delete lock path: '%s'", path);
-				}
+			repo.cleanCache();
+		}
+	}
+	
+	/**
+	 * Remove the T-Coffee temporary paths of this repo, see {@link #cleanTcoffeeCache()}
+	 */
+	public void cleanCache() {
+		File path;
+		
+		/* 
+		 * remove '_cache'
+		 */
+		if( (path=new File(fRoot, "_cache")).exists() ) { 
+			if( !FileUtils.deleteQuietly(path) ) { 
+				Logger.warn("Unable to delete cache path: '%s'", path);
 			}
+		}
 		
+		/* 
+		 * remove '_tmp'
+		 */
+		if( (path=new File(fRoot, "_tmp")).exists() ) { 
+			if( !FileUtils.deleteQuietly(path) ) { 
+				Logger.warn("Unable to delete tmp path: '%s'", path);
+			}
+		}
 		
+		/* 
+		 * remove '_lck'
+		 */
+		if( (path=new File(fRoot, "_lck")).exists() ) { 
+			if( !FileUtils.deleteQuietly(path) ) { 
+				Logger.warn("Unable to delete lock path: '%s'", path);
+			}
 		}
+		
+		updateSize();
 	}
 
 	/**
@@ -0,0 +1,480 @@
+package models;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import play.Logger;
+import play.libs.IO;
+import util.Check;
+import util.FileOps;
+import exception.QuickException;
+
+/**
+ * Packs the content of the cold repositories in a single compressed container (<code>_archive.zip</code>)
+ * and reads the entries back directly from it.
+ * <p>
+ * The control files (marker, lock, creation time, fingerprint) and the result and input manifests
+ * are not packed, so that the repository state can be read without accessing the container.
+ * <p>
+ * A repository is archived when it is not accessed for the time defined by the <code>settings.archive.idle</code>
+ * property (default 24h, use <code>0s</code> to disable it), see {@link job.Archiver}.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class RepoArchive {
+
+	public static final String ARCHIVE_FILE_NAME = "_archive.zip";
+
+	/** the files that are never packed */
+	static final List<String> KEEP_FILES = Arrays.asList(
+			".tserver",
+			".tlock",
+			".creation-time",
+			".fingerprint",
+			"_result",
+			"_input",
+			ColdTier.COLD_FILE_NAME,
+			ColdTier.EVICTED_FILE_NAME,
+			ARCHIVE_FILE_NAME );
+
+	/** the T-Coffee temporary paths, they are never archived */
+	static final List<String> SKIP_FILES = Arrays.asList( "_cache", "_tmp", "_lck" );
+
+	/**
+	 * @param folder a repository folder
+	 * @return the container file of the specified repository folder
+	 */
+	static File archiveFor( File folder ) {
+		return new File(folder, ARCHIVE_FILE_NAME);
+	}
+
+	/**
+	 * @return <code>true</code> when the repository content is not available as plain files, because it has been 
+	 * packed in the archive container or it has been evicted to the cold tier
+	 */
+	public static boolean isArchived( File folder ) {
+		return archiveFor(folder).exists() || ColdTier.isEvicted(folder);
+	}
+
+	/**
+	 * @return the archive container of the specified repository folder, downloading it from the cold tier 
+	 * when the local copy has been evicted, or <code>null</code> if the repository is not archived 
+	 */
+	static File fetchArchive( File folder ) {
+		File archive = archiveFor(folder);
+		if( !archive.exists() && ColdTier.isEvicted(folder) ) {
+			ColdTier.instance().fetchArchive(folder);
+		}
+		return archive.exists() ? archive : null;
+	}
+
+	/**
+	 * @return the files of the repository folder to be stored in the archive container 
+	 */
+	static List<File> packable( File folder ) {
+		List<File> files = new ArrayList<File>();
+		File[] items = folder.listFiles();
+		if( items != null ) for( File it : items ) {
+			if( !KEEP_FILES.contains(it.getName()) && !SKIP_FILES.contains(it.getName()) && !it.getName().startsWith(ARCHIVE_FILE_NAME) ) {
+				files.add(it);
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Write the specified files in a new archive container
+	 * 
+	 * @param files the repository files to archive 
+	 * @param target the archive file to create
+	 * @return the number of archived files
+	 */
+	static int write( List<File> files, File target ) {
+		int count = 0;
+		ZipOutputStream zip = null;
+		try {
+			zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(target)));
+			zip.setLevel(Deflater.BEST_COMPRESSION);
+			for( File file : files ) {
+				count += add(zip, file, file.getName());
+			}
+			zip.close();
+			zip = null;
+		}
+		catch( IOException e ) {
+			close(zip);
+			target.delete();
+			throw new QuickException(e, "Unable to write archive: '%s'", target);
+		}
+		return count;
+	}
+
+	/**
+	 * Pack the repository content in the archive container and delete the packed files
+	 *
+	 * @param repo a terminated and not locked repository
+	 * @return the number of packed files
+	 */
+	public static int pack( Repo repo ) {
+		Check.notNull(repo, "Argument 'repo' cannot be null");
+
+		File folder = repo.getFile();
+		File archive = archiveFor(folder);
+		if( archive.exists() ) {
+			return 0;
+		}
+
+		/* the T-Coffee temporary paths are not worth to be archived */
+		repo.cleanCache();
+
+		List<File> files = packable(folder);
+		if( files.isEmpty() ) {
+			return 0;
+		}
+
+		File temp = new File(folder, ARCHIVE_FILE_NAME + ".tmp");
+		int count = write(files, temp);
+
+		if( !temp.renameTo(archive) ) {
+			temp.delete();
+			throw new QuickException("Unable to rename '%s' to '%s'", temp, archive);
+		}
+
+		/* the content is safe in the container, remove the original files */
+		for( File file : files ) {
+			if( !FileOps.delete(file) ) {
+				Logger.warn("Unable to delete archived file: '%s'", file);
+			}
+		}
+
+		Logger.debug("Archived %s files of repo: '%s'", count, folder);
+		return count;
+	}
+
+	static int add( ZipOutputStream zip, File file, String name ) throws IOException {
+		if( FileOps.isSymlink(file) ) {
+			return 0;
+		}
+
+		if( file.isDirectory() ) {
+			int count = 0;
+			File[] files = file.listFiles();
+			if( files != null ) for( File it : files ) {
+				count += add(zip, it, name + "/" + it.getName());
+			}
+			return count;
+		}
+
+		ZipEntry entry = new ZipEntry(name);
+		entry.setTime(file.lastModified());
+		zip.putNextEntry(entry);
+		InputStream in = new FileInputStream(file);
+		try {
+			IO.copy(in, zip);
+		}
+		finally {
+			in.close();
+		}
+		zip.closeEntry();
+		return 1;
+	}
+
+	/**
+	 * Extract the archive content in the repository folder and delete the archive container
+	 *
+	 * @param repo an archived repository
+	 * @return the number of extracted files
+	 */
+	public static int unpack( Repo repo ) {
+		Check.notNull(repo, "Argument 'repo' cannot be null");
+
+		File folder = repo.getFile();
+		File archive = fetchArchive(folder);
+		if( archive == null ) {
+			return 0;
+		}
+
+		int count = 0;
+		ZipFile zip = null;
+		try {
+			zip = new ZipFile(archive);
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while( entries.hasMoreElements() ) {
+				ZipEntry entry = entries.nextElement();
+				if( entry.getName().contains("..") ) {
+					Logger.warn("Skipping invalid entry '%s' in archive: '%s'", entry.getName(), archive);
+					continue;
+				}
+
+				File target = new File(folder, entry.getName());
+				if( entry.isDirectory() ) {
+					target.mkdirs();
+					continue;
+				}
+
+				target.getParentFile().mkdirs();
+				InputStream in = zip.getInputStream(entry);
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(target));
+				try {
+					IO.copy(in, out);
+				}
+				finally {
+					in.close();
+					out.close();
+				}
+				target.setLastModified(entry.getTime());
+				count++;
+			}
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to extract archive: '%s'", archive);
+		}
+		finally {
+			close(zip);
+		}
+
+		if( !archive.delete() ) {
+			Logger.warn("Unable to delete archive: '%s'", archive);
+		}
+		ColdTier.restored(folder);
+
+		Logger.debug("Restored %s files of repo: '%s'", count, folder);
+		return count;
+	}
+
+	/**
+	 * Open a file in a repository, reading it from the repository archive when it has been packed
+	 *
+	 * @param file a file in a repository folder
+	 * @return the file content stream or <code>null</code> if the file does not exist
+	 */
+	public static InputStream open( File file ) {
+		Check.notNull(file, "Argument 'file' cannot be null");
+
+		try {
+			if( file.isFile() ) {
+				return new FileInputStream(file);
+			}
+
+			Location loc = locate(file);
+			return loc != null ? openEntry(loc.archive, loc.name) : null;
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to read file: '%s'", file);
+		}
+	}
+
+	/**
+	 * Open a reader on a file in a repository, reading it from the repository archive when it has been packed
+	 *
+	 * @param file a file in a repository folder
+	 * @return the file content reader, it is up to the caller to close it
+	 * @throws QuickException when the file does not exist
+	 */
+	public static BufferedReader reader( File file ) {
+		InputStream in = open(file);
+		if( in == null ) {
+			throw new QuickException("File not found: '%s'", file);
+		}
+		return new BufferedReader(new InputStreamReader(in));
+	}
+
+	/**
+	 * Read the content of a file in a repository, reading it from the repository archive when it has been packed
+	 *
+	 * @param file a file in a repository folder
+	 * @return the file content as string
+	 * @throws QuickException when the file does not exist
+	 */
+	public static String readContent( File file ) {
+		InputStream in = open(file);
+		if( in == null ) {
+			throw new QuickException("File not found: '%s'", file);
+		}
+		return IO.readContentAsString(in);
+	}
+
+	/**
+	 * @param file a file in a repository folder
+	 * @return the (uncompressed) length of the file, looking up for it in the repository archive when
+	 * it has been packed, or <code>-1</code> if the file does not exist
+	 */
+	public static long length( File file ) {
+		Check.notNull(file, "Argument 'file' cannot be null");
+
+		if( file.isFile() ) {
+			return file.length();
+		}
+
+		Location loc = locate(file);
+		if( loc == null ) {
+			return -1;
+		}
+
+		ZipFile zip = null;
+		try {
+			zip = new ZipFile(loc.archive);
+			ZipEntry entry = zip.getEntry(loc.name);
+			return entry != null && !entry.isDirectory() ? entry.getSize() : -1;
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to read archive: '%s'", loc.archive);
+		}
+		finally {
+			close(zip);
+		}
+	}
+
+	/** The location of a file in a repository archive container */
+	static class Location {
+		final File archive;
+		final String name;
+
+		Location( File archive, String name ) {
+			this.archive = archive;
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Look up for the repository archive container holding the specified file
+	 *
+	 * @return the location of the file in the archive or <code>null</code> when the file is not in an archived repository
+	 */
+	static Location locate( File file ) {
+		/* only the files in the workspace can be archived */
+		String root = AppProps.WORKSPACE_FOLDER.getAbsolutePath() + File.separator;
+		if( !file.getAbsolutePath().startsWith(root) ) {
+			return null;
+		}
+
+		/* look up for the repository folder holding the archive */
+		String name = file.getName();
+		File folder = file.getParentFile();
+		while( folder != null && !folder.getAbsoluteFile().equals(AppProps.WORKSPACE_FOLDER.getAbsoluteFile()) ) {
+			if( isArchived(folder) ) {
+				File archive = fetchArchive(folder);
+				return archive != null ? new Location(archive, name) : null;
+			}
+			name = folder.getName() + "/" + name;
+			folder = folder.getParentFile();
+		}
+		return null;
+	}
+
+	static InputStream openEntry( File archive, String name ) throws IOException {
+		final ZipFile zip = new ZipFile(archive);
+		ZipEntry entry = zip.getEntry(name);
+		if( entry == null || entry.isDirectory() ) {
+			zip.close();
+			return null;
+		}
+
+		/* the zip file is closed along with the entry stream */
+		return new FilterInputStream(zip.getInputStream(entry)) {
+			public void close() throws IOException {
+				try { super.close(); }
+				finally { zip.close(); }
+			}
+		};
+	}
+
+	/**
+	 * @param folder a repository folder
+	 * @return the paths (relative to the repository folder) of the files stored in its archive,
+	 * or an empty list when the repository is not archived
+	 */
+	public static List<String> list( File folder ) {
+		List<String> result = new ArrayList<String>();
+		File archive = isArchived(folder) ? fetchArchive(folder) : null;
+		if( archive == null ) {
+			return result;
+		}
+
+		ZipFile zip = null;
+		try {
+			zip = new ZipFile(archive);
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while( entries.hasMoreElements() ) {
+				ZipEntry entry = entries.nextElement();
+				if( !entry.isDirectory() ) {
+					result.add(entry.getName());
+				}
+			}
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to read archive: '%s'", archive);
+		}
+		finally {
+			close(zip);
+		}
+		return result;
+	}
+
+	/**
+	 * Archive the terminated repositories not accessed for the specified time
+	 *
+	 * @param idle the time (millis) after which a not accessed repository is archived
+	 * @param deadline the timestamp after which the method returns, even if there are still repositories to archive
+	 * @return the number of archived repositories
+	 */
+	public static int archiveIdle( long idle, long deadline ) {
+		long threshold = System.currentTimeMillis() - idle;
+		int count = 0;
+		for( RepoIndex.Entry entry : RepoIndex.instance().entries() ) {
+			if( System.currentTimeMillis() > deadline ) {
+				break;
+			}
+
+			Status status = entry.status;
+			if( entry.locked || status == null || !(status.isDone() || status.isFailed()) ) {
+				continue;
+			}
+			if( entry.lastAccessedTime > threshold ) {
+				continue;
+			}
+			/* an evicted repository is released again when its archive has been fetched */
+			if( isArchived(entry.folder) && !(ColdTier.isEvicted(entry.folder) && archiveFor(entry.folder).exists()) ) {
+				continue;
+			}
+
+			try {
+				/* the content of the repositories stored in the cold tier is just removed from the local disk */
+				Repo repo = new Repo(entry.folder, false);
+				if( ColdTier.isCold(entry.folder) ? ColdTier.instance().evict(repo) : repo.archive() ) {
+					count++;
+				}
+			}
+			catch( Exception e ) {
+				Logger.error(e, "Error archiving repo: '%s'", entry.folder);
+			}
+		}
+		return count;
+	}
+
+	static void close( ZipFile zip ) {
+		if( zip != null ) try { zip.close(); } catch( IOException e ) { /* ignore */ }
+	}
+
+	static void close( OutputStream out ) {
+		if( out != null ) try { out.close(); } catch( IOException e ) { /* ignore */ }
+	}
+
+}
@@ -0,0 +1,271 @@
+package models;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import job.ExpiryQueue;
+import play.Logger;
+import util.Check;
+import util.FileOps;
+
+/**
+ * In-memory index of the {@link Repo} folders state, keyed by request-id.
+ * <p>
+ * The index is built scanning the workspace at startup and then kept up-to-date by the
+ * {@link Repo} methods changing the folder state ({@link Repo#lock()}, {@link Repo#unlock()},
+ * {@link Repo#saveResult(OutResult)}, {@link Repo#touch()}, etc.), so that status checks
+ * do not need to access the file system nor to parse the result file.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class RepoIndex {
+
+	private static final RepoIndex INSTANCE = new RepoIndex();
+
+	/** Singleton accessor method */
+	public static RepoIndex instance() { return INSTANCE; }
+
+	/**
+	 * The state of a repository folder
+	 */
+	public static class Entry {
+
+		final File folder;
+
+		volatile boolean locked;
+
+		/** the status stored in the result file or <code>null</code> when there is no result */
+		volatile Status status;
+
+		volatile long creationTime;
+
+		volatile long lastAccessedTime;
+
+		/* the result summary */
+		volatile String bundle;
+
+		volatile String service;
+
+		volatile String title;
+
+		volatile long elapsedTime;
+
+		/** the folder content size in bytes */
+		volatile long size;
+
+		Entry( File folder ) {
+			this.folder = folder;
+		}
+
+		void update( OutResult out ) {
+			this.status = out != null ? (out.status != null ? out.status : Status.UNKNOWN) : null;
+			this.bundle = out != null ? out.bundle : null;
+			this.service = out != null ? out.service : null;
+			this.title = out != null ? out.title : null;
+			this.elapsedTime = out != null ? out.elapsedTime : 0;
+		}
+
+		public boolean isLocked() { return locked; }
+
+		public boolean hasResult() { return status != null; }
+
+		public Status getResultStatus() { return status; }
+
+		public long getCreationTime() { return creationTime; }
+
+		public long getLastAccessedTime() { return lastAccessedTime; }
+
+		/**
+		 * @return the expiration timestamp millis or {@link Long#MAX_VALUE} when the job is not terminated
+		 */
+		public long getExpirationTime() {
+			if( !locked && status != null && (status.isDone() || status.isFailed()) ) {
+				return lastAccessedTime + (AppProps.instance().getDataCacheDuration() *1000L);
+			}
+			return Long.MAX_VALUE;
+		}
+
+		public String getBundle() { return bundle; }
+
+		public String getService() { return service; }
+
+		public String getTitle() { return title; }
+
+		public long getElapsedTime() { return elapsedTime; }
+
+		public long getSize() { return size; }
+	}
+
+	private final ConcurrentMap<String,Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/** the sum of the size of all the indexed repositories */
+	private final AtomicLong totalSize = new AtomicLong();
+
+	private volatile boolean fLoaded;
+
+	/** Marked as protected to prevent direct instantiation */
+	protected RepoIndex() {}
+
+	/**
+	 * @param repo the repository to lookup
+	 * @return the index entry for the specified repository, reading it from the file system when
+	 * it is not indexed yet, or <code>null</code> if the repository folder does not exist
+	 */
+	public Entry get( Repo repo ) {
+		Check.notNull(repo, "Argument 'repo' cannot be null");
+
+		Entry entry = entries.get(repo.rid);
+		if( entry != null && entry.folder.equals(repo.fRoot) ) {
+			return entry;
+		}
+
+		return load(repo);
+	}
+
+	/**
+	 * Like {@link #get(Repo)} but when the repository is not available locally look it up in the cold tier,
+	 * it could have been stored there by another node. Only the explicit result requests use it, so that
+	 * the status checks never access the cold tier.
+	 *
+	 * @param repo the repository to lookup
+	 * @return the index entry for the specified repository or <code>null</code> if it does not exist
+	 */
+	public Entry fetch( Repo repo ) {
+		Entry entry = get(repo);
+		if( entry == null && ColdTier.instance().fetch(repo) ) {
+			entry = load(repo);
+		}
+		return entry;
+	}
+
+	/**
+	 * Read the state of the specified repository from the file system and add it to the index
+	 *
+	 * @return the entry for the specified repository or <code>null</code> if the repository folder does not exist
+	 */
+	Entry load( Repo repo ) {
+		if( !Repo.isRepoFolder(repo.fRoot) ) {
+			remove(repo);
+			return null;
+		}
+
+		Entry entry = new Entry(repo.fRoot);
+		entry.locked = repo.fLock.exists();
+		entry.creationTime = repo.readCreationTime();
+		entry.lastAccessedTime = repo.fMarker.lastModified();
+
+		if( repo.fResult.exists() ) {
+			try {
+				/* the legacy results are migrated lazily, when they are accessed */
+				entry.update( repo.readResult() );
+			}
+			catch( Exception e ) {
+				Logger.warn("Error on parsing result file: '%s'. Caused by: %s", repo.fResult, e);
+				entry.status = Status.UNKNOWN;
+			}
+		}
+
+		entry.size = FileOps.sizeOf(repo.fRoot);
+		totalSize.addAndGet(entry.size);
+		discard(entries.put(repo.rid, entry));
+		ExpiryQueue.instance().schedule(repo.rid, entry.getExpirationTime());
+		return entry;
+	}
+
+	/**
+	 * Remove the specified repository from the index
+	 */
+	void remove( Repo repo ) {
+		discard(entries.remove(repo.rid));
+	}
+
+	/**
+	 * Subtract the size of an entry removed from the index
+	 */
+	private void discard( Entry entry ) {
+		if( entry != null ) synchronized (entry) {
+			totalSize.addAndGet(-entry.size);
+		}
+	}
+
+	/**
+	 * Update the size of an indexed repository
+	 *
+	 * @param entry the repository entry
+	 * @param size the new folder content size in bytes
+	 */
+	void resize( Entry entry, long size ) {
+		synchronized (entry) {
+			long delta = size - entry.size;
+			entry.size = size;
+			if( entries.get(entry.folder.getName()) == entry ) {
+				totalSize.addAndGet(delta);
+			}
+		}
+	}
+
+	/**
+	 * Clear the index and load again all the repositories in the workspace
+	 */
+	public synchronized void rebuild() {
+		long begin = System.currentTimeMillis();
+		entries.clear();
+		totalSize.set(0);
+
+		ExpiryQueue.instance().clear();
+		for( File folder : Repo.listFolders() ) {
+			Entry entry = load(new Repo(folder,false));
+			if( entry != null && !entry.locked && entry.hasResult() ) {
+				/* the temporary files of the jobs terminated before the restart */
+				ExpiryQueue.instance().clean(folder.getName());
+			}
+		}
+
+		fLoaded = true;
+		Logger.info("Indexed %s repositories in %s ms", entries.size(), System.currentTimeMillis()-begin);
+	}
+
+	/**
+	 * @return all the indexed entries, building the index if it has not been done yet
+	 */
+	Collection<Entry> entries() {
+		if( !fLoaded ) {
+			synchronized (this) {
+				if( !fLoaded ) rebuild();
+			}
+		}
+		return entries.values();
+	}
+
+	/**
+	 * @return the folders of all the indexed repositories
+	 */
+	List<File> folders() {
+		List<File> result = new ArrayList<File>();
+		for( Entry entry : entries() ) {
+			result.add(entry.folder);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of indexed repositories
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the sum of the size in bytes of all the indexed repositories
+	 */
+	public long getTotalSize() {
+		return totalSize.get();
+	}
+
+}
@@ -0,0 +1,334 @@
+package models;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+
+import play.Logger;
+import play.libs.Codec;
+import play.libs.IO;
+import util.Check;
+import util.FileOps;
+import exception.QuickException;
+
+/**
+ * Shared cache of the completed results, indexed by the request <i>fingerprint</i>.
+ * <p>
+ * The fingerprint is the digest of the normalized input data (fields values and uploaded files content),
+ * the service name and the bundle version, so it does not depend on the user session or email.
+ * When a request having the same fingerprint of an already completed one is submitted, the
+ * result files are copied in the new request folder instead of running the job again.
+ * <p>
+ * The cache can be disabled setting the <code>result.cache.enabled</code> property to <code>false</code>
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class ResultCache {
+
+	static final String FINGERPRINT_FILE_NAME = ".fingerprint";
+
+	/** the repo content that has not to be copied when the result is reused */
+	static final List<String> SKIP_FILES = Arrays.asList(
+			".tserver",
+			".tlock",
+			".creation-time",
+			"_input",
+			"_result",
+			FINGERPRINT_FILE_NAME,
+			ColdTier.COLD_FILE_NAME,
+			ColdTier.EVICTED_FILE_NAME,
+			"_cache",
+			"_tmp",
+			"_lck" );
+
+	/** the user identity fields, they do not contribute to the fingerprint */
+	static final List<String> SKIP_FIELDS = Arrays.asList( "email" );
+
+	private static final ResultCache INSTANCE = new ResultCache();
+
+	/** Singleton accessor method */
+	public static ResultCache instance() { return INSTANCE; }
+
+	/** map a request fingerprint to the request-id of the completed request */
+	private final ConcurrentMap<String,String> entries = new ConcurrentHashMap<String, String>();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private volatile boolean fLoaded;
+
+	/** Marked as protected to prevent direct instantiation */
+	protected ResultCache() {}
+
+	public boolean isEnabled() {
+		return !"false".equals(AppProps.instance().getString("result.cache.enabled"));
+	}
+
+	/**
+	 * @param service an initialized service instance
+	 * @return the fingerprint of the service request
+	 */
+	public static String fingerprint( Service service ) {
+		Check.notNull(service, "Argument 'service' cannot be null");
+
+		MessageDigest digest = newDigest("SHA-1");
+		update(digest, service.bundle != null ? service.bundle.name : null);
+		update(digest, service.bundle != null ? String.valueOf(service.bundle.getLastModified()) : null);
+		update(digest, service.name);
+
+		if( service.input != null ) for( Field field : service.input.fields() ) {
+			if( SKIP_FIELDS.contains(field.name) ) {
+				continue;
+			}
+
+			update(digest, field.name);
+			if( "file".equals(field.type) && field.hasFile() ) {
+				/* the value is the file path, use the file content instead */
+				update(digest, field.getFile());
+			}
+			else if( field.getContentFile() != null ) {
+				/* a 'memo' uploaded as a file, the value is just the file reference */
+				update(digest, field.getContentFile());
+			}
+			else {
+				update(digest, normalize(field.value));
+			}
+		}
+
+		return Codec.byteToHexString(digest.digest());
+	}
+
+	static MessageDigest newDigest( String algorithm ) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		}
+		catch( NoSuchAlgorithmException e ) {
+			throw new QuickException(e, "Missing %s digest algorithm", algorithm);
+		}
+	}
+
+	static String normalize( String value ) {
+		return value != null ? value.replace("\r\n", "\n").trim() : null;
+	}
+
+	static void update( MessageDigest digest, String value ) {
+		if( value != null ) {
+			try {
+				digest.update(value.getBytes("UTF-8"));
+			}
+			catch( IOException e ) {
+				digest.update(value.getBytes());
+			}
+		}
+		/* the separator guarantees that ('ab','c') and ('a','bc') produce different digests */
+		digest.update((byte)0);
+	}
+
+	static void update( MessageDigest digest, File file ) {
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			byte[] buffer = new byte[8192];
+			int len;
+			while( (len=in.read(buffer)) != -1 ) {
+				digest.update(buffer, 0, len);
+			}
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to read file: '%s'", file);
+		}
+		finally {
+			if( in != null ) try { in.close(); } catch( IOException e ) { /* ignore */ }
+		}
+		digest.update((byte)0);
+	}
+
+	/**
+	 * Add a completed request to the cache
+	 *
+	 * @param fingerprint the request fingerprint
+	 * @param repo the repository holding the request result
+	 */
+	public void put( String fingerprint, Repo repo ) {
+		Check.notEmpty(fingerprint, "Argument 'fingerprint' cannot be empty");
+		Check.notNull(repo, "Argument 'repo' cannot be null");
+
+		try {
+			IO.writeContent(fingerprint, repo.getFile(FINGERPRINT_FILE_NAME));
+		}
+		catch( Exception e ) {
+			Logger.warn("Unable to save fingerprint for request # %s - %s", repo.rid, e.getMessage());
+		}
+		entries.put(fingerprint, repo.rid);
+	}
+
+	/**
+	 * @param fingerprint the request fingerprint
+	 * @return the repository holding a valid result for the specified fingerprint or <code>null</code> if it does not exist
+	 */
+	public Repo lookup( String fingerprint ) {
+		if( fingerprint == null ) return null;
+		load();
+
+		String rid = entries.get(fingerprint);
+		if( rid == null ) {
+			return null;
+		}
+
+		Repo repo = new Repo(rid,false);
+		if( !repo.getStatus().isDone() || repo.isExpired() ) {
+			entries.remove(fingerprint, rid);
+			return null;
+		}
+		return repo;
+	}
+
+	/**
+	 * Populate the request repository with the cached result for the same request, if any.
+	 *
+	 * @param service the service whose repository has to be populated, its fingerprint must be set
+	 * @return <code>true</code> when the result has been reused or <code>false</code> otherwise
+	 */
+	boolean restore( Service service ) {
+		Repo target = service.repo();
+		Repo source = lookup(service.fFingerprint);
+		if( source == null || source.rid.equals(target.rid) || !copy(source, target) ) {
+			misses.incrementAndGet();
+			return false;
+		}
+
+		/* keep alive the popular results */
+		source.touch();
+
+		hits.incrementAndGet();
+		Logger.info("Reusing cached result of request # %s for request # %s", source.rid, target.rid);
+		return true;
+	}
+
+	/**
+	 * Copy the result files of a request to another request repository. The files are hard linked,
+	 * so that a cache hit does not use any additional disk space, and copied only when the link
+	 * cannot be created (e.g. the repositories are on different file systems). The copied result items
+	 * are rebased to the target folder.
+	 * <p>
+	 * The archive container of an archived request is linked as is, so the target content is read
+	 * through the archive as well, see {@link RepoArchive}
+	 *
+	 * @param source the repository holding a terminated request result
+	 * @param target the repository where the result has to be copied
+	 * @return <code>true</code> when the result has been copied or <code>false</code> otherwise
+	 */
+	static boolean copy( Repo source, Repo target ) {
+		OutResult result = source.getResult();
+		if( result == null ) {
+			return false;
+		}
+
+		/* the archive container of an evicted repository has to be fetched from the cold tier */
+		if( ColdTier.isEvicted(source.getFile()) && RepoArchive.fetchArchive(source.getFile()) == null ) {
+			Logger.warn("Missing archive of cached request # %s", source.rid);
+			return false;
+		}
+
+		try {
+			link(source.getFile(), target.getFile(), SKIP_FILES);
+		}
+		catch( IOException e ) {
+			Logger.warn(e, "Unable to copy result from request # %s to # %s", source.rid, target.rid);
+			return false;
+		}
+
+		/* rebase the result items to the new repository */
+		String root = source.getFile().getAbsolutePath() + File.separator;
+		for( OutItem item : result.getItems() ) {
+			if( item.file != null && item.file.getAbsolutePath().startsWith(root) ) {
+				item.file = new File(target.getFile(), item.file.getAbsolutePath().substring(root.length()));
+				item.webpath = Service.webPathFor(item.file);
+			}
+		}
+		target.saveResult(result);
+		target.cached = true;
+		return true;
+	}
+
+	/*
+	 * hard link all the files in the specified folder, a single 'ln' process is launched for each folder
+	 */
+	static void link( File source, File target, List<String> skip ) throws IOException {
+		if( !target.exists() && !target.mkdirs() ) {
+			throw new IOException("Unable to create folder: " + target);
+		}
+
+		List<File> files = new ArrayList<File>();
+		File[] all = source.listFiles();
+		if( all != null ) for( File file : all ) {
+			if( skip.contains(file.getName()) ) continue;
+
+			if( file.isDirectory() ) {
+				link(file, new File(target, file.getName()), Collections.<String>emptyList());
+			}
+			else {
+				files.add(file);
+			}
+		}
+
+		try {
+			FileOps.hardlink(files, target);
+		}
+		catch( QuickException e ) {
+			Logger.debug("Cannot link files in '%s' - %s", source, e.getMessage());
+			for( File file : files ) {
+				FileUtils.copyFile(file, new File(target, file.getName()));
+			}
+		}
+	}
+
+	/**
+	 * Load the fingerprints of the completed requests
+	 */
+	void load() {
+		if( fLoaded ) return;
+
+		synchronized (this) {
+			if( fLoaded ) return;
+
+			for( Repo repo : Repo.findByStatus(Status.DONE) ) {
+				File file = repo.getFile(FINGERPRINT_FILE_NAME);
+				if( file.exists() ) {
+					entries.putIfAbsent(IO.readContentAsString(file).trim(), repo.rid);
+				}
+			}
+			fLoaded = true;
+		}
+	}
+
+	/**
+	 * Remove all the entries and reset the counters
+	 */
+	public void clear() {
+		entries.clear();
+		hits.set(0);
+		misses.set(0);
+	}
+
+	public long getHits() { return hits.get(); }
+
+	public long getMisses() { return misses.get(); }
+
+	public int size() { return entries.size(); }
+
+}
@@ -0,0 +1,42 @@
+package models;
+
+import java.io.File;
+
+/**
+ * An object store used as the cold tier of the request results, see {@link ColdTier}.
+ * <p>
+ * Objects are identified by a key in the form <code>&lt;rid&gt;/&lt;file name&gt;</code>
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public interface ResultStore {
+
+	/**
+	 * Upload a file, replacing the object if it already exists
+	 *
+	 * @param key the object key
+	 * @param file the file to upload
+	 */
+	void put( String key, File file );
+
+	/**
+	 * Download an object
+	 *
+	 * @param key the object key
+	 * @param target the file where the object content is saved
+	 * @return <code>true</code> when the object has been downloaded, <code>false</code> if it does not exist
+	 */
+	boolean get( String key, File target );
+
+	/**
+	 * @return <code>true</code> when the object exists
+	 */
+	boolean exists( String key );
+
+	/**
+	 * Delete all the objects whose key starts with the specified prefix
+	 */
+	void delete( String prefix );
+
+}
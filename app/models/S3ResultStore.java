@@ -0,0 +1,130 @@
+package models;
+
+import java.io.File;
+
+import util.Check;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import exception.QuickException;
+
+/**
+ * A {@link ResultStore} backed by an Amazon S3 (or S3-compatible) bucket
+ * <p>
+ * Properties:
+ * <li><code>store.s3.bucket</code>: the bucket name (required)</li>
+ * <li><code>store.s3.accessKey</code> and <code>store.s3.secretKey</code>: the access credentials (required)</li>
+ * <li><code>store.s3.endpoint</code>: the service endpoint, to use an S3-compatible server in place of Amazon S3</li>
+ * <li><code>store.s3.prefix</code>: a prefix added to all the object keys</li>
+ * <p>
+ * NOTE: the bundled SDK uses the virtual-host style requests (i.e. <code>http://bucket.endpoint/key</code>) for the
+ * DNS compatible bucket names. When using a local S3-compatible server use a bucket name that is not DNS compatible
+ * (e.g. <code>tserver_results</code>) to force the path style requests (i.e. <code>http://endpoint/bucket/key</code>).
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class S3ResultStore implements ResultStore {
+
+	final AmazonS3 client;
+
+	final String bucket;
+
+	final String prefix;
+
+	public S3ResultStore( AmazonS3 client, String bucket, String prefix ) {
+		Check.notNull(client, "Argument 'client' cannot be null");
+		Check.notEmpty(bucket, "Argument 'bucket' cannot be empty");
+		this.client = client;
+		this.bucket = bucket;
+		this.prefix = prefix != null ? prefix : "";
+	}
+
+	/**
+	 * Create the store using the <code>store.s3.*</code> configuration properties
+	 */
+	public static S3ResultStore create( AppProps props ) {
+		String bucket = props.getString("store.s3.bucket");
+		String accessKey = props.getString("store.s3.accessKey");
+		String secretKey = props.getString("store.s3.secretKey");
+		Check.notEmpty(bucket, "Missing 'store.s3.bucket' property");
+		Check.notEmpty(accessKey, "Missing 'store.s3.accessKey' property");
+		Check.notEmpty(secretKey, "Missing 'store.s3.secretKey' property");
+
+		AmazonS3Client client = new AmazonS3Client(new BasicAWSCredentials(accessKey, secretKey));
+		String endpoint = props.getString("store.s3.endpoint");
+		if( endpoint != null ) {
+			client.setEndpoint(endpoint);
+		}
+		return new S3ResultStore(client, bucket, props.getString("store.s3.prefix"));
+	}
+
+	public void put( String key, File file ) {
+		try {
+			client.putObject(bucket, prefix + key, file);
+		}
+		catch( Exception e ) {
+			throw new QuickException(e, "Unable to upload object: '%s' to bucket: '%s'", prefix + key, bucket);
+		}
+	}
+
+	public boolean get( String key, File target ) {
+		try {
+			client.getObject(new GetObjectRequest(bucket, prefix + key), target);
+			return true;
+		}
+		catch( AmazonServiceException e ) {
+			if( e.getStatusCode() == 404 ) {
+				return false;
+			}
+			throw new QuickException(e, "Unable to download object: '%s' from bucket: '%s'", prefix + key, bucket);
+		}
+		catch( Exception e ) {
+			throw new QuickException(e, "Unable to download object: '%s' from bucket: '%s'", prefix + key, bucket);
+		}
+	}
+
+	public boolean exists( String key ) {
+		try {
+			client.getObjectMetadata(bucket, prefix + key);
+			return true;
+		}
+		catch( AmazonServiceException e ) {
+			if( e.getStatusCode() == 404 ) {
+				return false;
+			}
+			throw new QuickException(e, "Unable to access object: '%s' in bucket: '%s'", prefix + key, bucket);
+		}
+		catch( Exception e ) {
+			throw new QuickException(e, "Unable to access object: '%s' in bucket: '%s'", prefix + key, bucket);
+		}
+	}
+
+	public void delete( String keyPrefix ) {
+		try {
+			ObjectListing list = client.listObjects(bucket, prefix + keyPrefix);
+			while( true ) {
+				for( S3ObjectSummary item : list.getObjectSummaries() ) {
+					client.deleteObject(bucket, item.getKey());
+				}
+				if( !list.isTruncated() ) {
+					break;
+				}
+				list = client.listNextBatchOfObjects(list);
+			}
+		}
+		catch( Exception e ) {
+			throw new QuickException(e, "Unable to delete objects: '%s' in bucket: '%s'", prefix + keyPrefix, bucket);
+		}
+	}
+
+	public String toString() {
+		return "S3ResultStore[" + bucket + "/" + prefix + "]";
+	}
+}
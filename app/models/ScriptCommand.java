@@ -55,6 +55,8 @@ public class ScriptCommand extends AbstractCommand {
 		this.fScriptText = that.fScriptText; 
 		this.fScriptClass= that.fScriptClass ;
 		this.fScriptFile = that.fScriptFile;		
+		this.id = that.id;
+		this.depends = that.depends;
 	}
 	
 	/**
@@ -3,14 +3,13 @@ package models;
 import java.io.File;
 import java.io.Serializable;
 import java.net.URLDecoder;
+import java.security.MessageDigest;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.mail.internet.InternetAddress;
 
@@ -24,15 +23,21 @@ import play.data.validation.Validation;
 import play.db.jpa.JPAPlugin;
 import play.db.jpa.NoTransaction;
 import play.jobs.Job;
+import play.libs.Codec;
 import play.mvc.Http.Request;
 import play.mvc.Router;
 import play.mvc.Scope.Params;
 import play.mvc.Scope.Session;
 import util.Utils;
+import util.VarTemplate;
+import job.CompletionBus;
+import job.JobScheduler;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
 import com.thoughtworks.xstream.annotations.XStreamOmitField;
+
+import exception.QueueFullException;
  
 /** 
  * Defines an runnable service contained by a {@link Bundle}
@@ -66,6 +71,12 @@ public class Service implements Serializable {
 	@XStreamOmitField Date fStartTime;
 	@XStreamOmitField String fRemoteAddress;
 	@XStreamOmitField String fLocation;
+	@XStreamOmitField Long fLogId;
+	@XStreamOmitField boolean fCompleted;
+	@XStreamOmitField String fFingerprint;
+	
+	/** the service loaded by the bundle from which this instance has been copied */
+	@XStreamOmitField Service fPrototype;
 	
 	/**
 	 * The unique service name
@@ -137,18 +148,24 @@ public class Service implements Serializable {
 	
 	/** 
 	 * Module cony constructor. Creates a copy of <code>that</code> instance
+	 * <p>
+	 * Only the input is copied, the {@link #process} and the {@link #output} are shared with the 
+	 * prototype service until the request is executed (see {@link #detach()}), because they are not 
+	 * modified to render or validate the input form. 
 	 */
 	public Service( Service that ) {
 		this.bundle = that.bundle; // <-- be aware the - parent - configuration must NOT be copied 
-		this.name = Utils.copy(that.name); 
-		this.group = Utils.copy(that.group);
-		this.title = Utils.copy(that.title); 
-		this.description = Utils.copy(that.description); 
-		this.cite = Utils.copy(that.cite);
+		this.name = that.name; 
+		this.group = that.group;
+		this.title = that.title; 
+		this.description = that.description; 
+		this.cite = that.cite;
 		this.input = Utils.copy(that.input);
-		this.process = Utils.copy(that.process);
-		this.output = Utils.copy(that.output);
 		this.action = that.action;
+		
+		this.fPrototype = that.fPrototype != null ? that.fPrototype : that;
+		this.process = that.process == fPrototype.process ? that.process : Utils.copy(that.process);
+		this.output = that.output == fPrototype.output ? that.output : Utils.copy(that.output);
 	}
 	
 	/**
@@ -158,6 +175,23 @@ public class Service implements Serializable {
 		return new Service(this);
 	}
 	
+	/**
+	 * Create the private copies of the {@link #process} and the {@link #output} shared with the prototype service. 
+	 * It must be invoked before modifying them, it is done by {@link #init()} before the execution. 
+	 */
+	public void detach() { 
+		if( fPrototype == null ) { 
+			return;
+		}
+		
+		if( process != null && process == fPrototype.process ) { 
+			process = Utils.copy(process);
+		}
+		if( output != null && output == fPrototype.output ) { 
+			output = Utils.copy(output);
+		}
+	}
+	
 	public String getTitle() {
 		return Utils.isNotEmpty(title) ? title : name;
 	}
@@ -176,25 +210,38 @@ public class Service implements Serializable {
 	
 	private String getRid( boolean enableCaching ) {
 		
-		int hash = input != null ? input.hashFields() : Utils.hash();
-		hash = Utils.hash(hash, this.name);
-		hash = Utils.hash(hash, this.sessionId);
-		hash = Utils.hash(hash, this.bundle.getLastModified());
-		hash = Utils.hash(hash, this.userEmail);
+		/* 
+		 * the 128-bit digest of the request data
+		 */
+		MessageDigest digest = ResultCache.newDigest("MD5");
+		if( input != null ) for( Field field : input.fields() ) { 
+			ResultCache.update(digest, field.name);
+			/* the content of the uploaded files is streamed, not loaded in memory */
+			File content = field.getContentFile();
+			if( content != null ) {
+				ResultCache.update(digest, content);
+			}
+			else {
+				ResultCache.update(digest, field.value);
+			}
+		}
+		ResultCache.update(digest, this.name);
+		ResultCache.update(digest, this.sessionId);
+		ResultCache.update(digest, String.valueOf(this.bundle.getLastModified()));
+		ResultCache.update(digest, this.userEmail);
 
 		/* 
 		 * Avoid clash on existing folder with unknown status, 
 		 * so basically check if for the current hash (rid) already exists 
 		 * a folder, if so loop until a non existing hash(<--> folder) is found 
 		 */
-		String result = Integer.toHexString(hash);
+		String result = Codec.byteToHexString(digest.digest());
 		Repo check = new Repo(result,false);
 		while( check.getFile().exists() ) {
 			Status status = check.getStatus();
 			if( !enableCaching || check.isExpired() || status .isUnknown() ) {
 				// force a new hash id 
-				hash = Utils.hash(hash,result);
-				result = Integer.toHexString(hash);
+				result = Codec.hexMD5(result);
 				check = new Repo(result,false);
 			}
 			else {
@@ -331,6 +378,9 @@ public class Service implements Serializable {
 	 */
 	public void init( boolean enableCaching ) {
 		
+		/* the process and output are going to be modified by the execution */
+		detach();
+		
 		/*
 		 * 0. session ID
 		 */
@@ -398,18 +448,11 @@ public class Service implements Serializable {
 		fContextHolder.input = input;
 		fContextHolder.result = new OutResult();
 		
-		AppProps props = AppProps.instance();
-		for( String key : props.getNames() ) { 
-			String val;
-			if( (val=props.getString(key,null)) != null ) { 
-				fContextHolder.map.put(key, val);
-			}
-		}
-		
-		/* add the bundle properties content */
-		for( Object key : bundle.properties.keySet() ) {
-			fContextHolder.map.put( key.toString(), bundle.properties.getProperty(key.toString()));
-		}
+		/* 
+		 * the bundle properties override the application ones, both are shared 
+		 * read-only layers resolved on lookup, see ContextMap 
+		 */
+		fContextHolder.map = new ContextMap( bundle.properties, AppProps.instance().asMap() );
 
 		/* the private folder for this service */
 		fContextHolder.map.put( "data.path", fRepo.getPath() );
@@ -431,6 +474,17 @@ public class Service implements Serializable {
 		 * 4. store the input so that can be used to re-submit job execution
 		 */
 		input.save( fRepo.getInputFile() );
+		
+		/*
+		 * 5. reuse the result of an identical request, submitted by any user
+		 */
+		if( enableCaching ) { 
+			fFingerprint = ResultCache.fingerprint(this);
+			ResultCache cache = ResultCache.instance();
+			if( cache.isEnabled() && fRepo.getStatus().isReady() ) { 
+				cache.restore(this);
+			}
+		}
 	}
 
 	
@@ -444,6 +498,12 @@ public class Service implements Serializable {
 		return "http://" + host + path;
 	}
 	
+	/**
+	 * Submit the service for execution 
+	 * 
+	 * @return <code>true</code> if the job has been submitted or <code>false</code> if there's nothing to process or the job is already running
+	 * @throws QueueFullException when the job queue for this bundle/service has reached its max capacity 
+	 */
 	public boolean start() {
 
 		/* check if a main process is defined otherwise skip it */
@@ -461,12 +521,85 @@ public class Service implements Serializable {
 		
 		
 		/* 
-		 * create an aysnc execution context and fire the execution 
+		 * when an identical request is in progress, wait for its result instead of running it again 
 		 */
-    	new ServiceJob().now();
+		if( fFingerprint != null && !SingleFlight.instance().join(this) ) { 
+			return true;
+		}
+		
+		/* 
+		 * create an aysnc execution context and submit it to the bundle job queue
+		 */
+		try { 
+			JobScheduler.instance().submit(bundle.name, name, fRid, new ServiceJob());
+		}
+		catch( QueueFullException e ) { 
+			/* release the lock, so the same request can be submitted again later */
+			fRepo.unlock();
+			/* the identical requests waiting for this one have already been accepted, so they fail */
+			for( Service follower : SingleFlight.instance().leave(this) ) { 
+				follower.reject(e.getMessage());
+			}
+			throw e;
+		}
     	return true;
 	}
 	
+	/**
+	 * Complete a request attached to an identical one, copying the leader request result 
+	 * 
+	 * @param leader the request that has been executed 
+	 */
+	void follow( Service leader ) { 
+		Status status = Status.FAILED;
+		try { 
+			if( ResultCache.copy(leader.fRepo, fRepo) ) { 
+				status = fRepo.getSummary().getResultStatus();
+			}
+			else { 
+				saveFailure("Unable to retrieve the result of request # " + leader.fRid);
+			}
+		}
+		catch( Exception e ) { 
+			Logger.error(e, "Error completing request # %s with the result of request # %s", fRid, leader.fRid);
+		}
+		finally { 
+			try { fRepo.unlock(); } catch( Exception e ) { Logger.error(e, "Failure on context unlock"); }
+			CompletionBus.instance().fire(fRid, status);
+		}
+	}
+	
+	/**
+	 * Fail a request attached to an identical one that has been rejected by the job scheduler 
+	 * 
+	 * @param message the error reported to the user 
+	 */
+	void reject( String message ) { 
+		try { 
+			saveFailure(message);
+		}
+		catch( Exception e ) { 
+			Logger.error(e, "Error saving the result of rejected request # %s", fRid);
+		}
+		finally { 
+			try { fRepo.unlock(); } catch( Exception e ) { Logger.error(e, "Failure on context unlock"); }
+			CompletionBus.instance().fire(fRid, Status.FAILED);
+		}
+	}
+	
+	/*
+	 * save a failed result reporting the specified error 
+	 */
+	private void saveFailure( String message ) { 
+		OutResult result = new OutResult();
+		result.status = Status.FAILED;
+		result.bundle = bundle.name;
+		result.service = name;
+		result.title = title;
+		result.addError(message);
+		fRepo.saveResult(result);
+	}
+	
 	@NoTransaction
 	class ServiceJob extends Job  {
 		
@@ -478,22 +611,60 @@ public class Service implements Serializable {
 			Service.current(Service.this);
 			
 			UsageLog log = safeTrace(null);
-			Long logid = log != null ? log.id : null;
+			fLogId = log != null ? log.id : null;
+			
+			/* the job is no more queued */
+			CompletionBus.instance().fire(fRid, Status.RUNNING);
 			
 			try {
-				/* run the job */
+				/* 
+				 * run the job, note that it could terminate in a different thread 
+				 * when the process contains asynchronous commands, see #complete()
+				 */
 				Service.this.run();
 			}
 			finally  {
-				try { Service.this.fRepo.unlock(); } catch( Exception e ) { Logger.error(e, "Failure on context unlock"); }
-				if( logid != null ) { 
-					safeTrace(logid);
-				}
 				Service.release();
 			}
 		}
 	}; 
 	
+	/**
+	 * Job used to continue the service execution when an asynchronous command terminates 
+	 */
+	@NoTransaction
+	class ResumeJob extends Job { 
+		
+		final Runnable task;
+		
+		ResumeJob( Runnable task ) { 
+			this.task = task;
+		}
+		
+		@Override
+		public void doJob() throws Exception {
+			Service.current(Service.this);
+			try { 
+				task.run();
+			}
+			finally { 
+				Service.release();
+			}
+		}
+	}
+	
+	/**
+	 * Resume the execution of this service in a worker of its bundle lane, see {@link JobScheduler}. 
+	 * <p>
+	 * Asynchronous commands use it to continue the execution when the external job, 
+	 * they were waiting for, terminates 
+	 * 
+	 * @param task the code to be executed 
+	 */
+	public void resume( Runnable task ) { 
+		JobScheduler.instance().resume(bundle.name, name, fRid, new ResumeJob(task));
+	}
+	
 	/**
 	 * Append a line in the server requests log with the following format 
 	 * 
@@ -588,67 +759,148 @@ public class Service implements Serializable {
 
 	void run() {
 		
-		OutResult fOutResult = fContextHolder.getResult();
 		try {
 			/* 
 			 * initialize the process 
 			 */
-
 			process.init(fContextHolder); // <-- pass to the command context the save variables
-			
-			/* 
-			 * the main execution 
-			 */
-			boolean success = false; 
+		}
+		catch( Exception e ) {
+			complete(null, e);
+			return;
+		}
+		
+		/* 
+		 * keep the tail of the program output for the clients following the job progress 
+		 */
+		AbstractShellCommand main = findShellCommand(process);
+		if( main != null ) { 
+			LogTail.register(fRid, main.getOutputFile(), main.getErrorFile());
+		}
+		
+		/* 
+		 * the main execution, the listener is notified when the process terminates 
+		 */
+		try {
+			process.execute(new CommandListener() {
 
-			
-			/* run the main job */
-			try {
-				success = process.execute();
-			}
-			finally {
-				
-				/*
-				 * if result is OK handle the commands for valid case  
-				 */
-				OutSection branch = getOutSection(success);
-				fOutResult.addAll( branch.result );
-				
-				fOutResult.status = success ? Status.DONE : Status.FAILED;
-				fOutResult.bundle = bundle.name;
-				fOutResult.service = this.name;
-				fOutResult.title = this.title;
-				fOutResult.cite = this.cite;
-				fOutResult.elapsedTime = process.elapsedTime;
-				
-				/*
-				 * execute the result events 
-				 */
-				if( branch.hasEvents() ) {
-					branch.events.init(fContextHolder);	// init with the current context
-					branch.events.execute();
-				}	
-				
-				/*
-				 * normalize path on result items 
-				 */
-				resolveOutFilesPath(fOutResult);
-			}
+				public void completed(AbstractCommand command, boolean success) {
+					complete(success, null);
+				}
+
+				public void failed(AbstractCommand command, Exception error) {
+					complete(false, error);
+				}
+			});
+		}
+		catch( Exception e ) {
+			complete(false, e);
+		}
 
+	}
+	
+	/**
+	 * Completes the service execution when the main process terminates: creates and saves the 
+	 * result object, releases the repository lock and updates the usage log
+	 * 
+	 * @param success the process result status or <code>null</code> if the process has not been executed at all 
+	 * @param failure the exception raised by the process execution, if any 
+	 */
+	synchronized void complete( Boolean success, Exception failure ) {
+		
+		if( fCompleted ) { 
+			Logger.warn("Request # %s has already been completed", fRid);
+			return;
+		}
+		fCompleted = true;
+		
+		OutResult fOutResult = fContextHolder.getResult();
+		try {
+			if( success != null ) {
+				createResult(fOutResult, success);
+			}
 		}
 		catch( Exception e ) {
+			if( failure == null ) { failure = e; }
+			else { Logger.error(e, "Error completing request # %s", fRid); }
+		}
+
+		if( failure != null ) {
 			/* trace the error in the log file */
-			Logger.error(e, "Error processing request # %s", fRid);
+			Logger.error(failure, "Error processing request # %s", fRid);
 			fOutResult.status = Status.FAILED;
-			fOutResult.addError( e.getMessage() );
-			
+			fOutResult.addError( failure.getMessage() );
 		}
-		finally {
+		
+		try {
 			/* garantee to save the result object in any case */
 			fRepo.saveResult(fOutResult);
+			
+			if( fFingerprint != null && fOutResult.status == Status.DONE ) { 
+				ResultCache.instance().put(fFingerprint, fRepo);
+			}
 		}
-
-
+		finally {
+			LogTail.release(fRid);
+			try { fRepo.unlock(); } catch( Exception e ) { Logger.error(e, "Failure on context unlock"); }
+			if( fLogId != null ) { 
+				safeTrace(fLogId);
+			}
+			
+			/* notify the clients waiting for the request completion */
+			CompletionBus.instance().fire(fRid, fOutResult.status);
+			
+			/* complete the identical requests submitted in the meanwhile */
+			for( Service follower : SingleFlight.instance().leave(this) ) { 
+				follower.follow(this);
+			}
+		}
+	}
+	
+	/**
+	 * @return the first shell command in the process, it is the one whose output is shown while the job is running 
+	 */
+	static AbstractShellCommand findShellCommand( ProcessCommand process ) { 
+		if( process == null || !process.hasCommands() ) return null;
+		
+		for( AbstractCommand cmd : process.commands ) { 
+			if( cmd instanceof AbstractShellCommand ) { 
+				return (AbstractShellCommand) cmd;
+			}
+			if( cmd instanceof ProcessCommand ) { 
+				AbstractShellCommand result = findShellCommand((ProcessCommand) cmd);
+				if( result != null ) return result;
+			}
+		}
+		return null;
+	}
+	
+	void createResult( OutResult fOutResult, boolean success ) {
+		/*
+		 * if result is OK handle the commands for valid case  
+		 */
+		OutSection branch = getOutSection(success);
+		fOutResult.addAll( branch.result );
+		
+		fOutResult.status = success ? Status.DONE : Status.FAILED;
+		fOutResult.bundle = bundle.name;
+		fOutResult.service = this.name;
+		fOutResult.title = this.title;
+		fOutResult.cite = this.cite;
+		fOutResult.elapsedTime = process.elapsedTime;
+		
+		/*
+		 * execute the result events 
+		 */
+		if( branch.hasEvents() ) {
+			branch.events.init(fContextHolder);	// init with the current context
+			branch.events.execute();
+		}	
+		
+		/*
+		 * normalize path on result items 
+		 */
+		resolveOutFilesPath(fOutResult);
 	}
 	
 	/**
@@ -669,7 +921,7 @@ public class Service implements Serializable {
 
 
 	
-	private static String webPathFor( File file ) {
+	static String webPathFor( File file ) {
 		if( file == null ) { 
 			return null;
 		}
@@ -681,6 +933,7 @@ public class Service implements Serializable {
 		String path = file.getAbsolutePath();
 		String root = AppProps.instance().getDataPath();
 		
+		/* note: it works for both the legacy and the sharded (i.e. 'ab/cd/<rid>') repository layout */
 		String result = null;
 		int p = path.indexOf(root);
 		if( p==0 ) {
@@ -743,37 +996,34 @@ public class Service implements Serializable {
 	 */
 	public Map<String,String> defaultEnvironment() {
 
-		if( bundle == null || bundle.environment == null ) { 
+		final Map<String,VarTemplate> templates = bundle != null ? bundle.getEnvironmentTemplates() : null;
+		if( templates == null ) { 
 			return null;
 		}
 	
 		
-		Map<String,String> result = new HashMap<String,String>();
-		
-        // Resolve ${..}
-        Pattern pattern = Pattern.compile("\\$\\{([^}]+)}");
-        for (Object key : bundle.environment.keySet()) {
-            String value = bundle.environment.getProperty(key.toString());
-            Matcher matcher = pattern.matcher(value);
-            StringBuffer newValue = new StringBuffer();
-            while (matcher.find()) {
-                String var = matcher.group(1);
-                String replace = null;
-                if( var != null && var.startsWith("env.")) { 
-                	replace = System.getenv(var.substring(4));
-                }
-                else if( fContextHolder.map != null ) { 
-                	replace = fContextHolder.map.get(var) != null ? fContextHolder.map.get(var).toString() : null; 
-                }
-                
-                if (replace == null) {
-                    Logger.warn("Cannot replace variable \"%s\" in entry \"%s\" = \"%s\"", var, key, value);
-                    replace = "";
-                }
-                matcher.appendReplacement(newValue, replace.replaceAll("\\\\", "\\\\\\\\"));
-            }
-            matcher.appendTail(newValue);
-            result.put(key.toString(), newValue.toString());
+		Map<String,String> result = new HashMap<String,String>(templates.size()*2);
+		
+        // Resolve ${..}, the entries are compiled when the bundle is loaded
+        for (final Map.Entry<String,VarTemplate> entry : templates.entrySet()) {
+        	String value = entry.getValue().render(new Utils.MapValue<String,String>() {
+				public String get(String var) {
+	                String replace = null;
+	                if( var.startsWith("env.")) { 
+	                	replace = System.getenv(var.substring(4));
+	                }
+	                else if( fContextHolder.map != null ) { 
+	                	Object item = fContextHolder.map.get(var);
+	                	replace = item != null ? item.toString() : null; 
+	                }
+	                
+	                if (replace == null) {
+	                    Logger.warn("Cannot replace variable \"%s\" in entry \"%s\" = \"%s\"", var, entry.getKey(), entry.getValue());
+	                }
+					return replace;
+				}
+			});
+            result.put(entry.getKey(), value);
         }		
         
         return result;
@@ -0,0 +1,103 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import play.Logger;
+import util.Check;
+
+/**
+ * Registry of the requests currently in progress, indexed by their fingerprint (see {@link ResultCache#fingerprint(Service)}).
+ * <p>
+ * The first request submitted for a fingerprint (the <i>leader</i>) runs the job, while the identical requests
+ * submitted in the meanwhile are attached to it as <i>followers</i>: they do not run any process and
+ * receive a copy of the leader result when it terminates.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class SingleFlight {
+
+	private static final SingleFlight INSTANCE = new SingleFlight();
+
+	/** Singleton accessor method */
+	public static SingleFlight instance() { return INSTANCE; }
+
+	static class Flight {
+		final Service leader;
+		final List<Service> followers = new ArrayList<Service>();
+
+		Flight( Service leader ) {
+			this.leader = leader;
+		}
+	}
+
+	private final Map<String,Flight> flights = new HashMap<String, Flight>();
+
+	/** Marked as protected to prevent direct instantiation */
+	protected SingleFlight() {}
+
+	/**
+	 * Register a request about to be executed
+	 *
+	 * @param service the service request, its fingerprint must be defined
+	 * @return <code>true</code> when the request is the leader for its fingerprint and so it has to be executed,
+	 * <code>false</code> when it has been attached to an identical request in progress
+	 */
+	public synchronized boolean join( Service service ) {
+		Check.notNull(service, "Argument 'service' cannot be null");
+		Check.notEmpty(service.fFingerprint, "Missing fingerprint for request # %s", service.fRid);
+
+		Flight flight = flights.get(service.fFingerprint);
+		if( flight == null ) {
+			flights.put(service.fFingerprint, new Flight(service));
+			return true;
+		}
+
+		flight.followers.add(service);
+		Logger.info("Request # %s attached to the identical request # %s in progress", service.fRid, flight.leader.fRid);
+		return false;
+	}
+
+	/**
+	 * Unregister a leader request, when it terminates or it cannot be executed
+	 *
+	 * @param leader the leader request
+	 * @return the list of the requests attached to the leader, or an empty list if there are no followers
+	 */
+	public synchronized List<Service> leave( Service leader ) {
+		if( leader == null || leader.fFingerprint == null ) {
+			return Collections.emptyList();
+		}
+
+		Flight flight = flights.get(leader.fFingerprint);
+		if( flight == null || flight.leader != leader ) {
+			return Collections.emptyList();
+		}
+
+		flights.remove(leader.fFingerprint);
+		return flight.followers;
+	}
+
+	/**
+	 * @return the number of the requests in progress
+	 */
+	public synchronized int size() {
+		return flights.size();
+	}
+
+	/**
+	 * @return the number of the requests attached to the requests in progress
+	 */
+	public synchronized int getFollowersCount() {
+		int result = 0;
+		for( Flight flight : flights.values() ) {
+			result += flight.followers.size();
+		}
+		return result;
+	}
+
+}
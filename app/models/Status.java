@@ -6,6 +6,7 @@ import java.io.Serializable;
 public enum Status implements Serializable { 
 	
 	READY("Ready"),
+	QUEUED("Queued"),
 	RUNNING("Running"), 
 	DONE("Done"), 
 	FAILED("Failed"), 
@@ -21,6 +22,10 @@ public enum Status implements Serializable {
 		return DONE.equals(this);
 	}
 
+	public boolean isQueued() {
+		return QUEUED.equals(this);
+	}
+
 	public boolean isRunning() {
 		return RUNNING.equals(this);
 	}
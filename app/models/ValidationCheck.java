@@ -1,14 +1,25 @@
 package models;
 
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Serializable;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Date;
 import java.util.regex.Pattern;
 
+import org.apache.commons.io.IOUtils;
 import org.blackcoffee.commons.format.Alphabet;
 import org.blackcoffee.commons.format.Clustal;
-import org.blackcoffee.commons.format.Fasta;
 
 import play.Logger;
 import play.data.validation.EmailCheck;
@@ -16,12 +27,16 @@ import play.data.validation.Validation;
 import play.mvc.Http;
 import play.mvc.Http.Request;
 import plugins.AutoBean;
+import util.Check;
+import util.FastaValidator;
 import util.Utils;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
 import com.thoughtworks.xstream.annotations.XStreamOmitField;
 
+import exception.QuickException;
+
 /**
  * Models a field validation rule. 
  * 
@@ -471,17 +486,44 @@ public class ValidationCheck implements Serializable {
 	 * @param value the field value
 	 */
 	ErrorWrapper applyFastaValidation(String name, String value) {
-		Fasta fasta = new Fasta(type2alphabet(type));
+		StringWriter normalized = new StringWriter(value.length() + value.length()/50);
+		ErrorWrapper error;
+		try {
+			error = applyFastaValidation(name, new StringReader(value), normalized);
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to validate FASTA field: '%s'", name);
+		}
+
+		if( error == null ) {
+	        // normalize the fasta sequence 
+			fNormalizedValue = normalized.toString();
+		}
+		return error;
+	}
+	
+	/**
+	 * Apply the FASTA format validation in a single pass, writing the normalized sequences to the specified writer
+	 * 
+	 * @param name the field name 
+	 * @param in the sequences to validate
+	 * @param out the writer where the normalized sequences are saved 
+	 */
+	ErrorWrapper applyFastaValidation(String name, Reader in, Writer out) throws IOException {
+		FastaValidator fasta = new FastaValidator(type2alphabet(type)) .limits(maxNum, maxLength, sameLength);
 		
 		/* parse the sequences */
-		fasta.parse(value);
+		fasta.parse(in, out);
 		
-		/* check for validity */
-        if ( !fasta.isValid() ) { 
+		/* 
+		 * check for validity, when the parsing has been truncated by a limit 
+		 * the counters are partial so the min constraints cannot be applied 
+		 */
+        if ( fasta.getError() != null ) { 
 			String message = Utils.isNotEmpty(formatError) ? concat(formatError,fasta.getError()) : "validation.fasta.format";
         	return error(name, message, new String[] {fasta.getError()} );
         } 
-        else if( minNum != null && fasta.count()<minNum ) { 
+        else if( minNum != null && !fasta.isTruncated() && fasta.count()<minNum ) { 
 			String message = Utils.isNotEmpty(minNumError) ? minNumError : "validation.fasta.minum";
         	return error(name, message, new String[0]);
         }
@@ -489,7 +531,7 @@ public class ValidationCheck implements Serializable {
 			String message = Utils.isNotEmpty(maxNumError) ? maxNumError : "validation.fasta.maxnum";
         	return error(name, message, new String[0]);
         }
-        else if( minLength != null && fasta.minLength()<minLength ) { 
+        else if( minLength != null && !fasta.isTruncated() && fasta.minLength()<minLength ) { 
 			String message = Utils.isNotEmpty(minLengthError) ? minLengthError : "validation.fasta.minlen";
         	return error(name, message, new String[0]);
         }
@@ -502,13 +544,61 @@ public class ValidationCheck implements Serializable {
         	return error(name, message, new String[0]);
         }
         
-        // normalize the fasta sequence 
-        fNormalizedValue = fasta.toString();
-        
         // no error
         return null;
 	}
 
+	/**
+	 * Whenever the validation can be applied reading the field content as a stream, 
+	 * see {@link #apply(String, File, File)}
+	 */
+	public boolean isStreamable() { 
+		return isFormatFasta(format) && script == null;
+	}
+	
+	/**
+	 * Apply the validation to the content of an uploaded file, reading it in a single pass 
+	 * without loading it in memory. The normalized content is written to the target file. 
+	 * <p>
+	 * Only the {@link #isStreamable()} validations can be applied in this way. 
+	 * 
+	 * @param name the field name 
+	 * @param file the uploaded file to validate
+	 * @param target the file where the normalized content is saved 
+	 */
+	public void apply(String name, File file, File target) {
+		Check.isTrue(isStreamable(), "Validation for field '%s' cannot be applied to a stream", name);
+
+		ErrorWrapper error = null;
+		if( required && file.length() == 0 ) {
+			error = applyRequiredValidation(name, null);
+		}
+		else if( file.length() > 0 ) {
+			Reader in = null;
+			Writer out = null;
+			try { 
+				in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+				out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(target), "UTF-8"));
+				error = applyFastaValidation(name, in, out);
+			}
+			catch( IOException e ) { 
+				throw new QuickException(e, "Unable to validate file: '%s'", file);
+			}
+			finally { 
+				IOUtils.closeQuietly(in);
+				IOUtils.closeQuietly(out);
+			}
+		}
+		
+		if( error != null ) { 
+			target.delete();
+			logError(name, error.message, "file://" + file.getName());
+			Validation.addError(error.fieldName, error.message, error.variables);
+		}
+		
+		fIsValid = (error == null);
+	}
+	
 
 	/**
 	 * Apply the Decimal format validation 
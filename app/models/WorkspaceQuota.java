@@ -0,0 +1,167 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import play.Logger;
+import play.jobs.Job;
+
+/**
+ * Keeps the workspace disk usage under the configured budget, evicting the terminated
+ * requests in least-recently-accessed order.
+ * <p>
+ * The usage is the sum of the repositories size tracked by the {@link RepoIndex}, updated when a result is saved.
+ * When it exceeds the high watermark the DONE and FAILED repositories are deleted, starting from the least recently
+ * accessed one, until the usage falls below the low watermark. Running or locked repositories are never evicted.
+ * <p>
+ * Properties:
+ * <li><code>settings.workspace.quota</code>: the disk budget e.g. <code>50GB</code>, when not defined the quota is disabled</li>
+ * <li><code>settings.workspace.quota.high</code>: the high watermark as a percentage of the budget (default 90)</li>
+ * <li><code>settings.workspace.quota.low</code>: the low watermark as a percentage of the budget (default 80)</li>
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class WorkspaceQuota {
+
+	private static final WorkspaceQuota INSTANCE = new WorkspaceQuota();
+
+	/** Singleton accessor method */
+	public static WorkspaceQuota instance() { return INSTANCE; }
+
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final AtomicLong evictedBytes = new AtomicLong();
+
+	/** Marked as protected to prevent direct instantiation */
+	protected WorkspaceQuota() {}
+
+	/**
+	 * @return the configured disk budget in bytes or <code>0</code> when the quota is disabled
+	 */
+	public long getQuota() {
+		return AppProps.instance().getBytes("settings.workspace.quota", 0);
+	}
+
+	public boolean isEnabled() {
+		return getQuota() > 0;
+	}
+
+	/**
+	 * @return the current workspace usage in bytes
+	 */
+	public long getUsage() {
+		return RepoIndex.instance().getTotalSize();
+	}
+
+	long getHighWatermark() {
+		return getQuota() / 100 * AppProps.instance().getInteger("settings.workspace.quota.high", 90);
+	}
+
+	long getLowWatermark() {
+		return getQuota() / 100 * AppProps.instance().getInteger("settings.workspace.quota.low", 80);
+	}
+
+	/**
+	 * Start the eviction in background when the usage exceeds the high watermark.
+	 * Only one eviction at time is executed.
+	 */
+	public void check() {
+		if( !isEnabled() || getUsage() <= getHighWatermark() ) {
+			return;
+		}
+
+		if( !running.compareAndSet(false, true) ) {
+			return;
+		}
+
+		new Job() {
+			public void doJob() {
+				try {
+					evict();
+				}
+				finally {
+					running.set(false);
+				}
+			}
+		}.now();
+	}
+
+	/**
+	 * Delete the terminated repositories, in least-recently-accessed order, until the usage falls below the low watermark
+	 *
+	 * @return the number of evicted repositories
+	 */
+	int evict() {
+		long low = getLowWatermark();
+		long usage = getUsage();
+		Logger.info("Workspace usage %s bytes exceeds the quota high watermark - evicting down to %s bytes", usage, low);
+
+		int count = 0;
+		for( RepoIndex.Entry entry : candidates() ) {
+			if( getUsage() <= low ) {
+				break;
+			}
+
+			/* it could have been accessed or locked in the meanwhile */
+			if( entry.isLocked() ) {
+				continue;
+			}
+
+			Repo repo = new Repo(entry.folder, false);
+			long size = entry.size;
+			if( ColdTier.isCold(entry.folder) ) {
+				/* the result is safe in the cold tier, only the local copy is removed */
+				if( ColdTier.instance().evict(repo) ) {
+					count++;
+					evictions.incrementAndGet();
+					evictedBytes.addAndGet(size - entry.size);
+				}
+				continue;
+			}
+
+			repo.drop();
+			if( !repo.exists() ) {
+				count++;
+				evictions.incrementAndGet();
+				evictedBytes.addAndGet(size);
+			}
+		}
+
+		Logger.info("Workspace quota evicted %s repositories - current usage: %s bytes", count, getUsage());
+		return count;
+	}
+
+	/**
+	 * @return the terminated (DONE or FAILED) and not locked repositories, sorted by last access time
+	 */
+	List<RepoIndex.Entry> candidates() {
+		List<RepoIndex.Entry> result = new ArrayList<RepoIndex.Entry>();
+		for( RepoIndex.Entry entry : RepoIndex.instance().entries() ) {
+			Status status = entry.status;
+			if( !entry.locked && status != null && (status.isDone() || status.isFailed()) ) {
+				result.add(entry);
+			}
+		}
+
+		Collections.sort(result, new Comparator<RepoIndex.Entry>() {
+			public int compare(RepoIndex.Entry o1, RepoIndex.Entry o2) {
+				long t1 = o1.lastAccessedTime;
+				long t2 = o2.lastAccessedTime;
+				return t1 < t2 ? -1 : (t1 > t2 ? 1 : 0);
+			}
+		});
+		return result;
+	}
+
+	public long getEvictions() { return evictions.get(); }
+
+	public long getEvictedBytes() { return evictedBytes.get(); }
+
+}
@@ -6,8 +6,15 @@ import java.sql.DriverManager;
 import java.sql.Statement;
 import java.util.Properties;
 
+import job.BjobsMonitor;
+import job.CompletionBus;
+import job.JobScheduler;
+import job.ProcessSupervisor;
+import job.QstatMonitor;
+import job.WorkerPool;
 import job.UsageImportJob;
 import models.AppProps;
+import models.RepoIndex;
 import play.Logger;
 import play.Play;
 import play.PlayPlugin;
@@ -15,6 +22,8 @@ import play.cache.Cache;
 import play.jobs.Job;
 import util.Utils;
 import bot.BotListener;
+import bundle.BundleRegistry;
+import bundle.BundleWarmup;
 import bot.BotListener.Config;
 
 public class BootstrapPlugin extends PlayPlugin {
@@ -32,6 +41,10 @@ public class BootstrapPlugin extends PlayPlugin {
 		 */
 		createDatabaseIfNotExists();
 
+		/* 
+		 * load the repositories state in memory 
+		 */
+		RepoIndex.instance().rebuild();
 		
 		/* 
 		 * https://play.lighthouseapp.com/projects/57987-play-framework/tickets/585
@@ -126,6 +139,11 @@ public class BootstrapPlugin extends PlayPlugin {
 		 */
 		Cache.set("server-start-time", System.currentTimeMillis());
 		
+		/* 
+		 * load the bundles and precompile their templates and scripts 
+		 */
+		startBundlesWarmup();
+		
 		
 		/* 
 		 * Import the usage file 
@@ -138,6 +156,14 @@ public class BootstrapPlugin extends PlayPlugin {
 		startMailListener();
 	}
 
+	private void startBundlesWarmup() { 
+		Job warmup = new Job() {
+			public void doJob() throws Exception { BundleWarmup.instance().run(); };
+		};
+		
+		warmup.now();
+	}
+	
 	private void importUsageFile() {
 		/* 
 		 * check if is there a file to import
@@ -193,6 +219,17 @@ public class BootstrapPlugin extends PlayPlugin {
 		Logger.info(">>> Stopping server");
 		terminated = true;
 		
+		/* 
+		 * Stop the service jobs scheduler 
+		 */
+		JobScheduler.instance().shutdown();
+		QstatMonitor.instance().shutdown();
+		BjobsMonitor.instance().shutdown();
+		WorkerPool.instance().shutdown();
+		ProcessSupervisor.instance().shutdown();
+		CompletionBus.instance().shutdown();
+		BundleRegistry.instance().shutdown();
+		
 		/* 
 		 * Shutdown H2 database 
 		 */
@@ -7,8 +7,8 @@ import java.util.List;
 
 import javax.persistence.Query;
 
-import models.OutResult;
 import models.Repo;
+import models.RepoIndex;
 import models.Status;
 import models.UsageLog;
 
@@ -61,13 +61,13 @@ public class History {
 		if( StringUtils.isNotEmpty(log.requestId) ) {
 			repo = new Repo(log.requestId,false);
 		}
-		OutResult out = repo != null ? repo.getResult() : null;
+		RepoIndex.Entry summary = repo != null ? repo.getSummary() : null;
 
 		
-		long _exp = repo != null ? repo.getExpirationTime() : Long.MAX_VALUE;
+		long _exp = summary != null ? summary.getExpirationTime() : Long.MAX_VALUE;
 		this.expire = _exp != Long.MAX_VALUE ? new Date(_exp) : null;
-		this.label = out != null ? out.title : null;
-		this.fHasResult = out != null;
+		this.label = summary != null ? summary.getTitle() : null;
+		this.fHasResult = summary != null && summary.hasResult();
 		
 		// try to lookup the service label throught the service declaration
 		if( this.label == null ) {
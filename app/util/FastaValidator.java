@@ -0,0 +1,428 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import org.blackcoffee.commons.format.Alphabet;
+import org.blackcoffee.commons.format.Fasta;
+
+/**
+ * Single pass FASTA validator. It applies the same rules of {@link Fasta} but reads the sequences
+ * as a stream and writes the normalized content straight to a {@link Writer}, without holding the
+ * sequences in memory.
+ * <p>
+ * The normalized format is the same produced by {@link Fasta#toString()}: each sequence is wrapped using
+ * as width the length of its first line having at least 20 residues (or 70 when there is not such line).
+ * Only the residues read before that line are buffered, up to 70: when the first 70 residues of a sequence 
+ * are all on lines shorter than 20 the width is 70, so the memory used never depends on the input size.
+ * <p>
+ * The parsing stops as soon as one of the limits defined by {@link #limits(Integer, Integer, boolean)}
+ * is exceeded, in this case {@link #isTruncated()} returns <code>true</code> and the counters
+ * are related only to the sequences read so far.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class FastaValidator {
+
+	static final int MIN_WIDTH = 20;
+
+	static final int DEFAULT_WIDTH = 70;
+
+	/** Thrown to interrupt the parsing on format errors */
+	@SuppressWarnings("serial")
+	static class ParseError extends RuntimeException {
+		ParseError( String message, Object... args ) {
+			super(String.format(message, args));
+		}
+	}
+
+	/** Thrown to interrupt the parsing when a limit is exceeded */
+	@SuppressWarnings("serial")
+	static class LimitExceeded extends RuntimeException {}
+
+	final Alphabet alphabet;
+
+	final char[] letters;
+
+	Integer maxNum;
+
+	Integer maxLength;
+
+	boolean sameLength;
+
+	/* the parser status */
+
+	Reader reader;
+
+	Writer writer;
+
+	int next = -2;
+
+	int lineCount;
+
+	int count;
+
+	int minLength = Integer.MAX_VALUE;
+
+	int maxLen;
+
+	boolean blankHeader;
+
+	boolean truncated;
+
+	String error;
+
+	/* the current sequence status */
+
+	int seqLength;
+
+	int width;
+
+	int col;
+
+	final StringBuilder pending = new StringBuilder();
+
+	public FastaValidator( Alphabet alphabet ) {
+		Check.notNull(alphabet, "Argument 'alphabet' cannot be null");
+		this.alphabet = alphabet;
+		this.letters = alphabet.letters();
+	}
+
+	/**
+	 * Define the limits that stop the parsing as soon as they are exceeded
+	 *
+	 * @param maxNum the max number of sequences or <code>null</code>
+	 * @param maxLength the max length of a sequence or <code>null</code>
+	 * @param sameLength when <code>true</code> all the sequences must have the same length
+	 * @return the validator itself
+	 */
+	public FastaValidator limits( Integer maxNum, Integer maxLength, boolean sameLength ) {
+		this.maxNum = maxNum;
+		this.maxLength = maxLength;
+		this.sameLength = sameLength;
+		return this;
+	}
+
+	/**
+	 * Parse the sequences
+	 *
+	 * @param in the FASTA content
+	 * @param out where the normalized content is written, it can be <code>null</code> when only the validation is required
+	 * @return <code>true</code> when the content is valid, <code>false</code> otherwise, see {@link #getError()}
+	 * @throws IOException when an error occurs reading or writing the content
+	 */
+	public boolean parse( Reader in, Writer out ) throws IOException {
+		Check.notNull(in, "Argument 'in' cannot be null");
+		this.reader = in instanceof BufferedReader ? in : new BufferedReader(in);
+		this.writer = out;
+
+		try {
+			int ch, prev=0;
+			boolean started = false;
+			String blank = null;
+			while( (ch=read()) != -1 ) {
+				/* blanks are tolerated at the beginning and at the end of the content, as for a trimmed string */
+				if( ch != '\n' && ch != '\r' ) {
+					if( ch <= ' ' ) {
+						if( started && blank == null ) {
+							blank = unrecognized(ch);
+						}
+						continue;
+					}
+					if( blank != null ) {
+						error = blank;
+						break;
+					}
+					started = true;
+				}
+
+				if( ch == '>' ) {
+					sequence();
+				}
+				else if( ch == '\n' || ch == '\r' ) {
+					/* count the windows line termination (\r\n) only one time */
+					if( (ch=='\n' && prev != '\r') || ch=='\r' ) {
+						lineCount++;
+					}
+				}
+				else if( ch == ';' ) {
+					/* a comment, skip all the line */
+					do { ch=read(); }
+					while( ch != '\n' && ch != '\r' && ch != -1 );
+					lineCount++;
+				}
+				else {
+					error = unrecognized(ch);
+					break;
+				}
+
+				prev = ch;
+			}
+		}
+		catch( ParseError e ) {
+			error = e.getMessage();
+		}
+		catch( LimitExceeded e ) {
+			truncated = true;
+		}
+
+		if( error == null && !truncated ) {
+			if( count == 0 ) {
+				error = "Missing FASTA sequences";
+			}
+			else if( blankHeader ) {
+				error = "All sequence must have a valid non-empty name (ID)";
+			}
+		}
+
+		if( writer != null ) {
+			writer.flush();
+		}
+
+		return isValid();
+	}
+
+	String unrecognized( int ch ) {
+		return String.format("Unrecognized character '%c' (0x%s) in FASTA sequences starting line: %s", ch, Integer.toHexString(ch), lineCount+1);
+	}
+
+	/*
+	 * Parse a sequence block, the leading '>' char has been already consumed
+	 */
+	void sequence() throws IOException {
+		if( maxNum != null && count >= maxNum ) {
+			count++;
+			throw new LimitExceeded();
+		}
+
+		seqLength = 0;
+		width = 0;
+		col = 0;
+		pending.setLength(0);
+
+		header();
+
+		boolean more;
+		do {
+			line();
+
+			int ch = peek();
+			more = ch != -1 && ( ch=='\n' || ch=='\r' || alphabet.isValidChar((char)ch) );
+		}
+		while( more );
+
+		if( seqLength == 0 ) {
+			throw new ParseError("Empty sequence in FASTA block around line: %s", lineCount);
+		}
+
+		/* the sequence has not any line long enough to define the width */
+		if( width == 0 ) {
+			width = DEFAULT_WIDTH;
+			for( int i=0, c=pending.length(); i<c; i++ ) {
+				emit(pending.charAt(i));
+			}
+			pending.setLength(0);
+		}
+		if( col > 0 ) {
+			write('\n');
+		}
+
+		count++;
+		if( seqLength < minLength ) minLength = seqLength;
+		if( seqLength > maxLen ) maxLen = seqLength;
+
+		if( sameLength && minLength != maxLen ) {
+			throw new LimitExceeded();
+		}
+	}
+
+	/*
+	 * The first line of a sequence block is the sequence name
+	 */
+	void header() throws IOException {
+		lineCount++;
+		write('>');
+
+		boolean blank = true;
+		int ch;
+		while( (ch=read()) != -1 && !eol(ch) ) {
+			if( blank && ch > ' ' ) {
+				blank = false;
+			}
+			write(ch);
+		}
+		write('\n');
+
+		blankHeader |= blank;
+	}
+
+	/*
+	 * Read a line of residues. The first line with at least 20 residues defines the width of the normalized sequence,
+	 * when it is the first line of the block it is written through, otherwise it is buffered until its end.
+	 */
+	void line() throws IOException {
+		lineCount++;
+
+		int len=0, column=0, ch;
+		boolean through = false;
+		while( (ch=read()) != -1 && !eol(ch) ) {
+			column++;
+			if( ch == ' ' ) {
+				continue;
+			}
+
+			if( !contains(letters, (char)ch) ) {
+				throw new ParseError("Invalid character '%c' (0x%s) reading FASTA sequences at line: %s, column: %s ", ch, Integer.toHexString(ch), lineCount, column);
+			}
+
+			len++;
+			residue();
+
+			if( width > 0 ) {
+				emit((char)ch);
+			}
+			else if( through ) {
+				write(ch);
+			}
+			else {
+				pending.append((char)ch);
+				/* a long line at the beginning of the block, it defines the width and can be written through */
+				if( len == MIN_WIDTH && pending.length() == MIN_WIDTH ) {
+					write(pending);
+					pending.setLength(0);
+					through = true;
+				}
+				/* too many residues on short lines, the buffer is bounded using the default width */
+				else if( pending.length() >= DEFAULT_WIDTH ) {
+					width = DEFAULT_WIDTH;
+					for( int i=0, c=pending.length(); i<c; i++ ) {
+						emit(pending.charAt(i));
+					}
+					pending.setLength(0);
+				}
+			}
+		}
+
+		if( width == 0 && len >= MIN_WIDTH ) {
+			width = len;
+			if( through ) {
+				write('\n');
+				col = 0;
+			}
+			else {
+				for( int i=0, c=pending.length(); i<c; i++ ) {
+					emit(pending.charAt(i));
+				}
+				pending.setLength(0);
+			}
+		}
+	}
+
+	/*
+	 * Account a new residue for the current sequence, checking the length limits
+	 */
+	void residue() {
+		seqLength++;
+		if( maxLength != null && seqLength > maxLength ) {
+			maxLen = seqLength;
+			throw new LimitExceeded();
+		}
+		if( sameLength && count > 0 && seqLength > maxLen ) {
+			maxLen = seqLength;
+			throw new LimitExceeded();
+		}
+	}
+
+	/*
+	 * Write a residue wrapping the line at the sequence width
+	 */
+	void emit( char ch ) throws IOException {
+		write(ch);
+		if( ++col == width ) {
+			write('\n');
+			col = 0;
+		}
+	}
+
+	void write( int ch ) throws IOException {
+		if( writer != null ) writer.write(ch);
+	}
+
+	void write( CharSequence str ) throws IOException {
+		if( writer != null ) writer.append(str);
+	}
+
+	/*
+	 * Consume a line terminator, treating the sequence CR-LF as a single terminator
+	 */
+	boolean eol( int ch ) throws IOException {
+		if( ch == '\n' ) {
+			return true;
+		}
+		if( ch == '\r' ) {
+			if( peek() == '\n' ) read();
+			return true;
+		}
+		return false;
+	}
+
+	int read() throws IOException {
+		if( next != -2 ) {
+			int result = next;
+			next = -2;
+			return result;
+		}
+		return reader.read();
+	}
+
+	int peek() throws IOException {
+		if( next == -2 ) {
+			next = reader.read();
+		}
+		return next;
+	}
+
+	static boolean contains( char[] letters, char ch ) {
+		for( char c : letters ) {
+			if( c == ch ) return true;
+		}
+		return false;
+	}
+
+	public boolean isValid() {
+		return error == null && !truncated;
+	}
+
+	/**
+	 * @return <code>true</code> when the parsing has been interrupted because a limit has been exceeded
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * @return the format error message or <code>null</code> if the content is valid
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * @return the number of sequences read
+	 */
+	public int count() {
+		return count;
+	}
+
+	public int minLength() {
+		return count > 0 ? minLength : 0;
+	}
+
+	public int maxLength() {
+		return maxLen;
+	}
+
+}
@@ -0,0 +1,350 @@
+package util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import models.AppProps;
+import play.Logger;
+import play.libs.IO;
+import exception.QuickException;
+
+/**
+ * File system operations implemented in the JVM, in place of the external commands
+ * (<code>rm -rf</code>, <code>file</code>, etc.), so that mass cleanups do not fork a process for each path.
+ * <p>
+ * The bulk operations run on a bounded pool of threads whose size is defined by the
+ * <code>fileops.workers</code> property (default 4).
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class FileOps {
+
+	static final int SNIFF_SIZE = 8 * 1024;
+
+	/** the tags recognized at the beginning of an HTML document */
+	static final String[] HTML_TAGS = { "<!doctype html", "<html", "<head", "<body", "<title", "<table", "<div", "<pre", "<h1", "<p>", "<!--" };
+
+	private static ThreadPoolExecutor fExecutor;
+
+	/**
+	 * Delete the specified path and all its content. Symbolic links are deleted but never followed.
+	 *
+	 * @param path the file or directory to delete
+	 * @return <code>true</code> when the path does not exist anymore, <code>false</code> otherwise
+	 */
+	public static boolean delete( File path ) {
+		Check.notNull(path, "Argument 'path' cannot be null");
+
+		if( path.isDirectory() && !isSymlink(path) ) {
+			File[] files = path.listFiles();
+			if( files != null ) for( File it : files ) {
+				delete(it);
+			}
+		}
+
+		return path.delete() || !path.exists();
+	}
+
+	/**
+	 * @param path a file or a directory
+	 * @return the size in bytes of the file or of the directory content, symbolic links are not followed
+	 */
+	public static long sizeOf( File path ) {
+		if( path.isDirectory() && !isSymlink(path) ) {
+			long result = 0;
+			File[] files = path.listFiles();
+			if( files != null ) for( File it : files ) {
+				result += sizeOf(it);
+			}
+			return result;
+		}
+		return path.length();
+	}
+
+	/**
+	 * Check if the specified file is a symbolic link comparing its absolute path with the canonical one
+	 * (the file system API provided by Java 6 has not a specific method).
+	 */
+	public static boolean isSymlink( File file ) {
+		try {
+			File parent = file.getParentFile();
+			File resolved = parent != null ? new File(parent.getCanonicalFile(), file.getName()) : file;
+			return !resolved.getCanonicalFile().equals(resolved.getAbsoluteFile());
+		}
+		catch( IOException e ) {
+			Logger.warn("Unable to resolve path: '%s' - %s", file, e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Execute the specified tasks on the file operations pool and wait for their termination
+	 *
+	 * @param tasks the tasks to execute
+	 * @return the number of tasks completed successfully
+	 */
+	public static int invokeAll( Collection<? extends Runnable> tasks ) {
+		Check.notNull(tasks, "Argument 'tasks' cannot be null");
+		if( tasks.isEmpty() ) return 0;
+
+		List<Callable<Object>> callables = new ArrayList<Callable<Object>>(tasks.size());
+		for( Runnable task : tasks ) {
+			callables.add(Executors.callable(task));
+		}
+
+		int count = 0;
+		try {
+			for( Future<Object> future : executor().invokeAll(callables) ) {
+				try {
+					future.get();
+					count++;
+				}
+				catch( ExecutionException e ) {
+					Logger.error(e.getCause(), "Error executing file operation");
+				}
+			}
+		}
+		catch( InterruptedException e ) {
+			Logger.warn("File operations interrupted");
+			Thread.currentThread().interrupt();
+		}
+		return count;
+	}
+
+	static synchronized ThreadPoolExecutor executor() {
+		if( fExecutor != null ) {
+			return fExecutor;
+		}
+
+		int size = Math.max(1, AppProps.instance().getInteger("fileops.workers", 4));
+		Logger.info("Creating file operations pool - size: %s", size);
+
+		final AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread result = new Thread(r, String.format("fileops-%s", count.incrementAndGet()));
+				result.setDaemon(true);
+				return result;
+			}
+		};
+
+		fExecutor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), factory);
+		fExecutor.allowCoreThreadTimeOut(true);
+		return fExecutor;
+	}
+
+	/**
+	 * Create a symbolic link, replacing the link file if already exists.
+	 * <p>
+	 * NOTE: Java 6 does not provide any API to create links, so the <code>ln</code> tool is launched directly (without a shell)
+	 *
+	 * @param target the file the link points to
+	 * @param link the link file to create
+	 */
+	public static void symlink( File target, File link ) {
+		link(target, link, true);
+	}
+
+	/**
+	 * Create a hard link, replacing the link file if already exists. The target must be a file
+	 * in the same file system as the link.
+	 *
+	 * @param target the file the link points to
+	 * @param link the link file to create
+	 */
+	public static void hardlink( File target, File link ) {
+		link(target, link, false);
+	}
+
+	/**
+	 * Create the hard links of many files in the specified folder with a single <code>ln</code> invocation,
+	 * replacing the link files if already exist. The links have the same name of the linked files.
+	 *
+	 * @param targets the files the links point to, they must be in the same file system as the folder
+	 * @param folder the folder where the links are created
+	 */
+	public static void hardlink( Collection<File> targets, File folder ) {
+		Check.notNull(targets, "Argument 'targets' cannot be null");
+		Check.notNull(folder, "Argument 'folder' cannot be null");
+		if( targets.isEmpty() ) return;
+
+		List<String> cmd = new ArrayList<String>(targets.size()+3);
+		cmd.add("ln");
+		cmd.add("-f");
+		for( File target : targets ) {
+			cmd.add(target.getAbsolutePath());
+		}
+		cmd.add(folder.getAbsolutePath());
+		ln(cmd, folder, targets.size() + " files");
+	}
+
+	private static void link( File target, File link, boolean symbolic ) {
+		Check.notNull(target, "Argument 'target' cannot be null");
+		Check.notNull(link, "Argument 'link' cannot be null");
+
+		List<String> cmd = symbolic
+				? Arrays.asList("ln", "-f", "-s", target.getAbsolutePath(), link.getAbsolutePath())
+				: Arrays.asList("ln", "-f", target.getAbsolutePath(), link.getAbsolutePath());
+		ln(cmd, link, target);
+	}
+
+	private static void ln( List<String> cmd, Object link, Object target ) {
+		ProcessBuilder builder = new ProcessBuilder(cmd);
+		builder.redirectErrorStream(true);
+		try {
+			Process proc = builder.start();
+			proc.getOutputStream().close();
+			String out = IO.readContentAsString(proc.getInputStream());
+			int exitcode = proc.waitFor();
+			if( exitcode != 0 ) {
+				throw new QuickException("Unable to create link '%s' to '%s' - exitcode: %s - %s", link, target, exitcode, out);
+			}
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to create link '%s' to '%s'", link, target);
+		}
+		catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new QuickException(e, "Interrupted creating link '%s' to '%s'", link, target);
+		}
+	}
+
+	/**
+	 * Guess the content type of a file reading its first bytes.
+	 *
+	 * @return the mime type and the charset in the same format as the <code>file --brief --mime</code> tool
+	 * e.g. <code>text/plain; charset=us-ascii</code>
+	 */
+	public static String sniff( File file ) {
+		Check.notNull(file, "Argument 'file' cannot be null");
+
+		byte[] buffer = new byte[SNIFF_SIZE];
+		int len = 0;
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			int n;
+			while( len < buffer.length && (n=in.read(buffer, len, buffer.length-len)) != -1 ) {
+				len += n;
+			}
+		}
+		catch( IOException e ) {
+			throw new QuickException(e, "Unable to read file: '%s'", file);
+		}
+		finally {
+			if( in != null ) try { in.close(); } catch( IOException e ) { /* ignore */ }
+		}
+
+		return sniff(buffer, len);
+	}
+
+	static String sniff( byte[] buffer, int len ) {
+		if( len == 0 ) {
+			return "application/x-empty; charset=binary";
+		}
+
+		String magic = magic(buffer, len);
+		if( magic != null ) {
+			return magic + "; charset=binary";
+		}
+
+		boolean ascii = true;
+		int i=0;
+		while( i<len ) {
+			int b = buffer[i] & 0xFF;
+			if( b == 0 ) {
+				return "application/octet-stream; charset=binary";
+			}
+
+			if( b < 0x80 ) {
+				if( b < 0x20 && b != '\n' && b != '\r' && b != '\t' && b != '\f' && b != 0x1B ) {
+					return "application/octet-stream; charset=binary";
+				}
+				i++;
+				continue;
+			}
+
+			/* validate the UTF-8 multi-bytes sequence */
+			ascii = false;
+			int count = (b & 0xE0) == 0xC0 ? 1 : (b & 0xF0) == 0xE0 ? 2 : (b & 0xF8) == 0xF0 ? 3 : -1;
+			if( count == -1 ) {
+				return "application/octet-stream; charset=binary";
+			}
+			for( int j=1; j<=count; j++ ) {
+				if( i+j >= len ) {
+					/* sequence truncated by the buffer size */
+					break;
+				}
+				if( (buffer[i+j] & 0xC0) != 0x80 ) {
+					return "application/octet-stream; charset=binary";
+				}
+			}
+			i += count+1;
+		}
+
+		return markup(buffer, len) + (ascii ? "; charset=us-ascii" : "; charset=utf-8");
+	}
+
+	/**
+	 * Recognize the HTML and XML documents by their first tag
+	 *
+	 * @return the text file mime type i.e. <code>text/html</code>, <code>application/xml</code> or <code>text/plain</code>
+	 */
+	static String markup( byte[] buffer, int len ) {
+		/* skip the UTF-8 byte order mark and the leading blanks */
+		int i = startsWith(buffer, len, "\u00EF\u00BB\u00BF") ? 3 : 0;
+		while( i<len && Character.isWhitespace(buffer[i]) ) {
+			i++;
+		}
+		if( i >= len || buffer[i] != '<' ) {
+			return "text/plain";
+		}
+
+		String head = new String(buffer, i, Math.min(len-i, 512)).toLowerCase();
+		if( head.startsWith("<?xml") ) {
+			/* an XHTML document is reported as html */
+			return head.contains("<!doctype html") || head.contains("<html") ? "text/html" : "application/xml";
+		}
+		for( String tag : HTML_TAGS ) {
+			if( head.startsWith(tag) ) {
+				return "text/html";
+			}
+		}
+		return "text/plain";
+	}
+
+	static String magic( byte[] buffer, int len ) {
+		if( startsWith(buffer, len, "%PDF") ) return "application/pdf";
+		if( startsWith(buffer, len, "GIF8") ) return "image/gif";
+		if( startsWith(buffer, len, "\u0089PNG") ) return "image/png";
+		if( startsWith(buffer, len, "\u00FF\u00D8\u00FF") ) return "image/jpeg";
+		if( startsWith(buffer, len, "PK\u0003\u0004") ) return "application/zip";
+		if( startsWith(buffer, len, "\u001F\u008B") ) return "application/x-gzip";
+		return null;
+	}
+
+	static boolean startsWith( byte[] buffer, int len, String prefix ) {
+		if( len < prefix.length() ) return false;
+		for( int i=0; i<prefix.length(); i++ ) {
+			if( (buffer[i] & 0xFF) != prefix.charAt(i) ) return false;
+		}
+		return true;
+	}
+
+}
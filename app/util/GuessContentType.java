@@ -7,12 +7,10 @@ import java.util.List;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
 
-import play.libs.IO;
-import exception.QuickException;
 
 /**
- * Guess the file content type (text/binary) and the mime-type using 
- * the Linux 'file' tool
+ * Guess the file content type (text/binary) and the mime-type sniffing 
+ * the file content, see {@link FileOps#sniff(File)}
  * 
  * @author Paolo Di Tommaso
  *
@@ -31,9 +29,7 @@ public class GuessContentType {
 			);
 	
 	File fFile;
-	int fResult;
 	String fStdOut;
-	String fStdErr;
 	
 	String fMimeType;
 	String fCharset;
@@ -54,7 +50,7 @@ public class GuessContentType {
 			fStdOut = "text/plain; charset=us-ascii";
 		}
 		else { 
-			invokecmd(file);
+			fStdOut = FileOps.sniff(file);
 		}
 
 
@@ -67,29 +63,6 @@ public class GuessContentType {
 	
 	
 
-	private void invokecmd(File file) {
-
-		String[] cmd = {};
-		try {
-			cmd = new String[] { "file", "--brief", "--mime", file.getAbsolutePath() }; 
-			Process p = Runtime.getRuntime().exec(cmd);
-			fResult = p.waitFor();
-			
-			fStdOut = IO.readContentAsString(p.getInputStream());
-			fStdErr = IO.readContentAsString(p.getErrorStream());
-			
-		} 
-		catch (Exception e) {
-			throw new QuickException(e, "Cannot execute command: ", Utils.asString(cmd) );
-		}
-
-		if( fResult != 0 ) { 
-			String err = StringUtils.isNotEmpty(fStdErr) ? fStdErr : fStdOut;
- 			throw new QuickException("'file' command terminated with non-zero exit code: %d - %s", fResult, err); 
-		}
-		
-	}
-
 	void parse(String value) {
 		if( value == null ) return;
 		
@@ -7,6 +7,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -20,8 +21,9 @@ import java.util.Set;
 
 import models.Bundle;
 import models.Field;
+import models.RepoArchive;
 
-import org.blackcoffee.commons.utils.FileIterator;
+import org.blackcoffee.commons.utils.ReaderIterator;
 
 import play.Logger;
 import play.mvc.Scope;
@@ -125,11 +127,17 @@ public class ServerTags extends FastTags {
 
 		boolean escape = Boolean.TRUE.equals(args.get("escapeHtml"));
 
-		for (String line : new FileIterator(file)) {
-			if (escape) {
-				line = JavaExtensions.escapeHtml(line).toString();
+		/* the file can be packed in the archive of an idle request */
+		Reader reader = RepoArchive.reader(file);
+		try {
+			for (String line : new ReaderIterator(reader)) {
+				if (escape) {
+					line = JavaExtensions.escapeHtml(line).toString();
+				}
+				out.println(line);
 			}
-			out.println(line);
+		} finally {
+			reader.close();
 		}
 
 	}
@@ -2,7 +2,6 @@ package util;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -13,12 +12,12 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import models.RepoArchive;
+
 import org.apache.commons.lang.StringUtils;
-import org.blackcoffee.commons.utils.FileIterator;
 import org.blackcoffee.commons.utils.ReaderIterator;
 
 import play.Logger;
-import play.libs.IO;
 
 /**
  * Utility class for T-Coffee related operations 
@@ -36,7 +35,7 @@ public class TCoffeeHelper {
 
 	public static ResultHtml parseHtml( File file )  
 	{
-		return parseHtml(IO.readContentAsString(file));
+		return parseHtml(RepoArchive.readContent(file));
 	}
 	
 	public static ResultHtml parseHtml(String html) {
@@ -62,7 +61,7 @@ public class TCoffeeHelper {
 	}
 
 	public static List<Integer> parseConsensus( File html ) { 
-		return parseConsensus(IO.readContentAsString(html));
+		return parseConsensus(RepoArchive.readContent(html));
 	}
 	
 	public static List<Integer> parseConsensus( String html ) { 
@@ -130,13 +129,7 @@ public class TCoffeeHelper {
 	{
 		List<String[]> result = new ArrayList<String[]>();
 		
-		Reader reader;
-		try {
-			reader = new FileReader(file);
-		} catch (FileNotFoundException e) {
-			throw new RuntimeException(e);
-		}
-		
+		Reader reader = RepoArchive.reader(file);
 		Iterator<String> it = new ReaderIterator(reader).iterator();
 		while( it.hasNext() ) {
 			String line = it.next();
@@ -165,7 +158,7 @@ public class TCoffeeHelper {
 	}
 	
 	public static String jsonConsensus( File file ) { 
-		List<Integer> list = parseConsensus(IO.readContentAsString(file));
+		List<Integer> list = parseConsensus(RepoArchive.readContent(file));
 		
 		boolean appendComma=false;
 		StringBuilder result = new StringBuilder();
@@ -218,7 +211,7 @@ public class TCoffeeHelper {
 		
 
 		boolean header = false;
-		for( String line : new FileIterator(file) ) {
+		for( String line : new ReaderIterator(RepoArchive.reader(file)) ) {
 			if( StringUtils.isEmpty(line) ) {
 				if( !header ) {
 					// consume the blanks at the beginning of the file
@@ -35,6 +35,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -1547,15 +1549,21 @@ public class Utils {
     	return result;
     } 
     
+    /** the copy constructors by class, see {@link #copy(Object)} */
+    static final ConcurrentMap<Class,Constructor> COPY_CONSTRUCTORS = new ConcurrentHashMap<Class, Constructor>();
+    
     public static <T> T copy( T item ) {
     	if( item == null ) {
     		return null;
     	}
     	
 		Class clazz = item.getClass();
-		Constructor<?> c;
 		try {
-			c = clazz.getConstructor(clazz);
+			Constructor c = COPY_CONSTRUCTORS.get(clazz);
+			if( c == null ) { 
+				c = clazz.getConstructor(clazz);
+				COPY_CONSTRUCTORS.put(clazz, c);
+			}
 			return (T) c.newInstance(item);
 		} 
 		catch (Exception e) {
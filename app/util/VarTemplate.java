@@ -0,0 +1,139 @@
+package util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A string template containing variables with the syntax <code>${var-name}</code>, compiled once
+ * as a sequence of literal and variable segments.
+ * <p>
+ * Rendering it does not require any regular expression matching, it just concatenates the literals
+ * and the variables values. The result of a template without variables is the template text itself.
+ * <p>
+ * Differently from {@link Utils#replaceVars(CharSequence, Utils.MapValue)} the variables values
+ * are always inserted literally, i.e. the <code>$</code> and <code>\</code> characters are not interpreted.
+ *
+ * @author Paolo Di Tommaso
+ *
+ */
+public class VarTemplate implements Serializable {
+
+	static final Pattern VAR_PATTERN = Pattern.compile("\\$\\{(.+?)\\}");
+
+	/** The template text */
+	final String text;
+
+	/** The literal segments, always one more than the variables */
+	final String[] literals;
+
+	/** The variables names, the i-th variable is placed between the i-th and (i+1)-th literal */
+	final String[] vars;
+
+	/** The literals total length, used to size the result buffer */
+	final int size;
+
+	VarTemplate( String text, String[] literals, String[] vars ) {
+		this.text = text;
+		this.literals = literals;
+		this.vars = vars;
+
+		int len = 0;
+		for( String str : literals ) {
+			len += str.length();
+		}
+		this.size = len;
+	}
+
+	/**
+	 * Compile the specified text
+	 *
+	 * @param text the template string, it can contain variables with the syntax <code>${var-name}</code>
+	 * @return the compiled template instance
+	 */
+	public static VarTemplate compile( final String text ) {
+		Check.notNull(text, "Argument 'text' cannot be null");
+
+		if( !text.contains("${") ) {
+			return new VarTemplate(text, new String[] { text }, new String[0]);
+		}
+
+		List<String> literals = new ArrayList<String>();
+		List<String> vars = new ArrayList<String>();
+
+		Matcher matcher = VAR_PATTERN.matcher(text);
+		int last = 0;
+		while( matcher.find() ) {
+			literals.add( text.substring(last, matcher.start()) );
+			vars.add( matcher.group(1) );
+			last = matcher.end();
+		}
+		literals.add( text.substring(last) );
+
+		return new VarTemplate(text, literals.toArray(new String[literals.size()]), vars.toArray(new String[vars.size()]));
+	}
+
+	/**
+	 * @return <code>true</code> when the template does not contain any variable
+	 */
+	public boolean isStatic() {
+		return vars.length == 0;
+	}
+
+	/**
+	 * @return the variables names in the order they appear in the template
+	 */
+	public List<String> getVars() {
+		if( vars.length == 0 ) {
+			return Collections.emptyList();
+		}
+
+		List<String> result = new ArrayList<String>(vars.length);
+		for( String name : vars ) {
+			result.add(name);
+		}
+		return result;
+	}
+
+	/**
+	 * Render the template replacing each variable with the value returned by the specified mapper.
+	 * The <code>null</code> values are replaced by an empty string
+	 */
+	public String render( Utils.MapValue<String, ?> mapper ) {
+		if( vars.length == 0 ) {
+			return text;
+		}
+
+		StringBuilder result = new StringBuilder(size + 16 * vars.length);
+		result.append(literals[0]);
+		for( int i=0; i<vars.length; i++ ) {
+			Object value = mapper.get(vars[i]);
+			if( value != null ) {
+				result.append(value.toString());
+			}
+			result.append(literals[i+1]);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Render the template using the values in the specified map
+	 */
+	public String render( final Map<String, ?> values ) {
+		return render(new Utils.MapValue<String,Object>() {
+			public Object get(String key) {
+				return values.get(key);
+			}
+		});
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+
+}
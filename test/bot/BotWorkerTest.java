@@ -67,6 +67,12 @@ public class BotWorkerTest extends UnitTest{
 	}
 
 	
+	@Test 
+	public void testLoadServerBusyTemplate() { 
+		Email result = worker.loadMailTemplate("bot-server-busy.txt");
+		assertEquals(  "test - T-COFFEE request "+service.rid()+" (SERVER BUSY)", result.getSubject() );
+	}
+	
 	@Test 
 	public void testLoadCachedTemplete() throws IOException, MessagingException { 
 		
@@ -0,0 +1,63 @@
+package bundle;
+
+import java.util.List;
+
+import models.Bundle;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+import util.TestHelper;
+
+public class BundleRegistryTest extends UnitTest {
+
+	@Test
+	public void testLoadUnload() {
+		BundleRegistry registry = new BundleRegistry();
+		assertTrue( registry.getNames().isEmpty() );
+
+		Bundle bundle = TestHelper.bundle();
+		registry.load(bundle);
+		assertSame( bundle, registry.get("test-bundle") );
+		assertEquals( 1, registry.getBundles().size() );
+		assertEquals( "test-bundle", registry.getNames().get(0) );
+		assertTrue( bundle.contentHash != 0 );
+
+		/* a new version replaces the old one */
+		Bundle other = TestHelper.bundle();
+		registry.load(other);
+		assertSame( other, registry.get("test-bundle") );
+		assertEquals( 1, registry.getBundles().size() );
+
+		registry.unload(other);
+		assertNull( registry.get("test-bundle") );
+		assertTrue( registry.getBundles().isEmpty() );
+	}
+
+	@Test
+	public void testSnapshotIsImmutable() {
+		BundleRegistry registry = new BundleRegistry();
+		BundleRegistry.Snapshot before = registry.snapshot();
+
+		Bundle bundle = TestHelper.bundle();
+		registry.load(bundle);
+		BundleRegistry.Snapshot after = registry.snapshot();
+
+		assertNotSame( before, after );
+		assertTrue( before.bundles.isEmpty() );
+		assertSame( bundle, after.bundles.get("test-bundle") );
+		assertSame( bundle, after.roots.get(bundle.root) );
+
+		try {
+			after.bundles.remove("test-bundle");
+			fail();
+		}
+		catch( UnsupportedOperationException e ) {
+			/* ok */
+		}
+
+		List<String> errors = registry.getErrors();
+		assertTrue( errors.isEmpty() );
+	}
+
+}
@@ -0,0 +1,59 @@
+package bundle;
+
+import groovy.lang.GroovyObject;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import play.libs.IO;
+import play.test.UnitTest;
+
+public class BundleScriptLoaderTest extends UnitTest {
+
+	@Test
+	public void testScriptCache() {
+		BundleScriptLoader loader = new BundleScriptLoader();
+
+		Object s1 = loader.getExtensionByScript("return x * 2");
+		Object s2 = loader.getExtensionByScript("return x * 2");
+		Object s3 = loader.getExtensionByScript("return x * 3");
+
+		/* same class, different instances */
+		assertNotSame( s1, s2 );
+		assertSame( s1.getClass(), s2.getClass() );
+		assertNotSame( s1.getClass(), s3.getClass() );
+
+		((GroovyObject)s1).setProperty("x", 2);
+		((GroovyObject)s2).setProperty("x", 5);
+		assertEquals( 4, ((GroovyObject)s1).invokeMethod("run", null) );
+		assertEquals( 10, ((GroovyObject)s2).invokeMethod("run", null) );
+
+		loader.clearCache();
+		assertNotSame( s1.getClass(), loader.getExtensionByScript("return x * 2").getClass() );
+	}
+
+	@Test
+	public void testFileCache() {
+		File file = new File("./TestCachedScript.groovy");
+		try {
+			IO.writeContent("return 1", file);
+			BundleScriptLoader loader = new BundleScriptLoader();
+
+			GroovyObject s1 = (GroovyObject) loader.getExtensionByFile("./TestCachedScript.groovy");
+			GroovyObject s2 = (GroovyObject) loader.getExtensionByFile("./TestCachedScript.groovy");
+			assertSame( s1.getClass(), s2.getClass() );
+			assertEquals( 1, s1.invokeMethod("run", null) );
+
+			/* changing the file it is compiled again */
+			IO.writeContent("return 1000", file);
+			GroovyObject s3 = (GroovyObject) loader.getExtensionByFile("./TestCachedScript.groovy");
+			assertNotSame( s1.getClass(), s3.getClass() );
+			assertEquals( 1000, s3.invokeMethod("run", null) );
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package bundle;
+
+import java.io.File;
+
+import models.Bundle;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+import util.TestHelper;
+
+public class BundleWarmupTest extends UnitTest {
+
+	@Test
+	public void testWarmup() {
+		Bundle bundle = TestHelper.bundle();
+
+		BundleWarmup.Stats stats = new BundleWarmup.Stats(bundle.name);
+		new BundleWarmup().warmup(bundle, stats);
+
+		assertEquals( 5, stats.pages );
+		assertEquals( 2, stats.mails );
+		assertEquals( 1, stats.scripts );
+		assertEquals( 0, stats.errors );
+
+		/* the script has been compiled and cached */
+		assertTrue( bundle.getScriptLoader().fFileCache.containsKey(new File(bundle.scriptPath, "Hello.groovy")) );
+	}
+
+	@Test
+	public void testList() {
+		Bundle bundle = TestHelper.bundle();
+
+		assertEquals( 5, BundleWarmup.list(bundle.pagesPath, ".html").size() );
+		assertEquals( 2, BundleWarmup.list(bundle.mailPath, null).size() );
+		assertTrue( BundleWarmup.list(null, null).isEmpty() );
+	}
+
+	@Test
+	public void testReady() {
+		BundleWarmup warmup = new BundleWarmup();
+		assertFalse( warmup.isReady() );
+		assertEquals( -1, warmup.getElapsed() );
+
+		warmup.run();
+		assertTrue( warmup.isReady() );
+		assertTrue( warmup.getElapsed() >= 0 );
+	}
+
+}
@@ -0,0 +1,105 @@
+package job;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import models.AppProps;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class BjobsMonitorTest extends UnitTest {
+
+	@Test
+	public void testParse() {
+		Map<String,String> result = BjobsMonitor.parse(Arrays.asList(
+				"JOBID   USER    STAT  QUEUE      FROM_HOST   EXEC_HOST   JOB_NAME          SUBMIT_TIME",
+				"4521    tcoffee RUN   normal     ws-1        node-12     tcoffee-ab12cd    Oct 17 10:21",
+				"4522    tcoffee EXIT  normal     ws-1        node-12     tcoffee-ef34gh    Oct 17 10:22",
+				"Job <4519> is not found"
+				));
+
+		assertEquals( 3, result.size() );
+		assertEquals( "RUN", result.get("4521") );
+		assertEquals( "EXIT", result.get("4522") );
+		assertEquals( BjobsMonitor.PURGED, result.get("4519") );
+	}
+
+	@Test
+	public void testStates() {
+		BjobsMonitor monitor = BjobsMonitor.instance();
+		assertTrue( monitor.isTerminated("DONE") );
+		assertFalse( monitor.isFailed("DONE") );
+		assertTrue( monitor.isTerminated("EXIT") );
+		assertTrue( monitor.isFailed("EXIT") );
+		assertFalse( monitor.isTerminated("PEND") );
+		assertFalse( monitor.isFailed("RUN") );
+		assertTrue( monitor.isTerminated(BjobsMonitor.PURGED) );
+		assertFalse( monitor.isFailed(BjobsMonitor.PURGED) );
+		assertFalse( monitor.isMissingTerminated() );
+	}
+
+	@Test
+	public void testNotFound() {
+		Map<String,String> result = BjobsMonitor.parse(Arrays.asList("Job <4519> is not found", "LSF is down. Please wait ..."));
+		assertEquals( 1, result.size() );
+		assertEquals( BjobsMonitor.PURGED, result.get("4519") );
+		assertTrue( BjobsMonitor.parse(Arrays.<String>asList()).isEmpty() );
+	}
+
+	@Test
+	public void testQueryFailure() {
+		AppProps.instance().setProperty("bsub.bjobs", "false");
+		BjobsMonitor monitor = new BjobsMonitor();
+		monitor.jobs.put("1", new ClusterJobMonitor.Entry("1", 0, null));
+		try {
+			monitor.query();
+			fail("A 'bjobs' error without any job reported should fail the poll round");
+		}
+		catch( Exception e ) {
+			/* ok */
+		}
+		finally {
+			AppProps.instance().remove("bsub.bjobs");
+		}
+	}
+
+	@Test
+	public void testPoll() {
+		final Map<String,String> status = new HashMap<String, String>();
+		ClusterJobMonitor monitor = new BjobsMonitor() {
+			protected Map<String, String> query() { return status; }
+			protected void cancel(String jobid) { }
+		};
+
+		final boolean[] terminated = new boolean[2];
+		ClusterJobMonitor.Handler handler = new ClusterJobMonitor.Handler() {
+			public void terminated(String jobid, boolean error) {
+				terminated[Integer.parseInt(jobid)] = true;
+			}
+		};
+		monitor.jobs.put("0", new ClusterJobMonitor.Entry("0", 0, handler));
+		monitor.jobs.put("1", new ClusterJobMonitor.Entry("1", 0, handler));
+
+		/* a job not listed is not terminated */
+		status.put("0", "RUN");
+		monitor.poll();
+		assertFalse( terminated[0] );
+		assertFalse( terminated[1] );
+
+		/* only the 'DONE' and 'EXIT' states terminate the job */
+		status.put("0", "DONE");
+		monitor.poll();
+		assertTrue( terminated[0] );
+		assertFalse( terminated[1] );
+		assertEquals( 1, monitor.size() );
+
+		/* a job purged from the history is terminated */
+		status.put("1", BjobsMonitor.PURGED);
+		monitor.poll();
+		assertTrue( terminated[1] );
+		assertEquals( 0, monitor.size() );
+	}
+}
@@ -0,0 +1,75 @@
+package job;
+
+import java.util.concurrent.TimeUnit;
+
+import models.Status;
+
+import org.junit.Test;
+
+import play.libs.F.Promise;
+import play.test.UnitTest;
+
+public class CompletionBusTest extends UnitTest {
+
+	@Test
+	public void testFire() throws Exception {
+		CompletionBus bus = new CompletionBus();
+		Promise<Status> p1 = bus.waitFor("abc", 10000);
+		Promise<Status> p2 = bus.waitFor("abc", 10000);
+		Promise<Status> other = bus.waitFor("xyz", 10000);
+		assertEquals( 3, bus.getWaitingCount() );
+
+		bus.fire("abc", Status.DONE);
+		assertEquals( Status.DONE, p1.get(1, TimeUnit.SECONDS) );
+		assertEquals( Status.DONE, p2.get(1, TimeUnit.SECONDS) );
+		assertFalse( other.isDone() );
+		assertEquals( 1, bus.getWaitingCount() );
+
+		bus.shutdown();
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		CompletionBus bus = new CompletionBus();
+		Promise<Status> promise = bus.waitFor("abc", 100);
+
+		assertNull( promise.get(5, TimeUnit.SECONDS) );
+		assertEquals( 0, bus.getWaitingCount() );
+
+		/* a late event does not fail */
+		bus.fire("abc", Status.DONE);
+		bus.shutdown();
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		CompletionBus bus = new CompletionBus();
+		Promise<Status> p1 = bus.waitFor("abc", 10000);
+		Promise<Status> p2 = bus.waitFor("abc", 10000);
+		assertEquals( 2, bus.getWaitingCount() );
+
+		bus.cancel("abc", p1);
+		assertEquals( 1, bus.getWaitingCount() );
+
+		bus.fire("abc", Status.DONE);
+		assertFalse( p1.isDone() );
+		assertEquals( Status.DONE, p2.get(1, TimeUnit.SECONDS) );
+		assertEquals( 0, bus.getWaitingCount() );
+
+		bus.shutdown();
+	}
+
+	@Test
+	public void testListener() {
+		final Status[] result = new Status[1];
+		CompletionBus bus = new CompletionBus();
+		bus.addListener(new CompletionBus.Listener() {
+			public void changed(String rid, Status status) {
+				result[0] = status;
+			}
+		});
+
+		bus.fire("abc", Status.FAILED);
+		assertEquals( Status.FAILED, result[0] );
+	}
+}
@@ -0,0 +1,87 @@
+package job;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class ExpiryQueueTest extends UnitTest {
+
+	@Test
+	public void testOrder() {
+		ExpiryQueue queue = new ExpiryQueue();
+		queue.schedule("c", 300);
+		queue.schedule("a", 100);
+		queue.schedule("b", 200);
+		assertEquals( 3, queue.size() );
+
+		assertEquals( "a", queue.pollDue(250) );
+		assertEquals( "b", queue.pollDue(250) );
+		assertNull( queue.pollDue(250) );
+		assertEquals( 1, queue.size() );
+
+		assertEquals( "c", queue.pollDue(300) );
+		assertNull( queue.pollDue(Long.MAX_VALUE) );
+		assertEquals( 0, queue.size() );
+	}
+
+	@Test
+	public void testReschedule() {
+		ExpiryQueue queue = new ExpiryQueue();
+		queue.schedule("a", 100);
+		queue.schedule("b", 200);
+
+		/* 'a' has been accessed many times, its heap entry is just postponed */
+		for( int i=1; i<=100; i++ ) {
+			queue.schedule("a", 400 + i);
+		}
+		assertEquals( 2, queue.size() );
+		assertEquals( 2, queue.getHeapSize() );
+
+		assertEquals( "b", queue.pollDue(300) );
+		assertNull( queue.pollDue(300) );
+		assertNull( queue.pollDue(499) );
+		assertEquals( "a", queue.pollDue(500) );
+		assertEquals( 0, queue.getHeapSize() );
+
+		/* re-scheduled earlier, the old entry is stale */
+		queue.schedule("c", 500);
+		queue.schedule("c", 100);
+		assertEquals( "c", queue.pollDue(100) );
+		assertNull( queue.pollDue(1000) );
+		assertEquals( 0, queue.size() );
+	}
+
+	@Test
+	public void testRemove() {
+		ExpiryQueue queue = new ExpiryQueue();
+		queue.schedule("a", 100);
+		queue.schedule("b", 200);
+		queue.clean("a");
+		assertEquals( 1, queue.getCleaningCount() );
+
+		queue.remove("a");
+		assertEquals( 1, queue.size() );
+		assertEquals( 0, queue.getCleaningCount() );
+		assertEquals( "b", queue.pollDue(300) );
+		assertNull( queue.pollDue(300) );
+
+		/* a not terminated job is removed from the queue */
+		queue.schedule("c", 100);
+		queue.schedule("c", Long.MAX_VALUE);
+		assertNull( queue.pollDue(300) );
+	}
+
+	@Test
+	public void testCleaning() {
+		ExpiryQueue queue = new ExpiryQueue();
+		queue.clean("a");
+		queue.clean("b");
+		queue.clean("a");
+		assertEquals( 2, queue.getCleaningCount() );
+
+		assertEquals( "a", queue.pollCleaning() );
+		assertEquals( "b", queue.pollCleaning() );
+		assertNull( queue.pollCleaning() );
+	}
+
+}
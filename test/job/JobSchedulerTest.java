@@ -0,0 +1,96 @@
+package job;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import models.AppProps;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+import exception.QueueFullException;
+
+public class JobSchedulerTest extends UnitTest {
+
+	@Test
+	public void testQueue() throws Exception {
+		AppProps.instance().setProperty("scheduler.test-queue.concurrency", "1");
+		AppProps.instance().setProperty("scheduler.test-queue.queue.size", "1");
+		
+		final CountDownLatch latch = new CountDownLatch(1);
+		Callable<Object> job = new Callable<Object>() {
+			public Object call() throws Exception {
+				latch.await();
+				return null;
+			}
+		};
+		
+		JobScheduler scheduler = new JobScheduler();
+		try { 
+			/* the first one is executed immediately */
+			scheduler.submit("test-queue", null, "rid-1", job);
+			while( scheduler.isQueued("rid-1") ) { Thread.sleep(10); }
+			
+			/* the second one has to wait */
+			scheduler.submit("test-queue", null, "rid-2", job);
+			assertTrue( scheduler.isQueued("rid-2") );
+			assertEquals( 1, scheduler.getQueuePosition("rid-2") );
+			assertEquals( 0, scheduler.getQueuePosition("rid-1") );
+			
+			/* the third is rejected */
+			try { 
+				scheduler.submit("test-queue", null, "rid-3", job);
+				fail("Queue should be full");
+			}
+			catch( QueueFullException e ) { 
+				assertFalse( scheduler.isQueued("rid-3") );
+			}
+			
+			/* the lane status shown by the admin page */
+			JobScheduler.LaneInfo info = scheduler.getLanesInfo().get(0);
+			assertEquals( 1, info.concurrency );
+			assertEquals( 1, info.capacity );
+			assertEquals( 1, info.queued );
+		}
+		finally { 
+			latch.countDown();
+			scheduler.shutdown();
+		}
+	}
+	
+	@Test
+	public void testResume() throws Exception {
+		AppProps.instance().setProperty("scheduler.test-resume.concurrency", "2");
+		AppProps.instance().setProperty("scheduler.test-resume.queue.size", "0");
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		JobScheduler scheduler = new JobScheduler();
+		try { 
+			/* a resumed request is executed in the lane also when no more requests are accepted */
+			scheduler.resume("test-resume", null, "rid-1", new Callable<Object>() {
+				public Object call() throws Exception {
+					latch.countDown();
+					return null;
+				}
+			});
+			latch.await();
+			assertFalse( scheduler.isQueued("rid-1") );
+		}
+		finally { 
+			scheduler.shutdown();
+		}
+	}
+	
+	@Test
+	public void testServiceLane() { 
+		AppProps.instance().setProperty("scheduler.test-lane.concurrency", "2");
+		AppProps.instance().setProperty("scheduler.test-lane.alpha.concurrency", "3");
+		
+		JobScheduler scheduler = new JobScheduler();
+		assertEquals( "test-lane", scheduler.getLane("test-lane", "beta").name );
+		assertEquals( 2, scheduler.getLane("test-lane", "beta").executor.getMaximumPoolSize() );
+		assertEquals( "test-lane.alpha", scheduler.getLane("test-lane", "alpha").name );
+		assertEquals( 3, scheduler.getLane("test-lane", "alpha").executor.getMaximumPoolSize() );
+		scheduler.shutdown();
+	}
+}
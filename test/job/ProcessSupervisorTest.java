@@ -0,0 +1,86 @@
+package job;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import play.libs.IO;
+import play.test.UnitTest;
+import util.TestHelper;
+
+public class ProcessSupervisorTest extends UnitTest {
+
+	static class Result implements ProcessSupervisor.Handler {
+		final CountDownLatch latch = new CountDownLatch(1);
+		int exitCode = -1;
+		boolean killed;
+
+		public void exited(int exitCode, boolean killed) {
+			this.exitCode = exitCode;
+			this.killed = killed;
+			latch.countDown();
+		}
+	}
+
+	File folder() {
+		File result = new File(System.getProperty("java.io.tmpdir"), "supervisor-" + TestHelper.randomHashString());
+		result.mkdirs();
+		return result;
+	}
+
+	@Test
+	public void testLaunch() throws Exception {
+		File folder = folder();
+		IO.writeContent("echo Hello\necho Ciao >&2\nexit 3", new File(folder, "run.sh"));
+		File out = new File(folder, "out.log");
+		File err = new File(folder, "err.log");
+
+		Result result = new Result();
+		ProcessSupervisor.instance().launch(folder, "run.sh", out, err, 0, result);
+
+		assertTrue( result.latch.await(10, TimeUnit.SECONDS) );
+		assertEquals( 3, result.exitCode );
+		assertFalse( result.killed );
+		assertEquals( "Hello", IO.readContentAsString(out).trim() );
+		assertEquals( "Ciao", IO.readContentAsString(err).trim() );
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		File folder = folder();
+		IO.writeContent("sleep 30", new File(folder, "run.sh"));
+
+		Result result = new Result();
+		ProcessSupervisor.instance().launch(folder, "run.sh", null, null, 500, result);
+
+		assertTrue( result.latch.await(10, TimeUnit.SECONDS) );
+		assertTrue( result.killed );
+		assertTrue( result.exitCode != 0 );
+	}
+
+	@Test
+	public void testKill() throws Exception {
+		File folder = folder();
+		File pid = new File(folder, "child.pid");
+		IO.writeContent("sleep 30 &\necho $! > child.pid\nwait", new File(folder, "run.sh"));
+
+		Result result = new Result();
+		ProcessSupervisor.instance().launch(folder, "run.sh", null, null, 0, result);
+		for( int i=0; i<50 && !pid.exists(); i++ ) { Thread.sleep(100); }
+
+		assertEquals( 0, ProcessSupervisor.instance().kill(new File(folder, "other")) );
+		assertEquals( 1, ProcessSupervisor.instance().kill(folder) );
+		assertTrue( result.latch.await(10, TimeUnit.SECONDS) );
+		assertTrue( result.killed );
+		assertTrue( result.exitCode != 0 );
+	}
+
+	@Test
+	public void testQuote() {
+		assertEquals( "'run.sh'", ProcessSupervisor.quote("run.sh") );
+		assertEquals( "'it'\\''s'", ProcessSupervisor.quote("it's") );
+		assertEquals( "/dev/null", ProcessSupervisor.quote((File)null) );
+	}
+}
@@ -0,0 +1,66 @@
+package job;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class QstatMonitorTest extends UnitTest {
+
+	@Test
+	public void testParse() {
+		Map<String,String> result = QstatMonitor.parse(Arrays.asList(
+				"job-ID  prior   name       user         state submit/start at     queue          slots",
+				"-----------------------------------------------------------------------------------------",
+				" 123456 0.55500 t-ab12cd   tcoffee      r     05/14/2011 11:34:05 ws_cn@node-1   1",
+				" 123457 0.00000 t-ef34gh   tcoffee      Eqw   05/14/2011 11:35:10                1"
+				));
+
+		assertEquals( 2, result.size() );
+		assertEquals( "r", result.get("123456") );
+		assertEquals( "Eqw", result.get("123457") );
+	}
+
+	@Test
+	public void testPoll() {
+		final Map<String,String> status = new java.util.HashMap<String, String>();
+		ClusterJobMonitor monitor = new QstatMonitor() {
+			protected Map<String, String> query() { return status; }
+			protected void cancel(String jobid) { status.remove(jobid); }
+		};
+
+		final boolean[] terminated = new boolean[3];
+		final boolean[] failed = new boolean[3];
+		ClusterJobMonitor.Handler handler = new ClusterJobMonitor.Handler() {
+			public void terminated(String jobid, boolean error) {
+				int i = Integer.parseInt(jobid);
+				terminated[i] = true;
+				failed[i] = error;
+			}
+		};
+
+		status.put("0", "r");
+		status.put("1", "r");
+		status.put("2", "Eqw");
+		monitor.jobs.put("0", new ClusterJobMonitor.Entry("0", 0, handler));
+		monitor.jobs.put("1", new ClusterJobMonitor.Entry("1", 0, handler));
+		monitor.jobs.put("2", new ClusterJobMonitor.Entry("2", 0, handler));
+
+		/* job '0' is still running, '2' is in error state */
+		monitor.poll();
+		assertFalse( terminated[0] );
+		assertFalse( terminated[1] );
+		assertTrue( terminated[2] );
+		assertTrue( failed[2] );
+
+		/* job '1' is no more listed */
+		status.remove("1");
+		monitor.poll();
+		assertFalse( terminated[0] );
+		assertTrue( terminated[1] );
+		assertFalse( failed[1] );
+		assertEquals( 1, monitor.size() );
+	}
+}
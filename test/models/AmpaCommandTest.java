@@ -1,10 +1,17 @@
 package models;
 
+import java.io.File;
+import java.util.ArrayList;
+
 import models.AmpaCommand.ResultData;
 
 import org.junit.Test;
 
+import play.Play;
+import play.libs.IO;
 import play.test.UnitTest;
+import util.TestHelper;
+import util.XStreamHelper;
 
 public class AmpaCommandTest extends UnitTest{
 
@@ -27,4 +34,62 @@ public class AmpaCommandTest extends UnitTest{
 		assertEquals( "0.22663125", result.mean );
 	}
 	
+	@Test 
+	public void testArrayJob() { 
+		TestHelper.init();
+		TestHelper.copy(TestHelper.file("sample-proteins.fa"), new File(Service.current().folder(), "proteins.fa"));
+		
+		AmpaCommand ampa = XStreamHelper.fromXML("<ampa input='proteins.fa' window='7' threshold='0.225' />");
+
+		QsubCommand qsub = new QsubCommand();
+		qsub._commands = new ArrayList<AbstractShellCommand>();
+		qsub._commands.add(ampa);
+		qsub.disabled = false;
+		qsub.queue = "nada";
+		qsub.init();
+		
+		assertEquals( "AMPA.pl -in=input-$SGE_TASK_ID.fasta -w=7 -t=0.225 -rf=result-$SGE_TASK_ID.text -df=data-$SGE_TASK_ID.txt -noplot", ampa.getTaskCmdLine("$SGE_TASK_ID") );
+		
+		/* one task for each sequence */
+		assertEquals( 3, ampa.getTaskCount() );
+		assertTrue( qsub.getCmdLine().contains("-t 1-3 ") );
+		assertTrue( ampa.getInputFileFor(2).exists() );
+		
+		String script = IO.readContentAsString(qsub.getJobFile());
+		assertTrue( script.contains(ampa.getTaskCmdLine("$SGE_TASK_ID")) );
+	}
+	
+	/**
+	 * Run the sequences in parallel with the fake 'AMPA.pl' script in the test bundle 
+	 */
+	@Test 
+	public void testParallel() throws Exception { 
+		TestHelper.init();
+		Service.current().getContext().put("bundle.bin.path", new File(Play.applicationPath, "test/test-bundle/bin").getAbsolutePath());
+		TestHelper.copy(TestHelper.file("sample-proteins.fa"), new File(Service.current().folder(), "proteins.fa"));
+		
+		AmpaCommand ampa = XStreamHelper.fromXML("<ampa input='proteins.fa' window='7' threshold='0.225' parallel='2' />");
+		ampa.logfile = "ampa.out.log";
+		ampa.errfile = "ampa.err.log";
+		ampa.init();
+		
+		assertEquals( 2, ampa.getWidth() );
+		assertTrue( ampa.execute() );
+		
+		/* each invocation has been launched with its output redirected to files */
+		for( int i=0; i<3; i++ ) { 
+			assertTrue( ampa.getResultFileFor(i).exists() );
+			assertTrue( ampa.getTaskLogFile(i).exists() );
+		}
+		
+		/* the outputs are merged in the input order */
+		String log = IO.readContentAsString(ampa.getLogFile());
+		assertTrue( log.indexOf("input-1.fasta") < log.indexOf("input-2.fasta") );
+		assertTrue( log.indexOf("input-2.fasta") < log.indexOf("input-3.fasta") );
+
+		String result = IO.readContentAsString(new File(ampa.ctxfolder, "result.txt"));
+		assertEquals( 3, result.split("Antimicrobial stretch found").length-1 );
+		assertTrue( new File(ampa.ctxfolder, "graph.json").exists() );
+	}
+	
 }
@@ -150,4 +150,34 @@ public class BsubCommandTest extends UnitTest {
 		
 	}
 	
+	@Test 
+	public void testAsyncCommandLine() { 
+		TCoffeeCommand tcoffee = new TCoffeeCommand();
+		tcoffee.errfile = "err.log";
+		tcoffee.logfile = "out.log";
+		tcoffee.cmdfile = "cmd.log";
+		tcoffee.args = new CmdArgs();
+		
+		BsubCommand bsub = new BsubCommand();
+		bsub._commands = new ArrayList<AbstractShellCommand>();
+		bsub._commands.add(tcoffee);
+		bsub.queue = "queuename";
+		bsub.jobname = "jobname";
+		bsub.disabled = false;
+		bsub.async = true;
+		bsub.init();
+		
+		final String cmd = String.format("bsub -cwd %s -q queuename -J jobname -o out.log -e err.log < _bsub.job", bsub.ctxfolder);
+		assertEquals( cmd, bsub.getCmdLine() );
+		
+		/* the job script saves the target command exit code */
+		String job = IO.readContentAsString(new File(bsub.ctxfolder, BsubCommand.JOB_FILE));
+		assertTrue( job.contains(tcoffee.getCmdLine()) );
+		assertTrue( job.contains("echo $? > " + BsubCommand.EXIT_FILE) );
+		
+		assertNull( bsub.readExitCode() );
+		IO.writeContent("1\n", new File(bsub.ctxfolder, BsubCommand.EXIT_FILE));
+		assertEquals( Integer.valueOf(1), bsub.readExitCode() );
+	}
+	
 }
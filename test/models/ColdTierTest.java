@@ -0,0 +1,113 @@
+package models;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.libs.IO;
+import play.test.UnitTest;
+import util.FileOps;
+import util.TestHelper;
+
+public class ColdTierTest extends UnitTest {
+
+	File root;
+
+	FolderResultStore store;
+
+	@Before
+	public void init() {
+		AppProps.WORKSPACE_FOLDER.mkdirs();
+		root = new File(System.getProperty("java.io.tmpdir"), "coldtier-" + TestHelper.randomHashString());
+		store = new FolderResultStore(root);
+		ColdTier.instance().setStore(store);
+	}
+
+	@After
+	public void cleanup() {
+		ColdTier.instance().setStore(null);
+		FileUtils.deleteQuietly(root);
+	}
+
+	static Repo create() {
+		Repo repo = new Repo("test-" + TestHelper.randomHashString(), true);
+		IO.writeContent(">seq1\nACGTACGT\n", repo.getFile("result.aln"));
+		OutResult out = new OutResult();
+		out.status = Status.DONE;
+		out.add(new OutItem(repo.getFile("result.aln"), "Alignment"));
+		repo.saveResult(out);
+		return repo;
+	}
+
+	@Test
+	public void testMigrateAndEvict() throws Exception {
+		Repo repo = create();
+		assertTrue( ColdTier.instance().migrate(repo) );
+		assertTrue( store.exists(repo.rid + "/_result") );
+		assertTrue( store.exists(repo.rid + "/" + RepoArchive.ARCHIVE_FILE_NAME) );
+		assertTrue( ColdTier.isCold(repo.getFile()) );
+		/* the local copy is untouched */
+		assertTrue( repo.getFile("result.aln").exists() );
+		assertFalse( ColdTier.instance().migrate(repo) );
+
+		assertTrue( ColdTier.instance().evict(repo) );
+		assertFalse( repo.getFile("result.aln").exists() );
+		assertTrue( repo.isArchived() );
+		assertEquals( Status.DONE, repo.getStatus() );
+
+		/* read-through */
+		assertEquals( ">seq1\nACGTACGT\n", IO.readContentAsString(RepoArchive.open(repo.getFile("result.aln"))) );
+
+		/* the fetched archive is accounted and released by a further eviction */
+		File archive = RepoArchive.archiveFor(repo.getFile());
+		assertTrue( archive.exists() );
+		assertEquals( FileOps.sizeOf(repo.getFile()), RepoIndex.instance().get(repo).size );
+		assertTrue( ColdTier.instance().evict(repo) );
+		assertFalse( archive.exists() );
+		assertTrue( repo.isArchived() );
+		assertFalse( ColdTier.instance().evict(repo) );
+
+		repo.restore();
+		assertFalse( repo.isArchived() );
+		assertTrue( repo.getFile("result.aln").exists() );
+
+		repo.drop();
+		assertFalse( store.exists(repo.rid + "/_result") );
+	}
+
+	@Test
+	public void testFetchFromOtherNode() throws Exception {
+		Repo repo = create();
+		assertTrue( ColdTier.instance().migrate(repo) );
+
+		/* simulate a node that does not have the repository */
+		FileUtils.deleteDirectory(repo.getFile());
+		RepoIndex.instance().remove(repo);
+
+		Repo other = new Repo(repo.rid, false);
+		/* the status check does not access the cold tier, the result request does */
+		assertEquals( Status.UNKNOWN, other.getStatus() );
+		assertTrue( other.hasResult() );
+		assertEquals( Status.DONE, other.getStatus() );
+		assertTrue( other.isArchived() );
+		assertEquals( 1, other.getResult().getItems().size() );
+		assertEquals( ">seq1\nACGTACGT\n", IO.readContentAsString(RepoArchive.open(other.getFile("result.aln"))) );
+
+		other.drop();
+	}
+
+	@Test
+	public void testDisabled() {
+		ColdTier.instance().setStore(null);
+		assertFalse( ColdTier.instance().isEnabled() );
+
+		Repo repo = create();
+		assertFalse( ColdTier.instance().migrate(repo) );
+		assertFalse( ColdTier.instance().fetch(new Repo("test-missing-" + TestHelper.randomHashString(), false)) );
+		repo.drop();
+	}
+
+}
@@ -0,0 +1,121 @@
+package models;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class ContextMapTest extends UnitTest {
+
+	Properties bundle;
+
+	Map<String,Object> app;
+
+	@Before
+	public void init() {
+		bundle = new Properties();
+		bundle.put("alpha", "1");
+		bundle.put("beta", "2");
+
+		app = new HashMap<String, Object>();
+		app.put("beta", "x");
+		app.put("gamma", "3");
+	}
+
+	@Test
+	public void testLookup() {
+		ContextMap map = new ContextMap(bundle, app);
+
+		assertEquals( "1", map.get("alpha") );
+		assertEquals( "2", map.get("beta") );
+		assertEquals( "3", map.get("gamma") );
+		assertNull( map.get("delta") );
+		assertNull( map.get(null) );
+
+		assertTrue( map.containsKey("alpha") );
+		assertTrue( map.containsKey("gamma") );
+		assertFalse( map.containsKey("delta") );
+		assertEquals( 3, map.size() );
+	}
+
+	@Test
+	public void testPut() {
+		ContextMap map = new ContextMap(bundle, app);
+
+		assertEquals( "2", map.put("beta", "z") );
+		assertNull( map.put("delta", "4") );
+		map.put("empty", null);
+
+		assertEquals( "z", map.get("beta") );
+		assertEquals( "4", map.get("delta") );
+		assertTrue( map.containsKey("empty") );
+		assertEquals( 5, map.size() );
+
+		/* the layers are never modified */
+		assertEquals( "2", bundle.get("beta") );
+		assertEquals( 2, bundle.size() );
+		assertEquals( 2, app.size() );
+	}
+
+	@Test
+	public void testRemove() {
+		ContextMap map = new ContextMap(bundle, app);
+		map.put("delta", "4");
+
+		assertEquals( "4", map.remove("delta") );
+		assertEquals( "2", map.remove("beta") );
+		assertFalse( map.containsKey("delta") );
+		assertFalse( map.containsKey("beta") );
+		assertNull( map.get("beta") );
+		assertEquals( 2, map.size() );
+
+		map.put("beta", "y");
+		assertEquals( "y", map.get("beta") );
+
+		map.clear();
+		assertTrue( map.isEmpty() );
+		assertEquals( "2", bundle.get("beta") );
+	}
+
+	@Test
+	public void testCopy() {
+		ContextMap map = new ContextMap(bundle, app);
+		map.put("delta", "4");
+
+		ContextMap copy = new ContextMap(map);
+		copy.put("delta", "5");
+		copy.put("omega", "6");
+
+		assertEquals( "4", map.get("delta") );
+		assertFalse( map.containsKey("omega") );
+		assertEquals( "5", copy.get("delta") );
+		assertEquals( "1", copy.get("alpha") );
+
+		/* the context holder copy keeps the layers */
+		ContextHolder ctx = new ContextHolder();
+		ctx.map = map;
+		ContextHolder ctxCopy = new ContextHolder(ctx);
+		assertTrue( ctxCopy.getMap() instanceof ContextMap );
+		assertEquals( "3", ctxCopy.get("gamma") );
+	}
+
+	@Test
+	public void testEntrySet() {
+		ContextMap map = new ContextMap(bundle, app);
+		map.put("delta", "4");
+
+		Map<String,Object> copy = new HashMap<String, Object>(map);
+		assertEquals( 4, copy.size() );
+		assertEquals( "1", copy.get("alpha") );
+		assertEquals( "2", copy.get("beta") );
+		assertEquals( "3", copy.get("gamma") );
+		assertEquals( "4", copy.get("delta") );
+
+		assertEquals( copy, map );
+	}
+
+}
@@ -70,4 +70,17 @@ public class EvalTest extends UnitTest {
 		assertEquals( "hola - test.txt", result );
 	} 
 	
+	@Test 
+	public void testCopy() { 
+		Eval eval = new Eval("${x} - ${y}");
+		Eval copy = new Eval(eval);
+		
+		assertEquals( eval, copy );
+		assertNotSame( eval.vars, copy.vars );
+		assertSame( eval.template, copy.template );
+		
+		Eval constant = new Eval(" ciao ");
+		assertEquals( "ciao", new Eval(constant).eval(new HashMap<String, Object>()) );
+	}
+	
 }
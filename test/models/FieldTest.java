@@ -1,8 +1,15 @@
 package models;
 
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
 import org.junit.Test;
 
+import play.data.validation.Validation;
+import play.libs.IO;
 import play.test.UnitTest;
+import util.TestHelper;
 import util.XStreamHelper;
 
 public class FieldTest extends UnitTest {
@@ -53,5 +60,59 @@ public class FieldTest extends UnitTest {
 		assertEquals(field.readOnly, "beta");
 		assertTrue(field.validation.required);
 	}
-	
+
+	@Test
+	public void testMemoFileReference() throws Exception {
+		File folder = new File(System.getProperty("java.io.tmpdir"), "field-" + TestHelper.randomHashString());
+		File repo = new File(folder, "repo");
+		repo.mkdirs();
+		File upload = new File(folder, "sample.fa");
+		IO.writeContent("  >seq1\nAAA CCC\n>seq2\nGGG\n\n", upload);
+
+		try {
+			Input input = Input.create("seqs:memo=file://sample.fa");
+			Field field = input.field("seqs");
+			field.setFile(upload);
+			field.validation = new ValidationCheck();
+			field.validation.format = "FASTA";
+
+			/* the validated content is not loaded, the value keeps the file reference */
+			field.validate();
+			assertFalse( Validation.hasError("seqs") );
+			assertEquals( "file://sample.fa", field.value );
+			assertEquals( ">seq1\nAAACCC\n>seq2\nGGG\n", IO.readContentAsString(field.getContentFile()) );
+
+			field.consolidate(repo);
+			assertEquals( new File(repo, "sample.fa"), field.getFile() );
+			assertEquals( field.getFile(), field.getContentFile() );
+			assertEquals( ">seq1\nAAACCC\n>seq2\nGGG\n", IO.readContentAsString(field.getFile()) );
+
+			/* the input manifest references the file */
+			File manifest = new File(folder, "_input");
+			input.save(manifest);
+			Field copy = Input.read(manifest).field("seqs");
+			assertEquals( "file://sample.fa", copy.value );
+			assertEquals( field.getFile(), copy.getFile() );
+			assertEquals( field.getFile(), copy.getContentFile() );
+
+			/* an invalid upload does not leave the normalized file */
+			File wrong = new File(folder, "wrong.fa");
+			IO.writeContent("not a fasta", wrong);
+			Field other = Input.create("seqs:memo=file://wrong.fa").field("seqs");
+			other.setFile(wrong);
+			other.validation = new ValidationCheck();
+			other.validation.format = "FASTA";
+			other.validate();
+			assertTrue( Validation.hasError("seqs") );
+			assertEquals( other.getFile(), other.getContentFile() );
+			assertEquals( 0, folder.list(new SuffixFileFilter(".normalized")).length );
+
+			/* a pasted content is the value itself */
+			assertNull( Input.create("seqs:memo=>seq1\nAAA").field("seqs").getContentFile() );
+		}
+		finally {
+			FileUtils.deleteQuietly(folder);
+		}
+	}
+
 }
@@ -3,7 +3,6 @@ package models;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
@@ -53,21 +52,31 @@ public class InputTest extends UnitTest {
 		f.add( new Field("text", "x", "1"), new Field("text", "y", "2") );
 		File file = File.createTempFile("tcoffee", ".test");
 		input.save(file);
+		assertTrue( Manifest.isManifest(file) );
+		
+		Input copy = Input.read(file);
+		assertEquals( 1, copy.fieldsets.size() );
+		assertEquals( false, copy.fieldsets.get(0).hideable );
+		assertEquals( "text", copy.field("x").type );
+		assertEquals( "1", copy.field("x").value );
+		assertEquals( "text", copy.field("y").type );
+		assertEquals( "2", copy.field("y").value );
+		file.delete();
+	} 
+	
+	@Test 
+	public void testReadLegacyXml() throws IOException {
+		Input input = Input.create("x=1", "y=2");
+		File file = File.createTempFile("tcoffee", ".test");
+		XStreamHelper.toXML(input, file);
+		
 		List<String> result = FileUtils.readLines(file);
+		assertEquals( "<input>", result.get(0).trim() );
 		
-		Iterator<String> itr = result.iterator();
-		assertEquals( "<input>", itr.next().trim() );
-		assertEquals( "<fieldset hideable=\"false\">", itr.next().trim() );
-		assertEquals( "<field type=\"text\" name=\"x\">", itr.next().trim() );
-		assertEquals( "<value>1</value>", itr.next().trim() );
-		assertEquals( "</field>", itr.next().trim() );
-		assertEquals( "<field type=\"text\" name=\"y\">", itr.next().trim() );
-		assertEquals( "<value>2</value>", itr.next().trim() );    
-		assertEquals( "</field>", itr.next().trim() );
-		assertEquals( "</fieldset>", itr.next().trim() );
-		assertEquals( "</input>", itr.next().trim() );
+		Input copy = Input.read(file);
+		assertEquals( "1", copy.field("x").value );
+		assertEquals( "2", copy.field("y").value );
 		file.delete();
-		
 	} 
 	
 	
@@ -140,4 +149,17 @@ public class InputTest extends UnitTest {
 		
 	} 
 
+	@Test
+	public void testBindValues() {
+		Input input = Input.create("alpha=1", "beta=2", "beta=3", "gamma=x");
+		input.bindValues( Input.create("beta=20", "beta=30", "alpha=10", "delta=0") );
+
+		assertEquals( "10", input.getValue("alpha") );
+		assertEquals( "20", input.fields("beta").get(0).value );
+		assertEquals( "30", input.fields("beta").get(1).value );
+		/* not in the bound values, keep the default */
+		assertEquals( "x", input.getValue("gamma") );
+		assertNull( input.field("delta") );
+	}
+
 }
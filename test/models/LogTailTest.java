@@ -0,0 +1,98 @@
+package models;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class LogTailTest extends UnitTest {
+
+	static void append( File file, String text ) throws IOException {
+		FileWriter writer = new FileWriter(file, true);
+		writer.write(text);
+		writer.close();
+	}
+
+	@Test
+	public void testRead() throws IOException {
+		File file = File.createTempFile("tail", ".log");
+		file.deleteOnExit();
+
+		LogTail tail = new LogTail(file, null, 1024);
+		LogTail.Chunk chunk = tail.readOut(0);
+		assertEquals( "", chunk.text );
+		assertEquals( 0, chunk.next );
+
+		append(file, "Hello\n");
+		chunk = tail.readOut(0);
+		assertEquals( "Hello\n", chunk.text );
+		assertEquals( 6, chunk.next );
+
+		append(file, "World\n");
+		chunk = tail.readOut(chunk.next);
+		assertEquals( "World\n", chunk.text );
+		assertEquals( 6, chunk.offset );
+		assertEquals( 12, chunk.next );
+		assertFalse( chunk.truncated );
+
+		/* no error file */
+		assertEquals( "", tail.readErr(0).text );
+	}
+
+	@Test
+	public void testMultibyte() throws IOException {
+		File file = File.createTempFile("tail", ".log");
+		file.deleteOnExit();
+
+		/* the last character is encoded with two bytes, write only the first one */
+		byte[] bytes = "caff\u00e8".getBytes("UTF-8");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(bytes, 0, bytes.length-1);
+		out.flush();
+
+		LogTail tail = new LogTail(file, null, 1024);
+		LogTail.Chunk chunk = tail.readOut(0);
+		assertEquals( "caff", chunk.text );
+		assertEquals( 4, chunk.next );
+
+		out.write(bytes, bytes.length-1, 1);
+		out.close();
+		chunk = tail.readOut(chunk.next);
+		assertEquals( "\u00e8", chunk.text );
+		assertEquals( 6, chunk.next );
+
+		/* a truncated chunk skips the partial leading character */
+		tail = new LogTail(file, null, 1);
+		chunk = tail.readOut(0);
+		assertTrue( chunk.truncated );
+		assertEquals( "", chunk.text );
+		assertEquals( 6, chunk.next );
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		File file = File.createTempFile("tail", ".log");
+		file.deleteOnExit();
+
+		LogTail tail = new LogTail(file, null, 10);
+		append(file, "0123456789abcde");
+
+		LogTail.Chunk chunk = tail.readOut(0);
+		assertTrue( chunk.truncated );
+		assertEquals( 5, chunk.offset );
+		assertEquals( "56789abcde", chunk.text );
+		assertEquals( 15, chunk.next );
+	}
+
+	@Test
+	public void testRegister() {
+		LogTail tail = LogTail.register("xyz", null, null);
+		assertSame( tail, LogTail.get("xyz") );
+		LogTail.release("xyz");
+		assertNull( LogTail.get("xyz") );
+	}
+}
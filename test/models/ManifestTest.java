@@ -0,0 +1,126 @@
+package models;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+import util.TestHelper;
+import util.XStreamHelper;
+
+public class ManifestTest extends UnitTest {
+
+	static File tempFile() throws IOException {
+		File file = File.createTempFile("manifest", ".bin");
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void testResult() throws IOException {
+		OutResult result = new OutResult();
+		result.status = Status.DONE;
+		result.bundle = "tcoffee";
+		result.service = "regular";
+		result.title = "Regular";
+		result.elapsedTime = 1234;
+		result.errors = Arrays.asList("err1", "err2");
+
+		OutItem item = new OutItem();
+		item.name = "result.html";
+		item.file = new File("/some/path/result.html");
+		item.webpath = "/data/result.html";
+		item.type = "html";
+		result.add(item);
+
+		File file = tempFile();
+		Manifest.write(result, file);
+		assertTrue( Manifest.isManifest(file) );
+
+		OutResult copy = Manifest.readResult(file);
+		assertEquals( Status.DONE, copy.status );
+		assertEquals( "tcoffee", copy.bundle );
+		assertEquals( "regular", copy.service );
+		assertEquals( "Regular", copy.title );
+		assertNull( copy.cite );
+		assertEquals( 1234, copy.elapsedTime );
+		assertEquals( Arrays.asList("err1", "err2"), copy.errors );
+		assertNull( copy.warnings );
+
+		assertEquals( 1, copy.getItems().size() );
+		assertEquals( "result.html", copy.getItems().get(0).name );
+		assertEquals( new File("/some/path/result.html"), copy.getItems().get(0).file );
+		assertEquals( "/data/result.html", copy.getItems().get(0).webpath );
+		assertEquals( "html", copy.getItems().get(0).type );
+		assertNull( copy.getItems().get(0).label );
+	}
+
+	@Test
+	public void testInput() throws IOException {
+		Input input = Input.create("alpha=1", "beta:memo=>seq\nAAA", "gamma=");
+
+		File file = tempFile();
+		input.save(file);
+		assertTrue( Manifest.isManifest(file) );
+
+		Input copy = Input.read(file);
+		assertEquals( "1", copy.getValue("alpha") );
+		assertEquals( ">seq\nAAA", copy.getValue("beta") );
+		assertEquals( "memo", copy.field("beta").type );
+		assertEquals( "", copy.getValue("gamma") );
+	}
+
+	@Test
+	public void testLegacyResult() {
+		Repo repo = new Repo("test-" + TestHelper.randomHashString(), true);
+		OutResult result = new OutResult();
+		result.status = Status.FAILED;
+		result.title = "Legacy";
+		XStreamHelper.toXML(result, repo.getFile("_result"));
+		assertFalse( Manifest.isManifest(repo.getFile("_result")) );
+
+		/* the index scan does not migrate it */
+		RepoIndex.instance().load(repo);
+		assertEquals( Status.FAILED, RepoIndex.instance().get(repo).getResultStatus() );
+		assertFalse( Manifest.isManifest(repo.getFile("_result")) );
+
+		OutResult legacy = repo.getResult();
+		assertEquals( Status.FAILED, legacy.status );
+		assertEquals( "Legacy", legacy.title );
+
+		/* migrated on read */
+		assertTrue( Manifest.isManifest(repo.getFile("_result")) );
+		assertEquals( "Legacy", repo.getResult().title );
+	}
+
+	@Test
+	public void testTempFile() throws IOException {
+		File file = tempFile();
+		File t1 = Manifest.temp(file);
+		File t2 = Manifest.temp(file);
+
+		/* each writer has its own temporary file in the same folder */
+		assertFalse( t1.equals(t2) );
+		assertEquals( file.getParentFile().getAbsoluteFile(), t1.getParentFile() );
+		t1.delete();
+		t2.delete();
+
+		OutResult result = new OutResult();
+		result.title = "Temp";
+		Manifest.write(result, file);
+		assertEquals( "Temp", Manifest.readResult(file).title );
+
+		/* no temporary file is left */
+		final String prefix = file.getName() + ".";
+		String[] temps = file.getParentFile().list(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith(prefix) && name.endsWith(".tmp");
+			}
+		});
+		assertEquals( 0, temps.length );
+	}
+
+}
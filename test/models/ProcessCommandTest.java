@@ -1,9 +1,15 @@
 package models;
 
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
 
 import play.test.UnitTest;
 import util.XStreamHelper;
+import exception.CommandException;
+import exception.QuickException;
 
 public class ProcessCommandTest extends UnitTest {
 
@@ -32,4 +38,129 @@ public class ProcessCommandTest extends UnitTest {
 		
 	}
 	
+	@Test
+	public void testDependsFromXml() { 
+		String xml = 
+			"<process >" +
+				"<exec id='a' depends='' ></exec>" + 
+				"<exec id='b' depends='' ></exec>" + 
+				"<tcoffee depends='a,b' ></tcoffee>" + 
+			"</process>";
+
+		ProcessCommand process = XStreamHelper.fromXML(xml);
+		assertEquals("a", process.commands.get(0).id);
+		assertEquals("", process.commands.get(0).depends);
+		assertEquals("a,b", process.commands.get(2).depends);
+		assertTrue( process.isGraph() );
+		
+		List<AbstractCommand> deps = process.dependencies().get(process.commands.get(2));
+		assertEquals( 2, deps.size() );
+		assertSame( process.commands.get(0), deps.get(0) );
+		assertSame( process.commands.get(1), deps.get(1) );
+		assertTrue( process.dependencies().get(process.commands.get(1)).isEmpty() );
+	}
+	
+	@Test 
+	public void testDefaultDependencies() { 
+		ProcessCommand process = new ProcessCommand();
+		process.add( new Step("a", null) );
+		process.add( new Step("b", null) );
+		process.add( new Step("c", "") );
+
+		/* no explicit dependency on 'b' so it depends on the previous one */
+		assertSame( process.commands.get(0), process.dependencies().get(process.commands.get(1)).get(0) );
+		assertTrue( process.dependencies().get(process.commands.get(0)).isEmpty() );
+		assertTrue( process.dependencies().get(process.commands.get(2)).isEmpty() );
+	}
+	
+	@Test
+	public void testSorted() { 
+		ProcessCommand process = new ProcessCommand();
+		process.add( new Step("c", "a,b") );
+		process.add( new Step("a", "") );
+		process.add( new Step("b", "a") );
+		
+		List<AbstractCommand> list = process.sorted();
+		assertEquals( "a", list.get(0).id );
+		assertEquals( "b", list.get(1).id );
+		assertEquals( "c", list.get(2).id );
+	}
+	
+	@Test(expected=QuickException.class)
+	public void testCycle() { 
+		ProcessCommand process = new ProcessCommand();
+		process.add( new Step("a", "b") );
+		process.add( new Step("b", "a") );
+		process.dependencies();
+	}
+
+	@Test(expected=QuickException.class)
+	public void testUnknownDependency() { 
+		ProcessCommand process = new ProcessCommand();
+		process.add( new Step("a", "") );
+		process.add( new Step("b", "x") );
+		process.dependencies();
+	}
+	
+	@Test 
+	public void testParallelExecution() throws InterruptedException { 
+		/* 
+		 * 'a' and 'b' can only complete when both are running at the same time 
+		 */
+		AppProps.instance().setProperty("process.workers", "2");
+		final CountDownLatch barrier = new CountDownLatch(2);
+		ProcessCommand process = new ProcessCommand();
+		process.add( new Step("a", "", barrier) );
+		process.add( new Step("b", "", barrier) );
+		process.add( new Step("c", "a,b") );
+		process.init();
+		
+		final CountDownLatch done = new CountDownLatch(1);
+		final boolean[] result = new boolean[1];
+		process.execute(new CommandListener() {
+			public void completed(AbstractCommand command, boolean success) {
+				result[0] = success;
+				done.countDown();
+			}
+
+			public void failed(AbstractCommand command, Exception error) {
+				done.countDown();
+			}
+		});
+		
+		assertTrue( done.await(10, TimeUnit.SECONDS) );
+		assertTrue( result[0] );
+		for( AbstractCommand cmd : process.commands ) { 
+			assertTrue( cmd.isOK() );
+		}
+	}
+	
+	static class Step extends AbstractCommand { 
+		
+		CountDownLatch barrier;
+		
+		Step( String id, String depends ) { 
+			this.id = id;
+			this.depends = depends;
+		}
+
+		Step( String id, String depends, CountDownLatch barrier ) { 
+			this(id,depends);
+			this.barrier = barrier;
+		}
+		
+		@Override
+		protected boolean run() throws CommandException {
+			if( barrier == null ) return true;
+
+			barrier.countDown();
+			try {
+				return barrier.await(5, TimeUnit.SECONDS);
+			} 
+			catch (InterruptedException e) {
+				return false;
+			}
+		}
+	}
+	
 }
@@ -2,10 +2,13 @@ package models;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import play.Play;
 import play.libs.IO;
 import play.test.UnitTest;
 import util.TestHelper;
@@ -214,4 +217,96 @@ public class QsubCommandTest extends UnitTest {
 		
 	}
 	
+	@Test
+	public void testAsync() { 
+		TCoffeeCommand tcoffee = new TCoffeeCommand();
+		tcoffee.errfile = "err.log";
+		tcoffee.logfile = "out.log";
+		tcoffee.args = new CmdArgs();
+		
+		QsubCommand qsub = new QsubCommand();
+		qsub._commands = new ArrayList<AbstractShellCommand>();
+		qsub._commands.add(tcoffee);
+		qsub.disabled = false;
+		qsub.async = true;
+		qsub.queue = "nada";
+		qsub.init();
+		
+		assertFalse( qsub.getCmdLine().contains("-sync y") );
+		assertTrue( qsub.getCmdLine().contains("-terse") );
+		
+		String run = IO.readContentAsString(qsub.getJobFile());
+		assertTrue( run.contains("echo $? > " + QsubCommand.EXIT_FILE) );
+		
+		/* the exit code is read from the file written by the job script */
+		assertNull( qsub.readExitCode() );
+		IO.writeContent("0\n", new File(qsub.ctxfolder, QsubCommand.EXIT_FILE));
+		assertEquals( Integer.valueOf(0), qsub.readExitCode() );
+	}
+	
+	/**
+	 * Submit the job with the fake 'qsub' and 'qstat' scripts in the test bundle, 
+	 * the job status is polled by the {@link job.QstatMonitor}
+	 */
+	@Test
+	public void testAsyncExecute() throws Exception { 
+		File bin = new File(Play.applicationPath, "test/test-bundle/bin");
+		Service.current().getContext().put("bundle.bin.path", bin.getAbsolutePath());
+		AppProps.instance().setProperty("qsub.qstat", new File(bin, "qstat").getAbsolutePath());
+		AppProps.instance().setProperty("cluster.poll.interval", "1s");
+		
+		try { 
+			QsubCommand qsub = submit("true");
+			assertTrue( qsub.isOK() );
+			assertTrue( qsub.getJobId().length()>0 );
+			assertEquals( Integer.valueOf(0), qsub.readExitCode() );
+			
+			/* the exit code of the target command is returned by the exit file */
+			qsub = submit("false");
+			assertFalse( qsub.isOK() );
+			assertEquals( Integer.valueOf(1), qsub.readExitCode() );
+		}
+		finally { 
+			AppProps.instance().remove("qsub.qstat");
+			AppProps.instance().remove("cluster.poll.interval");
+		}
+	}
+	
+	private QsubCommand submit( String cmd ) throws InterruptedException { 
+		ShellCommand target = new ShellCommand(cmd);
+		target.logfile = "out.log";
+		target.errfile = "err.log";
+		
+		QsubCommand qsub = new QsubCommand();
+		qsub._commands = new ArrayList<AbstractShellCommand>();
+		qsub._commands.add(target);
+		qsub.disabled = false;
+		qsub.async = true;
+		qsub.queue = "nada";
+		qsub.init();
+		
+		final CountDownLatch latch = new CountDownLatch(1);
+		qsub.execute(new CommandListener() {
+			public void completed(AbstractCommand command, boolean success) {
+				latch.countDown();
+			}
+			public void failed(AbstractCommand command, Exception error) {
+				latch.countDown();
+			}
+		});
+		
+		assertTrue( latch.await(30, TimeUnit.SECONDS) );
+		return qsub;
+	}
+	
+	@Test 
+	public void testAsyncProperty() { 
+		AppProps.instance().remove("qsub.async");
+		assertFalse( new QsubCommand().getAsync() );
+
+		AppProps.instance().setProperty("qsub.async", "true");
+		assertTrue( new QsubCommand().getAsync() );
+		AppProps.instance().remove("qsub.async");
+	}
+	
 }
@@ -0,0 +1,129 @@
+package models;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import play.libs.IO;
+import play.test.UnitTest;
+import util.TestHelper;
+
+public class RepoArchiveTest extends UnitTest {
+
+	@BeforeClass
+	public static void init() {
+		AppProps.WORKSPACE_FOLDER.mkdirs();
+	}
+
+	static Repo create() {
+		Repo repo = new Repo("test-" + TestHelper.randomHashString(), true);
+		IO.writeContent(">seq1\nACGTACGTACGT\n>seq2\nACGTACGTACGT\n", repo.getFile("result.aln"));
+		new File(repo.getFile(), "sub").mkdirs();
+		IO.writeContent("(A,B);", repo.getFile("sub/tree.dnd"));
+
+		OutResult out = new OutResult();
+		out.status = Status.DONE;
+		out.add(new OutItem(repo.getFile("result.aln"), "Alignment"));
+		repo.saveResult(out);
+		return repo;
+	}
+
+	static String read( File file ) throws Exception {
+		InputStream in = RepoArchive.open(file);
+		assertNotNull( in );
+		return IO.readContentAsString(in);
+	}
+
+	@Test
+	public void testPackAndUnpack() throws Exception {
+		Repo repo = create();
+		assertFalse( repo.isArchived() );
+
+		assertTrue( repo.archive() );
+		assertTrue( repo.isArchived() );
+		assertFalse( repo.getFile("result.aln").exists() );
+		assertFalse( repo.getFile("sub").exists() );
+
+		/* the repository state is still available */
+		assertEquals( Status.DONE, repo.getStatus() );
+		assertEquals( 1, repo.getResult().getItems().size() );
+		assertTrue( Repo.isRepoFolder(repo.getFile()) );
+
+		/* the entries are read from the archive */
+		List<String> names = RepoArchive.list(repo.getFile());
+		assertTrue( names.contains("result.aln") );
+		assertTrue( names.contains("sub/tree.dnd") );
+		assertEquals( "(A,B);", read(repo.getFile("sub/tree.dnd")) );
+		assertTrue( read(repo.getFile("result.aln")).startsWith(">seq1") );
+		assertNull( RepoArchive.open(repo.getFile("missing.txt")) );
+
+		/* archive twice does nothing */
+		assertFalse( repo.archive() );
+
+		repo.restore();
+		assertFalse( repo.isArchived() );
+		assertEquals( "(A,B);", IO.readContentAsString(repo.getFile("sub/tree.dnd")) );
+		assertTrue( RepoArchive.list(repo.getFile()).isEmpty() );
+
+		repo.drop();
+	}
+
+	@Test
+	public void testReadArchivedItems() throws Exception {
+		Repo repo = create();
+		long len = repo.getFile("result.aln").length();
+		assertTrue( repo.archive() );
+
+		/* the result items are read from the archive without restoring the repository */
+		OutItem item = repo.getResult().getItems().get(0);
+		assertFalse( item.file.exists() );
+		assertTrue( item.exists() );
+		assertEquals( len, item.size() );
+		assertTrue( item.content().startsWith(">seq1") );
+		assertEquals( ">seq1ACGTACGTACGT>seq2ACGTACGTACGT", item.toLine() );
+		assertEquals( 6, RepoArchive.length(repo.getFile("sub/tree.dnd")) );
+		assertEquals( -1, RepoArchive.length(repo.getFile("missing.txt")) );
+		assertEquals( "(A,B);", RepoArchive.reader(repo.getFile("sub/tree.dnd")).readLine() );
+
+		OutItem missing = new OutItem(repo.getFile("missing.txt"), "Missing");
+		assertFalse( missing.exists() );
+		assertEquals( 0, missing.size() );
+		assertNull( missing.toLine() );
+
+		assertTrue( repo.isArchived() );
+		repo.drop();
+	}
+
+	@Test
+	public void testLockedNotArchived() {
+		Repo repo = create();
+		repo.lock();
+		assertFalse( repo.archive() );
+		assertFalse( repo.isArchived() );
+		repo.unlock();
+		repo.drop();
+	}
+
+	@Test
+	public void testArchiveIdle() {
+		Repo idle = create();
+		idle.touch(System.currentTimeMillis() - 2 * 60 * 60 * 1000);
+		Repo recent = create();
+
+		RepoArchive.archiveIdle(60 * 60 * 1000, Long.MAX_VALUE);
+		assertTrue( idle.isArchived() );
+		assertFalse( recent.isArchived() );
+
+		idle.drop();
+		recent.drop();
+	}
+
+	@Test
+	public void testOpenOutsideWorkspace() {
+		assertNull( RepoArchive.open(new File("/not/existing/file.txt")) );
+	}
+
+}
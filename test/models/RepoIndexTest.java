@@ -0,0 +1,70 @@
+package models;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import play.test.UnitTest;
+import util.TestHelper;
+
+public class RepoIndexTest extends UnitTest {
+
+	@BeforeClass
+	public static void init() {
+		AppProps.WORKSPACE_FOLDER.mkdirs();
+	}
+
+	@Test
+	public void testLockAndResult() {
+		Repo repo = new Repo("test-" + TestHelper.randomHashString(), true);
+		RepoIndex.Entry entry = RepoIndex.instance().get(repo);
+		assertNotNull(entry);
+		assertFalse( entry.isLocked() );
+		assertFalse( entry.hasResult() );
+
+		assertTrue( repo.lock() );
+		assertTrue( entry.isLocked() );
+		assertEquals( Status.RUNNING, repo.getStatus() );
+
+		OutResult out = new OutResult();
+		out.status = Status.DONE;
+		out.bundle = "tcoffee";
+		out.title = "Regular";
+		out.elapsedTime = 1200;
+		repo.saveResult(out);
+		repo.unlock();
+
+		assertFalse( entry.isLocked() );
+		assertEquals( Status.DONE, repo.getStatus() );
+		assertEquals( "tcoffee", entry.getBundle() );
+		assertEquals( "Regular", entry.getTitle() );
+		assertEquals( 1200, entry.getElapsedTime() );
+		assertEquals( repo.getLastAccessedTime() + AppProps.instance().getDataCacheDuration()*1000L, entry.getExpirationTime() );
+	}
+
+	@Test
+	public void testRebuild() {
+		Repo repo = new Repo("test-" + TestHelper.randomHashString(), true);
+		OutResult out = new OutResult();
+		out.status = Status.FAILED;
+		repo.saveResult(out);
+
+		RepoIndex.instance().rebuild();
+		RepoIndex.Entry entry = RepoIndex.instance().get(repo);
+		assertEquals( Status.FAILED, entry.getResultStatus() );
+		assertEquals( repo.fMarker.lastModified(), entry.getLastAccessedTime() );
+		assertTrue( Repo.findByStatus(Status.FAILED).contains(repo) );
+	}
+
+	@Test
+	public void testDeleted() {
+		Repo repo = new Repo("test-" + TestHelper.randomHashString(), true);
+		assertTrue( Repo.findByStatus(Status.READY).contains(repo) );
+
+		FileUtils.deleteQuietly(repo.getFile());
+		assertFalse( Repo.findByStatus(Status.READY).contains(repo) );
+		assertNull( RepoIndex.instance().get(repo) );
+		assertEquals( Status.UNKNOWN, repo.getStatus() );
+	}
+
+}
@@ -93,6 +93,28 @@ public class RepoTest extends UnitTest {
 	} 
 	
 	
+	@Test
+	public void testShardedLayout() {
+		String rid = "0123456789abcdef0123456789abcdef";
+		assertEquals( "01/23/" + rid, Repo.pathFor(rid) );
+		assertEquals( "3e3eb15", Repo.pathFor("3e3eb15") );
+		assertEquals( new File(AppProps.WORKSPACE_FOLDER, "01/23/" + rid), Repo.folderFor(rid) );
+
+		assertEquals( "01/23/" + rid + "/result.html", Repo.resolvePath(rid + "/result.html") );
+		assertEquals( "01/23/" + rid + "/result.html", Repo.resolvePath("01/23/" + rid + "/result.html") );
+		assertEquals( "3e3eb15/result.html", Repo.resolvePath("3e3eb15/result.html") );
+
+		Repo repo = new Repo(rid, true);
+		assertEquals( rid, repo.rid );
+		assertTrue( repo.fMarker.exists() );
+		assertTrue( Repo.listFolders().contains(repo.getFile()) );
+		assertTrue( Repo.findByStatus(Status.READY).contains(repo) );
+
+		repo.drop();
+		assertFalse( repo.getFile().exists() );
+		assertFalse( new File(AppProps.WORKSPACE_FOLDER, "01").exists() );
+	}
+	
 	static void assertBetween( long min, long max, long value ) {
 		assertTrue( value>=min && value<=max );
 	}
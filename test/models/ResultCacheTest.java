@@ -0,0 +1,94 @@
+package models;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import play.libs.IO;
+import play.test.UnitTest;
+import util.TestHelper;
+
+public class ResultCacheTest extends UnitTest {
+
+	@BeforeClass
+	public static void init() {
+		AppProps.WORKSPACE_FOLDER.mkdirs();
+	}
+
+	static Service service( String seqs, String email ) {
+		Bundle bundle = new Bundle();
+		bundle.name = "tcoffee";
+
+		Fieldset set = new Fieldset();
+		set.add(new Field("memo", "seqs", seqs));
+		set.add(new Field("text", "email", email));
+
+		Service service = new Service(bundle);
+		service.name = "regular";
+		service.input = new Input(set);
+		return service;
+	}
+
+	@Test
+	public void testFingerprint() {
+		String fp1 = ResultCache.fingerprint(service(">1\nAAA\n>2\nCCC", "paolo@crg.es"));
+		String fp2 = ResultCache.fingerprint(service(">1\r\nAAA\r\n>2\r\nCCC\n", "other@crg.es"));
+		String fp3 = ResultCache.fingerprint(service(">1\nAAA\n>2\nCCG", "paolo@crg.es"));
+
+		assertEquals( fp1, fp2 );
+		assertFalse( fp1.equals(fp3) );
+
+		Service other = service(">1\nAAA\n>2\nCCC", "paolo@crg.es");
+		other.name = "expresso";
+		assertFalse( fp1.equals(ResultCache.fingerprint(other)) );
+	}
+
+	@Test
+	public void testLookup() {
+		Repo repo = new Repo("test-" + TestHelper.randomHashString(), true);
+		String fp = "fp-" + TestHelper.randomHashString();
+
+		ResultCache.instance().put(fp, repo);
+		assertTrue( repo.getFile(ResultCache.FINGERPRINT_FILE_NAME).exists() );
+		/* not completed */
+		assertNull( ResultCache.instance().lookup(fp) );
+
+		OutResult result = new OutResult();
+		result.status = Status.DONE;
+		repo.saveResult(result);
+		ResultCache.instance().put(fp, repo);
+		assertEquals( repo, ResultCache.instance().lookup(fp) );
+
+		assertNull( ResultCache.instance().lookup("fp-missing") );
+	}
+
+	@Test
+	public void testLink() throws Exception {
+		File source = new File(System.getProperty("java.io.tmpdir"), "cache-" + TestHelper.randomHashString());
+		File target = new File(System.getProperty("java.io.tmpdir"), "cache-" + TestHelper.randomHashString());
+		try {
+			new File(source, "sub").mkdirs();
+			IO.writeContent("alpha", new File(source, "a.txt"));
+			IO.writeContent("gamma", new File(source, "c.txt"));
+			IO.writeContent("beta", new File(source, "sub/b.txt"));
+			IO.writeContent("skip", new File(source, "_result"));
+
+			ResultCache.link(source, target, ResultCache.SKIP_FILES);
+			assertEquals( "alpha", IO.readContentAsString(new File(target, "a.txt")) );
+			assertEquals( "gamma", IO.readContentAsString(new File(target, "c.txt")) );
+			assertEquals( "beta", IO.readContentAsString(new File(target, "sub/b.txt")) );
+			assertFalse( new File(target, "_result").exists() );
+
+			/* the linked result is not affected by the source removal */
+			FileUtils.deleteDirectory(source);
+			assertEquals( "beta", IO.readContentAsString(new File(target, "sub/b.txt")) );
+		}
+		finally {
+			FileUtils.deleteQuietly(source);
+			FileUtils.deleteQuietly(target);
+		}
+	}
+
+}
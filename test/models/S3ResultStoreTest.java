@@ -0,0 +1,116 @@
+package models;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.libs.IO;
+import play.test.UnitTest;
+import util.TestHelper;
+import exception.QuickException;
+
+/**
+ * Runs against an in-process S3 stand-in, see {@link S3Stub}
+ */
+public class S3ResultStoreTest extends UnitTest {
+
+	S3Stub server;
+
+	S3ResultStore store;
+
+	@Before
+	public void init() throws Exception {
+		AppProps.WORKSPACE_FOLDER.mkdirs();
+		server = new S3Stub().start();
+		/* a not DNS compatible bucket name forces the path style requests */
+		store = new S3ResultStore(server.client(), "tserver_test", "test/");
+	}
+
+	@After
+	public void cleanup() {
+		ColdTier.instance().setStore(null);
+		server.stop();
+	}
+
+	@Test
+	public void testStore() throws Exception {
+		String rid = TestHelper.randomHashString();
+		File source = File.createTempFile("s3-", ".txt");
+		IO.writeContent("Hola", source);
+
+		assertFalse( store.exists(rid + "/_result") );
+		store.put(rid + "/_result", source);
+		assertTrue( store.exists(rid + "/_result") );
+		assertTrue( server.objects.containsKey("tserver_test/test/" + rid + "/_result") );
+
+		File target = File.createTempFile("s3-", ".txt");
+		assertTrue( store.get(rid + "/_result", target) );
+		assertEquals( "Hola", IO.readContentAsString(target) );
+		assertFalse( store.get(rid + "/missing", target) );
+
+		store.delete(rid + "/");
+		assertFalse( store.exists(rid + "/_result") );
+		assertTrue( server.objects.isEmpty() );
+
+		source.delete();
+		target.delete();
+	}
+
+	@Test
+	public void testColdTier() throws Exception {
+		ColdTier.instance().setStore(store);
+		Repo repo = ColdTierTest.create();
+		assertTrue( ColdTier.instance().migrate(repo) );
+		assertTrue( store.exists(repo.rid + "/" + RepoArchive.ARCHIVE_FILE_NAME) );
+
+		/* simulate a node that does not have the repository */
+		FileUtils.deleteDirectory(repo.getFile());
+		RepoIndex.instance().remove(repo);
+
+		Repo other = new Repo(repo.rid, false);
+		assertTrue( other.hasResult() );
+		assertTrue( other.isArchived() );
+		assertEquals( ">seq1\nACGTACGT\n", IO.readContentAsString(RepoArchive.open(other.getFile("result.aln"))) );
+
+		other.drop();
+		assertFalse( store.exists(repo.rid + "/_result") );
+	}
+
+	@Test
+	public void testMissingIsCached() {
+		ColdTier.instance().setStore(store);
+		Repo repo = new Repo("test-missing-" + TestHelper.randomHashString(), false);
+
+		/* the status check does not access the store */
+		assertEquals( Status.UNKNOWN, repo.getStatus() );
+		assertEquals( 0, server.requests.get() );
+
+		assertFalse( repo.hasResult() );
+		assertEquals( 1, server.requests.get() );
+		assertFalse( repo.fetch() );
+		assertEquals( 1, server.requests.get() );
+	}
+
+	@Test
+	public void testStoreFailure() {
+		ColdTier.instance().setStore(store);
+		server.failing = true;
+
+		try {
+			store.exists("any/_result");
+			fail();
+		}
+		catch( QuickException e ) {
+			/* ok */
+		}
+
+		/* an unavailable store is handled as a not found result */
+		Repo repo = new Repo("test-missing-" + TestHelper.randomHashString(), false);
+		assertFalse( repo.hasResult() );
+		assertEquals( Status.UNKNOWN, repo.getStatus() );
+	}
+
+}
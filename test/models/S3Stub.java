@@ -0,0 +1,296 @@
+package models;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.codec.binary.Hex;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3Client;
+
+/**
+ * An in-process stand-in of an S3 server, used to test {@link S3ResultStore} without an external service.
+ * <p>
+ * It implements only the path style requests used by the store: put, get, head and delete object
+ * and the objects listing, keeping the objects in memory.
+ * <p>
+ * NOTE: it speaks plain HTTP/1.1 over a socket because the JDK http server changes the case of the
+ * response headers, while the bundled SDK looks up the <code>ETag</code> header with its exact case.
+ */
+class S3Stub implements Runnable {
+
+	final SortedMap<String,byte[]> objects = new ConcurrentSkipListMap<String, byte[]>();
+
+	/** the number of requests served */
+	final AtomicInteger requests = new AtomicInteger();
+
+	/** when <code>true</code> all the requests fail with a server error, to simulate an outage */
+	volatile boolean failing;
+
+	private ServerSocket server;
+
+	/** A parsed request */
+	static class Request {
+		String method;
+		String path;
+		String query;
+		Map<String,String> headers = new HashMap<String, String>();
+		byte[] body;
+	}
+
+	/** A response to send */
+	static class Response {
+		int status = 200;
+		Map<String,String> headers = new LinkedHashMap<String, String>();
+		byte[] body = new byte[0];
+	}
+
+	/**
+	 * Start the server on a free port
+	 */
+	S3Stub start() throws IOException {
+		server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		Thread thread = new Thread(this, "s3-stub");
+		thread.setDaemon(true);
+		thread.start();
+		return this;
+	}
+
+	void stop() {
+		try { server.close(); } catch( IOException e ) { /* ignore */ }
+	}
+
+	String getEndpoint() {
+		return "http://127.0.0.1:" + server.getLocalPort();
+	}
+
+	/**
+	 * @return a client connected to this server, not retrying the failed requests
+	 */
+	AmazonS3Client client() {
+		AmazonS3Client client = new AmazonS3Client(new BasicAWSCredentials("test", "test"), new ClientConfiguration().withMaxErrorRetry(0));
+		client.setEndpoint(getEndpoint());
+		return client;
+	}
+
+	public void run() {
+		while( !server.isClosed() ) {
+			try {
+				final Socket socket = server.accept();
+				Thread thread = new Thread(new Runnable() {
+					public void run() { serve(socket); }
+				}, "s3-stub-conn");
+				thread.setDaemon(true);
+				thread.start();
+			}
+			catch( IOException e ) {
+				/* server closed */
+			}
+		}
+	}
+
+	/*
+	 * Serve the requests of a (keep-alive) connection
+	 */
+	void serve( Socket socket ) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			OutputStream out = socket.getOutputStream();
+			Request request;
+			while( (request=read(in, out)) != null ) {
+				requests.incrementAndGet();
+				write(out, request.method, handle(request));
+			}
+		}
+		catch( IOException e ) {
+			/* connection closed */
+		}
+		finally {
+			try { socket.close(); } catch( IOException e ) { /* ignore */ }
+		}
+	}
+
+	Response handle( Request request ) throws IOException {
+		String path = URLDecoder.decode(request.path.substring(1).replace("+", "%2B"), "UTF-8");
+		int p = path.indexOf('/');
+		String bucket = p != -1 ? path.substring(0,p) : path;
+		String key = p != -1 ? path.substring(p+1) : "";
+		String method = request.method;
+
+		if( failing ) {
+			return error(500, "InternalError");
+		}
+		if( key.length() == 0 && "GET".equals(method) ) {
+			return list(bucket, param(request.query, "prefix"));
+		}
+		if( "PUT".equals(method) ) {
+			objects.put(bucket + "/" + key, request.body);
+			Response result = new Response();
+			result.headers.put("ETag", etag(request.body));
+			return result;
+		}
+		if( "GET".equals(method) || "HEAD".equals(method) ) {
+			byte[] data = objects.get(bucket + "/" + key);
+			if( data == null ) {
+				return error(404, "NoSuchKey");
+			}
+			Response result = new Response();
+			result.headers.put("ETag", etag(data));
+			result.headers.put("Content-Type", "application/octet-stream");
+			result.body = data;
+			return result;
+		}
+		if( "DELETE".equals(method) ) {
+			objects.remove(bucket + "/" + key);
+			Response result = new Response();
+			result.status = 204;
+			return result;
+		}
+		return error(405, "MethodNotAllowed");
+	}
+
+	Response list( String bucket, String prefix ) throws IOException {
+		String from = bucket + "/" + (prefix != null ? prefix : "");
+		StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+			.append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+			.append("<Name>").append(bucket).append("</Name>")
+			.append("<Prefix>").append(prefix != null ? prefix : "").append("</Prefix>")
+			.append("<Marker></Marker><MaxKeys>1000</MaxKeys><IsTruncated>false</IsTruncated>");
+		for( Map.Entry<String,byte[]> it : objects.tailMap(from).entrySet() ) {
+			if( !it.getKey().startsWith(from) ) {
+				break;
+			}
+			xml.append("<Contents>")
+				.append("<Key>").append(it.getKey().substring(bucket.length()+1)).append("</Key>")
+				.append("<LastModified>2012-01-01T00:00:00.000Z</LastModified>")
+				.append("<ETag>").append(etag(it.getValue())).append("</ETag>")
+				.append("<Size>").append(it.getValue().length).append("</Size>")
+				.append("<StorageClass>STANDARD</StorageClass>")
+				.append("</Contents>");
+		}
+		xml.append("</ListBucketResult>");
+
+		Response result = new Response();
+		result.headers.put("Content-Type", "application/xml");
+		result.body = xml.toString().getBytes("UTF-8");
+		return result;
+	}
+
+	static Response error( int status, String code ) throws IOException {
+		Response result = new Response();
+		result.status = status;
+		result.headers.put("Content-Type", "application/xml");
+		result.body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>" + code + "</Code><Message>" + code + "</Message><RequestId>stub</RequestId></Error>").getBytes("UTF-8");
+		return result;
+	}
+
+	/*
+	 * Read the next request of the connection, or null when it has been closed
+	 */
+	static Request read( DataInputStream in, OutputStream out ) throws IOException {
+		String line = readLine(in);
+		if( line == null || line.length() == 0 ) {
+			return null;
+		}
+
+		Request request = new Request();
+		String[] parts = line.split(" ");
+		request.method = parts[0];
+		int q = parts[1].indexOf('?');
+		request.path = q != -1 ? parts[1].substring(0,q) : parts[1];
+		request.query = q != -1 ? parts[1].substring(q+1) : null;
+
+		while( (line=readLine(in)) != null && line.length() > 0 ) {
+			int p = line.indexOf(':');
+			request.headers.put(line.substring(0,p).trim().toLowerCase(), line.substring(p+1).trim());
+		}
+
+		if( "100-continue".equalsIgnoreCase(request.headers.get("expect")) ) {
+			out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes("US-ASCII"));
+			out.flush();
+		}
+
+		String len = request.headers.get("content-length");
+		if( len != null ) {
+			request.body = new byte[Integer.parseInt(len)];
+			in.readFully(request.body);
+		}
+		else if( "chunked".equalsIgnoreCase(request.headers.get("transfer-encoding")) ) {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			int size;
+			while( (size=Integer.parseInt(readLine(in).split(";")[0].trim(), 16)) > 0 ) {
+				byte[] chunk = new byte[size];
+				in.readFully(chunk);
+				body.write(chunk);
+				readLine(in);
+			}
+			readLine(in);
+			request.body = body.toByteArray();
+		}
+		else {
+			request.body = new byte[0];
+		}
+		return request;
+	}
+
+	static void write( OutputStream out, String method, Response response ) throws IOException {
+		StringBuilder head = new StringBuilder();
+		head.append("HTTP/1.1 ").append(response.status).append(response.status < 300 ? " OK" : " Error").append("\r\n");
+		for( Map.Entry<String,String> it : response.headers.entrySet() ) {
+			head.append(it.getKey()).append(": ").append(it.getValue()).append("\r\n");
+		}
+		head.append("Content-Length: ").append(response.status == 204 ? 0 : response.body.length).append("\r\n");
+		head.append("\r\n");
+		out.write(head.toString().getBytes("US-ASCII"));
+		if( !"HEAD".equals(method) && response.status != 204 ) {
+			out.write(response.body);
+		}
+		out.flush();
+	}
+
+	static String readLine( InputStream in ) throws IOException {
+		StringBuilder result = new StringBuilder();
+		int ch;
+		while( (ch=in.read()) != -1 && ch != '\n' ) {
+			if( ch != '\r' ) result.append((char)ch);
+		}
+		return ch == -1 && result.length() == 0 ? null : result.toString();
+	}
+
+	static String param( String query, String name ) throws IOException {
+		if( query != null ) for( String pair : query.split("&") ) {
+			int p = pair.indexOf('=');
+			if( p != -1 && name.equals(pair.substring(0,p)) ) {
+				return URLDecoder.decode(pair.substring(p+1), "UTF-8");
+			}
+		}
+		return null;
+	}
+
+	static String etag( byte[] data ) {
+		try {
+			return "\"" + new String(Hex.encodeHex(MessageDigest.getInstance("MD5").digest(data))) + "\"";
+		}
+		catch( Exception e ) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
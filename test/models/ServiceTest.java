@@ -5,9 +5,12 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 
+import job.CompletionBus;
+
 import org.junit.Test;
 
 import play.test.UnitTest;
+import util.TestHelper;
 import util.XStreamHelper;
 
 public class ServiceTest extends UnitTest {
@@ -88,4 +91,65 @@ public class ServiceTest extends UnitTest {
 	}
 	
 	
+	@Test
+	public void testCopyOnWrite() {
+		String xml = 
+			"<service name='alfa' >" +
+				"<input><fieldset><field type='text' name='x' /></fieldset></input>" +
+				"<process><exec>echo hola</exec></process>" +
+				"<output><valid><result><item><name>out.txt</name></item></result></valid></output>" +
+			"</service>";
+		
+		Service proto = XStreamHelper.fromXML(xml);
+		Service copy = proto.copy();
+		
+		/* the input is always copied */
+		assertNotSame( proto.input, copy.input );
+		assertEquals( "x", copy.input.field("x").name );
+		
+		/* process and output are shared until the execution */
+		assertSame( proto.process, copy.process );
+		assertSame( proto.output, copy.output );
+		
+		copy.detach();
+		assertNotSame( proto.process, copy.process );
+		assertNotSame( proto.output, copy.output );
+		assertEquals( proto.process.size(), copy.process.size() );
+
+		/* a copy of a detached service does not share its process */
+		Service other = copy.copy();
+		assertSame( proto, other.fPrototype );
+		assertNotSame( copy.process, other.process );
+		assertNotSame( copy.output, other.output );
+		
+		/* a copy of a not detached one shares the prototype process */
+		other = proto.copy().copy();
+		assertSame( proto.process, other.process );
+	}
+	
+	@Test
+	public void testReject() { 
+		Service service = TestHelper.init();
+		assertTrue( service.repo().lock() );
+		
+		final Status[] fired = new Status[1];
+		CompletionBus.Listener listener = new CompletionBus.Listener() {
+			public void changed(String rid, Status status) {
+				fired[0] = status;
+			}
+		};
+		CompletionBus.instance().addListener(listener);
+		try { 
+			service.reject("The server is busy");
+		}
+		finally { 
+			CompletionBus.instance().removeListener(listener);
+		}
+		
+		/* the waiting client is notified with the failed result */
+		assertEquals( Status.FAILED, fired[0] );
+		assertEquals( Status.FAILED, service.repo().getStatus() );
+		assertEquals( "The server is busy", service.repo().getResult().errors.get(0) );
+	}
+
 }
@@ -0,0 +1,46 @@
+package models;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class SingleFlightTest extends UnitTest {
+
+	static Service request( String rid, String fingerprint ) {
+		Service result = new Service("regular");
+		result.fRid = rid;
+		result.fFingerprint = fingerprint;
+		return result;
+	}
+
+	@Test
+	public void testJoinAndLeave() {
+		SingleFlight registry = new SingleFlight();
+		Service leader = request("r1", "abc");
+		Service follower1 = request("r2", "abc");
+		Service follower2 = request("r3", "abc");
+		Service other = request("r4", "xyz");
+
+		assertTrue( registry.join(leader) );
+		assertFalse( registry.join(follower1) );
+		assertFalse( registry.join(follower2) );
+		assertTrue( registry.join(other) );
+		assertEquals( 2, registry.size() );
+		assertEquals( 2, registry.getFollowersCount() );
+
+		/* only the leader can terminate the flight */
+		assertTrue( registry.leave(follower1).isEmpty() );
+
+		List<Service> followers = registry.leave(leader);
+		assertEquals( 2, followers.size() );
+		assertSame( follower1, followers.get(0) );
+		assertSame( follower2, followers.get(1) );
+		assertEquals( 1, registry.size() );
+
+		/* a new request for the same fingerprint is a new leader */
+		assertTrue( registry.join(request("r5", "abc")) );
+	}
+
+}
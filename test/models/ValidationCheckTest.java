@@ -1,5 +1,7 @@
 package models;
 
+import java.io.File;
+
 import org.junit.Test;
 
 import play.data.validation.Validation;
@@ -786,4 +788,48 @@ public class ValidationCheckTest extends UnitTest {
 		assertEquals( "String too short", Validation.error("fieldScript2").message());
 	} 
 	
+	@Test
+	public void testFastaFile() throws Exception {
+		final String SAMPLE = 
+			"  >1aboA \n" +
+			"NLFVALYDFVASGDNTLSITKGE KLRVLGYNHNGEWCEAQTKNGQGWVPS\n" +
+			"NYITPVN\n" +
+			">1ycsB\n" +
+			"KGVIYALWDYEPQNDDELPMKEGDCMTIIHREDEDEIEWWWARLNDKEGY\n" +
+			"VPRNLLGLYP\n\n";
+		
+		final String NORMALIZED = 
+			">1aboA \n" +
+			"NLFVALYDFVASGDNTLSITKGEKLRVLGYNHNGEWCEAQTKNGQGWVPS\n" +
+			"NYITPVN\n" +
+			">1ycsB\n" +
+			"KGVIYALWDYEPQNDDELPMKEGDCMTIIHREDEDEIEWWWARLNDKEGY\n" +
+			"VPRNLLGLYP\n";
+
+		ValidationCheck check = new ValidationCheck();
+		check.format = "FASTA";
+		check.maxNum = 2;
+		check.maxNumError = "Max sequence num error";
+		assertTrue( check.isStreamable() );
+
+		File file = File.createTempFile("test", ".fa");
+		File target = new File(file.getPath() + ".normalized");
+		try { 
+			IO.writeContent(SAMPLE, file);
+			check.apply("fieldFastaFile", file, target);
+			assertFalse( Validation.hasError("fieldFastaFile") );
+			assertEquals( NORMALIZED, IO.readContentAsString(target) );
+
+			IO.writeContent(SAMPLE+SAMPLE, file);
+			check.apply("fieldFastaFile", file, target);
+			assertTrue( Validation.hasError("fieldFastaFile") );
+			assertEquals( check.maxNumError, Validation.error("fieldFastaFile").message() );	
+			assertFalse( target.exists() );
+		}
+		finally { 
+			file.delete();
+			target.delete();
+		}
+	}
+
 }
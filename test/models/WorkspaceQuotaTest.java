@@ -0,0 +1,108 @@
+package models;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import play.libs.IO;
+import play.test.UnitTest;
+import util.TestHelper;
+
+public class WorkspaceQuotaTest extends UnitTest {
+
+	@BeforeClass
+	public static void init() {
+		AppProps.WORKSPACE_FOLDER.mkdirs();
+	}
+
+	@After
+	public void cleanup() {
+		AppProps.instance().remove("settings.workspace.quota");
+		AppProps.instance().remove("settings.workspace.quota.low");
+	}
+
+	static Repo create( Status status, long accessTime ) {
+		Repo repo = new Repo("test-" + TestHelper.randomHashString(), true);
+		IO.writeContent(TestHelper.randomHashString(), new File(repo.getFile(), "data.txt"));
+		OutResult out = new OutResult();
+		out.status = status;
+		repo.saveResult(out);
+		repo.touch(accessTime);
+		return repo;
+	}
+
+	@Test
+	public void testSize() {
+		long before = RepoIndex.instance().getTotalSize();
+		Repo repo = create(Status.DONE, System.currentTimeMillis());
+		long size = RepoIndex.instance().get(repo).getSize();
+		assertTrue( size > 0 );
+		assertEquals( before + size, RepoIndex.instance().getTotalSize() );
+
+		repo.drop();
+		assertEquals( before, RepoIndex.instance().getTotalSize() );
+	}
+
+	@Test
+	public void testCandidates() {
+		Repo done = create(Status.DONE, 2000);
+		Repo failed = create(Status.FAILED, 1000);
+		Repo locked = create(Status.DONE, 500);
+		locked.lock();
+		Repo ready = new Repo("test-" + TestHelper.randomHashString(), true);
+		ready.touch(100);
+
+		List<RepoIndex.Entry> list = WorkspaceQuota.instance().candidates();
+		int iFailed = list.indexOf(RepoIndex.instance().get(failed));
+		int iDone = list.indexOf(RepoIndex.instance().get(done));
+		assertTrue( iFailed >= 0 );
+		assertTrue( iFailed < iDone );
+		assertFalse( list.contains(RepoIndex.instance().get(locked)) );
+		assertFalse( list.contains(RepoIndex.instance().get(ready)) );
+
+		locked.unlock();
+		done.drop(); failed.drop(); locked.drop(); ready.drop();
+	}
+
+	@Test
+	public void testEvict() {
+		/* the least recently accessed repo */
+		Repo oldest = create(Status.DONE, 1000);
+		IO.writeContent(new String(new char[10 * 1024]).replace('\0', 'x'), new File(oldest.getFile(), "big.txt"));
+		oldest.saveResult(oldest.getResult());
+		oldest.touch(1000);
+		Repo recent = create(Status.DONE, System.currentTimeMillis());
+
+		WorkspaceQuota quota = WorkspaceQuota.instance();
+		assertFalse( quota.isEnabled() );
+
+		/* a budget that requires the eviction of about half of the oldest repo */
+		long usage = quota.getUsage();
+		long budget = (usage - 5 * 1024) / 100 * 100;
+		AppProps.instance().put("settings.workspace.quota", String.valueOf(budget));
+		AppProps.instance().put("settings.workspace.quota.low", "100");
+		assertTrue( quota.isEnabled() );
+
+		long evictions = quota.getEvictions();
+		assertTrue( quota.evict() >= 1 );
+		assertFalse( oldest.exists() );
+		assertTrue( recent.exists() );
+		assertTrue( quota.getEvictions() > evictions );
+		assertTrue( quota.getUsage() <= budget );
+
+		recent.drop();
+	}
+
+	@Test
+	public void testParseBytes() {
+		assertEquals( Long.valueOf(100), AppProps.parseBytes("100") );
+		assertEquals( Long.valueOf(2048), AppProps.parseBytes("2KB") );
+		assertEquals( Long.valueOf(10L * 1024 * 1024 * 1024), AppProps.parseBytes("10 GB") );
+		assertEquals( Long.valueOf(512L * 1024 * 1024), AppProps.parseBytes("0.5gb") );
+		assertNull( AppProps.parseBytes("lot") );
+	}
+
+}
@@ -0,0 +1,16 @@
+#!/bin/bash
+#
+# Fake AMPA script used by the tests, it writes the result and data files for the input sequence
+#
+for arg in "$@"; do
+	case "$arg" in
+		-in=*) IN=${arg#-in=};;
+		-rf=*) RF=${arg#-rf=};;
+		-df=*) DF=${arg#-df=};;
+	esac
+done
+
+echo "Antimicrobial stretch found in 1 to 10. Propensity value 0.214 (4 %) " > $RF
+echo "# This protein has a mean antimicrobial value of 0.22663125 " >> $RF
+printf "1\t0.250\n2\t0.230\n" > $DF
+echo "Processed $IN"
@@ -0,0 +1,148 @@
+package util;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.blackcoffee.commons.format.Alphabet;
+import org.blackcoffee.commons.format.Fasta;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class FastaValidatorTest extends UnitTest {
+
+	static FastaValidator parse( String value, StringWriter out ) throws Exception {
+		FastaValidator result = new FastaValidator(Alphabet.AminoAcid.INSTANCE);
+		result.parse(new StringReader(value), out);
+		return result;
+	}
+
+	/*
+	 * verify the result is the same produced by the coffee-commons Fasta parser
+	 */
+	static void assertSameAsFasta( String value ) throws Exception {
+		Fasta fasta = new Fasta(Alphabet.AminoAcid.INSTANCE);
+		fasta.parse(value);
+
+		StringWriter out = new StringWriter();
+		FastaValidator validator = parse(value, out);
+
+		assertEquals( fasta.isValid(), validator.isValid() );
+		if( fasta.isValid() ) {
+			assertEquals( fasta.toString(), out.toString() );
+			assertEquals( fasta.count(), validator.count() );
+			assertEquals( fasta.minLength(), validator.minLength() );
+			assertEquals( fasta.maxLength(), validator.maxLength() );
+		}
+		else if( fasta.getError() != null ) {
+			assertEquals( fasta.getError(), validator.getError() );
+		}
+	}
+
+	@Test
+	public void testSameAsFasta() throws Exception {
+		/* the width defined by the first line */
+		assertSameAsFasta(
+				">1aboA \n" +
+				"NLFVALYDFVASGDNTLSITKGE KLRVLGYNHNGEWCEAQTKNGQGWVPS\n" +
+				"NYITPVNNLFVALYDFVASGDNTLSITKGEKLRVLGYNHNGEWCEAQTKNGQGWVPS\n" +
+				">1ycsB\n" +
+				"KGVIYALWDYEPQNDDELPMKEGDCMTIIHREDEDEIEWWWARLNDKEGY\n" +
+				"VPRNLLGLYP");
+
+		/* short lines before the one defining the width */
+		assertSameAsFasta(
+				">seq1\n" +
+				"NLFVA\n" +
+				"LYDFVASGDNTLSITKGEKLRVLGY\n" +
+				"NHNGEWCEAQTKNGQGWVPSNYITPVNNLFVALYDFVASGDNTLSITKGEK\n");
+
+		/* no line long enough, default width */
+		StringBuilder value = new StringBuilder(">seq1\n");
+		for( int i=0; i<20; i++ ) value.append("ACDEFGHIK\n");
+		assertSameAsFasta(value.toString());
+
+		/* windows line terminators, comments and blank lines */
+		assertSameAsFasta(
+				"; comment\r\n" +
+				">seq1 description\r\n" +
+				"NLFVALYDFVASGDNTLSITKGEKLRVLGY\r\n" +
+				"\r\n" +
+				"NHNGEW\r\n" +
+				">seq2\r" +
+				"KGVIYALWDYEPQNDDELPMKEG\r\n");
+
+		/* format errors */
+		assertSameAsFasta("xxx");
+		assertSameAsFasta(">seq1\nNLFVAL%YDFV\n");
+		assertSameAsFasta(">seq1\n>seq2\nNLFVAL\n");
+		assertSameAsFasta(">seq1\n\n");
+		assertSameAsFasta(">\nNLFVAL\n");
+		assertSameAsFasta(">seq1\nNLFVAL\n ACDE\n");
+	}
+
+	@Test
+	public void testBoundedBuffer() throws Exception {
+		/* the first 70 residues on short lines, the following long line does not define the width */
+		StringBuilder value = new StringBuilder(">seq1\n");
+		StringBuilder residues = new StringBuilder();
+		for( int i=0; i<10; i++ ) { value.append("ACDEFGHIK\n"); residues.append("ACDEFGHIK"); }
+		value.append("NLFVALYDFVASGDNTLSITKGEKLRVLGY\n");
+		residues.append("NLFVALYDFVASGDNTLSITKGEKLRVLGY");
+
+		StringWriter out = new StringWriter();
+		FastaValidator fasta = parse(value.toString(), out);
+		assertTrue( fasta.isValid() );
+		assertEquals( 120, fasta.maxLength() );
+		assertEquals( 0, fasta.pending.length() );
+		assertEquals( ">seq1\n" + residues.substring(0,70) + "\n" + residues.substring(70) + "\n", out.toString() );
+	}
+
+	@Test
+	public void testTrailingBlanks() throws Exception {
+		FastaValidator fasta = parse("\n  >seq1\nNLFVAL\n \t \n\n", null);
+		assertTrue( fasta.isValid() );
+		assertEquals( 1, fasta.count() );
+		assertEquals( 6, fasta.maxLength() );
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		FastaValidator fasta = parse("; only a comment", null);
+		assertFalse( fasta.isValid() );
+		assertEquals( "Missing FASTA sequences", fasta.getError() );
+	}
+
+	@Test
+	public void testLimits() throws Exception {
+		final String SAMPLE =
+			">1\nNLFVALYDFV\n" +
+			">2\nNLFVALYDFVAS\n" +
+			">3\nNLFVALYDFVASGDNT\n" +
+			"%%% not a sequence";
+
+		FastaValidator fasta = new FastaValidator(Alphabet.AminoAcid.INSTANCE) .limits(2, null, false);
+		assertFalse( fasta.parse(new StringReader(SAMPLE), null) );
+		assertTrue( fasta.isTruncated() );
+		assertNull( fasta.getError() );
+		assertEquals( 3, fasta.count() );
+
+		fasta = new FastaValidator(Alphabet.AminoAcid.INSTANCE) .limits(null, 11, false);
+		assertFalse( fasta.parse(new StringReader(SAMPLE), null) );
+		assertTrue( fasta.isTruncated() );
+		assertEquals( 1, fasta.count() );
+		assertEquals( 12, fasta.maxLength() );
+
+		fasta = new FastaValidator(Alphabet.AminoAcid.INSTANCE) .limits(null, null, true);
+		assertFalse( fasta.parse(new StringReader(SAMPLE), null) );
+		assertTrue( fasta.isTruncated() );
+		assertTrue( fasta.minLength() != fasta.maxLength() );
+
+		/* without limits the format error is reported */
+		fasta = new FastaValidator(Alphabet.AminoAcid.INSTANCE);
+		assertFalse( fasta.parse(new StringReader(SAMPLE), null) );
+		assertFalse( fasta.isTruncated() );
+		assertNotNull( fasta.getError() );
+	}
+
+}
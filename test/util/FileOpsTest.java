@@ -0,0 +1,126 @@
+package util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import play.libs.IO;
+import play.test.UnitTest;
+
+public class FileOpsTest extends UnitTest {
+
+	@Test
+	public void testDelete() throws Exception {
+		File root = new File(System.getProperty("java.io.tmpdir"), "fileops-" + System.currentTimeMillis());
+		File target = new File(System.getProperty("java.io.tmpdir"), "fileops-target-" + System.currentTimeMillis());
+		try {
+			new File(root, "a/b/c").mkdirs();
+			IO.writeContent("hola", new File(root, "a/b/c/file.txt"));
+			IO.writeContent("hola", new File(root, "a/file.txt"));
+
+			/* the link content must not be deleted */
+			target.mkdirs();
+			IO.writeContent("keep", new File(target, "keep.txt"));
+			FileOps.symlink(target, new File(root, "a/link"));
+			assertTrue( FileOps.isSymlink(new File(root, "a/link")) );
+			assertFalse( FileOps.isSymlink(new File(root, "a/b")) );
+
+			assertTrue( FileOps.delete(root) );
+			assertFalse( root.exists() );
+			assertTrue( new File(target, "keep.txt").exists() );
+
+			/* not existing path */
+			assertTrue( FileOps.delete(root) );
+		}
+		finally {
+			FileUtils.deleteQuietly(root);
+			FileUtils.deleteQuietly(target);
+		}
+	}
+
+	@Test
+	public void testHardlink() throws Exception {
+		File root = new File(System.getProperty("java.io.tmpdir"), "fileops-" + System.currentTimeMillis());
+		try {
+			root.mkdirs();
+			File file = new File(root, "file.txt");
+			File link = new File(root, "link.txt");
+			IO.writeContent("hola", file);
+
+			FileOps.hardlink(file, link);
+			assertFalse( FileOps.isSymlink(link) );
+			assertEquals( "hola", IO.readContentAsString(link) );
+
+			/* the content is kept until the last link is deleted */
+			file.delete();
+			assertEquals( "hola", IO.readContentAsString(link) );
+		}
+		finally {
+			FileUtils.deleteQuietly(root);
+		}
+	}
+
+	@Test
+	public void testHardlinkMany() throws Exception {
+		File root = new File(System.getProperty("java.io.tmpdir"), "fileops-" + System.currentTimeMillis());
+		try {
+			File target = new File(root, "target");
+			target.mkdirs();
+			File file1 = new File(root, "file1.txt");
+			File file2 = new File(root, "file2.txt");
+			IO.writeContent("hola", file1);
+			IO.writeContent("hello", file2);
+
+			FileOps.hardlink(Arrays.asList(file1, file2), target);
+			assertEquals( "hola", IO.readContentAsString(new File(target, "file1.txt")) );
+			assertEquals( "hello", IO.readContentAsString(new File(target, "file2.txt")) );
+			assertFalse( FileOps.isSymlink(new File(target, "file2.txt")) );
+		}
+		finally {
+			FileUtils.deleteQuietly(root);
+		}
+	}
+
+	@Test
+	public void testInvokeAll() {
+		final AtomicInteger count = new AtomicInteger();
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		for( int i=0; i<10; i++ ) {
+			tasks.add(new Runnable() {
+				public void run() { count.incrementAndGet(); }
+			});
+		}
+		tasks.add(new Runnable() {
+			public void run() { throw new IllegalStateException("fail"); }
+		});
+
+		assertEquals( 10, FileOps.invokeAll(tasks) );
+		assertEquals( 10, count.get() );
+	}
+
+	@Test
+	public void testSniff() throws Exception {
+		assertEquals( "text/plain; charset=us-ascii", FileOps.sniff(">seq\nACGT\n".getBytes("UTF-8"), 10) );
+		byte[] utf = "caf\u00e9".getBytes("UTF-8");
+		assertEquals( "text/plain; charset=utf-8", FileOps.sniff(utf, utf.length) );
+		assertEquals( "application/octet-stream; charset=binary", FileOps.sniff(new byte[] { 'a', 0, 'b' }, 3) );
+		assertEquals( "application/pdf; charset=binary", FileOps.sniff("%PDF-1.4".getBytes("UTF-8"), 8) );
+		assertEquals( "application/x-empty; charset=binary", FileOps.sniff(new byte[0], 0) );
+
+		/* html and xml documents */
+		byte[] html = "\n<HTML><body>hola</body></HTML>".getBytes("UTF-8");
+		assertEquals( "text/html; charset=us-ascii", FileOps.sniff(html, html.length) );
+		byte[] xml = "<?xml version='1.0'?><result/>".getBytes("UTF-8");
+		assertEquals( "application/xml; charset=us-ascii", FileOps.sniff(xml, xml.length) );
+		byte[] xhtml = "<?xml version='1.0'?>\n<!DOCTYPE html><html/>".getBytes("UTF-8");
+		assertEquals( "text/html; charset=us-ascii", FileOps.sniff(xhtml, xhtml.length) );
+		byte[] text = "a <b> c".getBytes("UTF-8");
+		assertEquals( "text/plain; charset=us-ascii", FileOps.sniff(text, text.length) );
+	}
+
+}
@@ -46,10 +46,18 @@ public class GuessContentTypeTest extends UnitTest {
 
 		guess = new GuessContentType( TestHelper.file("/util/GuessContentTypeTest.java") );
 
-		assertEquals( "text/x-java", guess.getMimeType() );
+		assertEquals( "text/plain", guess.getMimeType() );
 		assertEquals( "us-ascii", guess.getCharset() );
 		assertTrue( guess.isText() );
 		assertFalse( guess.isBinary() );
 	}
+
+	@Test 
+	public void testGuessBinary() { 
+
+		guess = new GuessContentType( TestHelper.file("/test-bundle/public/images/tcoffeelogo.png") );
+		assertEquals( "image/png", guess.getMimeType() );
+		assertTrue( guess.isBinary() );
+	}
 	
 }
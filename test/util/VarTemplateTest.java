@@ -0,0 +1,66 @@
+package util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class VarTemplateTest extends UnitTest {
+
+	@Test
+	public void testCompile() {
+		VarTemplate template = VarTemplate.compile("a ${x} and ${y}!");
+		assertFalse( template.isStatic() );
+		assertEquals( 2, template.getVars().size() );
+		assertEquals( "x", template.getVars().get(0) );
+		assertEquals( "y", template.getVars().get(1) );
+		assertEquals( 3, template.literals.length );
+		assertEquals( "a ", template.literals[0] );
+		assertEquals( " and ", template.literals[1] );
+		assertEquals( "!", template.literals[2] );
+		assertEquals( "a ${x} and ${y}!", template.toString() );
+	}
+
+	@Test
+	public void testStatic() {
+		VarTemplate template = VarTemplate.compile("no vars $ { here }");
+		assertTrue( template.isStatic() );
+		assertTrue( template.getVars().isEmpty() );
+		assertSame( template.toString(), template.render(new HashMap<String, Object>()) );
+	}
+
+	@Test
+	public void testRender() {
+		Map<String,Object> ctx = new HashMap<String, Object>();
+		ctx.put("x", "1");
+		ctx.put("y", 2);
+
+		assertEquals( "1", VarTemplate.compile("${x}").render(ctx) );
+		assertEquals( "a 1 and 2!", VarTemplate.compile("a ${x} and ${y}!").render(ctx) );
+		assertEquals( "12", VarTemplate.compile("${x}${y}").render(ctx) );
+		assertEquals( "[]", VarTemplate.compile("[${z}]").render(ctx) );
+	}
+
+	@Test
+	public void testRenderLiteralValues() {
+		Map<String,Object> ctx = new HashMap<String, Object>();
+		ctx.put("path", "C:\\data\\$1");
+
+		assertEquals( "path: C:\\data\\$1", VarTemplate.compile("path: ${path}").render(ctx) );
+	}
+
+	@Test
+	public void testSameAsReplaceVars() {
+		Map<String,Object> ctx = new HashMap<String, Object>();
+		ctx.put("a", "x");
+		ctx.put("b}", "y");
+
+		String[] texts = { "", "${", "${}", "$${a}", "${a${b}", "${a}}", "${b}}", "}${a}{", "${ a }${a}" };
+		for( String text : texts ) {
+			assertEquals( text, Utils.replaceVars(text, ctx), VarTemplate.compile(text).render(ctx) );
+		}
+	}
+
+}